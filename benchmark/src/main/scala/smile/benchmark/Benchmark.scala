@@ -31,10 +31,14 @@ object Benchmark {
       case "airline-100k" => Airline.benchmark("0.1m")
       case "airline-1m" => Airline.benchmark("1m")
       case "usps" => USPS.benchmark()
+      case "inference" => Inference.benchmark()
+      case "distance" => Distance.benchmark()
+      case "ann" => NearestNeighbor.benchmark()
+      case "mlp" => NeuralNetwork.benchmark()
       case test => println(
         s"""
            |Unknown benchmark $test
-           |Available benchmarks: airline-100k, airline-1m, airline, usps
+           |Available benchmarks: airline-100k, airline-1m, airline, usps, inference, distance, ann, mlp
          """.stripMargin
       )
     })
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.benchmark
+
+import smile.math.MathEx
+
+/**
+ * Compares the one-to-one distance and dot product kernels, called in
+ * a loop, with the batch one-to-many kernels for various dimensions.
+ *
+ * @author Haifeng Li
+ */
+object Distance {
+
+  def main(args: Array[String]): Unit = {
+    benchmark()
+  }
+
+  /** Returns the average time in nanoseconds per row after warming up JIT. */
+  def time(name: String, n: Int, warmup: Int = 10, iterations: Int = 50)(task: => Any): Double = {
+    (1 to warmup).foreach(_ => task)
+
+    val start = System.nanoTime
+    (1 to iterations).foreach(_ => task)
+    val ns = (System.nanoTime - start).toDouble / iterations / n
+    println(f"$name%-40s $ns%10.2f ns/row")
+    ns
+  }
+
+  def benchmark(): Unit = {
+    println("Distance Kernels")
+    MathEx.setSeed(19650218)
+
+    val n = 10000
+    for (p <- Seq(2, 4, 16, 64, 256, 784)) {
+      println(s"Dimension $p")
+      val x = MathEx.random(p)
+      val y = Array.fill(n)(MathEx.random(p))
+      val xf = x.map(_.toFloat)
+      val yf = y.map(_.map(_.toFloat))
+      val d = new Array[Double](n)
+      val df = new Array[Float](n)
+
+      val t1 = time("squaredDistance(double[], double[])", n) { (0 until n).foreach(i => d(i) = MathEx.squaredDistance(x, y(i))) }
+      val t2 = time("squaredDistance(double[], double[][])", n) { MathEx.squaredDistance(x, y, d) }
+      val t3 = time("squaredDistance(float[], float[])", n) { (0 until n).foreach(i => d(i) = MathEx.squaredDistance(xf, yf(i))) }
+      val t4 = time("squaredDistance(float[], float[][])", n) { MathEx.squaredDistance(xf, yf, d) }
+      val t5 = time("dot(double[], double[])", n) { (0 until n).foreach(i => d(i) = MathEx.dot(x, y(i))) }
+      val t6 = time("dot(double[], double[][])", n) { MathEx.dot(x, y, d) }
+      val t7 = time("dot(float[], float[])", n) { (0 until n).foreach(i => df(i) = MathEx.dot(xf, yf(i))) }
+      val t8 = time("dot(float[], float[][])", n) { MathEx.dot(xf, yf, df) }
+      println(f"Speedup: squaredDistance double ${t1/t2}%.2fx, float ${t3/t4}%.2fx; dot double ${t5/t6}%.2fx, float ${t7/t8}%.2fx")
+    }
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.benchmark
+
+import java.util
+import scala.language.postfixOps
+import smile.classification._
+import smile.data.{DataFrame, Tuple}
+import smile.data.`type`.{DataTypes, StructField}
+import smile.data.formula._
+import smile.read
+import smile.util.Paths
+
+/**
+ * Compares the tuple based prediction of tree ensembles, which walks
+ * the node objects of each tree, with the batch prediction of compiled
+ * (flattened) forests.
+ *
+ * @author Haifeng Li
+ */
+object Inference {
+
+  def main(args: Array[String]): Unit = {
+    benchmark()
+  }
+
+  /** Returns the average time in milliseconds of a task after warming up JIT. */
+  def time(name: String, n: Int, warmup: Int = 5, iterations: Int = 20)(task: => Any): Double = {
+    (1 to warmup).foreach(_ => task)
+
+    val start = System.nanoTime
+    (1 to iterations).foreach(_ => task)
+    val ms = (System.nanoTime - start) / 1E6 / iterations
+    println(f"$name%-40s $ms%10.2f ms  ${1000.0 * n / ms}%12.0f rows/s")
+    ms
+  }
+
+  def benchmark(): Unit = {
+    println("Tree Ensemble Inference")
+
+    val fields = new util.ArrayList[StructField]
+    fields.add(new StructField("class", DataTypes.ByteType))
+    (1 to 256).foreach(i => fields.add(new StructField("V" + i, DataTypes.DoubleType)))
+    val schema = DataTypes.struct(fields)
+
+    val formula: Formula = "class" ~ "."
+    val zipTrain = read.csv(Paths.getTestData("usps/zip.train").toString, delimiter = ' ', header = false, schema = schema)
+    val zipTest = read.csv(Paths.getTestData("usps/zip.test").toString, delimiter = ' ', header = false, schema = schema)
+    val testx = formula.x(zipTest).toArray()
+    val n = zipTest.size
+
+    def tuples(data: DataFrame)(predict: Tuple => Any): Unit = {
+      (0 until data.size).foreach(i => predict(data.get(i)))
+    }
+
+    println("Training Random Forest of 200 trees...")
+    val forest = randomForest(formula, zipTrain, ntrees = 200)
+    val posteriori = Array.ofDim[Double](n, 10)
+    val prob = new Array[Double](10)
+    time("RandomForest.predict(Tuple)", n) { tuples(zipTest)(x => forest.predict(x)) }
+    time("RandomForest.predict(double[][])", n) { forest.predict(testx) }
+    time("RandomForest.predict(Tuple, double[])", n) { tuples(zipTest)(x => forest.predict(x, prob)) }
+    time("RandomForest.predict(double[][], double[][])", n) { forest.predict(testx, posteriori) }
+    time("RandomForest.predict(DataFrame)", n) { forest.predict(zipTest) }
+
+    println("Training Gradient Tree Boost of 200 trees...")
+    val gbt = gbm(formula, zipTrain, ntrees = 200)
+    time("GradientTreeBoost.predict(Tuple)", n) { tuples(zipTest)(x => gbt.predict(x)) }
+    time("GradientTreeBoost.predict(double[][])", n) { gbt.predict(testx) }
+    time("GradientTreeBoost.predict(Tuple, double[])", n) { tuples(zipTest)(x => gbt.predict(x, prob)) }
+    time("GradientTreeBoost.predict(double[][], double[][])", n) { gbt.predict(testx, posteriori) }
+    time("GradientTreeBoost.predict(DataFrame)", n) { gbt.predict(zipTest) }
+  }
+}
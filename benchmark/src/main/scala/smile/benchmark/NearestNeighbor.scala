@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.benchmark
+
+import smile.math.MathEx
+import smile.math.distance.Distance
+import smile.neighbor.{HNSW, LinearSearch, MPLSH, Neighbor}
+
+/**
+ * Compares the approximate nearest neighbor search of HNSW and
+ * multi-probe LSH in terms of recall@10 vs. queries per second.
+ *
+ * @author Haifeng Li
+ */
+object NearestNeighbor {
+
+  def main(args: Array[String]): Unit = {
+    benchmark()
+  }
+
+  /** Returns the recall of k-nearest neighbors and the queries per second. */
+  def run(name: String, q: Array[Array[Double]], truth: Array[Array[Int]])(knn: Array[Double] => Array[Neighbor[Array[Double], Array[Double]]]): (Double, Double) = {
+    q.foreach(knn) // warm up JIT
+
+    val start = System.nanoTime
+    val hit = q.indices.map { i =>
+      knn(q(i)).count(neighbor => truth(i).contains(neighbor.index))
+    }.sum
+    val qps = q.length / ((System.nanoTime - start) / 1E9)
+    val recall = hit.toDouble / (q.length * truth(0).length)
+    println(f"$name%-24s recall@10 = $recall%.3f, $qps%8.0f queries/s")
+    (recall, qps)
+  }
+
+  def benchmark(): Unit = {
+    println("Approximate Nearest Neighbor Search")
+    MathEx.setSeed(19650218)
+
+    // 100 clusters in 64 dimensional space.
+    val (n, p, k) = (20000, 64, 10)
+    val centers = Array.fill(100)(Array.fill(p)(10 * MathEx.random()))
+    def sample(): Array[Double] = centers(MathEx.randomInt(centers.length)).map(_ + MathEx.random(-3.0, 3.0))
+    val x = Array.fill(n)(sample())
+    val q = Array.fill(1000)(sample())
+
+    val distance: Distance[Array[Double]] = (a: Array[Double], b: Array[Double]) => MathEx.distance(a, b)
+    val naive = new LinearSearch(x, distance)
+    val truth = q.map(naive.knn(_, k).map(_.index))
+
+    var start = System.nanoTime
+    val hnsw = HNSW.of(x, 16, 200)
+    println(f"HNSW build time: ${(System.nanoTime - start) / 1E9}%.2fs")
+    for (ef <- Seq(10, 20, 50, 100, 200)) {
+      hnsw.efSearch(ef)
+      run(s"HNSW efSearch=$ef", q, truth)(hnsw.knn(_, k))
+    }
+
+    for (l <- Seq(10, 50)) {
+      start = System.nanoTime
+      val lsh = new MPLSH[Array[Double]](p, l, 4, 20.0)
+      x.foreach(xi => lsh.put(xi, xi))
+      val train = MathEx.permutate(n).take(200).map(x(_))
+      lsh.fit(naive, train, 22.0)
+      println(f"MPLSH L=$l build time: ${(System.nanoTime - start) / 1E9}%.2fs")
+      for (t <- Seq(10, 50, 200)) {
+        run(s"MPLSH L=$l T=$t", q, truth)(lsh.knn(_, k, 0.95, t))
+      }
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.benchmark
+
+import smile.base.mlp.{DataParallelism, Layer, OutputFunction}
+import smile.classification.MLP
+import smile.math.{MathEx, TimeFunction}
+
+/**
+ * Compares the epoch throughput of multilayer perceptron training
+ * with sequential mini-batches, synchronous gradient all-reduce and
+ * Hogwild data parallelism.
+ *
+ * @author Haifeng Li
+ */
+object NeuralNetwork {
+
+  def main(args: Array[String]): Unit = {
+    benchmark()
+  }
+
+  /** Returns the average time in milliseconds of an epoch after warming up JIT. */
+  def time(name: String, n: Int, warmup: Int = 1, epochs: Int = 5)(epoch: => Any): Double = {
+    (1 to warmup).foreach(_ => epoch)
+
+    val start = System.nanoTime
+    (1 to epochs).foreach(_ => epoch)
+    val ms = (System.nanoTime - start) / 1E6 / epochs
+    println(f"$name%-40s $ms%10.2f ms/epoch  ${1000.0 * n / ms}%12.0f rows/s")
+    ms
+  }
+
+  def benchmark(): Unit = {
+    println("Multilayer Perceptron Training")
+    MathEx.setSeed(19650218)
+
+    val n = 50000
+    val p = 100
+    val k = 10
+    val x = Array.fill(n)(MathEx.random(p))
+    val y = Array.fill(n)(MathEx.randomInt(k))
+    val threads = Runtime.getRuntime.availableProcessors
+    val batch = 128
+
+    def model(): MLP = {
+      val net = new MLP(p, Layer.rectifier(256), Layer.rectifier(128), Layer.mle(k, OutputFunction.SOFTMAX))
+      net.setLearningRate(TimeFunction.constant(0.01))
+      net
+    }
+
+    val serial = model()
+    val t1 = time("Sequential mini-batch", n) {
+      val permutation = MathEx.permutate(n)
+      permutation.grouped(batch).foreach { index =>
+        serial.update(MathEx.slice(x, index), MathEx.slice(y, index))
+      }
+    }
+
+    val float32 = model()
+    float32.setFloat32(true)
+    val t2 = time("Sequential mini-batch (float32)", n) {
+      val permutation = MathEx.permutate(n)
+      permutation.grouped(batch).foreach { index =>
+        float32.update(MathEx.slice(x, index), MathEx.slice(y, index))
+      }
+    }
+
+    val allreduce = model()
+    val t3 = time(s"All-reduce ($threads threads)", n) {
+      allreduce.update(x, y, batch, threads, DataParallelism.ALL_REDUCE)
+    }
+
+    val hogwild = model()
+    val t4 = time(s"Hogwild ($threads threads)", n) {
+      hogwild.update(x, y, batch, threads, DataParallelism.HOGWILD)
+    }
+
+    println(f"Speedup: float32 ${t1/t2}%.2fx, all-reduce ${t1/t3}%.2fx, Hogwild ${t1/t4}%.2fx")
+  }
+}
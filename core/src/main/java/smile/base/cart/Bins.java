@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.base.cart;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import smile.data.DataFrame;
+import smile.data.measure.Measure;
+import smile.data.measure.NominalScale;
+import smile.data.type.StructType;
+
+/**
+ * The quantile bins of numeric columns for histogram-based split finding.
+ * Each numeric column is discretized into at most 256 bins of (roughly)
+ * equal frequency, and the bin index of each sample is stored in a byte.
+ * Compared to the presorted index of samples, it takes only 1/4 memory
+ * and the best split of a node is found by scanning the histogram of
+ * bins rather than all the samples in sorted order. The split value
+ * of bin b is the midpoint between the largest value in bin b and the
+ * smallest value in bin b+1. Therefore, x &le; cutoff[b] if and only if
+ * the bin index of x is not greater than b on the training data.
+ * <p>
+ * Nominal columns are not binned as they are split on the category values
+ * directly.
+ *
+ * @author Haifeng Li
+ */
+public class Bins {
+    /** The maximum number of bins. */
+    private final int maxBins;
+    /**
+     * The bin index of samples for each numeric column,
+     * which should be interpreted as unsigned byte.
+     * Null for nominal columns.
+     */
+    private final byte[][] bins;
+    /**
+     * The split values between bins for each numeric column.
+     * Null for nominal columns.
+     */
+    private final double[][] cutoffs;
+
+    /**
+     * Constructor.
+     * @param maxBins the maximum number of bins.
+     * @param bins the bin index of samples for each numeric column.
+     * @param cutoffs the split values between bins.
+     */
+    private Bins(int maxBins, byte[][] bins, double[][] cutoffs) {
+        this.maxBins = maxBins;
+        this.bins = bins;
+        this.cutoffs = cutoffs;
+    }
+
+    /**
+     * Discretizes the numeric columns into quantile bins.
+     * @param x the predictors.
+     * @param maxBins the maximum number of bins, which should be in [2, 256].
+     * @return the quantile bins.
+     */
+    public static Bins of(DataFrame x, int maxBins) {
+        if (maxBins < 2 || maxBins > 256) {
+            throw new IllegalArgumentException("Invalid maximum number of bins: " + maxBins);
+        }
+
+        int p = x.ncol();
+        StructType schema = x.schema();
+        byte[][] bins = new byte[p][];
+        double[][] cutoffs = new double[p][];
+
+        IntStream.range(0, p).parallel().forEach(j -> {
+            Measure measure = schema.field(j).measure;
+            if (!(measure instanceof NominalScale)) {
+                double[] a = x.column(j).toDoubleArray();
+                double[] cutoff = cutoffs(a, maxBins);
+                byte[] b = new byte[a.length];
+                for (int i = 0; i < a.length; i++) {
+                    b[i] = (byte) bin(cutoff, a[i]);
+                }
+                bins[j] = b;
+                cutoffs[j] = cutoff;
+            }
+        });
+
+        return new Bins(maxBins, bins, cutoffs);
+    }
+
+    /**
+     * Returns the split values between the quantile bins.
+     * @param a the column values.
+     * @param maxBins the maximum number of bins.
+     * @return the split values.
+     */
+    private static double[] cutoffs(double[] a, int maxBins) {
+        int n = a.length;
+        double[] x = a.clone();
+        Arrays.sort(x);
+
+        // Close a bin at the first distinct value after reaching the
+        // next quantile so that the ties always fall in the same bin.
+        double[] cutoff = new double[maxBins - 1];
+        int size = 0;
+        int b = 1;
+        for (int i = 1; i < n && size < maxBins - 1; i++) {
+            if (x[i] != x[i-1] && i >= (long) b * n / maxBins) {
+                cutoff[size++] = (x[i-1] + x[i]) / 2;
+                // Skip the targets that are overshot by large ties.
+                while (b < maxBins && (long) b * n / maxBins <= i) b++;
+            }
+        }
+
+        return Arrays.copyOf(cutoff, size);
+    }
+
+    /**
+     * Returns the bin index of a value.
+     * @param cutoff the split values between bins.
+     * @param x the value.
+     * @return the bin index.
+     */
+    private static int bin(double[] cutoff, double x) {
+        // The first bin whose split value is not less than x.
+        int lo = 0, hi = cutoff.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cutoff[mid] < x) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Returns the maximum number of bins.
+     * @return the maximum number of bins.
+     */
+    public int maxBins() {
+        return maxBins;
+    }
+
+    /**
+     * Returns true if the column is binned.
+     * @param j the column index.
+     * @return true if the column is binned.
+     */
+    public boolean isBinned(int j) {
+        return bins[j] != null;
+    }
+
+    /**
+     * Returns the number of bins of a column.
+     * @param j the column index.
+     * @return the number of bins.
+     */
+    public int size(int j) {
+        return cutoffs[j].length + 1;
+    }
+
+    /**
+     * Returns the bin index of a sample.
+     * @param j the column index.
+     * @param i the sample index.
+     * @return the bin index.
+     */
+    public int bin(int j, int i) {
+        return bins[j][i] & 0xFF;
+    }
+
+    /**
+     * Returns the bin index of samples of a column, which should be
+     * interpreted as unsigned byte.
+     * @param j the column index.
+     * @return the bin index of samples.
+     */
+    public byte[] column(int j) {
+        return bins[j];
+    }
+
+    /**
+     * Returns the split value between bin b and b+1.
+     * @param j the column index.
+     * @param b the bin index.
+     * @return the split value.
+     */
+    public double cutoff(int j, int b) {
+        return cutoffs[j][b];
+    }
+}
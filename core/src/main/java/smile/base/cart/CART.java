@@ -107,11 +107,63 @@ public abstract class CART implements SHAP<Tuple>, Serializable {
      */
     protected transient int[][] order;
 
+    /**
+     * The quantile bins of numeric columns for histogram-based split
+     * finding. If null, the splits are searched over the sorted values
+     * of numeric columns, i.e. {@link #order}.
+     */
+    protected transient Bins bins;
+
+    /**
+     * The histograms of binned columns of the nodes to split. They are
+     * kept so that the histograms of the larger child are derived by
+     * subtracting those of its sibling from those of the parent.
+     */
+    private transient Map<LeafNode, Histograms> histograms;
+
     /**
      * The working buffer for reordering {@link #index} array.
      */
     private transient int[] buffer;
 
+    /**
+     * The function to accumulate the statistics of a sample
+     * into a bin of histogram.
+     */
+    protected interface Accumulator {
+        /**
+         * Accumulates the statistics of a sample.
+         * @param histogram the histogram.
+         * @param offset the offset of bin in the histogram.
+         * @param i the index of sample.
+         */
+        void accumulate(double[] histogram, int offset, int i);
+    }
+
+    /**
+     * The histograms of a node in histogram-based split finding.
+     */
+    private static class Histograms {
+        /** The histograms of binned columns of the node, or null if not kept. */
+        final double[][] histogram;
+        /** The histograms of parent node. */
+        double[][] parent;
+        /** The histograms of sibling node. */
+        double[][] sibling;
+
+        /**
+         * Constructor.
+         * @param histogram the histograms of the node.
+         * @param parent the histograms of parent node.
+         * @param sibling the histograms of sibling node.
+         */
+        Histograms(double[][] histogram, double[][] parent, double[][] sibling) {
+            this.histogram = histogram;
+            this.parent = parent;
+            this.sibling = sibling;
+        }
+    }
+
     /** Private constructor for deserialization. */
     private CART() {
 
@@ -149,6 +201,42 @@ public abstract class CART implements SHAP<Tuple>, Serializable {
      *              that only numeric attributes need be sorted.
      */
     public CART(DataFrame x, StructField y, int maxDepth, int maxNodes, int nodeSize, int mtry, int[] samples, int[][] order) {
+        this(x, y, maxDepth, maxNodes, nodeSize, mtry, samples, order, null);
+    }
+
+    /**
+     * Constructor with histogram-based split finding.
+     * @param x the data frame of the explanatory variable.
+     * @param y the response variables.
+     * @param maxDepth the maximum depth of the tree.
+     * @param maxNodes the maximum number of leaf nodes in the tree.
+     * @param nodeSize the minimum size of leaf nodes.
+     * @param mtry the number of input variables to pick to split on at each
+     *             node. It seems that sqrt(p) give generally good performance,
+     *             where p is the number of variables.
+     * @param samples the sample set of instances for stochastic learning.
+     *               samples[i] is the number of sampling for instance i.
+     * @param bins the quantile bins of numeric columns.
+     */
+    public CART(DataFrame x, StructField y, int maxDepth, int maxNodes, int nodeSize, int mtry, int[] samples, Bins bins) {
+        this(x, y, maxDepth, maxNodes, nodeSize, mtry, samples, null, bins);
+    }
+
+    /**
+     * Constructor.
+     * @param x the data frame of the explanatory variable.
+     * @param y the response variables.
+     * @param maxDepth the maximum depth of the tree.
+     * @param maxNodes the maximum number of leaf nodes in the tree.
+     * @param nodeSize the minimum size of leaf nodes.
+     * @param mtry the number of input variables to pick to split on at each
+     *             node.
+     * @param samples the sample set of instances for stochastic learning.
+     * @param order the index of training values in ascending order.
+     * @param bins the quantile bins of numeric columns. If not null,
+     *             order is ignored.
+     */
+    private CART(DataFrame x, StructField y, int maxDepth, int maxNodes, int nodeSize, int mtry, int[] samples, int[][] order, Bins bins) {
         this.x = x;
         this.response = y;
         this.schema = x.schema();
@@ -190,7 +278,10 @@ public abstract class CART implements SHAP<Tuple>, Serializable {
 
         buffer  = new int[index.length];
 
-        if (order == null) {
+        if (bins != null) {
+            this.bins = bins;
+            this.histograms = new IdentityHashMap<>();
+        } else if (order == null) {
             this.order = order(x);
         } else {
             this.order = new int[order.length][];
@@ -259,6 +350,8 @@ public abstract class CART implements SHAP<Tuple>, Serializable {
         this.index = null;
         this.samples = null;
         this.buffer = null;
+        this.bins = null;
+        this.histograms = null;
     }
 
     /**
@@ -304,8 +397,33 @@ public abstract class CART implements SHAP<Tuple>, Serializable {
 
         shuffle(split.lo, mid, split.hi, trues);
 
-        Optional<Split> trueSplit = findBestSplit(trueChild, split.lo, mid, split.unsplittable.clone());
-        Optional<Split> falseSplit = findBestSplit(falseChild, mid, split.hi, split.unsplittable); // reuse parent's array
+        Optional<Split> trueSplit;
+        Optional<Split> falseSplit;
+        if (bins == null) {
+            trueSplit = findBestSplit(trueChild, split.lo, mid, split.unsplittable.clone());
+            falseSplit = findBestSplit(falseChild, mid, split.hi, split.unsplittable); // reuse parent's array
+        } else {
+            // Search the smaller child first so that the histograms
+            // of larger child can be derived by subtraction.
+            boolean[] unsplittable = split.unsplittable.clone();
+            Histograms parent = histograms.remove(split.leaf);
+            double[][] h = parent == null ? null : parent.histogram;
+            if (mid - split.lo <= split.hi - mid) {
+                double[][] sibling = prepare(trueChild, mid - split.lo, h != null);
+                trueSplit = findBestSplit(trueChild, split.lo, mid, unsplittable);
+                histograms.put(falseChild, new Histograms(keep(split.hi - mid), h, sibling));
+                falseSplit = findBestSplit(falseChild, mid, split.hi, split.unsplittable);
+            } else {
+                double[][] sibling = prepare(falseChild, split.hi - mid, h != null);
+                falseSplit = findBestSplit(falseChild, mid, split.hi, split.unsplittable);
+                histograms.put(trueChild, new Histograms(keep(mid - split.lo), h, sibling));
+                trueSplit = findBestSplit(trueChild, split.lo, mid, unsplittable);
+            }
+
+            // Keep only the histograms of the children to split.
+            release(trueChild, trueSplit.isPresent());
+            release(falseChild, falseSplit.isPresent());
+        }
 
         // Prune the branch if both children are leaf nodes and of same output value.
         if (trueChild.equals(falseChild) && !trueSplit.isPresent() && !falseSplit.isPresent()) {
@@ -358,6 +476,14 @@ public abstract class CART implements SHAP<Tuple>, Serializable {
             return Optional.empty(); // all the samples in the node have the same response
         }
 
+        if (bins != null && !histograms.containsKey(node)) {
+            // the root node
+            double[][] h = keep(hi - lo);
+            if (h != null) {
+                histograms.put(node, new Histograms(h, null, null));
+            }
+        }
+
         // skip the unsplittable columns
         int p = schema.length();
         int[] columns = IntStream.range(0, p).filter(i -> !unsplittable[i]).toArray();
@@ -382,6 +508,92 @@ public abstract class CART implements SHAP<Tuple>, Serializable {
         return split;
     }
 
+    /**
+     * Returns the histograms to keep for a node in histogram-based
+     * split finding. The histograms of a small node are not kept as
+     * it is cheap to scan the samples directly.
+     * @param size the number of samples in the node.
+     * @return the histograms to keep or null.
+     */
+    private double[][] keep(int size) {
+        return size > 2 * bins.maxBins() ? new double[schema.length()][] : null;
+    }
+
+    /**
+     * Releases the histograms of a node that are not needed any more.
+     * @param node the node.
+     * @param splittable true if the node will be split later.
+     */
+    private void release(LeafNode node, boolean splittable) {
+        Histograms h = histograms.get(node);
+        if (h != null) {
+            if (splittable && h.histogram != null) {
+                h.parent = null;
+                h.sibling = null;
+            } else {
+                histograms.remove(node);
+            }
+        }
+    }
+
+    /**
+     * Registers the histograms of the child to search first.
+     * @param node the child node.
+     * @param size the number of samples in the node.
+     * @param sibling true if the histograms will be used by the sibling.
+     * @return the histograms of the node.
+     */
+    private double[][] prepare(LeafNode node, int size, boolean sibling) {
+        double[][] h = sibling ? new double[schema.length()][] : keep(size);
+        if (h != null) {
+            histograms.put(node, new Histograms(h, null, null));
+        }
+        return h;
+    }
+
+    /**
+     * Returns the histogram of a binned column in a node. Each bin has
+     * {@code width} cells of statistics accumulated by the function.
+     * If the histograms of parent and sibling nodes are available,
+     * the histogram is derived by subtraction without scanning
+     * the samples.
+     *
+     * @param node the node.
+     * @param j the column index.
+     * @param lo the lower bound of sample index in the node.
+     * @param hi the upper bound of sample index in the node.
+     * @param width the number of statistics per bin.
+     * @param accumulator the function to accumulate the statistics of a sample.
+     * @return the histogram.
+     */
+    protected double[] histogram(LeafNode node, int j, int lo, int hi, int width, Accumulator accumulator) {
+        Histograms context = histograms.get(node);
+
+        double[] h;
+        if (context != null && context.parent != null && context.sibling != null
+                && context.parent[j] != null && context.sibling[j] != null) {
+            double[] parent = context.parent[j];
+            double[] sibling = context.sibling[j];
+            h = new double[parent.length];
+            for (int i = 0; i < h.length; i++) {
+                h[i] = parent[i] - sibling[i];
+            }
+        } else {
+            h = new double[bins.size(j) * width];
+            byte[] bj = bins.column(j);
+            for (int i = lo; i < hi; i++) {
+                int o = index[i];
+                accumulator.accumulate(h, (bj[o] & 0xFF) * width, o);
+            }
+        }
+
+        if (context != null && context.histogram != null) {
+            context.histogram[j] = h;
+        }
+
+        return h;
+    }
+
     /**
      * Returns the impurity of node.
      * @param node the node to calculate the impurity.
@@ -492,7 +704,9 @@ public abstract class CART implements SHAP<Tuple>, Serializable {
      *                  the right side of the partition.
      */
     private void shuffle(int low, int split, int high, boolean[] predicate) {
-        Arrays.stream(order).filter(Objects::nonNull).forEach(o -> shuffle(o, low, split, high, predicate));
+        if (order != null) {
+            Arrays.stream(order).filter(Objects::nonNull).forEach(o -> shuffle(o, low, split, high, predicate));
+        }
         shuffle(index, low, split, high, predicate);
     }
 
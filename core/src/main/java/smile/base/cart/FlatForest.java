@@ -0,0 +1,355 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.base.cart;
+
+import java.io.Serializable;
+import java.util.stream.IntStream;
+
+/**
+ * The compiled form of a forest of decision trees for fast inference.
+ * The nodes of all trees are flattened in depth-first order into
+ * parallel primitive arrays (struct of arrays), i.e. the split feature,
+ * the split value and the offsets of children. The outputs of leaves
+ * are stored in another flat array. Compared to walking the graph of
+ * node objects with tuple accessors, the evaluation has no virtual
+ * calls, no boxing and much better memory locality.
+ * <p>
+ * The batch methods evaluate the samples in blocks. Within a block,
+ * each tree is applied to all samples before moving to the next tree
+ * so that the nodes of the tree stay in the cache. The blocks are
+ * processed in parallel.
+ * <p>
+ * The input is a row of the design matrix in the order of the predictor
+ * columns of the model, i.e. <code>formula.x(data).toArray()</code>.
+ * Nominal features are given by their integer codes.
+ *
+ * @author Haifeng Li
+ */
+public class FlatForest implements Serializable {
+    private static final long serialVersionUID = 2L;
+
+    /** The number of samples in a block of batch evaluation. */
+    private static final int BLOCK = 128;
+
+    /**
+     * The dimension of leaf output. It is the number of classes
+     * for decision trees, and 1 for regression trees.
+     */
+    private final int k;
+    /**
+     * The index of root node of each tree. If the tree has only
+     * one (leaf) node, it is the one's complement of leaf index.
+     */
+    private final int[] roots;
+    /**
+     * The split feature of internal nodes. For nominal splits,
+     * it is the one's complement of feature index.
+     */
+    private final int[] feature;
+    /**
+     * The split value of internal nodes.
+     */
+    private final double[] value;
+    /**
+     * The index of true branch child. If the child is a leaf,
+     * it is the one's complement of leaf index.
+     */
+    private final int[] trueChild;
+    /**
+     * The index of false branch child. If the child is a leaf,
+     * it is the one's complement of leaf index.
+     */
+    private final int[] falseChild;
+    /**
+     * The output of leaves, k values per leaf. It is the posteriori
+     * probabilities for decision trees and the response for regression
+     * trees.
+     */
+    private final double[] output;
+    /**
+     * The class label of leaves of decision trees. Null for regression trees.
+     */
+    private final int[] label;
+
+    /**
+     * Builder of flattened trees.
+     */
+    private static class Builder {
+        int k;
+        int nodes = 0;
+        int leaves = 0;
+        int[] feature;
+        double[] value;
+        int[] trueChild;
+        int[] falseChild;
+        double[] output;
+        int[] label;
+
+        /**
+         * Constructor.
+         * @param k the dimension of leaf output.
+         * @param nodes the number of internal nodes.
+         * @param leaves the number of leaves.
+         * @param classification true for decision trees.
+         */
+        Builder(int k, int nodes, int leaves, boolean classification) {
+            this.k = k;
+            feature = new int[nodes];
+            value = new double[nodes];
+            trueChild = new int[nodes];
+            falseChild = new int[nodes];
+            output = new double[leaves * k];
+            label = classification ? new int[leaves] : null;
+        }
+
+        /**
+         * Adds a subtree in depth-first order.
+         * @param node the root of subtree.
+         * @return the index of node, or the one's complement of leaf index.
+         */
+        int add(Node node) {
+            if (node instanceof LeafNode && (node instanceof DecisionNode) != (label != null)) {
+                throw new IllegalArgumentException("Mixed decision trees and regression trees");
+            }
+
+            if (node instanceof DecisionNode) {
+                DecisionNode leaf = (DecisionNode) node;
+                int[] count = leaf.count();
+                if (count.length != k) {
+                    throw new IllegalArgumentException("Inconsistent number of classes: " + count.length);
+                }
+
+                int i = leaves++;
+                double[] prob = DecisionNode.posteriori(count, new double[k]);
+                System.arraycopy(prob, 0, output, i * k, k);
+                label[i] = leaf.output();
+                return ~i;
+            }
+
+            if (node instanceof RegressionNode) {
+                int i = leaves++;
+                output[i] = ((RegressionNode) node).output();
+                return ~i;
+            }
+
+            InternalNode split = (InternalNode) node;
+            int i = nodes++;
+            if (split instanceof NominalNode) {
+                feature[i] = ~split.feature;
+                value[i] = ((NominalNode) split).value;
+            } else {
+                feature[i] = split.feature;
+                value[i] = ((OrdinalNode) split).value;
+            }
+
+            trueChild[i] = add(split.trueChild);
+            falseChild[i] = add(split.falseChild);
+            return i;
+        }
+    }
+
+    /**
+     * Constructor.
+     */
+    private FlatForest(int k, int[] roots, Builder builder) {
+        this.k = k;
+        this.roots = roots;
+        this.feature = builder.feature;
+        this.value = builder.value;
+        this.trueChild = builder.trueChild;
+        this.falseChild = builder.falseChild;
+        this.output = builder.output;
+        this.label = builder.label;
+    }
+
+    /**
+     * Compiles a forest of decision trees or regression trees.
+     * @param trees the trees, which should be all decision trees
+     *              or all regression trees.
+     * @return the compiled forest.
+     */
+    public static FlatForest of(CART... trees) {
+        if (trees.length == 0) {
+            throw new IllegalArgumentException("Empty forest");
+        }
+
+        int nodes = 0;
+        int leaves = 0;
+        for (CART tree : trees) {
+            int size = tree.size();
+            nodes += size / 2;
+            leaves += size - size / 2;
+        }
+
+        Node node = trees[0].root;
+        while (node instanceof InternalNode) {
+            node = ((InternalNode) node).trueChild;
+        }
+
+        boolean classification = node instanceof DecisionNode;
+        int k = classification ? ((DecisionNode) node).count().length : 1;
+
+        Builder builder = new Builder(k, nodes, leaves, classification);
+        int[] roots = new int[trees.length];
+        for (int t = 0; t < trees.length; t++) {
+            roots[t] = builder.add(trees[t].root);
+        }
+
+        return new FlatForest(k, roots, builder);
+    }
+
+    /**
+     * Returns the number of trees.
+     * @return the number of trees.
+     */
+    public int size() {
+        return roots.length;
+    }
+
+    /**
+     * Returns the dimension of leaf output.
+     * @return the number of classes for decision trees,
+     *         or 1 for regression trees.
+     */
+    public int k() {
+        return k;
+    }
+
+    /**
+     * Returns the leaf that a sample falls in.
+     * @param tree the index of tree.
+     * @param x the sample.
+     * @return the index of leaf.
+     */
+    public int leaf(int tree, double[] x) {
+        int node = roots[tree];
+        while (node >= 0) {
+            int j = feature[node];
+            boolean branch = j >= 0 ? x[j] <= value[node] : x[~j] == value[node];
+            node = branch ? trueChild[node] : falseChild[node];
+        }
+        return ~node;
+    }
+
+    /**
+     * Returns the output of a leaf. For regression trees, it is the
+     * predicted response. For decision trees, it is the posteriori
+     * probability of class j.
+     * @param leaf the index of leaf.
+     * @param j the index of output dimension.
+     * @return the output of leaf.
+     */
+    public double output(int leaf, int j) {
+        return output[leaf * k + j];
+    }
+
+    /**
+     * Returns the class label of a leaf of decision tree.
+     * @param leaf the index of leaf.
+     * @return the class label.
+     */
+    public int label(int leaf) {
+        return label[leaf];
+    }
+
+    /**
+     * Adds the weighted sum of tree outputs to y. For a decision forest,
+     * it accumulates the weighted posteriori probabilities.
+     *
+     * @param x the samples.
+     * @param weight the weight of trees.
+     * @param y the output accumulator of size n x k.
+     */
+    public void sum(double[][] x, double[] weight, double[][] y) {
+        int ntrees = roots.length;
+        if (weight.length != ntrees) {
+            throw new IllegalArgumentException(String.format("Invalid weight vector size: %d, expected: %d", weight.length, ntrees));
+        }
+
+        int n = x.length;
+        IntStream.range(0, (n + BLOCK - 1) / BLOCK).parallel().forEach(block -> {
+            int from = block * BLOCK;
+            int to = Math.min(n, from + BLOCK);
+            for (int t = 0; t < ntrees; t++) {
+                double w = weight[t];
+                for (int i = from; i < to; i++) {
+                    int offset = leaf(t, x[i]) * k;
+                    double[] yi = y[i];
+                    for (int j = 0; j < k; j++) {
+                        yi[j] += w * output[offset + j];
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Adds the weighted sum of tree outputs to y. This is a specialized
+     * version of regression trees.
+     *
+     * @param x the samples.
+     * @param weight the weight of trees.
+     * @param y the output accumulator.
+     */
+    public void sum(double[][] x, double[] weight, double[] y) {
+        if (k != 1) {
+            throw new UnsupportedOperationException("Multi-dimensional leaf output");
+        }
+
+        int ntrees = roots.length;
+        if (weight.length != ntrees) {
+            throw new IllegalArgumentException(String.format("Invalid weight vector size: %d, expected: %d", weight.length, ntrees));
+        }
+
+        int n = x.length;
+        IntStream.range(0, (n + BLOCK - 1) / BLOCK).parallel().forEach(block -> {
+            int from = block * BLOCK;
+            int to = Math.min(n, from + BLOCK);
+            for (int t = 0; t < ntrees; t++) {
+                double w = weight[t];
+                for (int i = from; i < to; i++) {
+                    y[i] += w * output[leaf(t, x[i])];
+                }
+            }
+        });
+    }
+
+    /**
+     * Counts the votes of decision trees.
+     *
+     * @param x the samples.
+     * @param votes the vote counts of size n x k.
+     */
+    public void vote(double[][] x, int[][] votes) {
+        if (label == null) {
+            throw new UnsupportedOperationException("Vote of regression trees");
+        }
+
+        int ntrees = roots.length;
+        int n = x.length;
+        IntStream.range(0, (n + BLOCK - 1) / BLOCK).parallel().forEach(block -> {
+            int from = block * BLOCK;
+            int to = Math.min(n, from + BLOCK);
+            for (int t = 0; t < ntrees; t++) {
+                for (int i = from; i < to; i++) {
+                    votes[i][label[leaf(t, x[i])]]++;
+                }
+            }
+        });
+    }
+}
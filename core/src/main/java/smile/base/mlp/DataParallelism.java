@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.base.mlp;
+
+/**
+ * The data parallelism of neural network training. The replicas
+ * of network share the weights but have their own workspace.
+ *
+ * @author Haifeng Li
+ */
+public enum DataParallelism {
+    /**
+     * Each replica trains on a disjoint shard of epoch and updates
+     * the shared weights without locking. As the sparse or small
+     * updates seldom collide, it scales almost linearly with the
+     * number of threads. The result depends on thread scheduling.
+     */
+    HOGWILD,
+
+    /**
+     * Each mini-batch is split among the replicas, of which the gradients
+     * are summed in a fixed order and applied once. It is equivalent to
+     * the sequential mini-batch training up to the rounding errors and
+     * deterministic for a given random seed and number of threads.
+     */
+    ALL_REDUCE
+}
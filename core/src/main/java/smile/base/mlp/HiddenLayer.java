@@ -59,4 +59,10 @@ public class HiddenLayer extends Layer {
             weight.tv(outputGradient, lowerLayerGradient);
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public void backpropagate(double[] lowerLayerGradient, int m, boolean float32) {
+        forEachSample(batchOutputGradient.get(), batchOutput.get(), m, f::g);
+        backpropagateLower(lowerLayerGradient, m, float32);
+    }
+}
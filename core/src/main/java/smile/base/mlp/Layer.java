@@ -19,17 +19,30 @@ package smile.base.mlp;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.DoubleBuffer;
 import java.util.Arrays;
+import java.util.function.BiConsumer;
+import java.util.stream.IntStream;
 import smile.math.MathEx;
+import smile.math.blas.BLAS;
+import smile.math.blas.Transpose;
 import smile.math.matrix.Matrix;
+import static smile.math.blas.Layout.COL_MAJOR;
+import static smile.math.blas.Transpose.NO_TRANSPOSE;
+import static smile.math.blas.Transpose.TRANSPOSE;
 
 /**
  * A layer in the neural network.
  *
  * @author Haifeng Li
  */
-public abstract class Layer implements Serializable {
+public abstract class Layer implements Serializable, Cloneable {
     private static final long serialVersionUID = 2L;
+    /**
+     * The number of samples per parallel task when applying
+     * the activation function to a mini-batch.
+     */
+    private static final int CHUNK = 64;
     /**
      * The number of neurons in this layer
      */
@@ -78,6 +91,18 @@ public abstract class Layer implements Serializable {
      * The bias update.
      */
     protected transient ThreadLocal<double[]> biasUpdate;
+    /**
+     * The output of mini-batch, an n x m matrix in column-major order.
+     */
+    protected transient ThreadLocal<double[]> batchOutput;
+    /**
+     * The output gradient of mini-batch, an n x m matrix in column-major order.
+     */
+    protected transient ThreadLocal<double[]> batchOutputGradient;
+    /**
+     * The single precision copy of weight matrix for mini-batch.
+     */
+    protected transient ThreadLocal<float[]> weight32;
 
     /**
      * Constructor. Randomly initialized weights and zero bias.
@@ -158,6 +183,21 @@ public abstract class Layer implements Serializable {
                 return new double[n];
             }
         };
+        batchOutput = new ThreadLocal<double[]>() {
+            protected synchronized double[] initialValue() {
+                return new double[0];
+            }
+        };
+        batchOutputGradient = new ThreadLocal<double[]>() {
+            protected synchronized double[] initialValue() {
+                return new double[0];
+            }
+        };
+        weight32 = new ThreadLocal<float[]>() {
+            protected synchronized float[] initialValue() {
+                return new float[n * p];
+            }
+        };
     }
 
     /**
@@ -267,6 +307,254 @@ public abstract class Layer implements Serializable {
         }
     }
 
+    /**
+     * Returns the output of mini-batch, an n x m matrix in column-major
+     * order, where n is the number of neurons and m is the batch size.
+     * The array may be longer than n x m.
+     * @return the output of mini-batch.
+     */
+    public double[] batchOutput() {
+        return batchOutput.get();
+    }
+
+    /**
+     * Returns the output gradient of mini-batch, an n x m matrix in
+     * column-major order. The array may be longer than n x m.
+     * @return the output gradient of mini-batch.
+     */
+    public double[] batchGradient() {
+        return batchOutputGradient.get();
+    }
+
+    /**
+     * Returns the workspace of at least given size.
+     * @param buffer the thread local workspace.
+     * @param size the required size.
+     * @return the workspace.
+     */
+    private static double[] workspace(ThreadLocal<double[]> buffer, int size) {
+        double[] a = buffer.get();
+        if (a.length < size) {
+            a = new double[size];
+            buffer.set(a);
+        }
+        return a;
+    }
+
+    /**
+     * Propagates the signals of a mini-batch from a lower layer to this
+     * layer with matrix-matrix multiplication.
+     *
+     * @param x the lower layer signals, a p x m matrix in column-major order.
+     * @param m the size of mini-batch.
+     * @param float32 the flag if the matrix multiplication is in single precision.
+     */
+    public void propagate(double[] x, int m, boolean float32) {
+        double[] output = workspace(batchOutput, n * m);
+        workspace(batchOutputGradient, n * m);
+
+        for (int j = 0; j < m; j++) {
+            System.arraycopy(bias, 0, output, j * n, n);
+        }
+
+        if (float32) {
+            float[] w = weight32.get();
+            for (int j = 0; j < p; j++) {
+                for (int i = 0; i < n; i++) {
+                    w[j * n + i] = (float) weight.get(i, j);
+                }
+            }
+        }
+
+        gemm(NO_TRANSPOSE, x, m, output, float32);
+        forEachSample(output, null, m, (o, g) -> f(o));
+    }
+
+    /**
+     * Computes the output or lower layer signals {@code C = op(W) * B + beta * C},
+     * where op(W) is W for propagation or W' for back-propagation. The beta is
+     * 1 for propagation and 0 for back-propagation.
+     */
+    private void gemm(Transpose trans, double[] B, int m, double[] C, boolean float32) {
+        int k = trans == NO_TRANSPOSE ? p : n;
+        int l = trans == NO_TRANSPOSE ? n : p;
+        double beta = trans == NO_TRANSPOSE ? 1.0 : 0.0;
+
+        if (float32) {
+            float[] b = toFloat(B, k * m);
+            float[] c = toFloat(C, l * m);
+            BLAS.engine.gemm(COL_MAJOR, trans, NO_TRANSPOSE, l, m, k, 1.0f, weight32.get(), n, b, k, (float) beta, c, l);
+            for (int i = 0; i < l * m; i++) C[i] = c[i];
+        } else {
+            Matrix b = new Matrix(k, m, k, DoubleBuffer.wrap(B));
+            Matrix c = new Matrix(l, m, l, DoubleBuffer.wrap(C));
+            weight.mm(trans, NO_TRANSPOSE, 1.0, b, beta, c);
+        }
+    }
+
+    /** Returns the single precision copy of first n elements of an array. */
+    private static float[] toFloat(double[] x, int n) {
+        float[] y = new float[n];
+        for (int i = 0; i < n; i++) y[i] = (float) x[i];
+        return y;
+    }
+
+    /**
+     * Applies a function to the (output, gradient) vectors of each sample
+     * in a mini-batch. The samples are processed in parallel chunks.
+     * The changes of vectors are written back to the mini-batch matrices.
+     *
+     * @param x the first n x m matrix in column-major order.
+     * @param y the second n x m matrix in column-major order, may be null.
+     * @param m the size of mini-batch.
+     * @param f the function.
+     */
+    void forEachSample(double[] x, double[] y, int m, BiConsumer<double[], double[]> f) {
+        IntStream stream = IntStream.range(0, (m + CHUNK - 1) / CHUNK);
+        if (m > CHUNK) stream = stream.parallel();
+
+        stream.forEach(chunk -> {
+            double[] a = new double[n];
+            double[] b = y == null ? null : new double[n];
+            int end = Math.min(m, (chunk + 1) * CHUNK);
+            for (int j = chunk * CHUNK; j < end; j++) {
+                System.arraycopy(x, j * n, a, 0, n);
+                if (b != null) System.arraycopy(y, j * n, b, 0, n);
+                f.accept(a, b);
+                System.arraycopy(a, 0, x, j * n, n);
+            }
+        });
+    }
+
+    /**
+     * Propagates the errors of a mini-batch back to a lower layer.
+     * @param lowerLayerGradient the gradient of lower layer, a p x m matrix
+     *                           in column-major order. It may be null for
+     *                           the first hidden layer.
+     * @param m the size of mini-batch.
+     * @param float32 the flag if the matrix multiplication is in single precision.
+     */
+    public abstract void backpropagate(double[] lowerLayerGradient, int m, boolean float32);
+
+    /**
+     * Computes the lower layer gradient {@code W' * G} of a mini-batch.
+     * @param lowerLayerGradient the gradient of lower layer.
+     * @param m the size of mini-batch.
+     * @param float32 the flag if the matrix multiplication is in single precision.
+     */
+    protected void backpropagateLower(double[] lowerLayerGradient, int m, boolean float32) {
+        if (lowerLayerGradient != null) {
+            gemm(TRANSPOSE, batchOutputGradient.get(), m, lowerLayerGradient, float32);
+        }
+    }
+
+    /**
+     * Computes the parameter gradient of a mini-batch, which is accumulated
+     * to the gradient of (mini-)batch, i.e. {@code dW += G * X'}.
+     *
+     * @param x the input of mini-batch, a p x m matrix in column-major order.
+     * @param m the size of mini-batch.
+     * @param float32 the flag if the matrix multiplication is in single precision.
+     */
+    public void computeGradient(double[] x, int m, boolean float32) {
+        double[] outputGradient = batchOutputGradient.get();
+        Matrix weightGradient = this.weightGradient.get();
+        double[] biasGradient = this.biasGradient.get();
+
+        if (float32) {
+            float[] g = toFloat(outputGradient, n * m);
+            float[] a = toFloat(x, p * m);
+            float[] dw = new float[n * p];
+            BLAS.engine.gemm(COL_MAJOR, NO_TRANSPOSE, TRANSPOSE, n, p, m, 1.0f, g, n, a, p, 0.0f, dw, n);
+            for (int j = 0; j < p; j++) {
+                for (int i = 0; i < n; i++) {
+                    weightGradient.add(i, j, dw[j * n + i]);
+                }
+            }
+        } else {
+            Matrix g = new Matrix(n, m, n, DoubleBuffer.wrap(outputGradient));
+            Matrix a = new Matrix(p, m, p, DoubleBuffer.wrap(x));
+            g.mm(NO_TRANSPOSE, TRANSPOSE, 1.0, a, 1.0, weightGradient);
+        }
+
+        for (int j = 0; j < m; j++) {
+            int offset = j * n;
+            for (int i = 0; i < n; i++) {
+                biasGradient[i] += outputGradient[offset + i];
+            }
+        }
+    }
+
+    /**
+     * Returns a replica of layer for data parallel training, which shares
+     * the weights and bias with this layer but has its own workspace.
+     * The momentum and RMSProp accumulators of the current thread are
+     * shared too, so that Hogwild updates of all replicas carry on the
+     * optimizer state across epochs like the weights.
+     * @return the replica.
+     */
+    Layer replica() {
+        try {
+            Layer layer = (Layer) super.clone();
+            layer.init();
+
+            Matrix rmsWeightGradient = this.rmsWeightGradient.get();
+            double[] rmsBiasGradient = this.rmsBiasGradient.get();
+            Matrix weightUpdate = this.weightUpdate.get();
+            double[] biasUpdate = this.biasUpdate.get();
+            layer.rmsWeightGradient = ThreadLocal.withInitial(() -> rmsWeightGradient);
+            layer.rmsBiasGradient = ThreadLocal.withInitial(() -> rmsBiasGradient);
+            layer.weightUpdate = ThreadLocal.withInitial(() -> weightUpdate);
+            layer.biasUpdate = ThreadLocal.withInitial(() -> biasUpdate);
+            return layer;
+        } catch (CloneNotSupportedException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Returns the accumulated parameter gradient of the current thread,
+     * which is reset to zero.
+     * @return the weight gradient in column-major order followed by
+     *         the bias gradient.
+     */
+    double[] takeGradient() {
+        Matrix weightGradient = this.weightGradient.get();
+        double[] biasGradient = this.biasGradient.get();
+
+        double[] gradient = new double[n * p + n];
+        for (int j = 0; j < p; j++) {
+            for (int i = 0; i < n; i++) {
+                gradient[j * n + i] = weightGradient.get(i, j);
+            }
+        }
+        System.arraycopy(biasGradient, 0, gradient, n * p, n);
+
+        weightGradient.fill(0.0);
+        Arrays.fill(biasGradient, 0.0);
+        return gradient;
+    }
+
+    /**
+     * Adds to the accumulated parameter gradient of the current thread.
+     * @param gradient the weight gradient in column-major order followed
+     *                 by the bias gradient.
+     */
+    void addGradient(double[] gradient) {
+        Matrix weightGradient = this.weightGradient.get();
+        double[] biasGradient = this.biasGradient.get();
+
+        for (int j = 0; j < p; j++) {
+            for (int i = 0; i < n; i++) {
+                weightGradient.add(i, j, gradient[j * n + i]);
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            biasGradient[i] += gradient[n * p + i];
+        }
+    }
+
     /**
      * Adjust network weights by back-propagation algorithm.
      *
@@ -81,6 +81,11 @@ public class OutputLayer extends Layer {
         weight.tv(outputGradient.get(), lowerLayerGradient);
     }
 
+    @Override
+    public void backpropagate(double[] lowerLayerGradient, int m, boolean float32) {
+        backpropagateLower(lowerLayerGradient, m, float32);
+    }
+
     /**
      * Compute the network output gradient.
      * @param target the desired output.
@@ -107,4 +112,25 @@ public class OutputLayer extends Layer {
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Compute the network output gradient of a mini-batch.
+     * @param target the desired output, an n x m matrix in column-major order.
+     * @param m the size of mini-batch.
+     */
+    public void computeOutputGradient(double[] target, int m) {
+        double[] output = batchOutput.get();
+        double[] outputGradient = batchOutputGradient.get();
+
+        int size = n * m;
+        if (target.length < size) {
+            throw new IllegalArgumentException(String.format("Invalid target matrix size: %d, expected: %d", target.length, size));
+        }
+
+        for (int i = 0; i < size; i++) {
+            outputGradient[i] = target[i] - output[i];
+        }
+
+        forEachSample(outputGradient, output, m, (g, y) -> f.g(cost, g, y));
+    }
+}
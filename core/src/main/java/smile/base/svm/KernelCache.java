@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.base.svm;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The least recently used (LRU) cache of kernel matrix rows with a memory
+ * budget. SVM solvers repeatedly evaluate the kernel between the samples
+ * of working set and all other (support) vectors. The kernel rows of
+ * recent working sets are kept in the cache. When the budget is reached,
+ * the least recently used rows are evicted. The kernel values may be
+ * stored in single precision to fit twice as many rows in the budget.
+ * <p>
+ * The cache is not thread safe. However, the elements of a row may
+ * be set concurrently.
+ *
+ * @author Haifeng Li
+ */
+public class KernelCache {
+    /** The estimated memory overhead of a row in bytes. */
+    private static final int OVERHEAD = 64;
+
+    /**
+     * A row of kernel matrix. The elements are initialized as NaN,
+     * which indicates that the kernel value is not computed yet.
+     */
+    public static abstract class Row {
+        /**
+         * Returns the kernel value.
+         * @param j the column index.
+         * @return the kernel value, or NaN if not computed yet.
+         */
+        public abstract double get(int j);
+
+        /**
+         * Sets the kernel value.
+         * @param j the column index.
+         * @param k the kernel value.
+         */
+        public abstract void set(int j, double k);
+    }
+
+    /** The row of double precision values. */
+    private static class DoubleRow extends Row {
+        /** The kernel values. */
+        final double[] k;
+
+        /** Constructor. */
+        DoubleRow(int length) {
+            k = new double[length];
+            Arrays.fill(k, Double.NaN);
+        }
+
+        @Override
+        public double get(int j) {
+            return k[j];
+        }
+
+        @Override
+        public void set(int j, double k) {
+            this.k[j] = k;
+        }
+    }
+
+    /** The row of single precision values. */
+    private static class FloatRow extends Row {
+        /** The kernel values. */
+        final float[] k;
+
+        /** Constructor. */
+        FloatRow(int length) {
+            k = new float[length];
+            Arrays.fill(k, Float.NaN);
+        }
+
+        @Override
+        public double get(int j) {
+            return k[j];
+        }
+
+        @Override
+        public void set(int j, double k) {
+            this.k[j] = (float) k;
+        }
+    }
+
+    /** The length of rows. */
+    private final int length;
+    /** True if the kernel values are stored in single precision. */
+    private final boolean single;
+    /** The maximum number of rows in the cache. */
+    private final int capacity;
+    /** The cached rows in access order. */
+    private final LinkedHashMap<Integer, Row> rows = new LinkedHashMap<>(16, 0.75f, true);
+    /** The number of cache hits. */
+    private long hits = 0;
+    /** The number of cache misses. */
+    private long misses = 0;
+    /** The number of evicted rows. */
+    private long evictions = 0;
+
+    /**
+     * Constructor.
+     * @param length the length of rows, i.e. the number of training samples.
+     * @param bytes the memory budget in bytes. The cache holds at least
+     *              two rows regardless of the budget.
+     * @param single if true, store the kernel values in single precision.
+     */
+    public KernelCache(int length, long bytes, boolean single) {
+        if (length <= 0) {
+            throw new IllegalArgumentException("Invalid row length: " + length);
+        }
+
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("Invalid cache size: " + bytes);
+        }
+
+        this.length = length;
+        this.single = single;
+        this.capacity = (int) Math.max(2, Math.min(length, bytes / rowBytes()));
+    }
+
+    /**
+     * Returns the default memory budget, which is given in MB by the
+     * system property {@code smile.svm.cache.size} (200 MB by default).
+     * Note that every solver instance has its own cache so that the
+     * concurrent training, e.g. one-vs-rest or hyperparameter search,
+     * takes a multiple of the budget.
+     * @return the default memory budget in bytes.
+     */
+    public static long defaultSize() {
+        long mb = Long.parseLong(System.getProperty("smile.svm.cache.size", "200"));
+        if (mb <= 0) {
+            throw new IllegalArgumentException("Invalid smile.svm.cache.size: " + mb);
+        }
+        return mb << 20;
+    }
+
+    /** Returns the memory footprint of a row in bytes. */
+    private long rowBytes() {
+        return (long) length * (single ? Float.BYTES : Double.BYTES) + OVERHEAD;
+    }
+
+    /**
+     * Returns the cached row, which becomes the most recently used one.
+     * @param i the row index.
+     * @return the row, or null if not in the cache.
+     */
+    public Row get(int i) {
+        Row row = rows.get(i);
+        if (row == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return row;
+    }
+
+    /**
+     * Allocates a row in the cache. The least recently used rows are
+     * evicted if the cache is full. The caller may continue to use an
+     * evicted row although it is not in the cache any more.
+     * @param i the row index.
+     * @return the new row of which the elements are NaN.
+     */
+    public Row put(int i) {
+        rows.remove(i);
+        Iterator<Map.Entry<Integer, Row>> iter = rows.entrySet().iterator();
+        while (rows.size() >= capacity && iter.hasNext()) {
+            iter.next();
+            iter.remove();
+            evictions++;
+        }
+
+        Row row = single ? new FloatRow(length) : new DoubleRow(length);
+        rows.put(i, row);
+        return row;
+    }
+
+    /**
+     * Removes a row from the cache, e.g. when the sample is not
+     * a support vector any more.
+     * @param i the row index.
+     */
+    public void remove(int i) {
+        rows.remove(i);
+    }
+
+    /**
+     * Removes all rows from the cache.
+     */
+    public void clear() {
+        rows.clear();
+    }
+
+    /**
+     * Returns the number of cached rows.
+     * @return the number of cached rows.
+     */
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * Returns the maximum number of rows in the cache.
+     * @return the maximum number of rows in the cache.
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the memory footprint of cached rows in bytes.
+     * @return the memory footprint of cached rows in bytes.
+     */
+    public long bytes() {
+        return rows.size() * rowBytes();
+    }
+
+    /**
+     * Returns the number of cache hits.
+     * @return the number of cache hits.
+     */
+    public long hits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of cache misses.
+     * @return the number of cache misses.
+     */
+    public long misses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of evicted rows.
+     * @return the number of evicted rows.
+     */
+    public long evictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the hit rate of cache.
+     * @return the hit rate of cache.
+     */
+    public double hitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0.0 : (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("KernelCache(%d/%d rows, %d MB, %s precision, hit rate = %.2f%%, %d evictions)",
+                rows.size(), capacity, bytes() >> 20, single ? "single" : "double", 100 * hitRate(), evictions);
+    }
+}
@@ -18,7 +18,6 @@
 package smile.base.svm;
 
 import java.io.Serializable;
-import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedList;
 import smile.math.MathEx;
@@ -32,6 +31,12 @@ import smile.math.kernel.MercerKernel;
  * choose which example should be considered next.
  * LASVM requires considerably less memory than a regular SVM solver.
  * This becomes a considerable speed advantage for large training sets.
+ * <p>
+ * The kernel rows of support vectors are kept in a least recently used
+ * cache of bounded memory. The rows of removed support vectors are
+ * released immediately.
+ *
+ * @see KernelCache
  *
  * @author Haifeng Li
  */
@@ -60,6 +65,14 @@ public class LASVM<T> implements Serializable {
      * The tolerance of convergence test.
      */
     private final double tol;
+    /**
+     * The memory budget of kernel cache in bytes.
+     */
+    private final long cacheSize;
+    /**
+     * True if the kernel cache stores values in single precision.
+     */
+    private final boolean single;
     /**
      * Support vectors.
      */
@@ -92,11 +105,15 @@ public class LASVM<T> implements Serializable {
     /**
      * The training samples.
      */
-    private T[] x;
+    private transient T[] x;
+    /**
+     * The cache of kernel matrix rows.
+     */
+    private transient KernelCache cache;
     /**
-     * The kernel matrix.
+     * The kernel values between a new sample and support vectors.
      */
-    private double[][] K;
+    private transient double[] buffer;
 
     /**
      * Constructor.
@@ -116,10 +133,38 @@ public class LASVM<T> implements Serializable {
      * @param tol the tolerance of convergence test.
      */
     public LASVM(MercerKernel<T> kernel, double Cp, double Cn, double tol) {
+        this(kernel, Cp, Cn, tol, KernelCache.defaultSize(), false);
+    }
+
+    /**
+     * Constructor.
+     * @param kernel the kernel.
+     * @param Cp the soft margin penalty parameter for positive instances.
+     * @param Cn the soft margin penalty parameter for negative instances.
+     * @param tol the tolerance of convergence test.
+     * @param cacheSize the memory budget of kernel cache in bytes.
+     * @param single if true, the kernel cache stores values in single precision.
+     */
+    public LASVM(MercerKernel<T> kernel, double Cp, double Cn, double tol, long cacheSize, boolean single) {
+        if (cacheSize <= 0) {
+            throw new IllegalArgumentException("Invalid kernel cache size: " + cacheSize);
+        }
+
         this.kernel = kernel;
         this.Cp = Cp;
         this.Cn = Cn;
         this.tol = tol;
+        this.cacheSize = cacheSize;
+        this.single = single;
+    }
+
+    /**
+     * Returns the kernel cache of last training, which
+     * provides the statistics of cache hits.
+     * @return the kernel cache.
+     */
+    public KernelCache cache() {
+        return cache;
     }
 
     /**
@@ -141,7 +186,8 @@ public class LASVM<T> implements Serializable {
      */
     public KernelMachine<T>  fit(T[] x, int[] y, int epoch) {
         this.x = x;
-        this.K = new double[x.length][];
+        this.cache = new KernelCache(x.length, cacheSize, single);
+        this.buffer = new double[x.length];
 
         // pick initial support vectors.
         init(x, y);
@@ -164,6 +210,7 @@ public class LASVM<T> implements Serializable {
         }
 
         finish();
+        logger.info("{}", cache);
 
         int n = sv.size();
         @SuppressWarnings("unchecked")
@@ -221,22 +268,30 @@ public class LASVM<T> implements Serializable {
     }
 
     /**
-     * Returns the cached kernel value.
-     * @param i the index of support vector.
-     * @param j the index of support vector.
+     * Returns the cached kernel row of a support vector.
+     * The kernel values are computed on demand.
+     * @param v the support vector.
      */
-    private double k(int i, int j) {
-        double k = Double.NaN;
-        double[] ki = K[i];
-        if (ki != null) {
-            k = ki[j];
+    private KernelCache.Row row(SupportVector<T> v) {
+        KernelCache.Row row = cache.get(v.i);
+        if (row == null) {
+            row = cache.put(v.i);
         }
+        return row;
+    }
 
+    /**
+     * Returns the cached kernel value.
+     * @param row the kernel row of support vector u.
+     * @param u the support vector.
+     * @param v the support vector.
+     */
+    private double k(KernelCache.Row row, SupportVector<T> u, SupportVector<T> v) {
+        double k = row.get(v.i);
         if (Double.isNaN(k)) {
-            k = kernel.k(x[i], x[j]);
-            if (ki != null) ki[j] = k;
+            k = kernel.k(u.x, v.x);
+            row.set(v.i, k);
         }
-
         return k;
     }
 
@@ -267,9 +322,10 @@ public class LASVM<T> implements Serializable {
             double km = v1.k;
             double gm = v1.g;
             double best = 0.0;
+            KernelCache.Row row = row(v1);
             for (SupportVector<T> v : sv) {
                 double Z = v.g - gm;
-                double k = k(v1.i, v.i);
+                double k = k(row, v1, v);
                 double curv = km + v.k - 2.0 * k;
                 if (curv <= 0.0) curv = TAU;
                 double mu = Z / curv;
@@ -289,9 +345,10 @@ public class LASVM<T> implements Serializable {
             double km = v2.k;
             double gm = v2.g;
             double best = 0.0;
+            KernelCache.Row row = row(v2);
             for (SupportVector<T> v : sv) {
                 double Z = gm - v.g;
-                double k = k(v2.i, v.i);
+                double k = k(row, v2, v);
                 double curv = km + v.k - 2.0 * k;
                 if (curv <= 0.0) curv = TAU;
 
@@ -345,8 +402,10 @@ public class LASVM<T> implements Serializable {
         // Perform update
         v1.alpha -= step;
         v2.alpha += step;
+        KernelCache.Row row1 = row(v1);
+        KernelCache.Row row2 = row(v2);
         for (SupportVector<T> v : sv) {
-            v.g -= step * (k(v2.i, v.i) - k(v1.i, v.i));
+            v.g -= step * (k(row2, v2, v) - k(row1, v1, v));
         }
 
         // optimality test
@@ -373,11 +432,9 @@ public class LASVM<T> implements Serializable {
         // Compute gradient
         double g = y;
 
-        double[] cache = new double[K.length];
-        Arrays.fill(cache, Double.NaN);
         g -= sv.stream().parallel().mapToDouble(v -> {
             double k = kernel.k(v.x, x);
-            cache[v.i] = k;
+            buffer[v.i] = k;
             return v.alpha * k;
         }).sum();
 
@@ -390,9 +447,13 @@ public class LASVM<T> implements Serializable {
         }
 
         // Insert
+        KernelCache.Row row = cache.put(i);
+        for (SupportVector<T> u : sv) {
+            row.set(u.i, buffer[u.i]);
+        }
+
         SupportVector<T> v = new SupportVector<>(i, x, y, 0.0, g, Cp, Cn, kernel.k(x, x));
         sv.addFirst(v);
-        K[i] = cache;
 
         // Process
         if (y > 0) {
@@ -464,7 +525,7 @@ public class LASVM<T> implements Serializable {
             SupportVector<T> v = iter.next();
             if (v.alpha == 0) {
                 if ((v.g >= gmax && 0 >= v.cmax) || (v.g <= gmin && 0 <= v.cmin)) {
-                    K[v.i] = null;
+                    cache.remove(v.i);
                     iter.remove();
                 }
             }
@@ -28,6 +28,14 @@ import smile.regression.KernelMachine;
  * by SVR depends only on a subset of the training data, because the cost
  * function ignores any training data close to the model prediction (within
  * a threshold &epsilon;).
+ * <p>
+ * The kernel rows of working sets are kept in a least recently used
+ * cache of bounded memory. With shrinking, the samples of which the
+ * Lagrangian multipliers are at the bounds and unlikely to move are
+ * removed from the active set periodically, so that the kernel rows
+ * and gradient updates only cover the active samples. Once the active
+ * problem converges, the gradients of removed samples are reconstructed
+ * and the optimality is checked on all samples.
  *
  * <h2>References</h2>
  * <ol>
@@ -41,6 +49,8 @@ import smile.regression.KernelMachine;
  * <li> Chih-Chung Chang and Chih-Jen Lin. LIBSVM: a Library for Support Vector Machines.</li>
  * </ol>
  *
+ * @see KernelCache
+ *
  * @author Haifeng Li
  */
 public class SVR<T> {
@@ -67,10 +77,26 @@ public class SVR<T> {
      * The tolerance of convergence test.
      */
     private final double tol;
+    /**
+     * The memory budget of kernel cache in bytes.
+     */
+    private final long cacheSize;
+    /**
+     * True if the kernel cache stores values in single precision.
+     */
+    private final boolean single;
+    /**
+     * True if the bounded samples are removed from the active set.
+     */
+    private final boolean shrinking;
     /**
      * Support vectors.
      */
     private List<SupportVector> sv;
+    /**
+     * The active set of support vectors.
+     */
+    private List<SupportVector> active;
     /**
      * Threshold of decision function.
      */
@@ -90,9 +116,9 @@ public class SVR<T> {
     private int gmaxindex;
 
     /**
-     * The kernel matrix.
+     * The cache of kernel matrix rows.
      */
-    private double[][] K;
+    private KernelCache cache;
 
     /**
      * Support vector.
@@ -106,6 +132,10 @@ public class SVR<T> {
          * Support vector.
          */
         final T x;
+        /**
+         * The response variable.
+         */
+        final double y;
         /**
          * Lagrangian multipliers of support vector.
          */
@@ -128,6 +158,7 @@ public class SVR<T> {
         SupportVector(int i, T x, double y) {
             this.i = i;
             this.x = x;
+            this.y = y;
             g[0] = eps + y;
             g[1] = eps - y;
             k = kernel.k(x, x);
@@ -142,6 +173,33 @@ public class SVR<T> {
      * @param tol the tolerance of convergence test.
      */
     public SVR(MercerKernel<T> kernel, double eps, double C, double tol) {
+        this(kernel, eps, C, tol, KernelCache.defaultSize(), false);
+    }
+
+    /**
+     * Constructor.
+     * @param kernel the kernel function.
+     * @param eps the loss function error threshold.
+     * @param C the soft margin penalty parameter.
+     * @param tol the tolerance of convergence test.
+     * @param cacheSize the memory budget of kernel cache in bytes.
+     * @param single if true, the kernel cache stores values in single precision.
+     */
+    public SVR(MercerKernel<T> kernel, double eps, double C, double tol, long cacheSize, boolean single) {
+        this(kernel, eps, C, tol, cacheSize, single, true);
+    }
+
+    /**
+     * Constructor.
+     * @param kernel the kernel function.
+     * @param eps the loss function error threshold.
+     * @param C the soft margin penalty parameter.
+     * @param tol the tolerance of convergence test.
+     * @param cacheSize the memory budget of kernel cache in bytes.
+     * @param single if true, the kernel cache stores values in single precision.
+     * @param shrinking if true, remove the bounded samples from the active set.
+     */
+    public SVR(MercerKernel<T> kernel, double eps, double C, double tol, long cacheSize, boolean single, boolean shrinking) {
         if (eps <= 0) {
             throw new IllegalArgumentException("Invalid error threshold: " + eps);
         }
@@ -154,10 +212,26 @@ public class SVR<T> {
             throw new IllegalArgumentException("Invalid tolerance of convergence test:" + tol);
         }
 
+        if (cacheSize <= 0) {
+            throw new IllegalArgumentException("Invalid kernel cache size: " + cacheSize);
+        }
+
         this.kernel = kernel;
         this.eps = eps;
         this.C = C;
         this.tol = tol;
+        this.cacheSize = cacheSize;
+        this.single = single;
+        this.shrinking = shrinking;
+    }
+
+    /**
+     * Returns the kernel cache of last training, which
+     * provides the statistics of cache hits.
+     * @return the kernel cache.
+     */
+    public KernelCache cache() {
+        return cache;
     }
 
     /**
@@ -172,7 +246,7 @@ public class SVR<T> {
         }
 
         int n = x.length;
-        K = new double[n][];
+        cache = new KernelCache(n, cacheSize, single);
 
         // Initialize support vectors.
         sv = new ArrayList<>(n);
@@ -180,13 +254,26 @@ public class SVR<T> {
             sv.add(new SupportVector(i, x[i], y[i]));
         }
 
+        active = new ArrayList<>(sv);
         minmax();
         int phase = Math.min(n, 1000);
-        for (int count = 1; smo(tol); count++) {
+        for (int count = 1; ; count++) {
+            if (shrinking && count % phase == 0) {
+                shrink();
+            }
+
+            if (!smo(tol)) {
+                // The active problem is solved. Check all samples.
+                if (active.size() == n) break;
+                unshrink();
+                if (gmax - gmin <= tol) break;
+            }
+
             if (count % phase == 0) {
-                logger.info("{} SMO iterations", count);
+                logger.info("{} SMO iterations, {} active samples", count, active.size());
             }
         }
+        active = null;
 
         int nsv = 0;
         int bsv = 0;
@@ -216,6 +303,7 @@ public class SVR<T> {
         }
 
         logger.info("{} samples, {} support vectors, {} bounded", n, nsv, bsv);
+        logger.info("{}", cache);
 
         return new KernelMachine<>(kernel, vectors, alpha, b);
     }
@@ -227,7 +315,7 @@ public class SVR<T> {
         gmin = Double.MAX_VALUE;
         gmax = -Double.MAX_VALUE;
 
-        for (SupportVector v : sv) {
+        for (SupportVector v : active) {
             double g = -v.g[0];
             double a = v.alpha[0];
             if (g < gmin && a > 0.0) {
@@ -256,17 +344,88 @@ public class SVR<T> {
         }
     }
 
+    /**
+     * Removes the samples from the active set if both Lagrangian
+     * multipliers are at the bounds and their gradients are beyond
+     * the most violating pair, i.e. they are unlikely to be selected
+     * in the working set.
+     */
+    private void shrink() {
+        int size = active.size();
+        active.removeIf(v -> shrinkable(v, 0) && shrinkable(v, 1));
+        if (active.size() < size) {
+            logger.debug("Shrink the active set from {} to {} samples", size, active.size());
+            minmax();
+        }
+    }
+
+    /**
+     * Returns true if a Lagrangian multiplier is at the bound and
+     * cannot be part of a violating pair at present.
+     * @param v the support vector.
+     * @param k the index of Lagrangian multiplier.
+     */
+    private boolean shrinkable(SupportVector v, int k) {
+        double a = v.alpha[k];
+        boolean lower = a <= 0.0;
+        boolean upper = a >= C;
+        if (lower && upper) return true;
+        if (!lower && !upper) return false;
+
+        double g = k == 0 ? -v.g[0] : v.g[1];
+        // The multiplier can only be the first (max) candidate of
+        // the violating pair if alpha[0] == 0 or alpha[1] == C.
+        // Otherwise, it can only be the second (min) candidate.
+        boolean max = (k == 0) == lower;
+        return max ? g < gmin : g > gmax;
+    }
+
+    /**
+     * Reconstructs the gradients of inactive samples and restores
+     * the active set to all samples. The cached kernel rows are
+     * discarded as they don't cover the inactive samples.
+     */
+    private void unshrink() {
+        boolean[] isActive = new boolean[sv.size()];
+        for (SupportVector v : active) {
+            isActive[v.i] = true;
+        }
+
+        List<SupportVector> nonzero = new ArrayList<>();
+        for (SupportVector v : sv) {
+            if (v.alpha[0] != v.alpha[1]) {
+                nonzero.add(v);
+            }
+        }
+
+        sv.stream().parallel().filter(v -> !isActive[v.i]).forEach(v -> {
+            double f = 0.0;
+            for (SupportVector u : nonzero) {
+                f += (u.alpha[1] - u.alpha[0]) * kernel.k(v.x, u.x);
+            }
+            v.g[0] = eps + v.y - f;
+            v.g[1] = eps - v.y + f;
+        });
+
+        logger.debug("Unshrink the active set from {} to {} samples", active.size(), sv.size());
+        active = new ArrayList<>(sv);
+        cache.clear();
+        minmax();
+        b = -(gmax + gmin) / 2;
+    }
+
     /**
      * Calculate the row of kernel matrix for a vector i.
      * @param v data vector to evaluate kernel matrix.
      */
-    private double[] gram(SupportVector v) {
-        if (K[v.i] == null) {
-            double[] ki = new double[sv.size()];
-            sv.stream().parallel().forEach(vi -> ki[vi.i] = kernel.k(v.x, vi.x));
-            K[v.i] = ki;
+    private KernelCache.Row gram(SupportVector v) {
+        KernelCache.Row row = cache.get(v.i);
+        if (row == null) {
+            KernelCache.Row ki = cache.put(v.i);
+            active.stream().parallel().forEach(vi -> ki.set(vi.i, kernel.k(v.x, vi.x)));
+            row = ki;
         }
-        return K[v.i];
+        return row;
     }
 
     /**
@@ -277,7 +436,7 @@ public class SVR<T> {
         int i = gmaxindex;
         double old_alpha_i = v1.alpha[i];
 
-        double[] k1 = gram(v1);
+        KernelCache.Row k1 = gram(v1);
 
         SupportVector v2 = svmin;
         int j = gminindex;
@@ -286,8 +445,8 @@ public class SVR<T> {
         // Second order working set selection.
         double best = 0.0;
         double gi = i == 0 ? -v1.g[0] : v1.g[1];
-        for (SupportVector v : sv) {
-            double curv = v1.k + v.k - 2 * k1[v.i];
+        for (SupportVector v : active) {
+            double curv = v1.k + v.k - 2 * k1.get(v.i);
             if (curv <= 0.0) curv = TAU;
 
             double gj = -v.g[0];
@@ -313,10 +472,10 @@ public class SVR<T> {
             }
         }
 
-        double[] k2 = gram(v2);
+        KernelCache.Row k2 = gram(v2);
 
         // Determine curvature
-        double curv = v1.k + v2.k - 2 * k1[v2.i];
+        double curv = v1.k + v2.k - 2 * k1.get(v2.i);
         if (curv <= 0.0) curv = TAU;
 
         if (i != j) {
@@ -389,9 +548,11 @@ public class SVR<T> {
 
         int si = 2 * i - 1;
         int sj = 2 * j - 1;
-        for (SupportVector v : sv) {
-            v.g[0] -= si * k1[v.i] * delta_alpha_i + sj * k2[v.i] * delta_alpha_j;
-            v.g[1] += si * k1[v.i] * delta_alpha_i + sj * k2[v.i] * delta_alpha_j;
+        for (SupportVector v : active) {
+            double k1i = k1.get(v.i);
+            double k2i = k2.get(v.i);
+            v.g[0] -= si * k1i * delta_alpha_i + sj * k2i * delta_alpha_j;
+            v.g[1] += si * k1i * delta_alpha_i + sj * k2i * delta_alpha_j;
         }
 
         // optimality test
@@ -186,6 +186,52 @@ public class DecisionTree extends CART implements SoftClassifier<Tuple>, DataFra
                 final int value = splitValue;
                 split = new NominalSplit(leaf, j, splitValue, splitScore, lo, hi, splitTrueCount, splitFalseCount, (int o) -> xj.getInt(o) == value);
             }
+        } else if (bins != null) {
+            int splitBin = -1;
+            int nbins = bins.size(j);
+            double[] histogram = histogram(leaf, j, lo, hi, k, (h, offset, o) -> h[offset + y[o]] += samples[o]);
+            int[] trueCount = new int[k];
+
+            int tc = 0;
+            for (int b = 0; b < nbins - 1; b++) {
+                int bc = 0;
+                for (int l = 0, offset = b * k; l < k; l++) {
+                    int c = (int) histogram[offset + l];
+                    trueCount[l] += c;
+                    bc += c;
+                }
+
+                // An empty bin doesn't introduce a new split.
+                if (bc == 0) continue;
+
+                tc += bc;
+                int fc = node.size() - tc;
+
+                // If either side is too small, skip this value.
+                if (tc < nodeSize || fc < nodeSize) {
+                    continue;
+                }
+
+                for (int l = 0; l < k; l++) {
+                    falseCount[l] = node.count()[l] - trueCount[l];
+                }
+
+                double gain = impurity - (double) tc / node.size() * DecisionNode.impurity(rule, tc, trueCount) - (double) fc / node.size() * DecisionNode.impurity(rule, fc, falseCount);
+
+                // new best split
+                if (gain > splitScore) {
+                    splitBin = b;
+                    splitTrueCount = tc;
+                    splitFalseCount = fc;
+                    splitScore = gain;
+                }
+            }
+
+            if (splitScore > 0.0) {
+                final int bin = splitBin;
+                final byte[] bj = bins.column(j);
+                split = new OrdinalSplit(leaf, j, bins.cutoff(j, bin), splitScore, lo, hi, splitTrueCount, splitFalseCount, (int o) -> (bj[o] & 0xFF) <= bin);
+            }
         } else {
             double splitValue = 0.0;
             int[] trueCount = new int[k];
@@ -262,7 +308,38 @@ public class DecisionTree extends CART implements SoftClassifier<Tuple>, DataFra
         this.k = k;
         this.y = y;
         this.rule = rule;
+        build();
+    }
+
+    /**
+     * Constructor. Learns a classification tree with histogram-based split
+     * finding for Random Forest.
+     * @param x the data frame of the explanatory variable.
+     * @param y the response variables.
+     * @param response the metadata of response variable.
+     * @param k the number of classes.
+     * @param maxDepth the maximum depth of the tree.
+     * @param maxNodes the maximum number of leaf nodes in the tree.
+     * @param nodeSize the minimum size of leaf nodes.
+     * @param mtry the number of input variables to pick to split on at each
+     *             node. It seems that sqrt(p) give generally good performance,
+     *             where p is the number of variables.
+     * @param rule the splitting rule.
+     * @param samples the sample set of instances for stochastic learning.
+     *               samples[i] is the number of sampling for instance i.
+     * @param bins the quantile bins of numeric columns for histogram-based
+     *             split finding.
+     */
+    public DecisionTree(DataFrame x, int[] y, StructField response, int k, SplitRule rule, int maxDepth, int maxNodes, int nodeSize, int mtry, int[] samples, Bins bins) {
+        super(x, response, maxDepth, maxNodes, nodeSize, mtry, samples, bins);
+        this.k = k;
+        this.y = y;
+        this.rule = rule;
+        build();
+    }
 
+    /** Grows the tree. */
+    private void build() {
         final int[] count = new int[k];
         int n = x.size();
         for (int i = 0; i < n; i++) {
@@ -340,7 +417,7 @@ public class DecisionTree extends CART implements SoftClassifier<Tuple>, DataFra
         BaseVector y = formula.y(data);
         ClassLabels codec = ClassLabels.fit(y);
 
-        DecisionTree tree = new DecisionTree(x, codec.y, y.field(), codec.k, rule, maxDepth, maxNodes, nodeSize, -1, null, null);
+        DecisionTree tree = new DecisionTree(x, codec.y, y.field(), codec.k, rule, maxDepth, maxNodes, nodeSize, -1, null, (int[][]) null);
         tree.formula = formula;
         tree.labels = codec.labels;
         return tree;
@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.classification;
+
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.stream.Stream;
+import smile.data.CategoricalEncoder;
+import smile.data.DataFrame;
+import smile.data.Instance;
+import smile.data.formula.Formula;
+import smile.math.MathEx;
+import smile.util.IntSet;
+import smile.util.SparseArray;
+
+/**
+ * Binomial logistic regression trained by Follow The Regularized Leader
+ * Proximal (FTRL-Proximal) algorithm. FTRL-Proximal is an online learning
+ * algorithm with per-coordinate adaptive learning rates and L1 and L2
+ * regularization. Different from stochastic gradient descent, the L1
+ * penalty produces truly sparse models because a weight stays zero until
+ * the accumulated gradient of its feature exceeds the L1 penalty.
+ * <p>
+ * The algorithm keeps two numbers per coordinate: the sum of adjusted
+ * gradients z and the sum of squared gradients n. The weights are
+ * computed from them in closed form. An update touches only the nonzero
+ * features of the sample. So the model can be trained in a single pass
+ * over a stream of samples that doesn't fit in the memory, or be kept
+ * fresh with live events. The class labels must be 0 and 1, or given
+ * by a label encoder.
+ * <p>
+ * The log-likelihood of model is the progressive validation loss,
+ * i.e. the sum of log-likelihood of each sample before the model is
+ * updated with it.
+ *
+ * <h2>References</h2>
+ * <ol>
+ * <li>H. Brendan McMahan, et al. Ad Click Prediction: a View from the Trenches. KDD, 2013.</li>
+ * </ol>
+ *
+ * @author Haifeng Li
+ */
+public class FTRL extends SparseLogisticRegression.Binomial {
+    private static final long serialVersionUID = 2L;
+
+    /** The learning rate parameter. */
+    private final double alpha;
+    /** The smoothing parameter of per-coordinate learning rates. */
+    private final double beta;
+    /** The L1 regularization factor. */
+    private final double l1;
+    /** The L2 regularization factor. */
+    private final double l2;
+    /** The linear weights, of which the last element is the bias. */
+    private final double[] w;
+    /** The sum of adjusted gradients. */
+    private final double[] z;
+    /** The sum of squared gradients. */
+    private final double[] n;
+
+    /**
+     * Constructor of binary classifier with labels 0 and 1.
+     * @param p the dimension of input data.
+     * @param alpha the learning rate parameter.
+     * @param beta the smoothing parameter of per-coordinate learning rates.
+     * @param l1 the L1 regularization factor.
+     * @param l2 the L2 regularization factor.
+     */
+    public FTRL(int p, double alpha, double beta, double l1, double l2) {
+        this(p, alpha, beta, l1, l2, IntSet.of(2));
+    }
+
+    /**
+     * Constructor.
+     * @param p the dimension of input data.
+     * @param alpha the learning rate parameter.
+     * @param beta the smoothing parameter of per-coordinate learning rates.
+     * @param l1 the L1 regularization factor.
+     * @param l2 the L2 regularization factor.
+     * @param labels the class label encoder.
+     */
+    public FTRL(int p, double alpha, double beta, double l1, double l2, IntSet labels) {
+        this(new double[p + 1], alpha, beta, l1, l2, labels);
+    }
+
+    /** Constructor. The weight array is shared with the superclass. */
+    private FTRL(double[] w, double alpha, double beta, double l1, double l2, IntSet labels) {
+        super(w, 0.0, l2, labels);
+
+        if (w.length < 2) {
+            throw new IllegalArgumentException("Invalid dimension: " + (w.length - 1));
+        }
+
+        if (labels.size() != 2) {
+            throw new IllegalArgumentException("Only binary classification is supported: " + labels.size());
+        }
+
+        if (alpha <= 0.0) {
+            throw new IllegalArgumentException("Invalid alpha: " + alpha);
+        }
+
+        if (beta < 0.0) {
+            throw new IllegalArgumentException("Invalid beta: " + beta);
+        }
+
+        if (l1 < 0.0) {
+            throw new IllegalArgumentException("Invalid L1 regularization factor: " + l1);
+        }
+
+        if (l2 < 0.0) {
+            throw new IllegalArgumentException("Invalid L2 regularization factor: " + l2);
+        }
+
+        this.w = w;
+        this.alpha = alpha;
+        this.beta = beta;
+        this.l1 = l1;
+        this.l2 = l2;
+        this.z = new double[w.length];
+        this.n = new double[w.length];
+    }
+
+    /**
+     * Returns the weight of a coordinate from its accumulated statistics.
+     * The bias is not regularized by L1.
+     */
+    private double weight(int i) {
+        double zi = z[i];
+        double l = i == p ? 0.0 : l1;
+        if (Math.abs(zi) <= l) {
+            return 0.0;
+        }
+
+        return -(zi - Math.signum(zi) * l) / ((beta + Math.sqrt(n[i])) / alpha + l2);
+    }
+
+    /** Updates the statistics of a coordinate with its gradient. */
+    private void update(int i, double g) {
+        double sigma = (Math.sqrt(n[i] + g * g) - Math.sqrt(n[i])) / alpha;
+        z[i] += g - sigma * w[i];
+        n[i] += g * g;
+        w[i] = weight(i);
+    }
+
+    @Override
+    public void update(SparseArray x, int y) {
+        y = labels.indexOf(y);
+
+        double wx = w[p];
+        for (SparseArray.Entry e : x) {
+            wx += e.x * w[e.i];
+        }
+
+        double prob = MathEx.logistic(wx);
+        L -= MathEx.log1pe(wx) - y * wx;
+
+        double err = prob - y;
+        update(p, err);
+        for (SparseArray.Entry e : x) {
+            update(e.i, err * e.x);
+        }
+    }
+
+    /**
+     * Returns the number of nonzero weights, excluding the bias.
+     * @return the number of nonzero weights.
+     */
+    public int nonzeros() {
+        int nnz = 0;
+        for (int i = 0; i < p; i++) {
+            if (w[i] != 0.0) nnz++;
+        }
+        return nnz;
+    }
+
+    /**
+     * Trains the model in a single pass over a stream of samples.
+     * @param p the dimension of input data.
+     * @param data the stream of samples with class labels 0 and 1.
+     * @return the model.
+     */
+    public static FTRL fit(int p, Stream<? extends Instance<SparseArray>> data) {
+        return fit(p, data, new Properties());
+    }
+
+    /**
+     * Trains the model in a single pass over a stream of samples.
+     * @param p the dimension of input data.
+     * @param data the stream of samples with class labels 0 and 1.
+     * @param prop the hyper-parameters.
+     * @return the model.
+     */
+    public static FTRL fit(int p, Stream<? extends Instance<SparseArray>> data, Properties prop) {
+        FTRL model = of(p, prop);
+        data.forEachOrdered(sample -> model.update(sample.x(), sample.label()));
+        return model;
+    }
+
+    /**
+     * Trains the model in a single pass over a stream of data frames,
+     * e.g. from {@link smile.io.CSV#stream(java.nio.file.Path, int)}.
+     * The categorical variables are dummy encoded and the rows are
+     * converted to sparse arrays of nonzero values. The dimension of
+     * input data is determined by the first batch. All batches should
+     * have the same categorical levels so that their dummy encodings
+     * have the same dimension.
+     * @param formula a symbolic description of the model to be fitted.
+     * @param batches the stream of data frames.
+     * @param prop the hyper-parameters.
+     * @return the model.
+     */
+    public static FTRL fit(Formula formula, Stream<DataFrame> batches, Properties prop) {
+        Iterator<DataFrame> iterator = batches.iterator();
+        FTRL model = null;
+        while (iterator.hasNext()) {
+            DataFrame batch = iterator.next();
+            if (batch.size() == 0) continue;
+
+            double[][] x = formula.x(batch).toArray(false, CategoricalEncoder.DUMMY);
+            int[] y = formula.y(batch).toIntArray();
+            if (model == null) {
+                model = of(x[0].length, prop);
+            } else if (x[0].length != model.p) {
+                throw new IllegalArgumentException(String.format("The dimension %d of batch doesn't match %d of first batch, e.g. new categorical levels", x[0].length, model.p));
+            }
+            model.update(SparseLogisticRegression.sparse(x), y);
+        }
+
+        if (model == null) {
+            throw new IllegalArgumentException("Empty stream of data frames");
+        }
+
+        return model;
+    }
+
+    /** Returns an untrained model of given hyper-parameters. */
+    private static FTRL of(int p, Properties prop) {
+        double alpha = Double.parseDouble(prop.getProperty("smile.ftrl.alpha", "0.1"));
+        double beta = Double.parseDouble(prop.getProperty("smile.ftrl.beta", "1.0"));
+        double l1 = Double.parseDouble(prop.getProperty("smile.ftrl.l1", "1.0"));
+        double l2 = Double.parseDouble(prop.getProperty("smile.ftrl.l2", "1.0"));
+        return new FTRL(p, alpha, beta, l1, l2);
+    }
+}
@@ -147,6 +147,11 @@ public class GradientTreeBoost implements SoftClassifier<Tuple>, DataFrameClassi
      * The class label encoder.
      */
     private final IntSet labels;
+    /**
+     * The compiled forests for batch inference, built on demand.
+     * One for binary classification, k for multi-class.
+     */
+    private transient FlatForest[] flat;
 
     /**
      * Constructor of binary class.
@@ -237,7 +242,8 @@ public class GradientTreeBoost implements SoftClassifier<Tuple>, DataFrameClassi
         int nodeSize = Integer.parseInt(prop.getProperty("smile.gbt.node.size", "5"));
         double shrinkage = Double.parseDouble(prop.getProperty("smile.gbt.shrinkage", "0.05"));
         double subsample = Double.parseDouble(prop.getProperty("smile.gbt.sample.rate", "0.7"));
-        return fit(formula, data, ntrees, maxDepth, maxNodes, nodeSize, shrinkage, subsample);
+        int maxBins = Integer.parseInt(prop.getProperty("smile.gbt.max.bins", "0"));
+        return fit(formula, data, ntrees, maxDepth, maxNodes, nodeSize, shrinkage, subsample, maxBins);
     }
 
     /**
@@ -256,6 +262,29 @@ public class GradientTreeBoost implements SoftClassifier<Tuple>, DataFrameClassi
      */
     public static GradientTreeBoost fit(Formula formula, DataFrame data, int ntrees, int maxDepth,
                                         int maxNodes, int nodeSize, double shrinkage, double subsample) {
+        return fit(formula, data, ntrees, maxDepth, maxNodes, nodeSize, shrinkage, subsample, 0);
+    }
+
+    /**
+     * Fits a gradient tree boosting for classification.
+     *
+     * @param formula   a symbolic description of the model to be fitted.
+     * @param data      the data frame of the explanatory and response variables.
+     * @param ntrees    the number of iterations (trees).
+     * @param maxDepth the maximum depth of the tree.
+     * @param maxNodes the maximum number of leaf nodes in the tree.
+     * @param nodeSize  the number of instances in a node below which the tree will
+     *                  not split, setting nodeSize = 5 generally gives good results.
+     * @param shrinkage the shrinkage parameter in (0, 1] controls the learning rate of procedure.
+     * @param subsample the sampling fraction for stochastic tree boosting.
+     * @param maxBins the maximum number of quantile bins of numeric columns
+     *                for histogram-based split finding, which should be no
+     *                more than 256. If it is 0, the best splits are searched
+     *                over all the distinct values of numeric columns.
+     * @return the model.
+     */
+    public static GradientTreeBoost fit(Formula formula, DataFrame data, int ntrees, int maxDepth,
+                                        int maxNodes, int nodeSize, double shrinkage, double subsample, int maxBins) {
         if (ntrees < 1) {
             throw new IllegalArgumentException("Invalid number of trees: " + ntrees);
         }
@@ -272,13 +301,14 @@ public class GradientTreeBoost implements SoftClassifier<Tuple>, DataFrameClassi
         DataFrame x = formula.x(data);
         BaseVector y = formula.y(data);
 
-        int[][] order = CART.order(x);
+        Bins bins = maxBins > 0 ? Bins.of(x, maxBins) : null;
+        int[][] order = bins == null ? CART.order(x) : null;
         ClassLabels codec = ClassLabels.fit(y);
 
         if (codec.k == 2) {
-            return train2(formula, x, codec, order, ntrees, maxDepth, maxNodes, nodeSize, shrinkage, subsample);
+            return train2(formula, x, codec, order, bins, ntrees, maxDepth, maxNodes, nodeSize, shrinkage, subsample);
         } else {
-            return traink(formula, x, codec, order, ntrees, maxDepth, maxNodes, nodeSize, shrinkage, subsample);
+            return traink(formula, x, codec, order, bins, ntrees, maxDepth, maxNodes, nodeSize, shrinkage, subsample);
         }
     }
 
@@ -311,7 +341,7 @@ public class GradientTreeBoost implements SoftClassifier<Tuple>, DataFrameClassi
     /**
      * Train L2 tree boost.
      */
-    private static GradientTreeBoost train2(Formula formula, DataFrame x, ClassLabels codec, int[][] order, int ntrees, int maxDepth, int maxNodes, int nodeSize, double shrinkage, double subsample) {
+    private static GradientTreeBoost train2(Formula formula, DataFrame x, ClassLabels codec, int[][] order, Bins bins, int ntrees, int maxDepth, int maxNodes, int nodeSize, double shrinkage, double subsample) {
         int n = x.nrow();
         int k = codec.k;
         int[] y = codec.y;
@@ -333,7 +363,9 @@ public class GradientTreeBoost implements SoftClassifier<Tuple>, DataFrameClassi
             sampling(samples, permutation, nc, y, subsample);
 
             logger.info("Training {} tree", Strings.ordinal(t+1));
-            RegressionTree tree = new RegressionTree(x, loss, field, maxDepth, maxNodes, nodeSize, x.ncol(), samples, order);
+            RegressionTree tree = bins == null ?
+                    new RegressionTree(x, loss, field, maxDepth, maxNodes, nodeSize, x.ncol(), samples, order) :
+                    new RegressionTree(x, loss, field, maxDepth, maxNodes, nodeSize, x.ncol(), samples, bins);
             trees[t] = tree;
 
             for (int i = 0; i < n; i++) {
@@ -355,7 +387,7 @@ public class GradientTreeBoost implements SoftClassifier<Tuple>, DataFrameClassi
     /**
      * Train L-k tree boost.
      */
-    private static GradientTreeBoost traink(Formula formula, DataFrame x, ClassLabels codec, int[][] order,
+    private static GradientTreeBoost traink(Formula formula, DataFrame x, ClassLabels codec, int[][] order, Bins bins,
                                             int ntrees, int maxDepth, int maxNodes, int nodeSize,
                                             double shrinkage, double subsample) {
         int n = x.nrow();
@@ -391,7 +423,9 @@ public class GradientTreeBoost implements SoftClassifier<Tuple>, DataFrameClassi
             for (int j = 0; j < k; j++) {
                 sampling(samples, permutation, nc, y, subsample);
 
-                RegressionTree tree = new RegressionTree(x, loss[j], field, maxDepth, maxNodes, nodeSize, x.ncol(), samples, order);
+                RegressionTree tree = bins == null ?
+                        new RegressionTree(x, loss[j], field, maxDepth, maxNodes, nodeSize, x.ncol(), samples, order) :
+                        new RegressionTree(x, loss[j], field, maxDepth, maxNodes, nodeSize, x.ncol(), samples, bins);
                 forest[j][t] = tree;
 
                 double[] hj = h[j];
@@ -488,6 +522,8 @@ public class GradientTreeBoost implements SoftClassifier<Tuple>, DataFrameClassi
                 }
             }
         }
+
+        flat = null;
     }
 
     @Override
@@ -566,6 +602,136 @@ public class GradientTreeBoost implements SoftClassifier<Tuple>, DataFrameClassi
         }
     }
 
+    /**
+     * Returns the compiled forests for batch inference.
+     * @return the compiled forests.
+     */
+    private FlatForest[] flat() {
+        if (flat == null) {
+            flat = k == 2 ? new FlatForest[]{FlatForest.of(trees)} : Arrays.stream(forest).map(FlatForest::of).toArray(FlatForest[]::new);
+        }
+        return flat;
+    }
+
+    /**
+     * Returns the boosted scores of a batch of samples.
+     * @param x the samples.
+     * @param j the class index of multi-class classification.
+     *          It should be 0 for binary classification.
+     * @return the boosted scores.
+     */
+    private double[] score(double[][] x, int j) {
+        FlatForest f = flat()[j];
+        double[] weight = new double[f.size()];
+        Arrays.fill(weight, shrinkage);
+
+        double[] y = new double[x.length];
+        if (k == 2) Arrays.fill(y, b);
+        f.sum(x, weight, y);
+        return y;
+    }
+
+    @Override
+    public int[] predict(DataFrame data) {
+        return predict(formula.x(data).toArray());
+    }
+
+    /**
+     * Predicts the class labels of a batch of samples with the compiled
+     * forests, which score many samples per tree traversal.
+     *
+     * @param x the samples, of which the columns are in the order
+     *          of design matrix schema.
+     * @return the predicted class labels.
+     */
+    public int[] predict(double[][] x) {
+        int n = x.length;
+        int[] y = new int[n];
+        if (k == 2) {
+            double[] f = score(x, 0);
+            for (int i = 0; i < n; i++) {
+                y[i] = labels.valueOf(f[i] > 0 ? 1 : 0);
+            }
+        } else {
+            double[][] f = new double[k][];
+            for (int j = 0; j < k; j++) {
+                f[j] = score(x, j);
+            }
+
+            for (int i = 0; i < n; i++) {
+                double max = Double.NEGATIVE_INFINITY;
+                int yi = -1;
+                for (int j = 0; j < k; j++) {
+                    if (f[j][i] > max) {
+                        max = f[j][i];
+                        yi = j;
+                    }
+                }
+                y[i] = labels.valueOf(yi);
+            }
+        }
+        return y;
+    }
+
+    /**
+     * Predicts the class labels and estimates the posteriori probabilities
+     * of a batch of samples with the compiled forests.
+     *
+     * @param x the samples, of which the columns are in the order
+     *          of design matrix schema.
+     * @param posteriori a posteriori probabilities on output.
+     * @return the predicted class labels.
+     */
+    public int[] predict(double[][] x, double[][] posteriori) {
+        int n = x.length;
+        for (int i = 0; i < n; i++) {
+            if (posteriori[i].length != k) {
+                throw new IllegalArgumentException(String.format("Invalid posteriori vector size: %d, expected: %d", posteriori[i].length, k));
+            }
+        }
+
+        int[] y = new int[n];
+        if (k == 2) {
+            double[] f = score(x, 0);
+            for (int i = 0; i < n; i++) {
+                posteriori[i][0] = 1.0 / (1.0 + Math.exp(2 * f[i]));
+                posteriori[i][1] = 1.0 - posteriori[i][0];
+                y[i] = labels.valueOf(f[i] > 0 ? 1 : 0);
+            }
+        } else {
+            double[][] f = new double[k][];
+            for (int j = 0; j < k; j++) {
+                f[j] = score(x, j);
+            }
+
+            for (int i = 0; i < n; i++) {
+                double[] prob = posteriori[i];
+                double max = Double.NEGATIVE_INFINITY;
+                int yi = -1;
+                for (int j = 0; j < k; j++) {
+                    prob[j] = f[j][i];
+                    if (prob[j] > max) {
+                        max = prob[j];
+                        yi = j;
+                    }
+                }
+
+                double Z = 0.0;
+                for (int j = 0; j < k; j++) {
+                    prob[j] = Math.exp(prob[j] - max);
+                    Z += prob[j];
+                }
+
+                for (int j = 0; j < k; j++) {
+                    prob[j] /= Z;
+                }
+
+                y[i] = labels.valueOf(yi);
+            }
+        }
+        return y;
+    }
+
     /**
      * Test the model on a validation dataset.
      *
@@ -203,6 +203,41 @@ public class KNN<T> implements SoftClassifier<T> {
         return labels.valueOf(y);
     }
 
+    /**
+     * Predicts the class labels of an array of instances. The nearest
+     * neighbors of instances are searched in parallel.
+     *
+     * @param x the instances to be classified.
+     * @return the predicted class labels.
+     */
+    @Override
+    public int[] predict(T[] x) {
+        int n = x.length;
+        int[] index = new int[n * k];
+        double[] distance = new double[n * k];
+        knn.knn(x, k, index, distance);
+
+        int[] prediction = new int[n];
+        int[] count = new int[labels.size()];
+        for (int i = 0; i < n; i++) {
+            Arrays.fill(count, 0);
+            for (int j = i * k; j < (i + 1) * k; j++) {
+                if (index[j] >= 0) {
+                    count[labels.indexOf(y[index[j]])]++;
+                }
+            }
+
+            int c = MathEx.whichMax(count);
+            if (count[c] == 0) {
+                throw new IllegalStateException("No neighbor found.");
+            }
+
+            prediction[i] = k == 1 ? y[index[i]] : labels.valueOf(c);
+        }
+
+        return prediction;
+    }
+
     @Override
     public int predict(T x, double[] posteriori) {
         Neighbor<T,T>[] neighbors = knn.knn(x, k);
@@ -17,14 +17,11 @@
 
 package smile.classification;
 
-import java.util.Arrays;
 import java.util.Properties;
-import java.util.stream.IntStream;
 import smile.data.CategoricalEncoder;
 import smile.data.DataFrame;
 import smile.data.formula.Formula;
 import smile.math.MathEx;
-import smile.math.DifferentiableMultivariateFunction;
 import smile.math.BFGS;
 import smile.util.IntSet;
 import smile.validation.ModelSelection;
@@ -347,7 +344,8 @@ public abstract class LogisticRegression implements SoftClassifier<double[]>, On
         double lambda = Double.parseDouble(prop.getProperty("smile.logit.lambda", "0.1"));
         double tol = Double.parseDouble(prop.getProperty("smile.logit.tolerance", "1E-5"));
         int maxIter = Integer.parseInt(prop.getProperty("smile.logit.max.iterations", "500"));
-        return binomial(x, y, lambda, tol, maxIter);
+        int threads = Integer.parseInt(prop.getProperty("smile.logit.threads", "0"));
+        return binomial(x, y, lambda, tol, maxIter, threads);
     }
 
     /**
@@ -363,6 +361,28 @@ public abstract class LogisticRegression implements SoftClassifier<double[]>, On
      * @return the model.
      */
     public static Binomial binomial(double[][] x, int[] y, double lambda, double tol, int maxIter) {
+        return binomial(x, y, lambda, tol, maxIter, 0);
+    }
+
+    /**
+     * Fits binomial logistic regression.
+     * 
+     * @param x training samples.
+     * @param y training labels.
+     * @param lambda {@code lambda > 0} gives a "regularized" estimate of linear
+     *               weights which often has superior generalization performance,
+     *               especially when the dimensionality is high.
+     * @param tol the tolerance for stopping iterations.
+     * @param maxIter the maximum number of iterations.
+     * @param threads the number of threads to evaluate the objective
+     *                function and gradient in parallel. If 0, they are
+     *                evaluated in the current fork-join pool, or the
+     *                common pool if not called from a fork-join task.
+     *                If 1, sequentially. Otherwise, in a dedicated pool
+     *                of given parallelism.
+     * @return the model.
+     */
+    public static Binomial binomial(double[][] x, int[] y, double lambda, double tol, int maxIter, int threads) {
         if (x.length != y.length) {
             throw new IllegalArgumentException(String.format("The sizes of X and Y don't match: %d != %d", x.length, y.length));
         }
@@ -388,9 +408,11 @@ public abstract class LogisticRegression implements SoftClassifier<double[]>, On
             throw new IllegalArgumentException("Fits binomial model on multi-class data.");
         }
 
-        BinomialObjective objective = new BinomialObjective(x, y, lambda);
         double[] w = new double[p + 1];
-        double L = -BFGS.minimize(objective, 5, w, tol, maxIter);
+        double L;
+        try (BinomialObjective objective = new BinomialObjective(x, y, lambda, threads)) {
+            L = -BFGS.minimize(objective, 5, w, tol, maxIter);
+        }
 
         Binomial model = new Binomial(w, L, lambda, codec.labels);
         model.setLearningRate(0.1 / x.length);
@@ -444,7 +466,8 @@ public abstract class LogisticRegression implements SoftClassifier<double[]>, On
         double lambda = Double.parseDouble(prop.getProperty("smile.logit.lambda", "0.1"));
         double tol = Double.parseDouble(prop.getProperty("smile.logit.tolerance", "1E-5"));
         int maxIter = Integer.parseInt(prop.getProperty("smile.logit.max.iterations", "500"));
-        return multinomial(x, y, lambda, tol, maxIter);
+        int threads = Integer.parseInt(prop.getProperty("smile.logit.threads", "0"));
+        return multinomial(x, y, lambda, tol, maxIter, threads);
     }
 
     /**
@@ -460,6 +483,28 @@ public abstract class LogisticRegression implements SoftClassifier<double[]>, On
      * @return the model.
      */
     public static Multinomial multinomial(double[][] x, int[] y, double lambda, double tol, int maxIter) {
+        return multinomial(x, y, lambda, tol, maxIter, 0);
+    }
+
+    /**
+     * Fits multinomial logistic regression.
+     *
+     * @param x training samples.
+     * @param y training labels.
+     * @param lambda {@code lambda > 0} gives a "regularized" estimate of linear
+     *               weights which often has superior generalization performance,
+     *               especially when the dimensionality is high.
+     * @param tol the tolerance for stopping iterations.
+     * @param maxIter the maximum number of iterations.
+     * @param threads the number of threads to evaluate the objective
+     *                function and gradient in parallel. If 0, they are
+     *                evaluated in the current fork-join pool, or the
+     *                common pool if not called from a fork-join task.
+     *                If 1, sequentially. Otherwise, in a dedicated pool
+     *                of given parallelism.
+     * @return the model.
+     */
+    public static Multinomial multinomial(double[][] x, int[] y, double lambda, double tol, int maxIter, int threads) {
         if (x.length != y.length) {
             throw new IllegalArgumentException(String.format("The sizes of X and Y don't match: %d != %d", x.length, y.length));
         }
@@ -485,9 +530,11 @@ public abstract class LogisticRegression implements SoftClassifier<double[]>, On
             throw new IllegalArgumentException("Fits multinomial model on binary class data.");
         }
 
-        MultinomialObjective objective = new MultinomialObjective(x, y, k, lambda);
         double[] w = new double[(k - 1) * (p + 1)];
-        double L = -BFGS.minimize(objective, 5, w, tol, maxIter);
+        double L;
+        try (MultinomialObjective objective = new MultinomialObjective(x, y, k, lambda, threads)) {
+            L = -BFGS.minimize(objective, 5, w, tol, maxIter);
+        }
 
         double[][] W = new double[k-1][p+1];
         for (int i = 0, l = 0; i < k-1; i++) {
@@ -548,7 +595,8 @@ public abstract class LogisticRegression implements SoftClassifier<double[]>, On
         double lambda = Double.parseDouble(prop.getProperty("smile.logistic.lambda", "0.1"));
         double tol = Double.parseDouble(prop.getProperty("smile.logistic.tolerance", "1E-5"));
         int maxIter = Integer.parseInt(prop.getProperty("smile.logistic.max.iterations", "500"));
-        return fit(x, y, lambda, tol, maxIter);
+        int threads = Integer.parseInt(prop.getProperty("smile.logistic.threads", "0"));
+        return fit(x, y, lambda, tol, maxIter, threads);
     }
 
     /**
@@ -564,17 +612,39 @@ public abstract class LogisticRegression implements SoftClassifier<double[]>, On
      * @return the model.
      */
     public static LogisticRegression fit(double[][] x, int[] y, double lambda, double tol, int maxIter) {
+        return fit(x, y, lambda, tol, maxIter, 0);
+    }
+
+    /**
+     * Fits logistic regression.
+     *
+     * @param x training samples.
+     * @param y training labels.
+     * @param lambda {@code lambda > 0} gives a "regularized" estimate of linear
+     *               weights which often has superior generalization performance,
+     *               especially when the dimensionality is high.
+     * @param tol the tolerance for stopping iterations.
+     * @param maxIter the maximum number of iterations.
+     * @param threads the number of threads to evaluate the objective
+     *                function and gradient in parallel. If 0, they are
+     *                evaluated in the current fork-join pool, or the
+     *                common pool if not called from a fork-join task.
+     *                If 1, sequentially. Otherwise, in a dedicated pool
+     *                of given parallelism.
+     * @return the model.
+     */
+    public static LogisticRegression fit(double[][] x, int[] y, double lambda, double tol, int maxIter, int threads) {
         ClassLabels codec = ClassLabels.fit(y);
         if (codec.k == 2)
-            return binomial(x, y, lambda, tol, maxIter);
+            return binomial(x, y, lambda, tol, maxIter, threads);
         else
-            return multinomial(x, y, lambda, tol, maxIter);
+            return multinomial(x, y, lambda, tol, maxIter, threads);
     }
 
     /**
      * Binary-class logistic regression objective function.
      */
-    static class BinomialObjective implements DifferentiableMultivariateFunction {
+    static class BinomialObjective extends PartitionedObjective {
         /**
          * Training instances.
          */
@@ -591,99 +661,58 @@ public abstract class LogisticRegression implements SoftClassifier<double[]>, On
          * Regularization factor.
          */
         double lambda;
-        /**
-         * The number of samples in a partition.
-         */
-        int partitionSize;
-        /**
-         * The number of partitions.
-         */
-        int partitions;
-        /**
-         * The workspace to store gradient for each data partition.
-         */
-        double[][] gradients;
 
         /**
          * Constructor.
          */
-        BinomialObjective(double[][] x, int[] y, double lambda) {
+        BinomialObjective(double[][] x, int[] y, double lambda, int threads) {
+            super(x.length, threads);
             this.x = x;
             this.y = y;
             this.lambda = lambda;
             this.p = x[0].length;
-
-            partitionSize = Integer.parseInt(System.getProperty("smile.data.partition.size", "1000"));
-            partitions = x.length / partitionSize + (x.length % partitionSize == 0 ? 0 : 1);
-            gradients = new double[partitions][p+1];
         }
 
         @Override
-        public double f(double[] w) {
+        double loss(double[] w, int begin, int end, double[] gradient) {
             // Since BFGS try to minimize the objective function
             // and we try to maximize the log-likelihood, we really
             // return the negative log-likelihood here.
-            double f = IntStream.range(0, x.length).parallel().mapToDouble(i -> {
-                double wx = dot(x[i], w);
-                return MathEx.log1pe(wx) - y[i] * wx;
-            }).sum();
-
-            if (lambda > 0.0) {
-                double wnorm = 0.0;
-                for (int i = 0; i < p; i++) wnorm += w[i] * w[i];
-                f += 0.5 * lambda * wnorm;
-            }
-
-            return f;
-        }
+            double f = 0.0;
+            for (int i = begin; i < end; i++) {
+                double[] xi = x[i];
+                double wx = dot(xi, w);
+                f += MathEx.log1pe(wx) - y[i] * wx;
 
-        @Override
-        public double g(double[] w, double[] g) {
-            double f = IntStream.range(0, partitions).parallel().mapToDouble(r -> {
-                double[] gradient = gradients[r];
-                Arrays.fill(gradient, 0.0);
-
-                int begin = r * partitionSize;
-                int end = (r + 1) * partitionSize;
-                if (end > x.length) end = x.length;
-
-                return IntStream.range(begin, end).sequential().mapToDouble(i -> {
-                    double[] xi = x[i];
-                    double wx = dot(xi, w);
+                if (gradient != null) {
                     double err = y[i] - MathEx.logistic(wx);
                     for (int j = 0; j < p; j++) {
                         gradient[j] -= err * xi[j];
                     }
                     gradient[p] -= err;
-
-                    return MathEx.log1pe(wx) - y[i] * wx;
-                }).sum();
-            }).sum();
-
-            Arrays.fill(g, 0.0);
-            for (double[] gradient : gradients) {
-                for (int i = 0; i < g.length; i++) {
-                    g[i] += gradient[i];
                 }
             }
 
-            if (lambda > 0.0) {
-                double wnorm = 0.0;
-                for (int i = 0; i < p; i++) {
-                    wnorm += w[i] * w[i];
-                    g[i] += lambda * w[i];
-                }
-                f += 0.5 * lambda * wnorm;
-            }
-
             return f;
         }
+
+        @Override
+        double penalty(double[] w, double[] g) {
+            if (lambda <= 0.0) return 0.0;
+
+            double wnorm = 0.0;
+            for (int i = 0; i < p; i++) {
+                wnorm += w[i] * w[i];
+                if (g != null) g[i] += lambda * w[i];
+            }
+            return 0.5 * lambda * wnorm;
+        }
     }
 
     /**
      * Multi-class logistic regression objective function.
      */
-    static class MultinomialObjective implements DifferentiableMultivariateFunction {
+    static class MultinomialObjective extends PartitionedObjective {
         /**
          * Training instances.
          */
@@ -704,127 +733,61 @@ public abstract class LogisticRegression implements SoftClassifier<double[]>, On
          * Regularization factor.
          */
         double lambda;
-        /**
-         * The number of samples in a partition.
-         */
-        int partitionSize;
-        /**
-         * The number of partitions.
-         */
-        int partitions;
-        /**
-         * The workspace to store gradient for each data partition.
-         */
-        double[][] gradients;
-        /**
-         * The workspace to store posteriori probability for each data partition.
-         */
-        double[][] posterioris;
 
         /**
          * Constructor.
          */
-        MultinomialObjective(double[][] x, int[] y, int k, double lambda) {
+        MultinomialObjective(double[][] x, int[] y, int k, double lambda, int threads) {
+            super(x.length, threads);
             this.x = x;
             this.y = y;
             this.k = k;
             this.lambda = lambda;
             this.p = x[0].length;
-
-            partitionSize = Integer.parseInt(System.getProperty("smile.data.partition.size", "1000"));
-            partitions = x.length / partitionSize + (x.length % partitionSize == 0 ? 0 : 1);
-            gradients = new double[partitions][(k-1)*(p+1)];
-            posterioris = new double[partitions][k];
         }
 
         @Override
-        public double f(double[] w) {
-            double f = IntStream.range(0, partitions).parallel().mapToDouble(r -> {
-                double[] posteriori = posterioris[r];
+        double loss(double[] w, int begin, int end, double[] gradient) {
+            double[] posteriori = new double[k];
+            double f = 0.0;
+            for (int i = begin; i < end; i++) {
+                posteriori[k - 1] = 0.0;
+                for (int j = 0; j < k - 1; j++) {
+                    posteriori[j] = dot(x[i], w, j, p);
+                }
 
-                int begin = r * partitionSize;
-                int end = (r+1) * partitionSize;
-                if (end > x.length) end = x.length;
+                MathEx.softmax(posteriori);
+                f -= MathEx.log(posteriori[y[i]]);
 
-                return IntStream.range(begin, end).sequential().mapToDouble(i -> {
-                    posteriori[k - 1] = 0.0;
+                if (gradient != null) {
                     for (int j = 0; j < k - 1; j++) {
-                        posteriori[j] = dot(x[i], w, j, p);
-                    }
-
-                    MathEx.softmax(posteriori);
-
-                    return -MathEx.log(posteriori[y[i]]);
-                }).sum();
-            }).sum();
+                        double err = (y[i] == j ? 1.0 : 0.0) - posteriori[j];
 
-            if (lambda > 0.0) {
-                double wnorm = 0.0;
-                for (int i = 0; i < k-1; i++) {
-                    for (int j = 0, pos = i * (p+1); j < p; j++) {
-                        double wi = w[pos + j];
-                        wnorm += wi * wi;
+                        int pos = j * (p + 1);
+                        for (int l = 0; l < p; l++) {
+                            gradient[pos + l] -= err * x[i][l];
+                        }
+                        gradient[pos + p] -= err;
                     }
                 }
-                f += 0.5 * lambda * wnorm;
             }
 
             return f;
         }
 
         @Override
-        public double g(double[] w, double[] g) {
-            double f = IntStream.range(0, partitions).parallel().mapToDouble(r -> {
-                        double[] posteriori = posterioris[r];
-                        double[] gradient = gradients[r];
-                        Arrays.fill(gradient, 0.0);
-
-                        int begin = r * partitionSize;
-                        int end = (r+1) * partitionSize;
-                        if (end > x.length) end = x.length;
-
-                        return IntStream.range(begin, end).sequential().mapToDouble(i -> {
-                            posteriori[k - 1] = 0.0;
-                            for (int j = 0; j < k - 1; j++) {
-                                posteriori[j] = dot(x[i], w, j, p);
-                            }
-
-                            MathEx.softmax(posteriori);
-
-                            for (int j = 0; j < k - 1; j++) {
-                                double err = (y[i] == j ? 1.0 : 0.0) - posteriori[j];
-
-                                int pos = j * (p + 1);
-                                for (int l = 0; l < p; l++) {
-                                    gradient[pos + l] -= err * x[i][l];
-                                }
-                                gradient[pos + p] -= err;
-                            }
-
-                            return -MathEx.log(posteriori[y[i]]);
-                        }).sum();
-            }).sum();
-
-            Arrays.fill(g, 0.0);
-            for (double[] gradient : gradients) {
-                for (int i = 0; i < g.length; i++) {
-                    g[i] += gradient[i];
-                }
-            }
+        double penalty(double[] w, double[] g) {
+            if (lambda <= 0.0) return 0.0;
 
-            if (lambda > 0.0) {
-                double wnorm = 0.0;
-                for (int i = 0; i < k-1; i++) {
-                    for (int j = 0, pos = i * (p+1); j < p; j++) {
-                        double wi = w[pos + j];
-                        wnorm += wi * wi;
-                        g[pos + j] += lambda * wi;
-                    }
+            double wnorm = 0.0;
+            for (int i = 0; i < k-1; i++) {
+                for (int j = 0, pos = i * (p+1); j < p; j++) {
+                    double wi = w[pos + j];
+                    wnorm += wi * wi;
+                    if (g != null) g[pos + j] += lambda * wi;
                 }
-                f += 0.5 * lambda * wnorm;
             }
-
-            return f;
+            return 0.5 * lambda * wnorm;
         }
     }
 
@@ -194,17 +194,56 @@ public class MLP extends MultilayerPerceptron implements OnlineClassifier<double
         t++;
     }
 
-    /** Updates the model with a mini-batch. RMSProp is applied if {@code rho > 0}. */
+    /**
+     * Updates the model with a mini-batch. RMSProp is applied if {@code rho > 0}.
+     * The mini-batch is propagated through the network as a matrix so that
+     * each layer computes the forward and backward passes with GEMM.
+     */
     @Override
     public void update(double[][] x, int[] y) {
-        for (int i = 0; i < x.length; i++) {
-            propagate(x[i]);
-            setTarget(labels.indexOf(y[i]));
-            backpropagate(x[i], false);
+        update(batch(x), target(y), x.length);
+    }
+
+    /**
+     * Trains the model for an epoch with data parallelism. The samples
+     * are shuffled and processed in mini-batches by the given number of
+     * replicas of network in parallel. RMSProp is applied if {@code rho > 0}.
+     *
+     * @param x the training samples.
+     * @param y the training labels.
+     * @param batch the mini-batch size.
+     * @param threads the number of replicas trained in parallel.
+     * @param parallelism the data parallelism.
+     */
+    public void update(double[][] x, int[] y, int batch, int threads, DataParallelism parallelism) {
+        if (x.length != y.length) {
+            throw new IllegalArgumentException(String.format("The sizes of X and Y don't match: %d != %d", x.length, y.length));
         }
 
-        update(x.length);
-        t++;
+        epoch(x, index -> target(Arrays.stream(index).map(i -> y[i]).toArray()), batch, threads, parallelism);
+    }
+
+    /** Returns the target matrix of mini-batch in column-major order. */
+    private double[] target(int[] y) {
+        int m = y.length;
+        int n = output.getOutputSize();
+
+        double t = output.cost() == Cost.LIKELIHOOD ? 1.0 : 0.9;
+        double f = 1.0 - t;
+
+        double[] target = new double[n * m];
+        if (n == 1) {
+            for (int i = 0; i < m; i++) {
+                target[i] = labels.indexOf(y[i]) == 1 ? t : f;
+            }
+        } else {
+            Arrays.fill(target, f);
+            for (int i = 0; i < m; i++) {
+                target[i * n + labels.indexOf(y[i])] = t;
+            }
+        }
+
+        return target;
     }
 
     /** Sets the target vector. */
@@ -17,12 +17,9 @@
 
 package smile.classification;
 
-import java.util.Arrays;
 import java.util.Properties;
-import java.util.stream.IntStream;
 import smile.math.BFGS;
 import smile.math.MathEx;
-import smile.math.DifferentiableMultivariateFunction;
 import smile.util.IntSet;
 import smile.validation.ModelSelection;
 
@@ -266,7 +263,8 @@ public abstract class Maxent implements SoftClassifier<int[]>, OnlineClassifier<
         double lambda = Double.parseDouble(prop.getProperty("smile.maxent.lambda", "0.1"));
         double tol = Double.parseDouble(prop.getProperty("smile.maxent.tolerance", "1E-5"));
         int maxIter = Integer.parseInt(prop.getProperty("smile.maxent.max.iterations", "500"));
-        return fit(p, x, y, lambda, tol, maxIter);
+        int threads = Integer.parseInt(prop.getProperty("smile.maxent.threads", "0"));
+        return fit(p, x, y, lambda, tol, maxIter, threads);
     }
 
     /**
@@ -284,11 +282,35 @@ public abstract class Maxent implements SoftClassifier<int[]>, OnlineClassifier<
      * @return the model.
      */
     public static Maxent fit(int p, int[][] x, int[] y, double lambda, double tol, int maxIter) {
+        return fit(p, x, y, lambda, tol, maxIter, 0);
+    }
+
+    /**
+     * Learn maximum entropy classifier.
+     * @param p the dimension of feature space.
+     * @param x training samples. Each sample is represented by a set of sparse
+     * binary features. The features are stored in an integer array, of which
+     * are the indices of nonzero features.
+     * @param y training labels in [0, k), where k is the number of classes.
+     * @param lambda {@code lambda > 0} gives a "regularized" estimate of linear
+     *               weights which often has superior generalization performance,
+     *               especially when the dimensionality is high.
+     * @param tol the tolerance for stopping iterations.
+     * @param maxIter maximum number of iterations.
+     * @param threads the number of threads to evaluate the objective
+     *                function and gradient in parallel. If 0, they are
+     *                evaluated in the current fork-join pool, or the
+     *                common pool if not called from a fork-join task.
+     *                If 1, sequentially. Otherwise, in a dedicated pool
+     *                of given parallelism.
+     * @return the model.
+     */
+    public static Maxent fit(int p, int[][] x, int[] y, double lambda, double tol, int maxIter, int threads) {
         ClassLabels codec = ClassLabels.fit(y);
         if (codec.k == 2)
-            return binomial(p, x, y, lambda, tol, maxIter);
+            return binomial(p, x, y, lambda, tol, maxIter, threads);
         else
-            return multinomial(p, x, y, lambda, tol, maxIter);
+            return multinomial(p, x, y, lambda, tol, maxIter, threads);
     }
 
     /**
@@ -318,7 +340,8 @@ public abstract class Maxent implements SoftClassifier<int[]>, OnlineClassifier<
         double lambda = Double.parseDouble(prop.getProperty("smile.maxent.lambda", "0.1"));
         double tol = Double.parseDouble(prop.getProperty("smile.maxent.tolerance", "1E-5"));
         int maxIter = Integer.parseInt(prop.getProperty("smile.maxent.max.iterations", "500"));
-        return binomial(p, x, y, lambda, tol, maxIter);
+        int threads = Integer.parseInt(prop.getProperty("smile.maxent.threads", "0"));
+        return binomial(p, x, y, lambda, tol, maxIter, threads);
     }
 
     /**
@@ -336,6 +359,30 @@ public abstract class Maxent implements SoftClassifier<int[]>, OnlineClassifier<
      * @return the model.
      */
     public static Binomial binomial(int p, int[][] x, int[] y, double lambda, double tol, int maxIter) {
+        return binomial(p, x, y, lambda, tol, maxIter, 0);
+    }
+
+    /**
+     * Learn maximum entropy classifier.
+     * @param p the dimension of feature space.
+     * @param x training samples. Each sample is represented by a set of sparse
+     * binary features. The features are stored in an integer array, of which
+     * are the indices of nonzero features.
+     * @param y training labels in [0, k), where k is the number of classes.
+     * @param lambda {@code lambda > 0} gives a "regularized" estimate of linear
+     * weights which often has superior generalization performance, especially
+     * when the dimensionality is high.
+     * @param tol the tolerance for stopping iterations.
+     * @param maxIter maximum number of iterations.
+     * @param threads the number of threads to evaluate the objective
+     *                function and gradient in parallel. If 0, they are
+     *                evaluated in the current fork-join pool, or the
+     *                common pool if not called from a fork-join task.
+     *                If 1, sequentially. Otherwise, in a dedicated pool
+     *                of given parallelism.
+     * @return the model.
+     */
+    public static Binomial binomial(int p, int[][] x, int[] y, double lambda, double tol, int maxIter, int threads) {
         if (x.length != y.length) {
             throw new IllegalArgumentException(String.format("The sizes of X and Y don't match: %d != %d", x.length, y.length));
         }
@@ -362,9 +409,11 @@ public abstract class Maxent implements SoftClassifier<int[]>, OnlineClassifier<
             throw new IllegalArgumentException("Fits binomial model on multi-class data.");
         }
 
-        BinomialObjective objective = new BinomialObjective(x, codec.y, p, lambda);
         double[] w = new double[p + 1];
-        double L = -BFGS.minimize(objective, 5, w, tol, maxIter);
+        double L;
+        try (BinomialObjective objective = new BinomialObjective(x, codec.y, p, lambda, threads)) {
+            L = -BFGS.minimize(objective, 5, w, tol, maxIter);
+        }
         Binomial model = new Binomial(w, L, lambda, codec.labels);
         model.setLearningRate(0.1 / x.length);
         return model;
@@ -397,7 +446,8 @@ public abstract class Maxent implements SoftClassifier<int[]>, OnlineClassifier<
         double lambda = Double.parseDouble(prop.getProperty("smile.maxent.lambda", "0.1"));
         double tol = Double.parseDouble(prop.getProperty("smile.maxent.tolerance", "1E-5"));
         int maxIter = Integer.parseInt(prop.getProperty("smile.maxent.max.iterations", "500"));
-        return multinomial(p, x, y, lambda, tol, maxIter);
+        int threads = Integer.parseInt(prop.getProperty("smile.maxent.threads", "0"));
+        return multinomial(p, x, y, lambda, tol, maxIter, threads);
     }
 
     /**
@@ -415,6 +465,30 @@ public abstract class Maxent implements SoftClassifier<int[]>, OnlineClassifier<
      * @return the model.
      */
     public static Multinomial multinomial(int p, int[][] x, int[] y, double lambda, double tol, int maxIter) {
+        return multinomial(p, x, y, lambda, tol, maxIter, 0);
+    }
+
+    /**
+     * Learn maximum entropy classifier.
+     * @param p the dimension of feature space.
+     * @param x training samples. Each sample is represented by a set of sparse
+     * binary features. The features are stored in an integer array, of which
+     * are the indices of nonzero features.
+     * @param y training labels in [0, k), where k is the number of classes.
+     * @param lambda {@code lambda > 0} gives a "regularized" estimate of linear
+     * weights which often has superior generalization performance, especially
+     * when the dimensionality is high.
+     * @param tol the tolerance for stopping iterations.
+     * @param maxIter maximum number of iterations.
+     * @param threads the number of threads to evaluate the objective
+     *                function and gradient in parallel. If 0, they are
+     *                evaluated in the current fork-join pool, or the
+     *                common pool if not called from a fork-join task.
+     *                If 1, sequentially. Otherwise, in a dedicated pool
+     *                of given parallelism.
+     * @return the model.
+     */
+    public static Multinomial multinomial(int p, int[][] x, int[] y, double lambda, double tol, int maxIter, int threads) {
         if (x.length != y.length) {
             throw new IllegalArgumentException(String.format("The sizes of X and Y don't match: %d != %d", x.length, y.length));
         }
@@ -441,9 +515,11 @@ public abstract class Maxent implements SoftClassifier<int[]>, OnlineClassifier<
             throw new IllegalArgumentException("Fits multinomial model on binary class data.");
         }
 
-        MultinomialObjective objective = new MultinomialObjective(x, codec.y, k, p, lambda);
         double[] w = new double[(k - 1) * (p + 1)];
-        double L = -BFGS.minimize(objective, 5, w, tol, maxIter);
+        double L;
+        try (MultinomialObjective objective = new MultinomialObjective(x, codec.y, k, p, lambda, threads)) {
+            L = -BFGS.minimize(objective, 5, w, tol, maxIter);
+        }
 
         double[][] W = new double[k-1][p+1];
         for (int i = 0, l = 0; i < k-1; i++) {
@@ -460,7 +536,7 @@ public abstract class Maxent implements SoftClassifier<int[]>, OnlineClassifier<
     /**
      * Binary-class logistic regression objective function.
      */
-    static class BinomialObjective implements DifferentiableMultivariateFunction {
+    static class BinomialObjective extends PartitionedObjective {
 
         /**
          * Training instances.
@@ -478,98 +554,57 @@ public abstract class Maxent implements SoftClassifier<int[]>, OnlineClassifier<
          * Regularization factor.
          */
         double lambda;
-        /**
-         * The number of samples in a partition.
-         */
-        int partitionSize;
-        /**
-         * The number of partitions.
-         */
-        int partitions;
-        /**
-         * The workspace to store gradient for each data partition.
-         */
-        double[][] gradients;
 
         /**
          * Constructor.
          */
-        BinomialObjective(int[][] x, int[] y, int p, double lambda) {
+        BinomialObjective(int[][] x, int[] y, int p, double lambda, int threads) {
+            super(x.length, threads);
             this.x = x;
             this.y = y;
             this.p = p;
             this.lambda = lambda;
-
-            partitionSize = Integer.parseInt(System.getProperty("smile.data.partition.size", "1000"));
-            partitions = x.length / partitionSize + (x.length % partitionSize == 0 ? 0 : 1);
-            gradients = new double[partitions][p+1];
         }
-        
+
         @Override
-        public double f(double[] w) {
+        double loss(double[] w, int begin, int end, double[] gradient) {
             // Since BFGS try to minimize the objective function
             // and we try to maximize the log-likelihood, we really
             // return the negative log-likelihood here.
-            double f = IntStream.range(0, x.length).parallel().mapToDouble(i -> {
+            double f = 0.0;
+            for (int i = begin; i < end; i++) {
                 double wx = dot(x[i], w);
-                return MathEx.log1pe(wx) - y[i] * wx;
-            }).sum();
-
-            if (lambda > 0.0) {
-                double wnorm = 0.0;
-                for (int i = 0; i < p; i++) wnorm += w[i] * w[i];
-                f += 0.5 * lambda * wnorm;
-            }
-
-            return f;
-        }
-        
-        @Override
-        public double g(double[] w, double[] g) {
-            double f = IntStream.range(0, partitions).parallel().mapToDouble(r -> {
-                double[] gradient = gradients[r];
-                Arrays.fill(gradient, 0.0);
+                f += MathEx.log1pe(wx) - y[i] * wx;
 
-                int begin = r * partitionSize;
-                int end = (r + 1) * partitionSize;
-                if (end > x.length) end = x.length;
-
-                return IntStream.range(begin, end).sequential().mapToDouble(i -> {
-                    double wx = dot(x[i], w);
+                if (gradient != null) {
                     double err = y[i] - MathEx.logistic(wx);
                     for (int j : x[i]) {
                         gradient[j] -= err;
                     }
                     gradient[p] -= err;
-
-                    return MathEx.log1pe(wx) - y[i] * wx;
-                }).sum();
-            }).sum();
-
-            Arrays.fill(g, 0.0);
-            for (double[] gradient : gradients) {
-                for (int i = 0; i < g.length; i++) {
-                    g[i] += gradient[i];
                 }
             }
 
-            if (lambda > 0.0) {
-                double wnorm = 0.0;
-                for (int i = 0; i < p; i++) {
-                    wnorm += w[i] * w[i];
-                    g[i] += lambda * w[i];
-                }
-                f += 0.5 * lambda * wnorm;
-            }
-
             return f;
         }
+
+        @Override
+        double penalty(double[] w, double[] g) {
+            if (lambda <= 0.0) return 0.0;
+
+            double wnorm = 0.0;
+            for (int i = 0; i < p; i++) {
+                wnorm += w[i] * w[i];
+                if (g != null) g[i] += lambda * w[i];
+            }
+            return 0.5 * lambda * wnorm;
+        }
     }
 
     /**
      * Multi-class logistic regression objective function.
      */
-    static class MultinomialObjective implements DifferentiableMultivariateFunction {
+    static class MultinomialObjective extends PartitionedObjective {
 
         /**
          * Training instances.
@@ -591,93 +626,33 @@ public abstract class Maxent implements SoftClassifier<int[]>, OnlineClassifier<
          * Regularization factor.
          */
         double lambda;
-        /**
-         * The number of samples in a partition.
-         */
-        int partitionSize;
-        /**
-         * The number of partitions.
-         */
-        int partitions;
-        /**
-         * The workspace to store gradient for each data partition.
-         */
-        double[][] gradients;
-        /**
-         * The workspace to store posteriori probability for each data partition.
-         */
-        double[][] posterioris;
 
         /**
          * Constructor.
          */
-        MultinomialObjective(int[][] x, int[] y, int k, int p, double lambda) {
+        MultinomialObjective(int[][] x, int[] y, int k, int p, double lambda, int threads) {
+            super(x.length, threads);
             this.x = x;
             this.y = y;
             this.k = k;
             this.p = p;
             this.lambda = lambda;
-
-            partitionSize = Integer.parseInt(System.getProperty("smile.data.partition.size", "1000"));
-            partitions = x.length / partitionSize + (x.length % partitionSize == 0 ? 0 : 1);
-            gradients = new double[partitions][(k-1)*(p+1)];
-            posterioris = new double[partitions][k];
-        }
-        
-        @Override
-        public double f(double[] w) {
-            double f = IntStream.range(0, partitions).parallel().mapToDouble(r -> {
-                double[] posteriori = posterioris[r];
-
-                int begin = r * partitionSize;
-                int end = (r + 1) * partitionSize;
-                if (end > x.length) end = x.length;
-
-                return IntStream.range(begin, end).sequential().mapToDouble(i -> {
-                    posteriori[k - 1] = 0.0;
-                    for (int j = 0; j < k - 1; j++) {
-                        posteriori[j] = dot(x[i], w, j, p);
-                    }
-
-                    MathEx.softmax(posteriori);
-
-                    return -MathEx.log(posteriori[y[i]]);
-                }).sum();
-            }).sum();
-
-            if (lambda > 0.0) {
-                double wnorm = 0.0;
-                for (int i = 0; i < k-1; i++) {
-                    for (int j = 0, pos = i * (p+1); j < p; j++) {
-                        double wi = w[pos + j];
-                        wnorm += wi * wi;
-                    }
-                }
-                f += 0.5 * lambda * wnorm;
-            }
-
-            return f;
         }
 
         @Override
-        public double g(double[] w, double[] g) {
-            double f = IntStream.range(0, partitions).parallel().mapToDouble(r -> {
-                double[] posteriori = posterioris[r];
-                double[] gradient = gradients[r];
-                Arrays.fill(gradient, 0.0);
-
-                int begin = r * partitionSize;
-                int end = (r + 1) * partitionSize;
-                if (end > x.length) end = x.length;
-
-                return IntStream.range(begin, end).sequential().mapToDouble(i -> {
-                    posteriori[k - 1] = 0.0;
-                    for (int j = 0; j < k - 1; j++) {
-                        posteriori[j] = dot(x[i], w, j, p);
-                    }
+        double loss(double[] w, int begin, int end, double[] gradient) {
+            double[] posteriori = new double[k];
+            double f = 0.0;
+            for (int i = begin; i < end; i++) {
+                posteriori[k - 1] = 0.0;
+                for (int j = 0; j < k - 1; j++) {
+                    posteriori[j] = dot(x[i], w, j, p);
+                }
 
-                    MathEx.softmax(posteriori);
+                MathEx.softmax(posteriori);
+                f -= MathEx.log(posteriori[y[i]]);
 
+                if (gradient != null) {
                     for (int j = 0; j < k - 1; j++) {
                         double err = (y[i] == j ? 1.0 : 0.0) - posteriori[j];
 
@@ -687,32 +662,25 @@ public abstract class Maxent implements SoftClassifier<int[]>, OnlineClassifier<
                         }
                         gradient[pos + p] -= err;
                     }
-
-                    return -MathEx.log(posteriori[y[i]]);
-                }).sum();
-            }).sum();
-
-            Arrays.fill(g, 0.0);
-            for (double[] gradient : gradients) {
-                for (int i = 0; i < g.length; i++) {
-                    g[i] += gradient[i];
                 }
             }
 
-            if (lambda > 0.0) {
-                double wnorm = 0.0;
-                for (int i = 0; i < k-1; i++) {
-                    for (int j = 0, pos = i * (p+1); j < p; j++) {
-                        double wi = w[pos + j];
-                        wnorm += wi * wi;
-                        g[pos + j] += lambda * wi;
-                    }
-                }
+            return f;
+        }
 
-                f += 0.5 * lambda * wnorm;
-            }
+        @Override
+        double penalty(double[] w, double[] g) {
+            if (lambda <= 0.0) return 0.0;
 
-            return f;
+            double wnorm = 0.0;
+            for (int i = 0; i < k-1; i++) {
+                for (int j = 0, pos = i * (p+1); j < p; j++) {
+                    double wi = w[pos + j];
+                    wnorm += wi * wi;
+                    if (g != null) g[pos + j] += lambda * wi;
+                }
+            }
+            return 0.5 * lambda * wnorm;
         }
     }
 
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.classification;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import smile.math.DifferentiableMultivariateFunction;
+
+/**
+ * An objective function that sums the loss and gradient over the
+ * training samples. The samples are split into a number of partitions
+ * that depends only on the sample size. The partial sums of partitions
+ * are computed in parallel by per-partition workspaces and then reduced
+ * in the order of partitions. Therefore, the value and gradient are
+ * identical for any number of threads.
+ * <p>
+ * By default (0 threads), the partitions are processed in the current
+ * fork-join pool, e.g. the pool of hyperparameter search that fits the
+ * model, or the common pool if not called from a fork-join task. So
+ * nested parallelism doesn't create extra threads. With more than one
+ * thread, the partitions are processed in a dedicated fork-join pool
+ * of given parallelism, which should be shut down by {@link #close()}
+ * after the optimization.
+ *
+ * @author Haifeng Li
+ */
+abstract class PartitionedObjective implements DifferentiableMultivariateFunction, AutoCloseable {
+    /** The maximum number of partitions, which bounds the gradient workspace. */
+    private static final int MAX_PARTITIONS = 256;
+    /** The number of gradient elements per reduction task. */
+    private static final int REDUCE_CHUNK = 4096;
+
+    /** The number of samples. */
+    final int n;
+    /** The number of samples in a partition. */
+    final int partitionSize;
+    /** The number of partitions. */
+    final int partitions;
+    /** The loss of each partition. */
+    private final double[] losses;
+    /** The gradient of each partition. */
+    private double[][] gradients;
+    /** True if the partitions are processed in parallel. */
+    private final boolean parallel;
+    /** The dedicated pool of worker threads. May be null. */
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructor.
+     * @param n the number of samples.
+     * @param threads the number of threads. If 0, the current fork-join
+     *                pool or the common pool is used. If 1, sequential.
+     */
+    PartitionedObjective(int n, int threads) {
+        if (threads < 0) {
+            throw new IllegalArgumentException("Invalid number of threads: " + threads);
+        }
+
+        this.n = n;
+        int size = Integer.parseInt(System.getProperty("smile.data.partition.size", "1000"));
+        partitionSize = Math.max(size, (n + MAX_PARTITIONS - 1) / MAX_PARTITIONS);
+        partitions = (n + partitionSize - 1) / partitionSize;
+        losses = new double[partitions];
+        parallel = threads != 1;
+        pool = threads > 1 ? new ForkJoinPool(threads) : null;
+    }
+
+    /**
+     * Returns the loss of a partition of samples and adds its gradient.
+     * @param w the parameters.
+     * @param begin the index of first sample in the partition, inclusive.
+     * @param end the index of last sample in the partition, exclusive.
+     * @param gradient the gradient of partition to add to, initially zero.
+     *                 If null, the gradient is not required.
+     * @return the loss of partition.
+     */
+    abstract double loss(double[] w, int begin, int end, double[] gradient);
+
+    /**
+     * Returns the regularization penalty and adds its gradient.
+     * @param w the parameters.
+     * @param g the gradient to add to. If null, the gradient is not required.
+     * @return the penalty.
+     */
+    abstract double penalty(double[] w, double[] g);
+
+    /** Runs the tasks sequentially or in parallel. */
+    private void run(int tasks, IntConsumer task) {
+        if (!parallel) {
+            for (int i = 0; i < tasks; i++) {
+                task.accept(i);
+            }
+        } else if (pool == null) {
+            // A parallel stream runs in the pool of current fork-join
+            // task, or the common pool if called from other threads.
+            IntStream.range(0, tasks).parallel().forEach(task);
+        } else {
+            pool.submit(() -> IntStream.range(0, tasks).parallel().forEach(task)).join();
+        }
+    }
+
+    /** Returns the index of first sample in a partition. */
+    private int begin(int r) {
+        return r * partitionSize;
+    }
+
+    /** Returns the index after last sample in a partition. */
+    private int end(int r) {
+        return Math.min(n, (r + 1) * partitionSize);
+    }
+
+    @Override
+    public double f(double[] w) {
+        run(partitions, r -> losses[r] = loss(w, begin(r), end(r), null));
+
+        double f = 0.0;
+        for (double loss : losses) f += loss;
+        return f + penalty(w, null);
+    }
+
+    @Override
+    public double g(double[] w, double[] g) {
+        if (gradients == null) {
+            gradients = new double[partitions][g.length];
+        }
+
+        run(partitions, r -> {
+            double[] gradient = gradients[r];
+            Arrays.fill(gradient, 0.0);
+            losses[r] = loss(w, begin(r), end(r), gradient);
+        });
+
+        // Each element is summed in the order of partitions.
+        int length = g.length;
+        run((length + REDUCE_CHUNK - 1) / REDUCE_CHUNK, chunk -> {
+            int begin = chunk * REDUCE_CHUNK;
+            int end = Math.min(length, begin + REDUCE_CHUNK);
+            Arrays.fill(g, begin, end, 0.0);
+            for (double[] gradient : gradients) {
+                for (int i = begin; i < end; i++) {
+                    g[i] += gradient[i];
+                }
+            }
+        });
+
+        double f = 0.0;
+        for (double loss : losses) f += loss;
+        return f + penalty(w, g);
+    }
+
+    /** Shuts down the thread pool. */
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+}
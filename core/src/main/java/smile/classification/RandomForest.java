@@ -20,7 +20,9 @@ package smile.classification;
 import java.io.Serializable;
 import java.util.*;
 import java.util.stream.LongStream;
+import smile.base.cart.Bins;
 import smile.base.cart.CART;
+import smile.base.cart.FlatForest;
 import smile.base.cart.SplitRule;
 import smile.data.DataFrame;
 import smile.data.Tuple;
@@ -137,6 +139,11 @@ public class RandomForest implements SoftClassifier<Tuple>, DataFrameClassifier,
      */
     private final IntSet labels;
 
+    /**
+     * The compiled forest for batch inference, built on demand.
+     */
+    private transient FlatForest flat;
+
     /**
      * Constructor.
      *
@@ -197,7 +204,8 @@ public class RandomForest implements SoftClassifier<Tuple>, DataFrameClassifier,
         int nodeSize = Integer.parseInt(prop.getProperty("smile.random.forest.node.size", "5"));
         double subsample = Double.parseDouble(prop.getProperty("smile.random.forest.sample.rate", "1.0"));
         int[] classWeight = Strings.parseIntArray(prop.getProperty("smile.random.forest.class.weight"));
-        return fit(formula, data, ntrees, mtry, rule, maxDepth, maxNodes, nodeSize, subsample, classWeight, null);
+        int maxBins = Integer.parseInt(prop.getProperty("smile.random.forest.max.bins", "0"));
+        return fit(formula, data, ntrees, mtry, rule, maxDepth, maxNodes, nodeSize, subsample, classWeight, maxBins, null);
     }
 
     /**
@@ -287,6 +295,43 @@ public class RandomForest implements SoftClassifier<Tuple>, DataFrameClassifier,
     public static RandomForest fit(Formula formula, DataFrame data, int ntrees, int mtry,
                                    SplitRule rule, int maxDepth, int maxNodes, int nodeSize,
                                    double subsample, int[] classWeight, LongStream seeds) {
+        return fit(formula, data, ntrees, mtry, rule, maxDepth, maxNodes, nodeSize, subsample, classWeight, 0, seeds);
+    }
+
+    /**
+     * Fits a random forest for classification.
+     *
+     * @param formula a symbolic description of the model to be fitted.
+     * @param data the data frame of the explanatory and response variables.
+     * @param ntrees the number of trees.
+     * @param mtry the number of input variables to be used to determine the
+     *             decision at a node of the tree. floor(sqrt(p)) generally
+     *             gives good performance, where p is the number of variables.
+     * @param rule Decision tree split rule.
+     * @param maxDepth the maximum depth of the tree.
+     * @param maxNodes the maximum number of leaf nodes in the tree.
+     * @param nodeSize the number of instances in a node below which the tree
+     *                 will not split, nodeSize = 5 generally gives good
+     *                 results.
+     * @param subsample the sampling rate for training tree. 1.0 means sampling
+     *                  with replacement. {@code < 1.0} means sampling without
+     *                  replacement.
+     * @param classWeight Priors of the classes. The weight of each class
+     *                    is roughly the ratio of samples in each class.
+     *                    For example, if there are 400 positive samples
+     *                    and 100 negative samples, the classWeight should
+     *                    be [1, 4] (assuming label 0 is of negative, label 1 is of
+     *                    positive).
+     * @param maxBins the maximum number of quantile bins of numeric columns
+     *                for histogram-based split finding, which should be no
+     *                more than 256. If it is 0, the best splits are searched
+     *                over all the distinct values of numeric columns.
+     * @param seeds optional RNG seeds for each regression tree.
+     * @return the model.
+     */
+    public static RandomForest fit(Formula formula, DataFrame data, int ntrees, int mtry,
+                                   SplitRule rule, int maxDepth, int maxNodes, int nodeSize,
+                                   double subsample, int[] classWeight, int maxBins, LongStream seeds) {
         if (ntrees < 1) {
             throw new IllegalArgumentException("Invalid number of trees: " + ntrees);
         }
@@ -311,7 +356,8 @@ public class RandomForest implements SoftClassifier<Tuple>, DataFrameClassifier,
 
         final int[] weight = classWeight != null ? classWeight : Collections.nCopies(k, 1).stream().mapToInt(i -> i).toArray();
 
-        final int[][] order = CART.order(x);
+        final Bins bins = maxBins > 0 ? Bins.of(x, maxBins) : null;
+        final int[][] order = bins == null ? CART.order(x) : null;
         final int[][] prediction = new int[n][k]; // out-of-bag prediction
 
         // generate seeds with sequential stream
@@ -372,7 +418,9 @@ public class RandomForest implements SoftClassifier<Tuple>, DataFrameClassifier,
             }
 
             long start = System.nanoTime();
-            DecisionTree tree = new DecisionTree(x, codec.y, y.field(), k, rule, maxDepth, maxNodes, nodeSize, mtryFinal, samples, order);
+            DecisionTree tree = bins == null ?
+                    new DecisionTree(x, codec.y, y.field(), k, rule, maxDepth, maxNodes, nodeSize, mtryFinal, samples, order) :
+                    new DecisionTree(x, codec.y, y.field(), k, rule, maxDepth, maxNodes, nodeSize, mtryFinal, samples, bins);
             double fitTime = (System.nanoTime() - start) / 1E6;
 
             // estimate OOB metrics
@@ -539,6 +587,7 @@ public class RandomForest implements SoftClassifier<Tuple>, DataFrameClassifier,
         }
 
         Arrays.sort(models, Comparator.comparingDouble(model -> -model.weight));
+        flat = null;
 
         // The OOB metrics are still the old one
         // as we don't access to the training data here.
@@ -639,6 +688,72 @@ public class RandomForest implements SoftClassifier<Tuple>, DataFrameClassifier,
         return labels.valueOf(MathEx.whichMax(posteriori));
     }
 
+    /**
+     * Returns the compiled forest for batch inference.
+     * @return the compiled forest.
+     */
+    private FlatForest flat() {
+        if (flat == null) {
+            flat = FlatForest.of(trees());
+        }
+        return flat;
+    }
+
+    @Override
+    public int[] predict(DataFrame data) {
+        return predict(formula.x(data).toArray());
+    }
+
+    /**
+     * Predicts the class labels of a batch of samples by majority
+     * voting with the compiled forest, which scores many samples
+     * per tree traversal.
+     *
+     * @param x the samples, of which the columns are in the order
+     *          of design matrix schema.
+     * @return the predicted class labels.
+     */
+    public int[] predict(double[][] x) {
+        int n = x.length;
+        int[][] votes = new int[n][k];
+        flat().vote(x, votes);
+
+        int[] y = new int[n];
+        for (int i = 0; i < n; i++) {
+            y[i] = labels.valueOf(MathEx.whichMax(votes[i]));
+        }
+        return y;
+    }
+
+    /**
+     * Predicts the class labels and estimates the posteriori probabilities
+     * of a batch of samples with the compiled forest.
+     *
+     * @param x the samples, of which the columns are in the order
+     *          of design matrix schema.
+     * @param posteriori a posteriori probabilities on output.
+     * @return the predicted class labels.
+     */
+    public int[] predict(double[][] x, double[][] posteriori) {
+        int n = x.length;
+        for (int i = 0; i < n; i++) {
+            if (posteriori[i].length != k) {
+                throw new IllegalArgumentException(String.format("Invalid posteriori vector size: %d, expected: %d", posteriori[i].length, k));
+            }
+            Arrays.fill(posteriori[i], 0.0);
+        }
+
+        double[] weight = Arrays.stream(models).mapToDouble(model -> model.weight).toArray();
+        flat().sum(x, weight, posteriori);
+
+        int[] y = new int[n];
+        for (int i = 0; i < n; i++) {
+            MathEx.unitize1(posteriori[i]);
+            y[i] = labels.valueOf(MathEx.whichMax(posteriori[i]));
+        }
+        return y;
+    }
+
     /**
      * Test the model on a validation dataset.
      *
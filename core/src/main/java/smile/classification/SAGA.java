@@ -0,0 +1,392 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.classification;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Stream;
+import smile.data.CategoricalEncoder;
+import smile.data.DataFrame;
+import smile.data.Instance;
+import smile.data.formula.Formula;
+import smile.math.MathEx;
+import smile.util.IntSet;
+import smile.util.SparseArray;
+
+/**
+ * Binomial logistic regression trained by SAGA, a stochastic average
+ * gradient method with elastic net penalty. Each step corrects the
+ * gradient of a random sample by the difference between its current
+ * and last seen gradients plus the average of all last seen gradients.
+ * The variance reduction gives the linear convergence of full gradient
+ * methods at the cost of one sample gradient per step. The L1 penalty
+ * is applied by the proximal operator, i.e. soft thresholding.
+ * <p>
+ * SAGA stores the last gradient of every sample, which is a scalar
+ * for linear models. To train on a stream that doesn't fit in the
+ * memory, the stream is processed in micro-batches. A few passes of
+ * SAGA are run over each micro-batch, warm started from the model of
+ * previous batches, so that the stream itself is read only once.
+ * The step size is set to 1/(3L) per batch, where L is the Lipschitz
+ * constant of the average loss of batch.
+ * <p>
+ * The weights are updated just in time. Between two samples that
+ * touch a coordinate, its average gradient is constant, so that the
+ * missed average gradient, L2 and proximal L1 steps are caught up in
+ * closed form when the coordinate is touched again or at the end of
+ * batch. Therefore, each step costs O(nnz) rather than O(p) for
+ * sparse data.
+ *
+ * <h2>References</h2>
+ * <ol>
+ * <li>A. Defazio, F. Bach, and S. Lacoste-Julien. SAGA: A Fast Incremental Gradient Method With Support for Non-Strongly Convex Composite Objectives. NIPS, 2014.</li>
+ * </ol>
+ *
+ * @author Haifeng Li
+ */
+public class SAGA extends SparseLogisticRegression.Binomial {
+    private static final long serialVersionUID = 2L;
+
+    /** The L1 regularization factor. */
+    private final double l1;
+    /** The L2 regularization factor. */
+    private final double l2;
+    /** The number of passes over each micro-batch. */
+    private final int epochs;
+    /** The linear weights, of which the last element is the bias. */
+    private final double[] w;
+
+    /**
+     * Constructor of binary classifier with labels 0 and 1.
+     * @param p the dimension of input data.
+     * @param l1 the L1 regularization factor of average loss.
+     * @param l2 the L2 regularization factor of average loss.
+     * @param epochs the number of passes over each micro-batch.
+     */
+    public SAGA(int p, double l1, double l2, int epochs) {
+        this(p, l1, l2, epochs, IntSet.of(2));
+    }
+
+    /**
+     * Constructor.
+     * @param p the dimension of input data.
+     * @param l1 the L1 regularization factor of average loss.
+     * @param l2 the L2 regularization factor of average loss.
+     * @param epochs the number of passes over each micro-batch.
+     * @param labels the class label encoder.
+     */
+    public SAGA(int p, double l1, double l2, int epochs, IntSet labels) {
+        this(new double[p + 1], l1, l2, epochs, labels);
+    }
+
+    /** Constructor. The weight array is shared with the superclass. */
+    private SAGA(double[] w, double l1, double l2, int epochs, IntSet labels) {
+        super(w, 0.0, l2, labels);
+
+        if (w.length < 2) {
+            throw new IllegalArgumentException("Invalid dimension: " + (w.length - 1));
+        }
+
+        if (labels.size() != 2) {
+            throw new IllegalArgumentException("Only binary classification is supported: " + labels.size());
+        }
+
+        if (l1 < 0.0) {
+            throw new IllegalArgumentException("Invalid L1 regularization factor: " + l1);
+        }
+
+        if (l2 < 0.0) {
+            throw new IllegalArgumentException("Invalid L2 regularization factor: " + l2);
+        }
+
+        if (epochs <= 0) {
+            throw new IllegalArgumentException("Invalid number of epochs: " + epochs);
+        }
+
+        this.w = w;
+        this.l1 = l1;
+        this.l2 = l2;
+        this.epochs = epochs;
+    }
+
+    @Override
+    public void update(SparseArray x, int y) {
+        update(new SparseArray[]{x}, new int[]{y});
+    }
+
+    /**
+     * Updates the model with a micro-batch of new samples by a few
+     * passes of SAGA. The log-likelihood of model is accumulated
+     * in the first pass before each sample is used for update.
+     * @param x the training instances.
+     * @param y the training labels.
+     */
+    @Override
+    public void update(SparseArray[] x, int[] y) {
+        if (x.length != y.length) {
+            throw new IllegalArgumentException(String.format("Input vector x of size %d not equal to length %d of y", x.length, y.length));
+        }
+
+        int m = x.length;
+        if (m == 0) return;
+
+        int[] t = new int[m];
+        double maxNorm = 0.0;
+        for (int i = 0; i < m; i++) {
+            t[i] = labels.indexOf(y[i]);
+            double norm = 1.0;
+            for (SparseArray.Entry e : x[i]) {
+                norm += e.x * e.x;
+            }
+            maxNorm = Math.max(maxNorm, norm);
+        }
+
+        // The logistic loss is 0.25 * |x|^2 smooth.
+        double eta = 1.0 / (3.0 * (0.25 * maxNorm + l2));
+        double shrinkage = eta * l1;
+
+        // The last seen gradient of each sample and their average.
+        double[] g = new double[m];
+        double[] avg = new double[p + 1];
+        // The number of steps that each weight has been updated for.
+        int[] last = new int[p];
+        int step = 0;
+        double decay = 1.0 - eta * l2;
+
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            int[] permutation = MathEx.permutate(m);
+            for (int i : permutation) {
+                SparseArray xi = x[i];
+                double wx = w[p];
+                for (SparseArray.Entry e : xi) {
+                    int j = e.i;
+                    w[j] = lag(w[j], step - last[j], decay, eta * avg[j], shrinkage);
+                    last[j] = step;
+                    wx += e.x * w[j];
+                }
+
+                if (epoch == 0) {
+                    L -= MathEx.log1pe(wx) - t[i] * wx;
+                }
+
+                double gi = MathEx.logistic(wx) - t[i];
+                double delta = gi - g[i];
+
+                for (SparseArray.Entry e : xi) {
+                    int j = e.i;
+                    w[j] = softThreshold(decay * w[j] - eta * (avg[j] + delta * e.x), shrinkage);
+                    last[j] = step + 1;
+                }
+                w[p] -= eta * (delta + avg[p]);
+
+                for (SparseArray.Entry e : xi) {
+                    avg[e.i] += delta * e.x / m;
+                }
+                avg[p] += delta / m;
+                g[i] = gi;
+                step++;
+            }
+        }
+
+        for (int j = 0; j < p; j++) {
+            w[j] = lag(w[j], step - last[j], decay, eta * avg[j], shrinkage);
+        }
+    }
+
+    /**
+     * Returns the soft thresholding of a value.
+     * @param w the value.
+     * @param s the threshold.
+     * @return the soft thresholding of w.
+     */
+    private static double softThreshold(double w, double s) {
+        return w > s ? w - s : (w < -s ? w + s : 0.0);
+    }
+
+    /**
+     * Applies k steps of {@code w = S(a * w - b)} to a weight, where S is
+     * the soft thresholding at s. As the map is nondecreasing, the weights
+     * are monotone over the steps. So they stay positive, zero or negative
+     * over at most three runs of steps, each of which is an affine map in
+     * closed form.
+     *
+     * @param w the weight.
+     * @param k the number of steps.
+     * @param a the decay of L2 penalty in (0, 1].
+     * @param b the step of average gradient.
+     * @param s the threshold of L1 penalty.
+     * @return the weight after k steps.
+     */
+    private static double lag(double w, int k, double a, double b, double s) {
+        while (k > 0) {
+            double u = a * w - b;
+            if (u > s) {
+                // w = a * w - (b + s) while a * w - b > s.
+                int n = steps(w, k, a, b + s, (b + s) / a, true);
+                w = affine(w, n, a, b + s);
+                k -= n;
+            } else if (u < -s) {
+                // w = a * w - (b - s) while a * w - b < -s.
+                int n = steps(w, k, a, b - s, (b - s) / a, false);
+                w = affine(w, n, a, b - s);
+                k -= n;
+            } else {
+                w = 0.0;
+                k--;
+                // Zero is a fixed point if S(-b) = 0.
+                if (Math.abs(b) <= s) break;
+            }
+        }
+        return w;
+    }
+
+    /**
+     * Returns the weight after n steps of {@code w = a * w - c}.
+     */
+    private static double affine(double w, int n, double a, double c) {
+        if (a == 1.0) return w - n * c;
+        double fixed = -c / (1.0 - a);
+        return fixed + Math.pow(a, n) * (w - fixed);
+    }
+
+    /**
+     * Returns the number of steps of {@code w = a * w - c}, at most k,
+     * before the weight drops to or below the threshold (above is true),
+     * or rises to or above the threshold (above is false). The weight
+     * is on the side of threshold at the beginning.
+     */
+    private static int steps(double w, int k, double a, double c, double threshold, boolean above) {
+        // The weights move away from the threshold.
+        double next = a * w - c;
+        if (above ? next >= w : next <= w) return k;
+
+        // The first step t that reaches the threshold.
+        double t;
+        if (a == 1.0) {
+            t = Math.ceil((w - threshold) / c);
+        } else {
+            double fixed = -c / (1.0 - a);
+            double r = (threshold - fixed) / (w - fixed);
+            // The weights converge to the fixed point without reaching the threshold.
+            if (r <= 0.0) return k;
+            t = Math.ceil(Math.log(r) / Math.log(a));
+        }
+
+        if (!(t < k)) return k;
+        int n = Math.max((int) t, 1);
+        // Corrects the rounding errors.
+        while (n > 1 && reached(affine(w, n - 1, a, c), threshold, above)) n--;
+        while (n < k && !reached(affine(w, n, a, c), threshold, above)) n++;
+        return n;
+    }
+
+    /** Returns true if the weight reaches the threshold. */
+    private static boolean reached(double w, double threshold, boolean above) {
+        return above ? w <= threshold : w >= threshold;
+    }
+
+    /**
+     * Trains the model in a single pass over a stream of samples,
+     * which are processed in micro-batches.
+     * @param p the dimension of input data.
+     * @param data the stream of samples with class labels 0 and 1.
+     * @return the model.
+     */
+    public static SAGA fit(int p, Stream<? extends Instance<SparseArray>> data) {
+        return fit(p, data, new Properties());
+    }
+
+    /**
+     * Trains the model in a single pass over a stream of samples,
+     * which are processed in micro-batches.
+     * @param p the dimension of input data.
+     * @param data the stream of samples with class labels 0 and 1.
+     * @param prop the hyper-parameters.
+     * @return the model.
+     */
+    public static SAGA fit(int p, Stream<? extends Instance<SparseArray>> data, Properties prop) {
+        int size = Integer.parseInt(prop.getProperty("smile.saga.batch.size", "1000"));
+        if (size <= 0) {
+            throw new IllegalArgumentException("Invalid batch size: " + size);
+        }
+
+        SAGA model = of(p, prop);
+        List<SparseArray> x = new ArrayList<>(size);
+        List<Integer> y = new ArrayList<>(size);
+        Iterator<? extends Instance<SparseArray>> iterator = data.iterator();
+        while (iterator.hasNext()) {
+            Instance<SparseArray> sample = iterator.next();
+            x.add(sample.x());
+            y.add(sample.label());
+            if (x.size() == size || !iterator.hasNext()) {
+                model.update(x.toArray(new SparseArray[0]), y.stream().mapToInt(Integer::intValue).toArray());
+                x.clear();
+                y.clear();
+            }
+        }
+
+        return model;
+    }
+
+    /**
+     * Trains the model in a single pass over a stream of data frames,
+     * e.g. from {@link smile.io.CSV#stream(java.nio.file.Path, int)}.
+     * Each data frame is a micro-batch. The categorical variables are
+     * dummy encoded and the rows are converted to sparse arrays of
+     * nonzero values. The dimension of input data is determined by
+     * the first batch. All batches should have the same categorical
+     * levels so that their dummy encodings have the same dimension.
+     * @param formula a symbolic description of the model to be fitted.
+     * @param batches the stream of data frames.
+     * @param prop the hyper-parameters.
+     * @return the model.
+     */
+    public static SAGA fit(Formula formula, Stream<DataFrame> batches, Properties prop) {
+        Iterator<DataFrame> iterator = batches.iterator();
+        SAGA model = null;
+        while (iterator.hasNext()) {
+            DataFrame batch = iterator.next();
+            if (batch.size() == 0) continue;
+
+            double[][] x = formula.x(batch).toArray(false, CategoricalEncoder.DUMMY);
+            int[] y = formula.y(batch).toIntArray();
+            if (model == null) {
+                model = of(x[0].length, prop);
+            } else if (x[0].length != model.p) {
+                throw new IllegalArgumentException(String.format("The dimension %d of batch doesn't match %d of first batch, e.g. new categorical levels", x[0].length, model.p));
+            }
+            model.update(SparseLogisticRegression.sparse(x), y);
+        }
+
+        if (model == null) {
+            throw new IllegalArgumentException("Empty stream of data frames");
+        }
+
+        return model;
+    }
+
+    /** Returns an untrained model of given hyper-parameters. */
+    private static SAGA of(int p, Properties prop) {
+        double l1 = Double.parseDouble(prop.getProperty("smile.saga.l1", "0.0"));
+        double l2 = Double.parseDouble(prop.getProperty("smile.saga.l2", "1E-4"));
+        int epochs = Integer.parseInt(prop.getProperty("smile.saga.epochs", "3"));
+        return new SAGA(p, l1, l2, epochs);
+    }
+}
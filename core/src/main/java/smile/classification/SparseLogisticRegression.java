@@ -707,6 +707,24 @@ public abstract class SparseLogisticRegression implements SoftClassifier<SparseA
         return dot;
     }
 
+    /**
+     * Returns the sparse arrays of nonzero values of dense vectors.
+     * @param x the dense vectors.
+     * @return the sparse arrays.
+     */
+    static SparseArray[] sparse(double[][] x) {
+        SparseArray[] sparse = new SparseArray[x.length];
+        for (int i = 0; i < x.length; i++) {
+            double[] xi = x[i];
+            SparseArray a = new SparseArray(xi.length);
+            for (int j = 0; j < xi.length; j++) {
+                if (xi[j] != 0.0) a.append(j, xi[j]);
+            }
+            sparse[i] = a;
+        }
+        return sparse;
+    }
+
     /**
      * Returns the dot product between weight vector and x (augmented with 1).
      */
@@ -20,6 +20,7 @@ package smile.clustering;
 import java.util.Arrays;
 import java.util.function.ToDoubleBiFunction;
 import java.util.stream.IntStream;
+import smile.math.MathEx;
 
 /**
  * In centroid-based clustering, clusters are represented by a central vector,
@@ -129,6 +130,22 @@ public abstract class CentroidClustering<T, U> extends PartitionClustering imple
         }).sum();
     }
 
+    /**
+     * Assigns each observation to the nearest centroid in squared
+     * Euclidean distance with the batch distance kernel.
+     */
+    static double assign(int[] y, double[][] data, double[][] centroids) {
+        int k = centroids.length;
+
+        return IntStream.range(0, data.length).parallel().mapToDouble(i -> {
+            double[] dist = new double[k];
+            MathEx.squaredDistance(data[i], centroids, dist);
+            int label = MathEx.whichMin(dist);
+            y[i] = label;
+            return dist[label];
+        }).sum();
+    }
+
     /**
      * Calculates the new centroids in the new clusters.
      */
@@ -26,6 +26,7 @@ import smile.neighbor.LinearSearch;
 import smile.neighbor.RNNSearch;
 import smile.math.MathEx;
 import smile.math.distance.Distance;
+import smile.util.IntArrayList;
 
 /**
  * Density-Based Spatial Clustering of Applications with Noise.
@@ -90,6 +91,10 @@ import smile.math.distance.Distance;
  */
 public class DBSCAN<T> extends PartitionClustering {
     private static final long serialVersionUID = 2L;
+    /**
+     * The number of neighborhoods searched in parallel at a time.
+     */
+    private static final int BLOCK = 1024;
 
     /**
      * The minimum number of points required to form a cluster
@@ -173,24 +178,46 @@ public class DBSCAN<T> extends PartitionClustering {
         int[] y = new int[n];
         Arrays.fill(y, UNDEFINED);
 
+        // Only the core point flags are kept. The neighborhoods are
+        // searched in parallel in blocks so that the memory is bounded.
+        boolean[] core = new boolean[n];
+        for (int from = 0; from < n; from += BLOCK) {
+            int to = Math.min(n, from + BLOCK);
+            int[][] neighborhoods = new int[to - from][];
+            nns.range(Arrays.copyOfRange(data, from, to), radius, neighborhoods, null);
+            for (int i = from; i < to; i++) {
+                core[i] = neighborhoods[i - from].length >= minPts;
+            }
+        }
+
+        // The neighborhoods of core points in the queue are searched in
+        // parallel blocks again during the expansion of clusters.
+        int[][] neighborhoods = new int[BLOCK][];
         for (int i = 0; i < data.length; i++) {
             if (y[i] == UNDEFINED) {
-                List<Neighbor<T,T>> neighbors = new ArrayList<>();
-                nns.range(data[i], radius, neighbors);
-                if (neighbors.size() < minPts) {
+                if (!core[i]) {
                     y[i] = OUTLIER;
                 } else {
                     y[i] = k;
 
-                    for (Neighbor<T, T> neighbor : neighbors) {
-                        if (y[neighbor.index] == UNDEFINED) {
-                            y[neighbor.index] = QUEUED;
+                    int[][] seed = new int[1][];
+                    nns.range(Arrays.copyOfRange(data, i, i + 1), radius, seed, null);
+                    int[] neighbors = seed[0];
+                    for (int neighbor : neighbors) {
+                        if (y[neighbor] == UNDEFINED) {
+                            y[neighbor] = QUEUED;
                         }
                     }
 
-                    for (int j = 0; j < neighbors.size(); j++) {
-                        Neighbor<T,T> neighbor = neighbors.get(j);
-                        int index = neighbor.index;
+                    IntArrayList queue = new IntArrayList(neighbors);
+                    int start = 0, end = 0;
+                    for (int j = 0; j < queue.size(); j++) {
+                        if (j >= end) {
+                            start = j;
+                            end = search(data, nns, radius, core, y, queue, start, neighborhoods);
+                        }
+
+                        int index = queue.get(j);
 
                         if (y[index] == OUTLIER) {
                             y[index] = k;
@@ -199,18 +226,19 @@ public class DBSCAN<T> extends PartitionClustering {
                         if (y[index] == UNDEFINED || y[index] == QUEUED) {
                             y[index] = k;
 
-                            List<Neighbor<T,T>> secondaryNeighbors = new ArrayList<>();
-                            nns.range(neighbor.key, radius, secondaryNeighbors);
-
-                            if (secondaryNeighbors.size() >= minPts) {
-                                for (Neighbor<T, T> sn : secondaryNeighbors) {
-                                    int label = y[sn.index];
+                            if (core[index]) {
+                                // Labels only advance, so a core point to expand
+                                // was already pending when its block was searched.
+                                // The elements appended later start a new block.
+                                int[] secondaryNeighbors = neighborhoods[j - start];
+                                for (int sn : secondaryNeighbors) {
+                                    int label = y[sn];
                                     if (label == UNDEFINED) {
-                                        y[sn.index] = QUEUED;
+                                        y[sn] = QUEUED;
                                     }
 
                                     if (label == UNDEFINED || label == OUTLIER) {
-                                        neighbors.add(sn);
+                                        queue.add(sn);
                                     }
                                 }
                             }
@@ -225,6 +253,41 @@ public class DBSCAN<T> extends PartitionClustering {
         return new DBSCAN<>(minPts, radius, nns, k, y);
     }
 
+    /**
+     * Searches the neighborhoods of pending core points in a block of queue.
+     * @param queue the BFS queue.
+     * @param from the index of first queue element in the block.
+     * @param neighborhoods the neighborhoods of block elements on output.
+     *                      The elements that don't need expansion are null.
+     * @return the (exclusive) end index of the block in the queue.
+     */
+    private static <T> int search(T[] data, RNNSearch<T,T> nns, double radius, boolean[] core, int[] y, IntArrayList queue, int from, int[][] neighborhoods) {
+        int to = Math.min(queue.size(), from + BLOCK);
+        Arrays.fill(neighborhoods, null);
+
+        int m = 0;
+        int[] pos = new int[to - from];
+        T[] q = Arrays.copyOf(data, to - from);
+        for (int j = from; j < to; j++) {
+            int index = queue.get(j);
+            // The unclassified or queued core points.
+            if (core[index] && y[index] < 0) {
+                pos[m] = j - from;
+                q[m++] = data[index];
+            }
+        }
+
+        if (m > 0) {
+            int[][] result = new int[m][];
+            nns.range(Arrays.copyOf(q, m), radius, result, null);
+            for (int i = 0; i < m; i++) {
+                neighborhoods[pos[i]] = result[i];
+            }
+        }
+
+        return to;
+    }
+
     /**
      * Classifies a new observation.
      * @param x a new observation.
@@ -211,8 +211,9 @@ public class DENCLUE extends PartitionClustering {
 
         double diff = Double.MAX_VALUE;
         for (int iter = 0; iter < k || diff > tol; iter++) {
+            MathEx.squaredDistance(x, samples, w);
             for (int i = 0; i < m; i++) {
-                w[i] = Math.exp(gamma * MathEx.squaredDistance(x, samples[i]));
+                w[i] = Math.exp(gamma * w[i]);
             }
 
             Arrays.fill(attractor, 0.0);
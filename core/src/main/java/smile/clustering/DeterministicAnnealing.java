@@ -43,7 +43,7 @@ import smile.math.matrix.PowerIteration;
  * 
  * @author Haifeng Li
  */
-public class DeterministicAnnealing extends CentroidClustering<double[], double[]> {
+public class DeterministicAnnealing extends EuclideanCentroidClustering {
     private static final long serialVersionUID = 2L;
     private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(DeterministicAnnealing.class);
 
@@ -57,11 +57,6 @@ public class DeterministicAnnealing extends CentroidClustering<double[], double[
         super(distortion, centroids, y);
     }
 
-    @Override
-    protected double distance(double[] x, double[] y) {
-        return MathEx.squaredDistance(x, y);
-    }
-
     /**
      * Clustering data into k clusters.
      * @param data the input data of which each row is an observation.
@@ -186,7 +181,7 @@ public class DeterministicAnnealing extends CentroidClustering<double[], double[
         }
 
         int[] y = new int[n];
-        double distortion = assign(y, data, centers, MathEx::squaredDistance);
+        double distortion = assign(y, data, centers);
 
         int[] size = new int[k];
         centroids = new double[k][d];
@@ -221,9 +216,9 @@ public class DeterministicAnnealing extends CentroidClustering<double[], double[
                 double Z = 0.0;
                 double[] p = posteriori[i];
                 double[] dist = new double[k];
+                MathEx.squaredDistance(data[i], centroids, dist);
 
                 for (int j = 0; j < k; j++) {
-                    dist[j] = MathEx.squaredDistance(data[i], centroids[j]);
                     p[j] = priori[j] * Math.exp(-dist[j] / T);
                     Z += p[j];
                 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.clustering;
+
+import smile.math.MathEx;
+
+/**
+ * Centroid-based clustering of real-valued vectors in squared Euclidean
+ * distance, e.g. k-means and its variants. The distances between an
+ * observation and all centroids are computed by the batch kernel
+ * {@link MathEx#squaredDistance(double[], double[][], double[])}.
+ *
+ * @author Haifeng Li
+ */
+public abstract class EuclideanCentroidClustering extends CentroidClustering<double[], double[]> {
+    private static final long serialVersionUID = 2L;
+
+    /**
+     * Constructor.
+     * @param distortion the total distortion.
+     * @param centroids the centroids of each cluster.
+     * @param y the cluster labels.
+     */
+    public EuclideanCentroidClustering(double distortion, double[][] centroids, int[] y) {
+        super(distortion, centroids, y);
+    }
+
+    @Override
+    protected double distance(double[] x, double[] y) {
+        return MathEx.squaredDistance(x, y);
+    }
+
+    @Override
+    public int predict(double[] x) {
+        return nearest(x, centroids);
+    }
+
+    /**
+     * Returns the index of nearest centroid in squared Euclidean distance.
+     * @param x the observation.
+     * @param centroids the centroids.
+     * @return the index of nearest centroid.
+     */
+    static int nearest(double[] x, double[][] centroids) {
+        double[] dist = new double[centroids.length];
+        MathEx.squaredDistance(x, centroids, dist);
+        return MathEx.whichMin(dist);
+    }
+}
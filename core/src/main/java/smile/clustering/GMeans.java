@@ -41,7 +41,7 @@ import smile.stat.distribution.GaussianDistribution;
  * 
  * @author Haifeng Li
  */
-public class GMeans extends CentroidClustering<double[], double[]> {
+public class GMeans extends EuclideanCentroidClustering {
     private static final long serialVersionUID = 2L;
     private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(GMeans.class);
 
@@ -55,11 +55,6 @@ public class GMeans extends CentroidClustering<double[], double[]> {
         super(distortion, centroids, y);
     }
 
-    @Override
-    protected double distance(double[] x, double[] y) {
-        return MathEx.squaredDistance(x, y);
-    }
-
     /**
      * Clustering data with the number of clusters
      * determined by G-Means algorithm automatically.
@@ -18,12 +18,13 @@
 package smile.clustering;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.Queue;
-import smile.clustering.linkage.Linkage;
-import smile.clustering.linkage.UPGMCLinkage;
-import smile.clustering.linkage.WPGMCLinkage;
-import smile.clustering.linkage.WardLinkage;
+import java.util.stream.IntStream;
+import smile.clustering.linkage.*;
+import smile.math.MathEx;
+import smile.math.distance.Distance;
 import smile.sort.IntHeapSelect;
 
 /**
@@ -43,10 +44,23 @@ import smile.sort.IntHeapSelect;
  * Hierarchical clustering has the distinct advantage that any valid measure
  * of distance can be used. In fact, the observations themselves are not
  * required: all that is used is a matrix of distances.
+ * <p>
+ * The proximity matrix takes O(n<sup>2</sup>) memory, which is prohibitive
+ * for large data. Single linkage clustering is equivalent to the minimum
+ * spanning tree, which can be computed with Prim's algorithm in O(n)
+ * memory by computing the distances on the fly. Similarly, Ward's linkage
+ * of Euclidean distance can be computed from the cluster centroids only.
+ * Both are provided by {@link #single(Object[], Distance)} and
+ * {@link #ward(double[][])}, which evaluate the distances in parallel.
+ * For the proximity matrix of reducible linkages (single, complete,
+ * UPGMA, WPGMA and Ward), the nearest-neighbor chain algorithm
+ * {@link #nnchain(Linkage)} takes O(n<sup>2</sup>) time.
  * 
  * <h2>References</h2>
  * <ol>
  * <li>David Eppstein. Fast hierarchical clustering and other applications of dynamic closest pairs. SODA 1998.</li>
+ * <li>Daniel Mullner. Modern hierarchical, agglomerative clustering algorithms. arXiv:1109.2378, 2011.</li>
+ * <li>F. Murtagh. A survey of recent advances in hierarchical clustering algorithms. The Computer Journal, 26(4):354-359, 1983.</li>
  * </ol>
  * 
  * @see Linkage
@@ -124,6 +138,326 @@ public class HierarchicalClustering implements Serializable {
         return new HierarchicalClustering(merge, height);
     }
 
+    /**
+     * Fits the Agglomerative Hierarchical Clustering with the
+     * nearest-neighbor chain algorithm, which takes O(n<sup>2</sup>)
+     * time. It follows a chain of nearest neighbors until reaching
+     * a pair of reciprocal nearest neighbors, which are merged.
+     * The algorithm is applicable to reducible linkages only, i.e.
+     * single, complete, UPGMA, WPGMA and Ward's linkage.
+     *
+     * @param linkage a reducible linkage method to merge clusters.
+     *                The linkage object includes the proximity matrix of data.
+     * @return the model.
+     */
+    public static HierarchicalClustering nnchain(Linkage linkage) {
+        if (!(linkage instanceof SingleLinkage || linkage instanceof CompleteLinkage ||
+              linkage instanceof UPGMALinkage || linkage instanceof WPGMALinkage || linkage instanceof WardLinkage)) {
+            throw new IllegalArgumentException("Nearest-neighbor chain doesn't support non-reducible " + linkage);
+        }
+
+        int n = linkage.size();
+        int[] a = new int[n - 1];
+        int[] b = new int[n - 1];
+        double[] h = new double[n - 1];
+
+        // The list of active clusters, which are indexed by
+        // the smallest observation in the cluster.
+        int[] active = new int[n];
+        int[] pos = new int[n];
+        for (int i = 0; i < n; i++) {
+            active[i] = i;
+            pos[i] = i;
+        }
+
+        int size = n;
+        int[] chain = new int[n];
+        int length = 0;
+        for (int step = 0; step < n - 1; step++) {
+            if (length == 0) {
+                chain[length++] = active[0];
+            }
+
+            while (true) {
+                int x = chain[length - 1];
+                // Prefer the previous cluster in the chain on ties
+                // so that the chain never goes into a cycle.
+                int y = length > 1 ? chain[length - 2] : -1;
+                float d = y >= 0 ? linkage.d(x, y) : Float.POSITIVE_INFINITY;
+                for (int t = 0; t < size; t++) {
+                    int k = active[t];
+                    if (k != x) {
+                        float dk = linkage.d(x, k);
+                        if (dk < d) {
+                            d = dk;
+                            y = k;
+                        }
+                    }
+                }
+
+                if (length > 1 && y == chain[length - 2]) {
+                    length -= 2;
+                    int i = Math.min(x, y);
+                    int j = Math.max(x, y);
+                    linkage.merge(i, j);
+
+                    int last = active[--size];
+                    active[pos[j]] = last;
+                    pos[last] = pos[j];
+
+                    a[step] = i;
+                    b[step] = j;
+                    h[step] = d;
+                    break;
+                }
+
+                chain[length++] = y;
+            }
+        }
+
+        if (linkage instanceof WardLinkage) {
+            for (int i = 0; i < h.length; i++) {
+                h[i] = Math.sqrt(h[i]);
+            }
+        }
+
+        return of(a, b, h);
+    }
+
+    /**
+     * Fits the single linkage clustering of Euclidean distance with
+     * the minimum spanning tree, which doesn't store the proximity matrix.
+     *
+     * @param data the data points.
+     * @return the model.
+     */
+    public static HierarchicalClustering single(double[][] data) {
+        return single(data, MathEx::distance);
+    }
+
+    /**
+     * Fits the single linkage clustering with the minimum spanning tree
+     * by Prim's algorithm. It takes O(n<sup>2</sup>) distance computations,
+     * which are evaluated in parallel, but only O(n) memory.
+     *
+     * @param data the data points.
+     * @param distance the distance function.
+     * @param <T> the data type of points.
+     * @return the model.
+     */
+    public static <T> HierarchicalClustering single(T[] data, Distance<T> distance) {
+        int n = data.length;
+        if (n < 2) {
+            throw new IllegalArgumentException("Invalid data size: " + n);
+        }
+
+        int[] a = new int[n - 1];
+        int[] b = new int[n - 1];
+        double[] h = new double[n - 1];
+
+        // The distance of points out of tree to the tree,
+        // and the closest point in the tree.
+        double[] dist = new double[n];
+        int[] nearest = new int[n];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+
+        int[] remaining = new int[n - 1];
+        for (int i = 0; i < n - 1; i++) {
+            remaining[i] = i + 1;
+        }
+
+        int size = n - 1;
+        int p = 0;
+        for (int step = 0; step < n - 1; step++) {
+            T xp = data[p];
+            int q = p;
+            stream(size).forEach(t -> {
+                int k = remaining[t];
+                double d = distance.d(xp, data[k]);
+                if (d < dist[k]) {
+                    dist[k] = d;
+                    nearest[k] = q;
+                }
+            });
+
+            int r = 0;
+            for (int t = 1; t < size; t++) {
+                if (dist[remaining[t]] < dist[remaining[r]]) {
+                    r = t;
+                }
+            }
+
+            p = remaining[r];
+            remaining[r] = remaining[--size];
+            a[step] = nearest[p];
+            b[step] = p;
+            h[step] = dist[p];
+        }
+
+        return of(a, b, h);
+    }
+
+    /**
+     * Fits the Ward's linkage clustering of Euclidean distance with
+     * the nearest-neighbor chain algorithm. The dissimilarity of clusters
+     * is computed from the centroids on the fly in parallel. Therefore,
+     * it takes only O(n) memory in addition to the data. The clustering
+     * height is same as {@link WardLinkage}.
+     *
+     * @param data the data points.
+     * @return the model.
+     */
+    public static HierarchicalClustering ward(double[][] data) {
+        int n = data.length;
+        if (n < 2) {
+            throw new IllegalArgumentException("Invalid data size: " + n);
+        }
+
+        int[] a = new int[n - 1];
+        int[] b = new int[n - 1];
+        double[] h = new double[n - 1];
+
+        double[][] centroid = new double[n][];
+        int[] count = new int[n];
+        int[] active = new int[n];
+        int[] pos = new int[n];
+        for (int i = 0; i < n; i++) {
+            centroid[i] = data[i].clone();
+            count[i] = 1;
+            active[i] = i;
+            pos[i] = i;
+        }
+
+        int size = n;
+        double[] dist = new double[n];
+        int[] chain = new int[n];
+        int length = 0;
+        for (int step = 0; step < n - 1; step++) {
+            if (length == 0) {
+                chain[length++] = active[0];
+            }
+
+            while (true) {
+                int x = chain[length - 1];
+                double[] cx = centroid[x];
+                double nx = count[x];
+                stream(size).forEach(t -> {
+                    int k = active[t];
+                    double nk = count[k];
+                    dist[t] = nx * nk / (nx + nk) * MathEx.squaredDistance(cx, centroid[k]);
+                });
+
+                // Prefer the previous cluster in the chain on ties
+                // so that the chain never goes into a cycle.
+                int y = length > 1 ? chain[length - 2] : -1;
+                double d = y >= 0 ? dist[pos[y]] : Double.POSITIVE_INFINITY;
+                for (int t = 0; t < size; t++) {
+                    int k = active[t];
+                    if (k != x && dist[t] < d) {
+                        d = dist[t];
+                        y = k;
+                    }
+                }
+
+                if (length > 1 && y == chain[length - 2]) {
+                    length -= 2;
+                    int i = Math.min(x, y);
+                    int j = Math.max(x, y);
+
+                    double[] ci = centroid[i];
+                    double[] cj = centroid[j];
+                    double ni = count[i];
+                    double nj = count[j];
+                    for (int l = 0; l < ci.length; l++) {
+                        ci[l] = (ni * ci[l] + nj * cj[l]) / (ni + nj);
+                    }
+                    count[i] += count[j];
+                    centroid[j] = null;
+
+                    int last = active[--size];
+                    active[pos[j]] = last;
+                    pos[last] = pos[j];
+
+                    a[step] = i;
+                    b[step] = j;
+                    // The increase of ESS is half of Lance-Williams
+                    // update of squared Euclidean distance.
+                    h[step] = Math.sqrt(2 * d);
+                    break;
+                }
+
+                chain[length++] = y;
+            }
+        }
+
+        return of(a, b, h);
+    }
+
+    /**
+     * Returns a stream of indices, which is parallel if
+     * the range is large enough to pay off the overhead.
+     */
+    private static IntStream stream(int size) {
+        IntStream stream = IntStream.range(0, size);
+        return size >= 1000 ? stream.parallel() : stream;
+    }
+
+    /**
+     * Builds the merge tree from the merges in arbitrary order.
+     * The merges are sorted by height. A merge is given as a pair of
+     * observations, one from each cluster, which are identified with
+     * union-find.
+     *
+     * @param a the observation in one cluster of merges.
+     * @param b the observation in the other cluster of merges.
+     * @param h the merge height.
+     * @return the model.
+     */
+    private static HierarchicalClustering of(int[] a, int[] b, double[] h) {
+        int n = h.length + 1;
+        // Stable sort so that the merges of same height
+        // keep their order of dependency.
+        Integer[] order = new Integer[n - 1];
+        for (int i = 0; i < n - 1; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (i, j) -> Double.compare(h[i], h[j]));
+
+        int[] parent = new int[n];
+        int[] id = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+            id[i] = i;
+        }
+
+        int[][] merge = new int[n - 1][2];
+        double[] height = new double[n - 1];
+        for (int i = 0; i < n - 1; i++) {
+            int k = order[i];
+            int p = find(parent, a[k]);
+            int q = find(parent, b[k]);
+            merge[i][0] = Math.min(id[p], id[q]);
+            merge[i][1] = Math.max(id[p], id[q]);
+            height[i] = h[k];
+
+            parent[q] = p;
+            id[p] = n + i;
+        }
+
+        return new HierarchicalClustering(merge, height);
+    }
+
+    /**
+     * Returns the root of union-find tree with path halving.
+     */
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
     /**
      * Returns an n-1 by 2 matrix of which row i describes the merging of clusters at
      * step i of the clustering. If an element j in the row is less than n, then
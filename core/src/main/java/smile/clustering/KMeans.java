@@ -17,6 +17,8 @@
 
 package smile.clustering;
 
+import java.util.Arrays;
+import java.util.stream.IntStream;
 import smile.math.MathEx;
 
 /**
@@ -50,7 +52,11 @@ import smile.math.MathEx;
  * that is O(log k) competitive to the optimal k-means solution.
  * <p>
  * We also use k-d trees to speed up each k-means step as described in the filter
- * algorithm by Kanungo, et al.
+ * algorithm by Kanungo, et al. As the filter algorithm degenerates in high
+ * dimensional space, Hamerly's algorithm is also provided, which skips most
+ * distance computations of Lloyd's algorithm with the triangle inequality
+ * while producing the same result. For very large data sets, see
+ * {@link MiniBatchKMeans}.
  * <p>
  * K-means is a hard clustering method, i.e. each observation is assigned to
  * a specific cluster. In contrast, soft clustering, e.g. the
@@ -62,11 +68,13 @@ import smile.math.MathEx;
  * <li> Tapas Kanungo, David M. Mount, Nathan S. Netanyahu, Christine D. Piatko, Ruth Silverman, and Angela Y. Wu. An Efficient k-Means Clustering Algorithm: Analysis and Implementation. IEEE TRANS. PAMI, 2002.</li>
  * <li> D. Arthur and S. Vassilvitskii. "K-means++: the advantages of careful seeding". ACM-SIAM symposium on Discrete algorithms, 1027-1035, 2007.</li>
  * <li> Anna D. Peterson, Arka P. Ghosh and Ranjan Maitra. A systematic evaluation of different methods for initializing the K-means clustering algorithm. 2010.</li>
+ * <li> Greg Hamerly. Making k-means even faster. SIAM International Conference on Data Mining, 2010.</li>
  * </ol>
  * 
  * @see XMeans
  * @see GMeans
  * @see CLARANS
+ * @see MiniBatchKMeans
  * @see SIB
  * @see smile.vq.SOM
  * @see smile.vq.NeuralGas
@@ -74,7 +82,7 @@ import smile.math.MathEx;
  * 
  * @author Haifeng Li
  */
-public class KMeans extends CentroidClustering<double[], double[]> {
+public class KMeans extends EuclideanCentroidClustering {
     private static final long serialVersionUID = 2L;
     private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(KMeans.class);
 
@@ -88,11 +96,6 @@ public class KMeans extends CentroidClustering<double[], double[]> {
         super(distortion, centroids, y);
     }
 
-    @Override
-    protected double distance(double[] x, double[] y) {
-        return MathEx.squaredDistance(x, y);
-    }
-
     /**
      * Partitions data into k clusters up to 100 iterations.
      * @param data the input data of which each row is an observation.
@@ -139,7 +142,7 @@ public class KMeans extends CentroidClustering<double[], double[]> {
         int[] y = new int[n];
         double[][] medoids = new double[k][];
 
-        double distortion = MathEx.sum(seed(data, medoids, y, MathEx::squaredDistance));
+        double distortion = MathEx.sum(seed(data, medoids, y));
         logger.info(String.format("Distortion after initialization: %.4f", distortion));
 
         // Initialize the centroids
@@ -225,6 +228,160 @@ public class KMeans extends CentroidClustering<double[], double[]> {
             public double distance(double[] x, double[] y) {
                 return MathEx.squaredDistanceWithMissingValues(x, y);
             }
+
+            @Override
+            public int predict(double[] x) {
+                // The batch distance kernel doesn't handle missing values.
+                double[] dist = new double[k];
+                for (int i = 0; i < k; i++) {
+                    dist[i] = distance(x, centroids[i]);
+                }
+                return MathEx.whichMin(dist);
+            }
         };
     }
+
+    /**
+     * Partitions data into k clusters with Hamerly's algorithm, which is
+     * an exact acceleration of Lloyd's algorithm. It maintains an upper
+     * bound of the distance from each sample to its assigned centroid,
+     * and a lower bound of the distance to the second closest centroid.
+     * With the triangle inequality, the distances to centroids are not
+     * computed unless the bounds overlap. It requires O(n) extra memory
+     * only and is effective in high dimensional space, where the
+     * BBD-tree filtering degenerates. The data cannot contain missing
+     * values. The algorithm runs up to 100 iterations.
+     * @param data the input data of which each row is an observation.
+     * @param k the number of clusters.
+     * @return the model.
+     */
+    public static KMeans hamerly(double[][] data, int k) {
+        return hamerly(data, k, 100, 1E-4);
+    }
+
+    /**
+     * Partitions data into k clusters with Hamerly's algorithm, which is
+     * an exact acceleration of Lloyd's algorithm. The data cannot contain
+     * missing values.
+     * @param data the input data of which each row is an observation.
+     * @param k the number of clusters.
+     * @param maxIter the maximum number of iterations.
+     * @param tol the tolerance of convergence test.
+     * @return the model.
+     */
+    public static KMeans hamerly(double[][] data, int k, int maxIter, double tol) {
+        if (k < 2) {
+            throw new IllegalArgumentException("Invalid number of clusters: " + k);
+        }
+
+        if (maxIter <= 0) {
+            throw new IllegalArgumentException("Invalid maximum number of iterations: " + maxIter);
+        }
+
+        int n = data.length;
+        int d = data[0].length;
+
+        int[] y = new int[n];
+        double[][] medoids = new double[k][];
+
+        double distortion = MathEx.sum(seed(data, medoids, y));
+        logger.info(String.format("Distortion after initialization: %.4f", distortion));
+
+        int[] size = new int[k];
+        double[][] centroids = new double[k][d];
+        updateCentroids(centroids, data, y, size);
+
+        // The upper bound of distance to the assigned centroid,
+        // and the lower bound of distance to the second closest one.
+        double[] upper = new double[n];
+        double[] lower = new double[n];
+        // Forces the full search in the first iteration.
+        Arrays.fill(upper, Double.POSITIVE_INFINITY);
+
+        double[] s = new double[k];
+        double[] move = new double[k];
+        double[][] old = new double[k][d];
+
+        double diff = Double.MAX_VALUE;
+        for (int iter = 1; iter <= maxIter && diff > tol; iter++) {
+            // Half of the distance to the closest other centroid.
+            IntStream.range(0, k).parallel().forEach(j -> {
+                double min = Double.MAX_VALUE;
+                for (int l = 0; l < k; l++) {
+                    if (l != j) {
+                        min = Math.min(min, MathEx.distance(centroids[j], centroids[l]));
+                    }
+                }
+                s[j] = 0.5 * min;
+            });
+
+            int changes = IntStream.range(0, n).parallel().map(i -> {
+                int yi = y[i];
+                double m = Math.max(s[yi], lower[i]);
+                if (upper[i] <= m) return 0;
+
+                // Tighten the upper bound.
+                upper[i] = MathEx.distance(data[i], centroids[yi]);
+                if (upper[i] <= m) return 0;
+
+                double[] dist = new double[k];
+                MathEx.squaredDistance(data[i], centroids, dist);
+
+                double nearest = Double.MAX_VALUE;
+                double second = Double.MAX_VALUE;
+                int label = yi;
+                for (int j = 0; j < k; j++) {
+                    if (dist[j] < nearest) {
+                        second = nearest;
+                        nearest = dist[j];
+                        label = j;
+                    } else if (dist[j] < second) {
+                        second = dist[j];
+                    }
+                }
+
+                upper[i] = Math.sqrt(nearest);
+                lower[i] = Math.sqrt(second);
+                if (label != yi) {
+                    y[i] = label;
+                    return 1;
+                }
+                return 0;
+            }).sum();
+
+            for (int j = 0; j < k; j++) {
+                System.arraycopy(centroids[j], 0, old[j], 0, d);
+            }
+            updateCentroids(centroids, data, y, size);
+
+            int r = 0;
+            for (int j = 0; j < k; j++) {
+                move[j] = MathEx.distance(old[j], centroids[j]);
+                if (move[j] > move[r]) r = j;
+            }
+
+            double max = move[r];
+            double second = 0.0;
+            for (int j = 0; j < k; j++) {
+                if (j != r && move[j] > second) second = move[j];
+            }
+
+            int far = r;
+            double farthest = max;
+            double secondFarthest = second;
+            IntStream.range(0, n).parallel().forEach(i -> {
+                int yi = y[i];
+                upper[i] += move[yi];
+                lower[i] -= yi == far ? secondFarthest : farthest;
+            });
+
+            double wcss = IntStream.range(0, n).parallel().mapToDouble(i -> MathEx.squaredDistance(data[i], centroids[y[i]])).sum();
+            logger.info(String.format("Distortion after %3d iterations: %.4f, %d reassignments", iter, wcss, changes));
+
+            diff = changes == 0 ? 0.0 : distortion - wcss;
+            distortion = wcss;
+        }
+
+        return new KMeans(distortion, centroids, y);
+    }
 }
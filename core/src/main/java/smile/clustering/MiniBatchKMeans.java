@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.clustering;
+
+import java.io.Serializable;
+import smile.math.MathEx;
+
+/**
+ * Mini-batch K-Means clustering. Each iteration of Lloyd's algorithm
+ * touches every sample, which is prohibitive for very large data.
+ * Mini-batch K-Means updates the centroids with small random batches
+ * of samples instead. Each centroid moves toward the samples assigned
+ * to it with a per-centroid learning rate that is the inverse of the
+ * number of samples assigned to it so far, i.e. a centroid is the
+ * running mean of its samples. It converges much faster than Lloyd's
+ * algorithm with slightly worse cluster quality.
+ * <p>
+ * As the model keeps the centroids and counts only, it also supports
+ * streaming (out-of-core) learning with {@link #update(double[][])},
+ * which may be called with successive batches of a data stream.
+ *
+ * <h2>References</h2>
+ * <ol>
+ * <li> D. Sculley. Web-scale k-means clustering. WWW, 2010.</li>
+ * </ol>
+ *
+ * @see KMeans
+ *
+ * @author Haifeng Li
+ */
+public class MiniBatchKMeans implements Serializable {
+    private static final long serialVersionUID = 2L;
+    private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(MiniBatchKMeans.class);
+
+    /**
+     * The centroids of each cluster.
+     */
+    private final double[][] centroids;
+    /**
+     * The number of samples assigned to each cluster so far.
+     */
+    private final long[] count;
+
+    /**
+     * Constructor.
+     * @param centroids the initial centroids.
+     */
+    public MiniBatchKMeans(double[][] centroids) {
+        if (centroids.length < 2) {
+            throw new IllegalArgumentException("Invalid number of clusters: " + centroids.length);
+        }
+
+        this.centroids = centroids;
+        this.count = new long[centroids.length];
+    }
+
+    /**
+     * Initializes the centroids with k-means++ seeding on a sample of data.
+     * @param sample a sample of data, e.g. the first batch of a stream.
+     * @param k the number of clusters.
+     * @return the model.
+     */
+    public static MiniBatchKMeans of(double[][] sample, int k) {
+        if (k < 2) {
+            throw new IllegalArgumentException("Invalid number of clusters: " + k);
+        }
+
+        if (sample.length < k) {
+            throw new IllegalArgumentException(String.format("The sample size %d is smaller than the number of clusters %d", sample.length, k));
+        }
+
+        double[][] medoids = new double[k][];
+        PartitionClustering.seed(sample, medoids, new int[sample.length]);
+
+        double[][] centroids = new double[k][];
+        for (int i = 0; i < k; i++) {
+            centroids[i] = medoids[i].clone();
+        }
+
+        return new MiniBatchKMeans(centroids);
+    }
+
+    /**
+     * Partitions data into k clusters with batches of 1024 samples up to
+     * 100 iterations. The training stops early when the smoothed average
+     * distortion of batches hasn't improved in 10 batches.
+     * @param data the input data of which each row is an observation.
+     * @param k the number of clusters.
+     * @return the model.
+     */
+    public static KMeans fit(double[][] data, int k) {
+        return fit(data, k, 1024, 100, 0.0);
+    }
+
+    /**
+     * Partitions data into k clusters. The centroids are initialized by
+     * k-means++ on a random sample of data. The training stops when the
+     * total squared shift of centroids by a batch is no more than
+     * {@code tol} times the average variance of features, or when the
+     * smoothed average distortion of batches hasn't reached a new
+     * minimum in the last {@code maxNoImprovement} batches.
+     * @param data the input data of which each row is an observation.
+     * @param k the number of clusters.
+     * @param batchSize the number of samples in a batch.
+     * @param maxIter the maximum number of iterations (batches).
+     * @param tol the tolerance of convergence test. The centroid shift test
+     *            is disabled if it is 0.
+     * @return the model.
+     */
+    public static KMeans fit(double[][] data, int k, int batchSize, int maxIter, double tol) {
+        return fit(data, k, batchSize, maxIter, tol, 10);
+    }
+
+    /**
+     * Partitions data into k clusters. The centroids are initialized by
+     * k-means++ on a random sample of data. The training stops when the
+     * total squared shift of centroids by a batch is no more than
+     * {@code tol} times the average variance of features, or when the
+     * smoothed average distortion of batches hasn't reached a new
+     * minimum in the last {@code maxNoImprovement} batches.
+     * @param data the input data of which each row is an observation.
+     * @param k the number of clusters.
+     * @param batchSize the number of samples in a batch.
+     * @param maxIter the maximum number of iterations (batches).
+     * @param tol the tolerance of convergence test. The centroid shift test
+     *            is disabled if it is 0.
+     * @param maxNoImprovement the maximum number of consecutive batches
+     *                         that don't improve the smoothed distortion.
+     * @return the model.
+     */
+    public static KMeans fit(double[][] data, int k, int batchSize, int maxIter, double tol, int maxNoImprovement) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+        }
+
+        if (maxIter <= 0) {
+            throw new IllegalArgumentException("Invalid maximum number of iterations: " + maxIter);
+        }
+
+        if (maxNoImprovement <= 0) {
+            throw new IllegalArgumentException("Invalid maximum number of no improvement iterations: " + maxNoImprovement);
+        }
+
+        int n = data.length;
+        int b = Math.min(n, batchSize);
+        // Seeding on a larger sample gives better initial centroids.
+        double[][] sample = sample(data, Math.min(n, Math.max(3 * b, k)));
+        MiniBatchKMeans model = of(sample, k);
+        // The tolerance of centroid shift is relative to the data scale.
+        double[] sd = MathEx.colSds(sample);
+        model.train(data, b, maxIter, tol * MathEx.dot(sd, sd) / sd.length, maxNoImprovement);
+        return model.toKMeans(data);
+    }
+
+    /**
+     * Updates the model with random batches of data until convergence.
+     * @param data the input data of which each row is an observation.
+     * @param b the number of samples in a batch.
+     * @param maxIter the maximum number of iterations (batches).
+     * @param threshold the threshold of total squared centroid shift.
+     * @param maxNoImprovement the maximum number of consecutive batches
+     *                         that don't improve the smoothed distortion.
+     * @return the number of iterations (batches).
+     */
+    int train(double[][] data, int b, int maxIter, double threshold, int maxNoImprovement) {
+        int n = data.length;
+        int k = centroids.length;
+        int d = centroids[0].length;
+        double[][] prev = new double[k][d];
+        double[][] batch = new double[b][];
+        double ewa = 0.0;
+        double best = Double.MAX_VALUE;
+        int noImprovement = 0;
+        double alpha = Math.min(1.0, 2.0 * b / (n + 1));
+        int iter = 1;
+        for (; iter <= maxIter; iter++) {
+            for (int i = 0; i < b; i++) {
+                batch[i] = data[MathEx.randomInt(n)];
+            }
+
+            for (int i = 0; i < k; i++) {
+                System.arraycopy(centroids[i], 0, prev[i], 0, d);
+            }
+
+            double distortion = update(batch) / b;
+            // The first batch moves the seeds to running means and
+            // is not informative of convergence.
+            if (iter == 1) {
+                ewa = distortion;
+                continue;
+            }
+
+            ewa = (1.0 - alpha) * ewa + alpha * distortion;
+            if (iter % 10 == 0) {
+                logger.info(String.format("Average distortion after %3d iterations: %.4f", iter, ewa));
+            }
+
+            double shift = 0.0;
+            for (int i = 0; i < k; i++) {
+                shift += MathEx.squaredDistance(prev[i], centroids[i]);
+            }
+
+            if (threshold > 0.0 && shift <= threshold) {
+                logger.info(String.format("Converged after %3d iterations: centroid shift %.4g", iter, shift));
+                break;
+            }
+
+            if (ewa < best) {
+                best = ewa;
+                noImprovement = 0;
+            } else if (++noImprovement >= maxNoImprovement) {
+                logger.info(String.format("Converged after %3d iterations: no improvement in %d iterations", iter, noImprovement));
+                break;
+            }
+        }
+
+        return Math.min(iter, maxIter);
+    }
+
+    /**
+     * Returns a random sample without replacement.
+     */
+    private static double[][] sample(double[][] data, int size) {
+        int[] index = MathEx.permutate(data.length);
+        double[][] sample = new double[size][];
+        for (int i = 0; i < size; i++) {
+            sample[i] = data[index[i]];
+        }
+        return sample;
+    }
+
+    /**
+     * Updates the centroids with a batch of samples. The nearest
+     * centroids of samples are found in parallel before the update.
+     * @param batch a batch of samples.
+     * @return the distortion of batch before the update.
+     */
+    public double update(double[][] batch) {
+        int b = batch.length;
+        int[] y = new int[b];
+        double distortion = CentroidClustering.assign(y, batch, centroids);
+
+        int d = centroids[0].length;
+        for (int i = 0; i < b; i++) {
+            double[] c = centroids[y[i]];
+            double[] x = batch[i];
+            double eta = 1.0 / ++count[y[i]];
+            for (int j = 0; j < d; j++) {
+                c[j] += eta * (x[j] - c[j]);
+            }
+        }
+
+        return distortion;
+    }
+
+    /**
+     * Returns the centroids. The centroids are updated in place
+     * by subsequent calls of {@link #update(double[][])}.
+     * @return the centroids.
+     */
+    public double[][] centroids() {
+        return centroids;
+    }
+
+    /**
+     * Returns the number of samples assigned to each cluster so far.
+     * @return the number of samples assigned to each cluster.
+     */
+    public long[] count() {
+        return count;
+    }
+
+    /**
+     * Returns the cluster label of a sample.
+     * @param x a sample.
+     * @return the cluster label.
+     */
+    public int predict(double[] x) {
+        return EuclideanCentroidClustering.nearest(x, centroids);
+    }
+
+    /**
+     * Returns the K-Means model of the current centroids. The data
+     * are assigned to the nearest centroids in parallel.
+     * @param data the input data of which each row is an observation.
+     * @return the K-Means model.
+     */
+    public KMeans toKMeans(double[][] data) {
+        int k = centroids.length;
+        double[][] c = new double[k][];
+        for (int i = 0; i < k; i++) {
+            c[i] = centroids[i].clone();
+        }
+
+        int[] y = new int[data.length];
+        double distortion = CentroidClustering.assign(y, data, c);
+        return new KMeans(distortion, c, y);
+    }
+}
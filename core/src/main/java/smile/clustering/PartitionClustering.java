@@ -163,6 +163,58 @@ public abstract class PartitionClustering implements Serializable {
         return d;
     }
 
+    /**
+     * Initialize cluster membership of input objects with K-Means++
+     * algorithm in squared Euclidean distance. The distances to each
+     * new center are computed in blocks with the batch distance kernel.
+     *
+     * @param data data objects array of size n.
+     * @param medoids an array of size k to store cluster medoids on output.
+     * @param y an array of size n to store cluster labels on output.
+     * @return an array of size n to store the distance of each observation to nearest medoid.
+     */
+    public static double[] seed(double[][] data, double[][] medoids, int[] y) {
+        int n = data.length;
+        int k = medoids.length;
+        double[] d = new double[n];
+        double[] dist = new double[n];
+        medoids[0] = data[MathEx.randomInt(n)];
+
+        Arrays.fill(d, Double.MAX_VALUE);
+
+        int block = 1024;
+        int blocks = (n + block - 1) / block;
+        for (int j = 1; j <= k; j++) {
+            final int prev = j - 1;
+            final double[] medoid = medoids[prev];
+            IntStream.range(0, blocks).parallel().forEach(b -> {
+                int from = b * block;
+                int to = Math.min(n, from + block);
+                MathEx.squaredDistance(medoid, data, from, to, dist);
+                for (int i = from; i < to; i++) {
+                    if (dist[i] < d[i]) {
+                        d[i] = dist[i];
+                        y[i] = prev;
+                    }
+                }
+            });
+
+            if (j < k) {
+                double cost = 0.0;
+                double cutoff = MathEx.random() * MathEx.sum(d);
+                for (int index = 0; index < n; index++) {
+                    cost += d[index];
+                    if (cost >= cutoff) {
+                        medoids[j] = data[index];
+                        break;
+                    }
+                }
+            }
+        }
+
+        return d;
+    }
+
     /**
      * Runs a clustering algorithm multiple times and return the best one
      * (e.g. smallest distortion).
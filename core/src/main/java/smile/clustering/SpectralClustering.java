@@ -21,6 +21,7 @@ import java.io.Serializable;
 import java.util.stream.IntStream;
 
 import smile.math.MathEx;
+import smile.math.PairwiseDistance;
 import smile.math.blas.UPLO;
 import smile.math.matrix.ARPACK;
 import smile.math.matrix.Matrix;
@@ -156,13 +157,15 @@ public class SpectralClustering extends PartitionClustering implements Serializa
         double gamma = -0.5 / (sigma * sigma);
 
         Matrix W = new Matrix(n, n);
-        for (int i = 0; i < n; i++) {
-            for (int j = 0; j < i; j++) {
-                double w = Math.exp(gamma * MathEx.squaredDistance(data[i], data[j]));
-                W.set(i, j, w);
-                W.set(j, i, w);
+        PairwiseDistance.pdist(data, true, PairwiseDistance.TILE_SIZE, (row, col, m, l, d) -> {
+            for (int i = 0; i < m; i++) {
+                for (int j = 0; j < l && col + j < row + i; j++) {
+                    double w = Math.exp(gamma * d[i * l + j]);
+                    W.set(row + i, col + j, w);
+                    W.set(col + j, row + i, w);
+                }
             }
-        }
+        });
 
         return fit(W, k, maxIter, tol);
     }
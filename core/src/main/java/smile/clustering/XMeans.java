@@ -43,7 +43,7 @@ import smile.sort.QuickSort;
  * 
  * @author Haifeng Li
  */
-public class XMeans extends CentroidClustering<double[], double[]> {
+public class XMeans extends EuclideanCentroidClustering {
     private static final long serialVersionUID = 2L;
     private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(XMeans.class);
     private static final double LOG2PI = Math.log(Math.PI * 2.0);
@@ -58,11 +58,6 @@ public class XMeans extends CentroidClustering<double[], double[]> {
         super(distortion, centroids, y);
     }
 
-    @Override
-    protected double distance(double[] x, double[] y) {
-        return MathEx.squaredDistance(x, y);
-    }
-
     /**
      * Clustering data with the number of clusters
      * determined by X-Means algorithm automatically.
@@ -18,7 +18,7 @@
 package smile.clustering.linkage;
 
 import java.util.stream.IntStream;
-import smile.math.MathEx;
+import smile.math.PairwiseDistance;
 import smile.math.distance.Distance;
 
 /**
@@ -134,13 +134,28 @@ public abstract class Linkage {
 
     /**
      * Computes the proximity matrix (linearized in column major)
-     * based on Euclidean distance.
+     * based on Euclidean distance. The distances are computed
+     * by matrix multiplication in parallel tiles.
      *
      * @param data the data points.
      * @return the linearized proximity matrix based on Eulidean distance.
      */
     public static float[] proximity(double[][] data) {
-        return proximity(data, MathEx::distance);
+        int n = data.length;
+        int length = n * (n+1) / 2;
+
+        float[] proximity = new float[length];
+        PairwiseDistance.pdist(data, false, PairwiseDistance.TILE_SIZE, (row, col, m, k, d) -> {
+            for (int i = 0; i < m; i++) {
+                int ii = row + i;
+                for (int j = 0; j < k && col + j < ii; j++) {
+                    int jj = col + j;
+                    proximity[length - (n-jj)*(n-jj+1)/2 + ii - jj] = (float) d[i * k + j];
+                }
+            }
+        });
+
+        return proximity;
     }
 
     /**
@@ -21,7 +21,6 @@ import smile.graph.AdjacencyList;
 import smile.math.distance.Distance;
 import smile.math.distance.EuclideanDistance;
 import smile.neighbor.LinearSearch;
-import smile.neighbor.Neighbor;
 
 /**
  * Nearest neighbor graph builder.
@@ -90,22 +89,17 @@ class NearestNeighborGraph {
         int n = data.length;
         AdjacencyList graph = new AdjacencyList(n, digraph);
 
-        if (consumer != null) {
-            for (int i = 0; i < n; i++) {
-                Neighbor<T, T>[] neighbors = knn.knn(data[i], k);
-
-                int v1 = i;
-                for (int j = 0; j < neighbors.length; j++) {
-                    int v2 = neighbors[j].index;
-                    double weight = neighbors[j].distance;
-                    graph.setWeight(v1, v2, weight);
-                    consumer.accept(v1, v2, weight, j);
-                }
-            }
-        } else {
-            for (int i = 0; i < n; i++) {
-                for (Neighbor<T, T> neighbor : knn.knn(data[i], k)) {
-                    graph.setWeight(i, neighbor.index, neighbor.distance);
+        int[] index = new int[n * k];
+        double[] dist = new double[n * k];
+        knn.knn(data, k, index, dist);
+
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < k; j++) {
+                int v2 = index[i * k + j];
+                double weight = dist[i * k + j];
+                graph.setWeight(i, v2, weight);
+                if (consumer != null) {
+                    consumer.accept(i, v2, weight, j);
                 }
             }
         }
@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.manifold;
+
+import java.util.Arrays;
+
+/**
+ * Space-partitioning tree for Barnes-Hut approximation of t-SNE gradient.
+ * It is the quadtree in 2-dimensional space and octree in 3-dimensional
+ * space. Each internal node splits its cell at the center into 2<sup>d</sup>
+ * equally sized children and keeps the center of mass and the number of
+ * points in the cell. As every internal node holds 2<sup>d</sup> child
+ * slots, the tree is only practical for the low dimensional embedding
+ * space and higher dimensions are rejected.
+ *
+ * <h2>References</h2>
+ * <ol>
+ * <li>L.J.P. van der Maaten. Accelerating t-SNE using Tree-Based Algorithms.
+ *     Journal of Machine Learning Research 15(Oct):3221-3245, 2014. </li>
+ * <li>J. Barnes and P. Hut. A hierarchical O(N log N) force-calculation
+ *     algorithm. Nature 324(4):446-449, 1986. </li>
+ * </ol>
+ *
+ * @author Haifeng Li
+ */
+class SPTree {
+    /**
+     * The cell of tree.
+     */
+    private static class Node {
+        /**
+         * The center of cell.
+         */
+        final double[] center;
+        /**
+         * The half width of cell in each dimension.
+         */
+        final double[] width;
+        /**
+         * The max half width of cell.
+         */
+        final double maxWidth;
+        /**
+         * The center of mass of the points in the cell.
+         */
+        final double[] com;
+        /**
+         * The number of points in the cell, including duplicates.
+         */
+        int size;
+        /**
+         * The index of point if this is a leaf, -1 otherwise.
+         */
+        int index = -1;
+        /**
+         * The children. Null if this is a leaf.
+         */
+        Node[] children;
+
+        /**
+         * Constructor.
+         * @param center the center of cell.
+         * @param width the half width of cell.
+         */
+        Node(double[] center, double[] width) {
+            this.center = center;
+            this.width = width;
+            this.com = new double[center.length];
+
+            double max = 0.0;
+            for (double w : width) {
+                if (w > max) max = w;
+            }
+            this.maxWidth = max;
+        }
+
+        /** Returns true if this is a leaf node. */
+        boolean isLeaf() {
+            return children == null;
+        }
+
+        /** Returns the child cell containing the point. */
+        Node child(double[] point) {
+            int d = center.length;
+            int k = 0;
+            for (int j = 0; j < d; j++) {
+                if (point[j] > center[j]) {
+                    k |= 1 << j;
+                }
+            }
+
+            Node child = children[k];
+            if (child == null) {
+                double[] c = new double[d];
+                double[] w = new double[d];
+                for (int j = 0; j < d; j++) {
+                    w[j] = 0.5 * width[j];
+                    c[j] = (k & (1 << j)) != 0 ? center[j] + w[j] : center[j] - w[j];
+                }
+                child = new Node(c, w);
+                children[k] = child;
+            }
+            return child;
+        }
+
+        /** Adds a point to the center of mass of cell. */
+        void add(double[] point) {
+            size++;
+            double w1 = (size - 1.0) / size;
+            double w2 = 1.0 / size;
+            for (int j = 0; j < com.length; j++) {
+                com[j] = w1 * com[j] + w2 * point[j];
+            }
+        }
+    }
+
+    /**
+     * The points in the tree.
+     */
+    private final double[][] data;
+    /**
+     * The root node.
+     */
+    private final Node root;
+
+    /**
+     * Constructor.
+     * @param data the points.
+     */
+    public SPTree(double[][] data) {
+        this.data = data;
+
+        int n = data.length;
+        int d = data[0].length;
+        if (d < 1 || d > 3) {
+            throw new IllegalArgumentException("Too high dimension for space-partitioning tree: " + d);
+        }
+
+        double[] mean = new double[d];
+        double[] min = new double[d];
+        double[] max = new double[d];
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        for (double[] x : data) {
+            for (int j = 0; j < d; j++) {
+                mean[j] += x[j];
+                if (x[j] < min[j]) min[j] = x[j];
+                if (x[j] > max[j]) max[j] = x[j];
+            }
+        }
+
+        double[] width = new double[d];
+        for (int j = 0; j < d; j++) {
+            mean[j] /= n;
+            width[j] = Math.max(max[j] - mean[j], mean[j] - min[j]) + 1E-5;
+        }
+
+        root = new Node(mean, width);
+        for (int i = 0; i < n; i++) {
+            insert(i);
+        }
+    }
+
+    /**
+     * Inserts a point into the tree.
+     * @param i the index of point.
+     */
+    private void insert(int i) {
+        double[] point = data[i];
+        Node node = root;
+        while (true) {
+            node.add(point);
+
+            if (node.isLeaf()) {
+                if (node.size == 1) {
+                    node.index = i;
+                    return;
+                }
+
+                // Duplicate points are only counted in the center of mass.
+                if (equals(data[node.index], point)) {
+                    return;
+                }
+
+                // Subdivide the leaf and push down the existing point
+                // (with its duplicates) to the child cell.
+                int j = node.index;
+                int size = node.size - 1;
+                node.index = -1;
+                node.children = new Node[1 << point.length];
+                Node child = node.child(data[j]);
+                System.arraycopy(data[j], 0, child.com, 0, point.length);
+                child.size = size;
+                child.index = j;
+            }
+
+            node = node.child(point);
+        }
+    }
+
+    /** Returns true if two points are identical. */
+    private static boolean equals(double[] x, double[] y) {
+        for (int j = 0; j < x.length; j++) {
+            if (x[j] != y[j]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Computes the repulsive forces of t-SNE on a point with Barnes-Hut
+     * approximation.
+     *
+     * @param i the index of point.
+     * @param theta the accuracy/speed trade-off parameter. A cell is
+     *              summarized by its center of mass if the ratio of its
+     *              width to the distance from the point is less than theta.
+     * @param force the output repulsive force (unnormalized).
+     * @return the contribution of the point to the normalization term
+     *         of Student t-distribution.
+     */
+    public double nonEdgeForces(int i, double theta, double[] force) {
+        Arrays.fill(force, 0.0);
+        return nonEdgeForces(root, data[i], i, theta, force);
+    }
+
+    /**
+     * Computes the repulsive forces recursively.
+     */
+    private double nonEdgeForces(Node node, double[] point, int i, double theta, double[] force) {
+        if (node.size == 0) {
+            return 0.0;
+        }
+
+        int d = point.length;
+        double D = 0.0;
+        for (int j = 0; j < d; j++) {
+            double t = point[j] - node.com[j];
+            D += t * t;
+        }
+
+        if (node.isLeaf() || node.maxWidth < theta * Math.sqrt(D)) {
+            // The point (and so its duplicates) is stored in the leaf
+            // of same coordinates. It should not repulse itself.
+            int size = node.size;
+            if (node.isLeaf() && (node.index == i || equals(point, data[node.index]))) {
+                if (--size == 0) return 0.0;
+            }
+
+            double q = 1.0 / (1.0 + D);
+            double mult = size * q;
+            double sumQ = mult;
+            mult *= q;
+            for (int j = 0; j < d; j++) {
+                force[j] += mult * (point[j] - node.com[j]);
+            }
+            return sumQ;
+        }
+
+        double sumQ = 0.0;
+        for (Node child : node.children) {
+            if (child != null) {
+                sumQ += nonEdgeForces(child, point, i, theta, force);
+            }
+        }
+        return sumQ;
+    }
+}
@@ -21,6 +21,8 @@ import java.io.Serializable;
 import java.util.Arrays;
 import java.util.stream.IntStream;
 import smile.math.MathEx;
+import smile.neighbor.KDTree;
+import smile.sort.QuickSort;
 import smile.stat.distribution.GaussianDistribution;
 
 /**
@@ -42,6 +44,18 @@ import smile.stat.distribution.GaussianDistribution;
  * of the points in the map. Note that while the original algorithm uses
  * the Euclidean distance between objects as the base of its similarity
  * metric, this should be changed as appropriate.
+ * <p>
+ * The exact algorithm computes the full n-by-n affinity matrices and
+ * takes O(n<sup>2</sup>) time per iteration, which is only feasible
+ * for a few thousands of samples. With a positive {@code theta},
+ * the Barnes-Hut variant is employed instead. The input affinities
+ * are computed only over the {@code 3 * perplexity} nearest neighbors
+ * of each sample and stored in a sparse matrix. The repulsive forces
+ * in the gradient are approximated with a space-partitioning tree
+ * (quadtree in 2-dimensional embedding space, octree in 3-dimensional
+ * space) so that each iteration takes O(n log n) time and the memory
+ * is O(n * perplexity). The smaller theta, the more accurate but slower
+ * approximation. A value of 0.5 is generally a good trade-off.
  *
  * <h2>References</h2>
  * <ol>
@@ -97,15 +111,32 @@ public class TSNE implements Serializable {
      */
     private final double minGain         = .01;
 
+    /**
+     * The accuracy/speed trade-off parameter of Barnes-Hut approximation.
+     * If theta is 0, the exact gradient is computed.
+     */
+    private final double theta;
+
     /** The gain matrix. */
     private final double[][] gains; // adjust learning rate for each point
     /** The probability matrix of the distances in the input space. */
-    private final double[][] P;
+    private double[][] P;
     /** The probability matrix of the distances in the feature space. */
-    private final double[][] Q;
+    private double[][] Q;
     /** The sum of Q matrix. */
     private double Qsum;
 
+    /**
+     * The row pointers of sparse probability matrix in the input space
+     * for Barnes-Hut approximation. The nonzeros of row i are stored in
+     * [rowIndex[i], rowIndex[i+1]).
+     */
+    private int[] rowIndex;
+    /** The column indices of sparse probability matrix. */
+    private int[] colIndex;
+    /** The nonzero values of sparse probability matrix. */
+    private double[] nonzeros;
+
     /** Constructor. Train t-SNE for 1000 iterations, perplexity = 20 and learning rate = 200.
      *
      * @param X the input data. If X is a square matrix, it is assumed to be
@@ -126,17 +157,36 @@ public class TSNE implements Serializable {
      * @param iterations the number of iterations.
      */
     public TSNE(double[][] X, int d, double perplexity, double eta, int iterations) {
-        this.eta = eta;
-        int n = X.length;
+        this(X, d, perplexity, eta, iterations, 0.0);
+    }
 
-        double[][] D;
-        if (X.length == X[0].length) {
-            D = X;
-        } else {
-            D = new double[n][n];
-            MathEx.pdist(X, D, MathEx::squaredDistance);
+    /** Constructor. Train t-SNE for given number of iterations.
+     *
+     * @param X the input data. If X is a square matrix, it is assumed to be
+     *         the squared distance/dissimilarity matrix.
+     * @param d the dimension of embedding space.
+     * @param perplexity the perplexity of the conditional distribution.
+     * @param eta the learning rate.
+     * @param iterations the number of iterations.
+     * @param theta the accuracy/speed trade-off parameter of Barnes-Hut
+     *              approximation. If theta is 0, the exact gradient is
+     *              computed. Otherwise, the sparse input affinities and
+     *              Barnes-Hut approximation of gradient are employed,
+     *              which requires d to be 2 or 3.
+     */
+    public TSNE(double[][] X, int d, double perplexity, double eta, int iterations, double theta) {
+        if (theta < 0.0 || theta > 1.0) {
+            throw new IllegalArgumentException("Invalid theta: " + theta);
         }
 
+        if (theta > 0.0 && (d < 2 || d > 3)) {
+            throw new IllegalArgumentException("Barnes-Hut t-SNE supports only 2 or 3 dimensional embedding: " + d);
+        }
+
+        this.eta = eta;
+        this.theta = theta;
+        int n = X.length;
+
         coordinates = new double[n][d];
         double[][] Y = coordinates;
         gains = new double[n][d]; // adjust learning rate for each point
@@ -151,6 +201,20 @@ public class TSNE implements Serializable {
             }
         }
 
+        if (theta > 0.0) {
+            sparse(X, perplexity);
+            update(iterations);
+            return;
+        }
+
+        double[][] D;
+        if (X.length == X[0].length) {
+            D = X;
+        } else {
+            D = new double[n][n];
+            MathEx.pdist(X, D, MathEx::squaredDistance);
+        }
+
         // Large tolerance to speed up the search of Gaussian kernel width
         // A small difference of kernel width is not important.
         P = expd(D, perplexity, 1E-3);
@@ -184,9 +248,12 @@ public class TSNE implements Serializable {
         double[][] dC = new double[n][d];
 
         for (int iter = 1; iter <= iterations; iter++, totalIter++) {
-            Qsum = computeQ(Y, Q);
-
-            IntStream.range(0, n).parallel().forEach(i -> sne(i, dY[i], dC[i]));
+            if (theta > 0.0) {
+                bhsne(dY, dC);
+            } else {
+                Qsum = computeQ(Y, Q);
+                IntStream.range(0, n).parallel().forEach(i -> sne(i, dY[i], dC[i]));
+            }
 
             // gradient update with momentum and gains
             IntStream.range(0, n).parallel().forEach(i -> {
@@ -202,16 +269,24 @@ public class TSNE implements Serializable {
 
             if (totalIter == momentumSwitchIter) {
                 momentum = finalMomentum;
-                for (int i = 0; i < n; i++) {
-                    double[] Pi = P[i];
-                    for (int j = 0; j < n; j++) {
-                        Pi[j] /= 12.0;
+                if (theta > 0.0) {
+                    for (int i = 0; i < nonzeros.length; i++) {
+                        nonzeros[i] /= 12.0;
+                    }
+                } else {
+                    for (int i = 0; i < n; i++) {
+                        double[] Pi = P[i];
+                        for (int j = 0; j < n; j++) {
+                            Pi[j] /= 12.0;
+                        }
                     }
                 }
             }
 
             // Compute current value of cost function
-            if (iter % 100 == 0)   {
+            if (iter % 100 == 0 && theta > 0.0) {
+                logger.info("Error after {} iterations: {}", totalIter, bhcost());
+            } else if (iter % 100 == 0) {
                 double C = IntStream.range(0, n).parallel().mapToDouble(i -> {
                     double[] Pi = P[i];
                     double[] Qi = Q[i];
@@ -263,13 +338,229 @@ public class TSNE implements Serializable {
             }
         }
 
-        // Update gains
-        for (int k = 0; k < d; k++) {
+        updateGains(g, dY, dC);
+    }
+
+    /** Updates the gains of a point. */
+    private void updateGains(double[] g, double[] dY, double[] dC) {
+        for (int k = 0; k < g.length; k++) {
             g[k] = (Math.signum(dC[k]) != Math.signum(dY[k])) ? (g[k] + .2) : (g[k] * .8);
             if (g[k] < minGain) g[k] = minGain;
         }
     }
 
+    /**
+     * Computes the gradients with Barnes-Hut approximation.
+     * The attractive forces are computed over the sparse input affinities
+     * and the repulsive forces are approximated with a space-partitioning
+     * tree.
+     */
+    private void bhsne(double[][] dY, double[][] dC) {
+        double[][] Y = coordinates;
+        int n = Y.length;
+        int d = Y[0].length;
+
+        SPTree tree = new SPTree(Y);
+        double[][] F = new double[n][d];
+        double sumQ = IntStream.range(0, n).parallel()
+                .mapToDouble(i -> tree.nonEdgeForces(i, theta, F[i]))
+                .sum();
+
+        IntStream.range(0, n).parallel().forEach(i -> {
+            double[] Yi = Y[i];
+            double[] Fi = F[i];
+            double[] dCi = dC[i];
+
+            // attractive forces
+            Arrays.fill(dCi, 0.0);
+            for (int m = rowIndex[i]; m < rowIndex[i+1]; m++) {
+                double[] Yj = Y[colIndex[m]];
+                double z = nonzeros[m] / (1.0 + MathEx.squaredDistance(Yi, Yj));
+                for (int k = 0; k < d; k++) {
+                    dCi[k] += z * (Yi[k] - Yj[k]);
+                }
+            }
+
+            for (int k = 0; k < d; k++) {
+                dCi[k] = 4.0 * (dCi[k] - Fi[k] / sumQ);
+            }
+
+            updateGains(gains[i], dY[i], dCi);
+        });
+    }
+
+    /**
+     * Returns the Kullback-Leibler divergence of sparse input affinities
+     * with Barnes-Hut approximation of normalization term.
+     */
+    private double bhcost() {
+        double[][] Y = coordinates;
+        int n = Y.length;
+        int d = Y[0].length;
+
+        SPTree tree = new SPTree(Y);
+        double sumQ = IntStream.range(0, n).parallel()
+                .mapToDouble(i -> tree.nonEdgeForces(i, theta, new double[d]))
+                .sum();
+
+        return IntStream.range(0, n).parallel().mapToDouble(i -> {
+            double[] Yi = Y[i];
+            double Ci = 0.0;
+            for (int m = rowIndex[i]; m < rowIndex[i+1]; m++) {
+                double p = nonzeros[m];
+                double q = 1.0 / (1.0 + MathEx.squaredDistance(Yi, Y[colIndex[m]])) / sumQ;
+                if (Double.isNaN(q) || q < 1E-16) q = 1E-16;
+                Ci += p * MathEx.log2(p / q);
+            }
+            return Ci;
+        }).sum();
+    }
+
+    /**
+     * Computes the sparse input affinities over the nearest neighbors,
+     * which are symmetrized and normalized.
+     *
+     * @param X the input data. If X is a square matrix, it is assumed to be
+     *          the squared distance/dissimilarity matrix.
+     * @param perplexity the perplexity of the conditional distribution.
+     */
+    private void sparse(double[][] X, double perplexity) {
+        int n = X.length;
+        int k = Math.min(n - 1, (int) (3 * perplexity));
+        if (k < 1) {
+            throw new IllegalArgumentException("Too few samples or too small perplexity: " + perplexity);
+        }
+
+        int[][] neighbors = new int[n][k];
+        double[][] P = new double[n][k];
+
+        if (X.length == X[0].length) {
+            IntStream.range(0, n).parallel().forEach(i -> {
+                double[] Di = X[i].clone();
+                int[] index = IntStream.range(0, n).toArray();
+                // exclude the point itself
+                Di[i] = Double.POSITIVE_INFINITY;
+                QuickSort.sort(Di, index);
+                System.arraycopy(index, 0, neighbors[i], 0, k);
+                System.arraycopy(Di, 0, P[i], 0, k);
+            });
+        } else {
+            KDTree<double[]> tree = new KDTree<>(X, X);
+            int[] index = new int[n * k];
+            double[] distance = new double[n * k];
+            tree.knn(X, k, index, distance);
+            IntStream.range(0, n).parallel().forEach(i -> {
+                for (int j = 0; j < k; j++) {
+                    neighbors[i][j] = index[i * k + j];
+                    P[i][j] = distance[i * k + j] * distance[i * k + j];
+                }
+            });
+        }
+
+        // Large tolerance to speed up the search of Gaussian kernel width
+        // A small difference of kernel width is not important.
+        IntStream.range(0, n).parallel().forEach(i -> {
+            expd(P[i], perplexity, 1E-3);
+            // sort by the neighbor index for symmetrization.
+            QuickSort.sort(neighbors[i], P[i]);
+        });
+
+        // Make P symmetric: P = P + P'.
+        int[] size = new int[n];
+        for (int i = 0; i < n; i++) {
+            for (int j : neighbors[i]) {
+                size[i]++;
+                if (Arrays.binarySearch(neighbors[j], i) < 0) {
+                    size[j]++;
+                }
+            }
+        }
+
+        rowIndex = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            rowIndex[i + 1] = rowIndex[i] + size[i];
+        }
+
+        colIndex = new int[rowIndex[n]];
+        nonzeros = new double[rowIndex[n]];
+        int[] pos = Arrays.copyOf(rowIndex, n);
+
+        // sum(P) = 2 * n as each row of P is normalized
+        double Psum = 2 * n;
+        for (int i = 0; i < n; i++) {
+            int[] Ni = neighbors[i];
+            double[] Pi = P[i];
+            for (int m = 0; m < k; m++) {
+                int j = Ni[m];
+                int r = Arrays.binarySearch(neighbors[j], i);
+                if (r < 0 || i < j) {
+                    double p = 12.0 * (r < 0 ? Pi[m] : Pi[m] + P[j][r]) / Psum;
+                    colIndex[pos[i]] = j;
+                    nonzeros[pos[i]++] = p;
+                    colIndex[pos[j]] = i;
+                    nonzeros[pos[j]++] = p;
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the Gaussian kernel over the nearest neighbors
+     * (search the width for given perplexity).
+     *
+     * @param D the squared distances to the nearest neighbors,
+     *          which will be overwritten by the normalized kernel values.
+     * @param perplexity the perplexity.
+     * @param tol the tolerance of entropy.
+     */
+    private static void expd(double[] D, double perplexity, double tol) {
+        int k = D.length;
+        double logU = MathEx.log2(perplexity);
+        double[] P = new double[k];
+
+        // Use sqrt(1 / avg of distance) to initialize beta
+        double beta = Math.sqrt(k / MathEx.sum(D));
+        if (Double.isNaN(beta) || Double.isInfinite(beta)) beta = 1.0;
+        double betamin = 0.0;
+        double betamax = Double.POSITIVE_INFINITY;
+
+        // Evaluate whether the perplexity is within tolerance
+        double Pisum = 0.0;
+        double Hdiff = Double.MAX_VALUE;
+        for (int iter = 0; Math.abs(Hdiff) > tol && iter < 50; iter++) {
+            Pisum = 0.0;
+            double H = 0.0;
+            for (int j = 0; j < k; j++) {
+                double d = beta * D[j];
+                double p = Math.exp(-d);
+                P[j] = p;
+                Pisum += p;
+                H += p * d;
+            }
+
+            H = MathEx.log2(Pisum) + H / Pisum;
+            Hdiff = H - logU;
+
+            if (Math.abs(Hdiff) > tol) {
+                if (Hdiff > 0) {
+                    betamin = beta;
+                    if (Double.isInfinite(betamax))
+                        beta *= 2.0;
+                    else
+                        beta = (beta + betamax) / 2;
+                } else {
+                    betamax = beta;
+                    beta = (beta + betamin) / 2;
+                }
+            }
+        }
+
+        // normalize by row
+        for (int j = 0; j < k; j++) {
+            D[j] = P[j] / Pisum;
+        }
+    }
+
     /** Compute the Gaussian kernel (search the width for given perplexity. */
     private double[][] expd(double[][] D, double perplexity, double tol) {
         int n          = D.length;
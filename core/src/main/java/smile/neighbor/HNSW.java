@@ -0,0 +1,863 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.neighbor;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+import smile.math.MathEx;
+import smile.math.distance.Distance;
+import smile.sort.QuickSort;
+
+/**
+ * Hierarchical Navigable Small World (HNSW) graph for approximate nearest
+ * neighbor search. HNSW builds a hierarchy of proximity graphs. The bottom
+ * layer contains all elements and each upper layer contains an exponentially
+ * decaying random subset of the layer below, similar to skip lists. A search
+ * starts from the top layer, greedily moves toward the query and descends
+ * layer by layer. In the bottom layer, a beam search of width
+ * <code>efSearch</code> collects the candidates of nearest neighbors.
+ * The search complexity scales logarithmically with the data size and
+ * the graph doesn't degrade in high dimensional spaces as space
+ * partitioning trees do.
+ * <p>
+ * The parameter <code>M</code> is the maximum number of links per element
+ * in the upper layers (<code>2M</code> in the bottom layer). Larger
+ * <code>M</code> works better for high intrinsic dimensionality and high
+ * recall at the cost of memory. The parameter <code>efConstruction</code>
+ * is the beam width during construction, which trades the build time for
+ * the graph quality. The parameter <code>efSearch</code> is the beam width
+ * of queries, which trades the latency for recall. It can be changed any
+ * time.
+ * <p>
+ * The links of each element are stored in a primitive int array. The index
+ * supports concurrent insertions and queries. The elements of data are
+ * never removed. Like other nearest neighbor search algorithms in this
+ * package, the query object (reference equality) is excluded from the
+ * neighborhood.
+ *
+ * <h2>References</h2>
+ * <ol>
+ * <li> Yu. A. Malkov and D. A. Yashunin. Efficient and robust approximate nearest neighbor search using Hierarchical Navigable Small World graphs. IEEE TPAMI, 2018.</li>
+ * </ol>
+ *
+ * @param <K> the type of keys.
+ * @param <V> the type of associated objects.
+ *
+ * @author Haifeng Li
+ */
+public class HNSW<K, V> implements NearestNeighborSearch<K, V>, KNNSearch<K, V>, RNNSearch<K, V>, Serializable {
+    private static final long serialVersionUID = 2L;
+
+    /**
+     * The distance function.
+     */
+    private final Distance<K> distance;
+    /**
+     * The maximum number of links per element in the upper layers.
+     */
+    private final int M;
+    /**
+     * The maximum number of links per element in the bottom layer.
+     */
+    private final int M0;
+    /**
+     * The beam width during construction.
+     */
+    private final int efConstruction;
+    /**
+     * The normalization factor of level generation.
+     */
+    private final double mL;
+    /**
+     * The default beam width of queries.
+     */
+    private volatile int efSearch;
+    /**
+     * The keys.
+     */
+    private Object[] keys;
+    /**
+     * The data objects.
+     */
+    private Object[] data;
+    /**
+     * The links of elements. The array of an element starts with the links
+     * of bottom layer, i.e. the number of links followed by M0 slots, then
+     * the links of each upper layer, i.e. the number of links followed by
+     * M slots. The array also serves as the lock of its links.
+     */
+    private int[][] links;
+    /**
+     * The number of elements. Guarded by this.
+     */
+    private int size = 0;
+    /**
+     * The entry point, i.e. an element of the top layer. Guarded by this.
+     */
+    private int entry = -1;
+    /**
+     * The top layer. Guarded by this.
+     */
+    private int top = -1;
+    /**
+     * The lock of storage. Insertions and queries hold the read lock.
+     * Growing the storage holds the write lock.
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * The workspace of searches in each thread.
+     */
+    private transient ThreadLocal<Workspace> workspace = ThreadLocal.withInitial(Workspace::new);
+
+    /**
+     * The workspace of a search.
+     */
+    private static class Workspace {
+        /** The visit marks of elements. */
+        int[] visited = new int[0];
+        /** The current visit mark. */
+        int mark = 0;
+        /** The buffer of links. */
+        int[] buffer = new int[0];
+
+        /**
+         * Starts a new search.
+         * @param n the number of elements.
+         * @param m the maximum number of links.
+         */
+        void reset(int n, int m) {
+            if (visited.length < n) {
+                visited = new int[Math.max(n, 2 * visited.length)];
+                mark = 0;
+            }
+
+            if (++mark == 0) {
+                Arrays.fill(visited, 0);
+                mark = 1;
+            }
+
+            if (buffer.length < m) {
+                buffer = new int[m];
+            }
+        }
+
+        /**
+         * Marks an element visited.
+         * @param i the element index.
+         * @return false if the element was visited before.
+         */
+        boolean visit(int i) {
+            if (visited[i] == mark) {
+                return false;
+            }
+
+            visited[i] = mark;
+            return true;
+        }
+    }
+
+    /**
+     * The binary max heap of elements by distance.
+     */
+    private static class Heap {
+        /** The heap size. */
+        int size = 0;
+        /** The distances (priorities). */
+        double[] d;
+        /** The element indices. */
+        int[] id;
+
+        /**
+         * Constructor.
+         * @param capacity the initial capacity.
+         */
+        Heap(int capacity) {
+            d = new double[capacity];
+            id = new int[capacity];
+        }
+
+        /** Adds an element. */
+        void push(double dist, int i) {
+            if (size == d.length) {
+                d = Arrays.copyOf(d, 2 * size);
+                id = Arrays.copyOf(id, 2 * size);
+            }
+
+            int k = size++;
+            while (k > 0) {
+                int parent = (k - 1) >>> 1;
+                if (d[parent] >= dist) break;
+                d[k] = d[parent];
+                id[k] = id[parent];
+                k = parent;
+            }
+            d[k] = dist;
+            id[k] = i;
+        }
+
+        /** Removes the element of largest distance. */
+        int pop() {
+            int top = id[0];
+            double dist = d[--size];
+            int i = id[size];
+            int k = 0;
+            int half = size >>> 1;
+            while (k < half) {
+                int child = 2 * k + 1;
+                if (child + 1 < size && d[child + 1] > d[child]) child++;
+                if (dist >= d[child]) break;
+                d[k] = d[child];
+                id[k] = id[child];
+                k = child;
+            }
+            d[k] = dist;
+            id[k] = i;
+            return top;
+        }
+    }
+
+    /**
+     * Constructor with M = 16 and efConstruction = 200.
+     * @param distance the distance function.
+     */
+    public HNSW(Distance<K> distance) {
+        this(distance, 16, 200);
+    }
+
+    /**
+     * Constructor.
+     * @param distance the distance function.
+     * @param M the maximum number of links per element in the upper layers.
+     *          The bottom layer allows 2M links.
+     * @param efConstruction the beam width during construction.
+     */
+    public HNSW(Distance<K> distance, int M, int efConstruction) {
+        this(distance, M, efConstruction, 16);
+    }
+
+    /**
+     * Constructor.
+     * @param distance the distance function.
+     * @param M the maximum number of links per element in the upper layers.
+     * @param efConstruction the beam width during construction.
+     * @param capacity the initial capacity.
+     */
+    private HNSW(Distance<K> distance, int M, int efConstruction, int capacity) {
+        if (M < 2) {
+            throw new IllegalArgumentException("Invalid M: " + M);
+        }
+
+        if (efConstruction < 1) {
+            throw new IllegalArgumentException("Invalid efConstruction: " + efConstruction);
+        }
+
+        this.distance = distance;
+        this.M = M;
+        this.M0 = 2 * M;
+        this.efConstruction = efConstruction;
+        this.mL = 1.0 / Math.log(M);
+        this.efSearch = 50;
+        this.keys = new Object[capacity];
+        this.data = new Object[capacity];
+        this.links = new int[capacity][];
+    }
+
+    /**
+     * Builds the index of Euclidean distance with M = 16 and
+     * efConstruction = 200. The elements are inserted in parallel.
+     * @param data the data set.
+     * @return the index.
+     */
+    public static HNSW<double[], double[]> of(double[][] data) {
+        return of(data, 16, 200);
+    }
+
+    /**
+     * Builds the index of Euclidean distance. The elements are
+     * inserted in parallel.
+     * @param data the data set.
+     * @param M the maximum number of links per element in the upper layers.
+     * @param efConstruction the beam width during construction.
+     * @return the index.
+     */
+    public static HNSW<double[], double[]> of(double[][] data, int M, int efConstruction) {
+        return of(data, data, MathEx::distance, M, efConstruction);
+    }
+
+    /**
+     * Builds the index of Euclidean distance with M = 16 and
+     * efConstruction = 200. The elements are inserted in parallel.
+     * @param data the data set.
+     * @return the index.
+     */
+    public static HNSW<float[], float[]> of(float[][] data) {
+        return of(data, 16, 200);
+    }
+
+    /**
+     * Builds the index of Euclidean distance. The elements are
+     * inserted in parallel.
+     * @param data the data set.
+     * @param M the maximum number of links per element in the upper layers.
+     * @param efConstruction the beam width during construction.
+     * @return the index.
+     */
+    public static HNSW<float[], float[]> of(float[][] data, int M, int efConstruction) {
+        return of(data, data, MathEx::distance, M, efConstruction);
+    }
+
+    /**
+     * Builds the index. The elements are inserted in parallel.
+     * @param keys the keys.
+     * @param data the data objects.
+     * @param distance the distance function.
+     * @param M the maximum number of links per element in the upper layers.
+     * @param efConstruction the beam width during construction.
+     * @param <K> the type of keys.
+     * @param <V> the type of associated objects.
+     * @return the index.
+     */
+    public static <K, V> HNSW<K, V> of(K[] keys, V[] data, Distance<K> distance, int M, int efConstruction) {
+        if (keys.length != data.length) {
+            throw new IllegalArgumentException(String.format("The sizes of keys and data don't match: %d != %d", keys.length, data.length));
+        }
+
+        int n = keys.length;
+        HNSW<K, V> index = new HNSW<>(distance, M, efConstruction, Math.max(n, 16));
+        // The levels are drawn in the caller thread for repeatable results.
+        for (int i = 0; i < n; i++) {
+            index.add(keys[i], data[i], index.level());
+        }
+
+        if (n > 0) {
+            index.insert(0);
+            IntStream.range(1, n).parallel().forEach(index::insert);
+        }
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("HNSW(M=%d, efConstruction=%d, efSearch=%d)", M, efConstruction, efSearch);
+    }
+
+    /**
+     * Returns the number of elements.
+     * @return the number of elements.
+     */
+    public int size() {
+        synchronized (this) {
+            return size;
+        }
+    }
+
+    /**
+     * Returns the default beam width of queries.
+     * @return the default beam width of queries.
+     */
+    public int efSearch() {
+        return efSearch;
+    }
+
+    /**
+     * Sets the default beam width of queries. Larger value improves
+     * the recall at the cost of latency. The actual beam width of
+     * k-nearest neighbor search is at least k.
+     * @param ef the beam width of queries.
+     * @return this object.
+     */
+    public HNSW<K, V> efSearch(int ef) {
+        if (ef < 1) {
+            throw new IllegalArgumentException("Invalid efSearch: " + ef);
+        }
+
+        this.efSearch = ef;
+        return this;
+    }
+
+    /**
+     * Inserts an element into the index. This method is thread safe.
+     * @param key the key.
+     * @param value the data object.
+     */
+    public void put(K key, V value) {
+        insert(add(key, value, level()));
+    }
+
+    /** Returns a random level of new element. */
+    private int level() {
+        return (int) (-Math.log(1.0 - MathEx.random()) * mL);
+    }
+
+    /** Returns the offset of links in the given layer. */
+    private int offset(int layer) {
+        return layer == 0 ? 0 : M0 + 1 + (layer - 1) * (M + 1);
+    }
+
+    /** Returns the maximum number of links in the given layer. */
+    private int capacity(int layer) {
+        return layer == 0 ? M0 : M;
+    }
+
+    /** Returns the key of an element. */
+    @SuppressWarnings("unchecked")
+    private K key(int i) {
+        return (K) keys[i];
+    }
+
+    /**
+     * Allocates the storage of an element.
+     * @return the element index.
+     */
+    private int add(K key, V value, int level) {
+        while (true) {
+            lock.readLock().lock();
+            try {
+                synchronized (this) {
+                    if (size < keys.length) {
+                        int i = size++;
+                        keys[i] = key;
+                        data[i] = value;
+                        links[i] = new int[M0 + 1 + level * (M + 1)];
+                        return i;
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            lock.writeLock().lock();
+            try {
+                if (size == keys.length) {
+                    int capacity = 2 * keys.length;
+                    keys = Arrays.copyOf(keys, capacity);
+                    data = Arrays.copyOf(data, capacity);
+                    links = Arrays.copyOf(links, capacity);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Links an allocated element into the graph.
+     * @param i the element index.
+     */
+    private void insert(int i) {
+        lock.readLock().lock();
+        try {
+            K key = key(i);
+            int level = (links[i].length - M0 - 1) / (M + 1);
+
+            int ep, L;
+            synchronized (this) {
+                ep = entry;
+                L = top;
+                if (ep < 0) {
+                    entry = i;
+                    top = level;
+                    return;
+                }
+            }
+
+            double d = distance.d(key, key(ep));
+            for (int layer = L; layer > level; layer--) {
+                ep = greedy(key, ep, d, layer);
+                d = distance.d(key, key(ep));
+            }
+
+            for (int layer = Math.min(level, L); layer >= 0; layer--) {
+                Heap heap = search(key, ep, d, efConstruction, layer);
+                int n = heap.size;
+                int capacity = capacity(layer);
+                int[] id = new int[n + capacity];
+                double[] dist = new double[n + capacity];
+                for (int j = n; j-- > 0; ) {
+                    dist[j] = heap.d[0];
+                    id[j] = heap.pop();
+                }
+
+                ep = id[0];
+                d = dist[0];
+
+                int m = connect(i, layer, id, dist, n);
+                for (int j = 0; j < m; j++) {
+                    link(id[j], layer, i, dist[j]);
+                }
+            }
+
+            synchronized (this) {
+                if (level > top) {
+                    top = level;
+                    entry = i;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Sets the links of a new element in a layer. The links added by
+     * concurrent insertions in the meanwhile are merged as candidates.
+     * @param i the element index.
+     * @param layer the layer.
+     * @param id the candidates sorted by distance. On output, the first
+     *           m elements are the selected neighbors.
+     * @param dist the distance of candidates.
+     * @param n the number of candidates.
+     * @return the number of selected neighbors.
+     */
+    private int connect(int i, int layer, int[] id, double[] dist, int n) {
+        int[] list = links[i];
+        int offset = offset(layer);
+        synchronized (list) {
+            int count = list[offset];
+            if (count > 0) {
+                K key = key(i);
+                for (int j = 0; j < count; j++) {
+                    int k = list[offset + 1 + j];
+                    id[n + j] = k;
+                    dist[n + j] = distance.d(key, key(k));
+                }
+                n += count;
+                QuickSort.sort(dist, id, n);
+            }
+
+            int m = select(i, id, dist, n, capacity(layer));
+            System.arraycopy(id, 0, list, offset + 1, m);
+            list[offset] = m;
+            return m;
+        }
+    }
+
+    /**
+     * Adds a link to an existing element. If the element has the maximum
+     * number of links, its links are pruned by the heuristic.
+     * @param i the element index.
+     * @param layer the layer.
+     * @param k the new neighbor.
+     * @param d the distance between the element and the new neighbor.
+     */
+    private void link(int i, int layer, int k, double d) {
+        int[] list = links[i];
+        int offset = offset(layer);
+        int capacity = capacity(layer);
+        synchronized (list) {
+            int count = list[offset];
+            for (int j = 0; j < count; j++) {
+                if (list[offset + 1 + j] == k) return;
+            }
+
+            if (count < capacity) {
+                list[offset + 1 + count] = k;
+                list[offset] = count + 1;
+                return;
+            }
+
+            K key = key(i);
+            int[] id = new int[count + 1];
+            double[] dist = new double[count + 1];
+            for (int j = 0; j < count; j++) {
+                id[j] = list[offset + 1 + j];
+                dist[j] = distance.d(key, key(id[j]));
+            }
+            id[count] = k;
+            dist[count] = d;
+            QuickSort.sort(dist, id, count + 1);
+
+            int m = select(i, id, dist, count + 1, capacity);
+            System.arraycopy(id, 0, list, offset + 1, m);
+            list[offset] = m;
+        }
+    }
+
+    /**
+     * Selects the neighbors by the heuristic that a candidate is kept only
+     * if it is closer to the base element than to any selected neighbor.
+     * It favors the links in diverse directions, which keeps the graph
+     * connected between clusters.
+     * @param i the base element.
+     * @param id the candidates sorted by distance. On output, the first
+     *           m elements are the selected neighbors.
+     * @param dist the distance between the base element and candidates.
+     * @param n the number of candidates.
+     * @param capacity the maximum number of neighbors.
+     * @return the number of selected neighbors m.
+     */
+    private int select(int i, int[] id, double[] dist, int n, int capacity) {
+        int m = 0;
+        for (int j = 0; j < n && m < capacity; j++) {
+            int k = id[j];
+            if (k == i) continue;
+
+            K key = key(k);
+            boolean good = true;
+            for (int l = 0; l < m; l++) {
+                if (id[l] == k || distance.d(key, key(id[l])) < dist[j]) {
+                    good = false;
+                    break;
+                }
+            }
+
+            if (good) {
+                id[m] = k;
+                dist[m++] = dist[j];
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Copies the links of an element in a layer to the buffer.
+     * @return the number of links.
+     */
+    private int links(int i, int layer, int[] buffer) {
+        int[] list = links[i];
+        int offset = offset(layer);
+        synchronized (list) {
+            int count = list[offset];
+            System.arraycopy(list, offset + 1, buffer, 0, count);
+            return count;
+        }
+    }
+
+    /**
+     * Greedy search of the nearest element in a layer.
+     * @param q the query.
+     * @param ep the entry point.
+     * @param d the distance between the query and the entry point.
+     * @param layer the layer.
+     * @return the nearest element found.
+     */
+    private int greedy(K q, int ep, double d, int layer) {
+        Workspace ws = workspace.get();
+        ws.reset(0, M0);
+        int[] buffer = ws.buffer;
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int count = links(ep, layer, buffer);
+            for (int j = 0; j < count; j++) {
+                int k = buffer[j];
+                double dist = distance.d(q, key(k));
+                if (dist < d) {
+                    d = dist;
+                    ep = k;
+                    changed = true;
+                }
+            }
+        }
+        return ep;
+    }
+
+    /**
+     * Beam search in a layer.
+     * @param q the query.
+     * @param ep the entry point.
+     * @param d the distance between the query and the entry point.
+     * @param ef the beam width.
+     * @param layer the layer.
+     * @return the max heap of (at most) ef nearest elements found.
+     */
+    private Heap search(K q, int ep, double d, int ef, int layer) {
+        Workspace ws = workspace.get();
+        ws.reset(keys.length, M0);
+        int[] buffer = ws.buffer;
+
+        // The min heap of candidates by negative distance.
+        Heap candidates = new Heap(ef + 1);
+        Heap results = new Heap(ef + 1);
+        ws.visit(ep);
+        candidates.push(-d, ep);
+        results.push(d, ep);
+
+        while (candidates.size > 0) {
+            double dist = -candidates.d[0];
+            if (dist > results.d[0] && results.size >= ef) {
+                break;
+            }
+
+            int count = links(candidates.pop(), layer, buffer);
+            for (int j = 0; j < count; j++) {
+                int k = buffer[j];
+                if (ws.visit(k)) {
+                    double dk = distance.d(q, key(k));
+                    if (results.size < ef || dk < results.d[0]) {
+                        candidates.push(-dk, k);
+                        results.push(dk, k);
+                        if (results.size > ef) {
+                            results.pop();
+                        }
+                    }
+                }
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Searches the bottom layer.
+     * @param q the query.
+     * @param ef the beam width.
+     * @return the max heap of nearest elements found, or null if the index is empty.
+     */
+    private Heap search(K q, int ef) {
+        int ep, L;
+        synchronized (this) {
+            ep = entry;
+            L = top;
+        }
+
+        if (ep < 0) {
+            return null;
+        }
+
+        double d = distance.d(q, key(ep));
+        for (int layer = L; layer > 0; layer--) {
+            ep = greedy(q, ep, d, layer);
+            d = distance.d(q, key(ep));
+        }
+
+        return search(q, ep, d, ef, 0);
+    }
+
+    @Override
+    public Neighbor<K, V> nearest(K q) {
+        Neighbor<K, V>[] neighbors = knn(q, 1);
+        return neighbors.length > 0 ? neighbors[0] : null;
+    }
+
+    @Override
+    public Neighbor<K, V>[] knn(K q, int k) {
+        return knn(q, k, efSearch);
+    }
+
+    /**
+     * Searches the k nearest neighbors to the query key.
+     *
+     * @param q the query key.
+     * @param k the number of nearest neighbors to search for.
+     * @param ef the beam width of search, which is at least k.
+     * @return the k nearest neighbors. Fewer neighbors may be returned
+     *         if the index is smaller than k.
+     */
+    @SuppressWarnings("unchecked")
+    public Neighbor<K, V>[] knn(K q, int k, int ef) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("Invalid k: " + k);
+        }
+
+        lock.readLock().lock();
+        try {
+            // One more for the query object self.
+            Heap heap = search(q, Math.max(ef, k + 1));
+            if (heap == null) {
+                return new Neighbor[0];
+            }
+
+            int n = heap.size;
+            int[] id = new int[n];
+            double[] dist = new double[n];
+            for (int j = n; j-- > 0; ) {
+                dist[j] = heap.d[0];
+                id[j] = heap.pop();
+            }
+
+            Neighbor<K, V>[] neighbors = new Neighbor[Math.min(k, n)];
+            int m = 0;
+            for (int j = 0; j < n && m < neighbors.length; j++) {
+                K key = key(id[j]);
+                if (key != q) {
+                    neighbors[m++] = new Neighbor<>(key, (V) data[id[j]], id[j], dist[j]);
+                }
+            }
+
+            return m < neighbors.length ? Arrays.copyOf(neighbors, m) : neighbors;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The beam width starts with efSearch and doubles until the farthest
+     * element found is out of the range. The result is approximate.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void range(K q, double radius, List<Neighbor<K, V>> neighbors) {
+        if (radius <= 0.0) {
+            throw new IllegalArgumentException("Invalid radius: " + radius);
+        }
+
+        lock.readLock().lock();
+        try {
+            for (int ef = efSearch; ; ef *= 2) {
+                Heap heap = search(q, ef);
+                if (heap == null) {
+                    return;
+                }
+
+                if (heap.size < ef || heap.d[0] > radius) {
+                    while (heap.size > 0) {
+                        double d = heap.d[0];
+                        int i = heap.pop();
+                        K key = key(i);
+                        if (d <= radius && key != q) {
+                            neighbors.add(new Neighbor<>(key, (V) data[i], i, d));
+                        }
+                    }
+                    return;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Serializes the index while blocking concurrent insertions.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        lock.writeLock().lock();
+        try {
+            out.defaultWriteObject();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Deserializes the index and creates the search workspace.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        workspace = ThreadLocal.withInitial(Workspace::new);
+    }
+}
@@ -316,6 +316,47 @@ public class KDTree <E> implements NearestNeighborSearch<double[], E>, KNNSearch
         }
     }
 
+    /**
+     * Returns (in the supplied primitive heap) the k nearest
+     * neighbors of the given target starting from the give
+     * tree node.
+     *
+     * @param q the query key.
+     * @param node the root of subtree.
+     * @param heap the heap to store/update the kNNs found during the search.
+     */
+    private void search(double[] q, Node node, NeighborHeap heap) {
+        if (node.isLeaf()) {
+            // look at all the instances in this leaf
+            for (int idx = node.index; idx < node.index + node.count; idx++) {
+                int i = index[idx];
+                if (q != keys[i]) {
+                    double distance = MathEx.distance(q, keys[i]);
+                    if (distance < heap.peek()) {
+                        heap.add(i, distance);
+                    }
+                }
+            }
+        } else {
+            Node nearer, further;
+            double diff = q[node.split] - node.cutoff;
+            if (diff < 0) {
+                nearer = node.lower;
+                further = node.upper;
+            } else {
+                nearer = node.upper;
+                further = node.lower;
+            }
+
+            search(q, nearer, heap);
+
+            // now look in further half
+            if (heap.peek() >= Math.abs(diff)) {
+                search(q, further, heap);
+            }
+        }
+    }
+
     /**
      * Returns the neighbors in the given range of search target from the give
      * tree node.
@@ -393,6 +434,15 @@ public class KDTree <E> implements NearestNeighborSearch<double[], E>, KNNSearch
                 }).toArray(Neighbor[]::new);
     }
 
+    @Override
+    public void knn(double[][] q, int k, int[] index, double[] distance) {
+        if (k > keys.length) {
+            throw new IllegalArgumentException("Neighbor array length is larger than the dataset size");
+        }
+
+        NeighborHeap.search(q.length, k, index, distance, (i, heap) -> search(q[i], root, heap));
+    }
+
     @Override
     public void range(double[] q, double radius, List<Neighbor<double[], E>> neighbors) {
         if (radius <= 0.0) {
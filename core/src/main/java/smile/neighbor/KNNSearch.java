@@ -38,4 +38,26 @@ public interface KNNSearch<K, V> {
      * @return the k nearest neighbors
      */
     Neighbor<K,V>[] knn(K q, int k);
+
+    /**
+     * Search the k nearest neighbors to each query key in parallel.
+     * The neighbors of i-th query are stored in the slots
+     * {@code [i * k, (i + 1) * k)} of output arrays in ascending order
+     * of distance. If fewer than k neighbors are found, the remaining
+     * slots are set to -1 and {@code Double.MAX_VALUE}.
+     *
+     * @param q the query keys.
+     * @param k the number of nearest neighbors to search for.
+     * @param index the output index of neighbors of size {@code q.length * k}.
+     * @param distance the output distance of neighbors of size {@code q.length * k}.
+     */
+    default void knn(K[] q, int k, int[] index, double[] distance) {
+        NeighborHeap.search(q.length, k, index, distance, (i, heap) -> {
+            for (Neighbor<K,V> neighbor : knn(q[i], k)) {
+                if (neighbor != null) {
+                    heap.add(neighbor.index, neighbor.distance);
+                }
+            }
+        });
+    }
 }
@@ -252,6 +252,19 @@ public class LSH <E> implements NearestNeighborSearch<double[], E>, KNNSearch<do
         return heap.toArray();
     }
 
+    @Override
+    public void knn(double[][] q, int k, int[] index, double[] distance) {
+        NeighborHeap.search(q.length, k, index, distance, (i, heap) -> {
+            double[] qi = q[i];
+            for (int j : getCandidates(qi)) {
+                double[] key = keys.get(j);
+                if (qi != key) {
+                    heap.add(j, MathEx.distance(qi, key));
+                }
+            }
+        });
+    }
+
     @Override
     public void range(double[] q, double radius, List<Neighbor<double[], E>> neighbors) {
         if (radius <= 0.0) {
@@ -273,7 +286,7 @@ public class LSH <E> implements NearestNeighborSearch<double[], E>, KNNSearch<do
      * Returns the nearest neighbor candidates.
      * @return Indices of Candidates
      */
-    private Set<Integer> getCandidates(double[] q) {
+    protected Set<Integer> getCandidates(double[] q) {
         Set<Integer> candidates = new LinkedHashSet<>();
         for (Hash h : hash) {
             Bucket bucket = h.get(q);
@@ -124,6 +124,24 @@ public class LinearSearch<T> implements NearestNeighborSearch<T,T>, KNNSearch<T,
         return Arrays.stream(heap.toArray()).map(NeighborBuilder::toNeighbor).toArray(Neighbor[]::new);
     }
 
+    @Override
+    public void knn(T[] q, int k, int[] index, double[] distance) {
+        if (k > data.length) {
+            throw new IllegalArgumentException("Neighbor array length is larger than the data size");
+        }
+
+        // Parallel across queries. Each query scans the data sequentially.
+        NeighborHeap.search(q.length, k, index, distance, (i, heap) -> {
+            T qi = q[i];
+            for (int j = 0; j < data.length; j++) {
+                double d = this.distance.d(qi, data[j]);
+                if (d < heap.peek() && qi != data[j]) {
+                    heap.add(j, d);
+                }
+            }
+        });
+    }
+
     @Override
     public void range(T q, double radius, List<Neighbor<T, T>> neighbors) {
         if (radius <= 0.0) {
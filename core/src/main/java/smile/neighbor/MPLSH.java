@@ -263,6 +263,18 @@ public class MPLSH <E> extends LSH<E> {
         }
     }
 
+    /**
+     * Returns the nearest neighbor candidates. If the posteriori multiple
+     * probe model is trained, the candidates are probed with the same
+     * default recall and number of probes as knn().
+     * @return Indices of Candidates
+     */
+    @Override
+    protected Set<Integer> getCandidates(double[] q) {
+        if (model == null) return super.getCandidates(q);
+        return getCandidates(q, 0.95, 100);
+    }
+
     /**
      * Returns the nearest neighbor candidates.
      * @return Indices of Candidates
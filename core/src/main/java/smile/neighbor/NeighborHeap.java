@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.neighbor;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The bounded max heap of k nearest neighbors found so far. It is the
+ * primitive counterpart of {@code HeapSelect<NeighborBuilder>} for batch
+ * search, which keeps the index and distance of neighbors in arrays so
+ * that a heap can be reused for many queries without allocation. Like
+ * NeighborBuilder, the neighbors are ordered by distance and then by
+ * index, and the empty slots are (-1, Double.MAX_VALUE).
+ *
+ * @author Haifeng Li
+ */
+class NeighborHeap {
+    /** The number of queries in a block of batch search. */
+    private static final int BLOCK = 64;
+
+    /**
+     * The search of a query in batch.
+     */
+    interface Search {
+        /**
+         * Searches the nearest neighbors of a query.
+         * @param i the index of query.
+         * @param heap the heap to add neighbors.
+         */
+        void search(int i, NeighborHeap heap);
+    }
+
+    /** The heap size. */
+    private final int k;
+    /** The index of neighbors. */
+    private final int[] index;
+    /** The distance of neighbors. */
+    private final double[] distance;
+
+    /**
+     * Constructor.
+     * @param k the number of nearest neighbors.
+     */
+    NeighborHeap(int k) {
+        this.k = k;
+        this.index = new int[k];
+        this.distance = new double[k];
+        reset();
+    }
+
+    /**
+     * Searches the k nearest neighbors of queries in parallel. The queries
+     * are processed in blocks, each of which reuses a heap.
+     *
+     * @param n the number of queries.
+     * @param k the number of nearest neighbors.
+     * @param index the output index of neighbors of size n * k.
+     * @param distance the output distance of neighbors of size n * k.
+     * @param search the search of a query.
+     */
+    static void search(int n, int k, int[] index, double[] distance, Search search) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("Invalid k: " + k);
+        }
+
+        if (index.length != n * k || distance.length != n * k) {
+            throw new IllegalArgumentException(String.format("Invalid output array size: %d and %d, expected: %d", index.length, distance.length, n * k));
+        }
+
+        IntStream.range(0, (n + BLOCK - 1) / BLOCK).parallel().forEach(block -> {
+            NeighborHeap heap = new NeighborHeap(k);
+            int from = block * BLOCK;
+            int to = Math.min(n, from + BLOCK);
+            for (int i = from; i < to; i++) {
+                heap.reset();
+                search.search(i, heap);
+                heap.sort(index, distance, i * k);
+            }
+        });
+    }
+
+    /**
+     * Clears the heap.
+     */
+    void reset() {
+        Arrays.fill(index, -1);
+        Arrays.fill(distance, Double.MAX_VALUE);
+    }
+
+    /**
+     * Returns the distance of the farthest neighbor in the heap.
+     * @return the distance of the farthest neighbor in the heap.
+     */
+    double peek() {
+        return distance[0];
+    }
+
+    /**
+     * Replaces the farthest neighbor if the new one is closer.
+     * @param i the index of new neighbor.
+     * @param d the distance of new neighbor.
+     */
+    void add(int i, double d) {
+        if (d < distance[0]) {
+            index[0] = i;
+            distance[0] = d;
+            siftDown(0, k);
+        }
+    }
+
+    /** Returns true if the element i is less than the element j. */
+    private boolean less(int i, int j) {
+        return distance[i] < distance[j] || (distance[i] == distance[j] && index[i] < index[j]);
+    }
+
+    /** Swaps two elements. */
+    private void swap(int i, int j) {
+        int t = index[i];
+        index[i] = index[j];
+        index[j] = t;
+        double d = distance[i];
+        distance[i] = distance[j];
+        distance[j] = d;
+    }
+
+    /** Restores the heap property from the element i in the first n elements. */
+    private void siftDown(int i, int n) {
+        while (2 * i + 1 < n) {
+            int j = 2 * i + 1;
+            if (j + 1 < n && less(j, j + 1)) j++;
+            if (!less(i, j)) break;
+            swap(i, j);
+            i = j;
+        }
+    }
+
+    /**
+     * Sorts the neighbors in ascending order and copies them to the output.
+     * The heap has to be reset before next use.
+     * @param index the output index of neighbors.
+     * @param distance the output distance of neighbors.
+     * @param offset the offset of output.
+     */
+    void sort(int[] index, double[] distance, int offset) {
+        for (int n = k - 1; n > 0; n--) {
+            swap(0, n);
+            siftDown(0, n);
+        }
+
+        System.arraycopy(this.index, 0, index, offset, k);
+        System.arraycopy(this.distance, 0, distance, offset, k);
+    }
+}
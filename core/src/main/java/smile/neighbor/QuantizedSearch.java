@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.neighbor;
+
+import java.io.Serializable;
+import java.util.List;
+import smile.math.MathEx;
+import smile.vq.VectorCodec;
+
+/**
+ * Brute force nearest neighbor search of Euclidean distance on compressed
+ * vectors. The vectors are encoded by a vector codec, e.g. product
+ * quantization or 8-bit scalar quantization, and stored in byte array
+ * chunks of up to 1 GB. A query scans all codes with asymmetric distance
+ * computation, i.e. the query is not quantized. With 16-byte product
+ * quantization codes, 50 million 128-dimensional float vectors take 800 MB instead
+ * of 25 GB.
+ * <p>
+ * Optionally, the index keeps the reference to the original vectors
+ * and re-ranks the candidates of asymmetric distance by exact distance,
+ * which improves the precision significantly. In this case, the original
+ * vectors may be memory-mapped or reside in a cheaper storage tier.
+ * Without re-ranking, the distances of neighbors are estimated and the
+ * keys of neighbors are the reconstructed vectors.
+ * <p>
+ * Like {@link LinearSearch}, the query object (reference equality) is
+ * excluded from the neighborhood if the original vectors are kept.
+ *
+ * @author Haifeng Li
+ */
+public class QuantizedSearch implements NearestNeighborSearch<float[], float[]>, KNNSearch<float[], float[]>, RNNSearch<float[], float[]>, Serializable {
+    private static final long serialVersionUID = 2L;
+
+    /**
+     * The vector codec.
+     */
+    private final VectorCodec codec;
+    /**
+     * The chunks of codes of vectors.
+     */
+    private final byte[][] code;
+    /**
+     * The number of vectors per chunk.
+     */
+    private final int chunk;
+    /**
+     * The number of vectors.
+     */
+    private final int n;
+    /**
+     * The original vectors for re-ranking. May be null.
+     */
+    private final float[][] data;
+    /**
+     * The number of candidates per neighbor to re-rank.
+     */
+    private final int rerank;
+
+    /**
+     * Constructor without re-ranking.
+     * @param data the vectors.
+     * @param codec the vector codec.
+     */
+    public QuantizedSearch(float[][] data, VectorCodec codec) {
+        this(data, codec, 0);
+    }
+
+    /**
+     * Constructor.
+     * @param data the vectors.
+     * @param codec the vector codec.
+     * @param rerank the number of candidates per neighbor that are
+     *               re-ranked by exact distance. If 0, no re-ranking
+     *               and the original vectors are not kept.
+     */
+    public QuantizedSearch(float[][] data, VectorCodec codec, int rerank) {
+        this(data, codec, rerank, Math.max(1, (1 << 30) / codec.codeSize()));
+    }
+
+    /**
+     * Constructor.
+     * @param data the vectors.
+     * @param codec the vector codec.
+     * @param rerank the number of candidates per neighbor to re-rank.
+     * @param chunk the number of vectors per chunk of codes.
+     */
+    QuantizedSearch(float[][] data, VectorCodec codec, int rerank, int chunk) {
+        if (rerank < 0) {
+            throw new IllegalArgumentException("Invalid number of candidates to re-rank: " + rerank);
+        }
+
+        if (data[0].length != codec.dimension()) {
+            throw new IllegalArgumentException(String.format("The data dimension %d doesn't match the codec %d", data[0].length, codec.dimension()));
+        }
+
+        this.codec = codec;
+        this.code = codec.encode(data, chunk);
+        this.chunk = chunk;
+        this.n = data.length;
+        this.data = rerank > 0 ? data : null;
+        this.rerank = rerank;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Quantized Search (%s, rerank=%d)", codec, rerank);
+    }
+
+    /**
+     * Returns the number of vectors.
+     * @return the number of vectors.
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Returns the memory footprint of codes in bytes.
+     * @return the memory footprint of codes in bytes.
+     */
+    public long bytes() {
+        long bytes = 0;
+        for (byte[] c : code) {
+            bytes += c.length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the key of neighbor, which is the original vector if
+     * available, or the reconstructed one.
+     */
+    private float[] key(int i) {
+        if (data != null) {
+            return data[i];
+        }
+
+        float[] x = new float[codec.dimension()];
+        codec.decode(code[i / chunk], (i % chunk) * codec.codeSize(), x);
+        return x;
+    }
+
+    @Override
+    public Neighbor<float[], float[]> nearest(float[] q) {
+        Neighbor<float[], float[]>[] neighbors = knn(q, 1);
+        return neighbors.length > 0 ? neighbors[0] : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The neighbors are in ascending order of distance.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Neighbor<float[], float[]>[] knn(float[] q, int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("Invalid k: " + k);
+        }
+
+        if (k > n) {
+            throw new IllegalArgumentException("Neighbor array length is larger than the data size");
+        }
+
+        int m = data == null ? k : Math.min(n, k * rerank);
+        VectorCodec.AsymmetricDistance adc = codec.distance(q);
+        int size = codec.codeSize();
+
+        NeighborHeap heap = new NeighborHeap(m);
+        for (int c = 0, i = 0; c < code.length; c++) {
+            byte[] codes = code[c];
+            for (int offset = 0; offset < codes.length; i++, offset += size) {
+                double d = adc.d(codes, offset);
+                if (d < heap.peek() && (data == null || q != data[i])) {
+                    heap.add(i, d);
+                }
+            }
+        }
+
+        int[] index = new int[m];
+        double[] distance = new double[m];
+        heap.sort(index, distance, 0);
+
+        if (data != null) {
+            heap = new NeighborHeap(k);
+            for (int i : index) {
+                if (i >= 0) {
+                    heap.add(i, MathEx.squaredDistance(q, data[i]));
+                }
+            }
+
+            index = new int[k];
+            distance = new double[k];
+            heap.sort(index, distance, 0);
+        }
+
+        int count = 0;
+        while (count < k && index[count] >= 0) count++;
+
+        Neighbor<float[], float[]>[] neighbors = new Neighbor[count];
+        for (int j = 0; j < count; j++) {
+            float[] key = key(index[j]);
+            neighbors[j] = new Neighbor<>(key, key, index[j], Math.sqrt(distance[j]));
+        }
+
+        return neighbors;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The vectors are filtered by the asymmetric distance. If the original
+     * vectors are kept, the candidates are verified by the exact distance.
+     * Therefore, the result is approximate in both cases.
+     */
+    @Override
+    public void range(float[] q, double radius, List<Neighbor<float[], float[]>> neighbors) {
+        if (radius <= 0.0) {
+            throw new IllegalArgumentException("Invalid radius: " + radius);
+        }
+
+        double r2 = radius * radius;
+        VectorCodec.AsymmetricDistance adc = codec.distance(q);
+        int size = codec.codeSize();
+        for (int c = 0, i = 0; c < code.length; c++) {
+            byte[] codes = code[c];
+            for (int offset = 0; offset < codes.length; i++, offset += size) {
+                double d = adc.d(codes, offset);
+                if (d <= r2) {
+                    if (data != null) {
+                        if (q == data[i]) continue;
+                        d = MathEx.squaredDistance(q, data[i]);
+                        if (d > r2) continue;
+                    }
+
+                    float[] key = key(i);
+                    neighbors.add(new Neighbor<>(key, key, i, Math.sqrt(d)));
+                }
+            }
+        }
+    }
+}
@@ -17,7 +17,9 @@
 
 package smile.neighbor;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.IntStream;
 
 /**
  * A range nearest neighbor search retrieves the nearest neighbors to a query
@@ -39,4 +41,40 @@ public interface RNNSearch<K, V> {
      * @param neighbors the list to store found neighbors in the given range on output.
      */
     void range(K q, double radius, List<Neighbor<K,V>> neighbors);
+
+    /**
+     * Search the neighbors in the given radius of each query key in parallel.
+     * The neighbors of each query are in the same order as
+     * {@link #range(Object, double, List)} returns.
+     *
+     * @param q the query keys.
+     * @param radius the radius of search range from target.
+     * @param index the output index of neighbors of each query.
+     * @param distance the output distance of neighbors of each query.
+     *                 It may be null if the distances are not needed.
+     */
+    default void range(K[] q, double radius, int[][] index, double[][] distance) {
+        if (index.length != q.length || (distance != null && distance.length != q.length)) {
+            throw new IllegalArgumentException("The output array size doesn't match the number of queries: " + q.length);
+        }
+
+        IntStream.range(0, q.length).parallel().forEach(i -> {
+            List<Neighbor<K,V>> neighbors = new ArrayList<>();
+            range(q[i], radius, neighbors);
+
+            int n = neighbors.size();
+            index[i] = new int[n];
+            if (distance != null) {
+                distance[i] = new double[n];
+            }
+
+            for (int j = 0; j < n; j++) {
+                Neighbor<K,V> neighbor = neighbors.get(j);
+                index[i][j] = neighbor.index;
+                if (distance != null) {
+                    distance[i][j] = neighbor.distance;
+                }
+            }
+        });
+    }
 }
@@ -53,6 +53,11 @@
  * The cover tree has a theoretical bound that is based on the dataset's
  * doubling constant. The bound on search time is O(c12 log n) where c is
  * the expansion constant of the dataset.
+ * <p>
+ * Graph-based methods such as hierarchical navigable small world (HNSW)
+ * graphs link each point to its close neighbors and search by greedy
+ * traversal of the graph. They achieve high recall at low latency
+ * in high dimensional spaces.
  * 
  * @author Haifeng Li
  */
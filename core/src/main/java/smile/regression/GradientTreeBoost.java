@@ -136,6 +136,11 @@ public class GradientTreeBoost implements Regression<Tuple>, DataFrameRegression
      */
     private final double shrinkage;
 
+    /**
+     * The compiled forest for batch inference, built on demand.
+     */
+    private transient FlatForest flat;
+
     /**
      * Constructor. Learns a gradient tree boosting for regression.
      *
@@ -180,7 +185,8 @@ public class GradientTreeBoost implements Regression<Tuple>, DataFrameRegression
         int nodeSize = Integer.parseInt(prop.getProperty("smile.gbt.node.size", "5"));
         double shrinkage = Double.parseDouble(prop.getProperty("smile.gbt.shrinkage", "0.05"));
         double subsample = Double.parseDouble(prop.getProperty("smile.gbt.sample.rate", "0.7"));
-        return fit(formula, data, loss, ntrees, maxDepth, maxNodes, nodeSize, shrinkage, subsample);
+        int maxBins = Integer.parseInt(prop.getProperty("smile.gbt.max.bins", "0"));
+        return fit(formula, data, loss, ntrees, maxDepth, maxNodes, nodeSize, shrinkage, subsample, maxBins);
     }
 
     /**
@@ -200,6 +206,30 @@ public class GradientTreeBoost implements Regression<Tuple>, DataFrameRegression
      * @return the model.
      */
     public static GradientTreeBoost fit(Formula formula, DataFrame data, Loss loss, int ntrees, int maxDepth, int maxNodes, int nodeSize, double shrinkage, double subsample) {
+        return fit(formula, data, loss, ntrees, maxDepth, maxNodes, nodeSize, shrinkage, subsample, 0);
+    }
+
+    /**
+     * Fits a gradient tree boosting for regression.
+     *
+     * @param formula a symbolic description of the model to be fitted.
+     * @param data the data frame of the explanatory and response variables.
+     * @param loss loss function for regression. By default, least absolute
+     * deviation is employed for robust regression.
+     * @param ntrees the number of iterations (trees).
+     * @param maxDepth the maximum depth of the tree.
+     * @param maxNodes the maximum number of leaf nodes in the tree.
+     * @param nodeSize the number of instances in a node below which the tree will
+     *                 not split, setting nodeSize = 5 generally gives good results.
+     * @param shrinkage the shrinkage parameter in (0, 1] controls the learning rate of procedure.
+     * @param subsample the sampling fraction for stochastic tree boosting.
+     * @param maxBins the maximum number of quantile bins of numeric columns
+     *                for histogram-based split finding, which should be no
+     *                more than 256. If it is 0, the best splits are searched
+     *                over all the distinct values of numeric columns.
+     * @return the model.
+     */
+    public static GradientTreeBoost fit(Formula formula, DataFrame data, Loss loss, int ntrees, int maxDepth, int maxNodes, int nodeSize, double shrinkage, double subsample, int maxBins) {
         if (ntrees < 1) {
             throw new IllegalArgumentException("Invalid number of trees: " + ntrees);
         }
@@ -218,7 +248,8 @@ public class GradientTreeBoost implements Regression<Tuple>, DataFrameRegression
 
         final int n = x.nrow();
         final int N = (int) Math.round(n * subsample);
-        final int[][] order = CART.order(x);
+        final Bins bins = maxBins > 0 ? Bins.of(x, maxBins) : null;
+        final int[][] order = bins == null ? CART.order(x) : null;
 
         int[] permutation = IntStream.range(0, n).toArray();
         int[] samples = new int[n];
@@ -237,7 +268,9 @@ public class GradientTreeBoost implements Regression<Tuple>, DataFrameRegression
             }
 
             logger.info("Training {} tree", Strings.ordinal(t+1));
-            trees[t] = new RegressionTree(x, loss, field, maxDepth, maxNodes, nodeSize, x.ncol(), samples, order);
+            trees[t] = bins == null ?
+                    new RegressionTree(x, loss, field, maxDepth, maxNodes, nodeSize, x.ncol(), samples, order) :
+                    new RegressionTree(x, loss, field, maxDepth, maxNodes, nodeSize, x.ncol(), samples, bins);
 
             for (int i = 0; i < n; i++) {
                 residual[i] -= shrinkage * trees[t].predict(x.get(i));
@@ -310,6 +343,7 @@ public class GradientTreeBoost implements Regression<Tuple>, DataFrameRegression
         }
         
         trees = Arrays.copyOf(trees, ntrees);
+        flat = null;
     }
     
     @Override
@@ -323,6 +357,40 @@ public class GradientTreeBoost implements Regression<Tuple>, DataFrameRegression
         return y;
     }
 
+    /**
+     * Returns the compiled forest for batch inference.
+     * @return the compiled forest.
+     */
+    private FlatForest flat() {
+        if (flat == null) {
+            flat = FlatForest.of(trees);
+        }
+        return flat;
+    }
+
+    @Override
+    public double[] predict(DataFrame data) {
+        return predict(formula.x(data).toArray());
+    }
+
+    /**
+     * Predicts the responses of a batch of samples with the compiled
+     * forest, which scores many samples per tree traversal.
+     *
+     * @param x the samples, of which the columns are in the order
+     *          of design matrix schema.
+     * @return the predicted values.
+     */
+    public double[] predict(double[][] x) {
+        double[] weight = new double[trees.length];
+        Arrays.fill(weight, shrinkage);
+
+        double[] y = new double[x.length];
+        Arrays.fill(y, b);
+        flat().sum(x, weight, y);
+        return y;
+    }
+
     /**
      * Test the model on a validation dataset.
      *
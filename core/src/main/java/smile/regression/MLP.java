@@ -17,6 +17,7 @@
 
 package smile.regression;
 
+import java.util.Arrays;
 import smile.base.mlp.*;
 
 /**
@@ -75,18 +76,33 @@ import smile.base.mlp.*;
         t++;
     }
 
-    /** Updates the model with a mini-batch. RMSProp is applied if {@code rho > 0}. */
+    /**
+     * Updates the model with a mini-batch. RMSProp is applied if {@code rho > 0}.
+     * The mini-batch is propagated through the network as a matrix so that
+     * each layer computes the forward and backward passes with GEMM.
+     */
     @Override
     public void update(double[][] x, double[] y) {
-        double[] target = this.target.get();
-        for (int i = 0; i < x.length; i++) {
-            propagate(x[i]);
-            target[0] = y[i];
-            backpropagate(x[i], false);
+        update(batch(x), y, x.length);
+    }
+
+    /**
+     * Trains the model for an epoch with data parallelism. The samples
+     * are shuffled and processed in mini-batches by the given number of
+     * replicas of network in parallel. RMSProp is applied if {@code rho > 0}.
+     *
+     * @param x the training samples.
+     * @param y the response variable.
+     * @param batch the mini-batch size.
+     * @param threads the number of replicas trained in parallel.
+     * @param parallelism the data parallelism.
+     */
+    public void update(double[][] x, double[] y, int batch, int threads, DataParallelism parallelism) {
+        if (x.length != y.length) {
+            throw new IllegalArgumentException(String.format("The sizes of X and Y don't match: %d != %d", x.length, y.length));
         }
 
-        update(x.length);
-        t++;
+        epoch(x, index -> Arrays.stream(index).mapToDouble(i -> y[i]).toArray(), batch, threads, parallelism);
     }
 }
 
@@ -22,7 +22,9 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Properties;
 import java.util.stream.LongStream;
+import smile.base.cart.Bins;
 import smile.base.cart.CART;
+import smile.base.cart.FlatForest;
 import smile.base.cart.Loss;
 import smile.data.DataFrame;
 import smile.data.Tuple;
@@ -119,6 +121,11 @@ public class RandomForest implements Regression<Tuple>, DataFrameRegression, Tre
      */
     private final double[] importance;
 
+    /**
+     * The compiled forest for batch inference, built on demand.
+     */
+    private transient FlatForest flat;
+
     /**
      * Constructor.
      * @param formula a symbolic description of the model to be fitted.
@@ -159,7 +166,8 @@ public class RandomForest implements Regression<Tuple>, DataFrameRegression, Tre
         int maxNodes = Integer.parseInt(prop.getProperty("smile.random.forest.max.nodes", String.valueOf(data.size() / 5)));
         int nodeSize = Integer.parseInt(prop.getProperty("smile.random.forest.node.size", "5"));
         double subsample = Double.parseDouble(prop.getProperty("smile.random.forest.sample.rate", "1.0"));
-        return fit(formula, data, ntrees, mtry, maxDepth, maxNodes, nodeSize, subsample);
+        int maxBins = Integer.parseInt(prop.getProperty("smile.random.forest.max.bins", "0"));
+        return fit(formula, data, ntrees, mtry, maxDepth, maxNodes, nodeSize, subsample, maxBins, null);
     }
 
     /**
@@ -202,6 +210,32 @@ public class RandomForest implements Regression<Tuple>, DataFrameRegression, Tre
      * @return the model.
      */
     public static RandomForest fit(Formula formula, DataFrame data, int ntrees, int mtry, int maxDepth, int maxNodes, int nodeSize, double subsample, LongStream seeds) {
+        return fit(formula, data, ntrees, mtry, maxDepth, maxNodes, nodeSize, subsample, 0, seeds);
+    }
+
+    /**
+     * Learns a random forest for regression.
+     *
+     * @param formula a symbolic description of the model to be fitted.
+     * @param data the data frame of the explanatory and response variables.
+     * @param ntrees the number of trees.
+     * @param mtry the number of input variables to be used to determine the
+     *             decision at a node of the tree. p/3 generally give good
+     *             performance, where p is the number of variables.
+     * @param maxDepth the maximum depth of the tree.
+     * @param maxNodes the maximum number of leaf nodes in the tree.
+     * @param nodeSize the number of instances in a node below which the tree will
+     *                 not split, nodeSize = 5 generally gives good results.
+     * @param subsample the sampling rate for training tree. 1.0 means sampling with
+     *                  replacement. {@code < 1.0} means sampling without replacement.
+     * @param maxBins the maximum number of quantile bins of numeric columns
+     *                for histogram-based split finding, which should be no
+     *                more than 256. If it is 0, the best splits are searched
+     *                over all the distinct values of numeric columns.
+     * @param seeds optional RNG seeds for each regression tree.
+     * @return the model.
+     */
+    public static RandomForest fit(Formula formula, DataFrame data, int ntrees, int mtry, int maxDepth, int maxNodes, int nodeSize, double subsample, int maxBins, LongStream seeds) {
         if (ntrees < 1) {
             throw new IllegalArgumentException("Invalid number of trees: " + ntrees);
         }
@@ -225,7 +259,8 @@ public class RandomForest implements Regression<Tuple>, DataFrameRegression, Tre
         final int n = x.nrow();
         double[] prediction = new double[n];
         int[] oob = new int[n];
-        final int[][] order = CART.order(x);
+        final Bins bins = maxBins > 0 ? Bins.of(x, maxBins) : null;
+        final int[][] order = bins == null ? CART.order(x) : null;
 
         // generate seeds with sequential stream
         long[] seedArray = (seeds != null ? seeds : LongStream.range(-ntrees, 0)).sequential().distinct().limit(ntrees).toArray();
@@ -254,7 +289,9 @@ public class RandomForest implements Regression<Tuple>, DataFrameRegression, Tre
             }
 
             long start = System.nanoTime();
-            RegressionTree tree = new RegressionTree(x, Loss.ls(y), field, maxDepth, maxNodes, nodeSize, mtryFinal, samples, order);
+            RegressionTree tree = bins == null ?
+                    new RegressionTree(x, Loss.ls(y), field, maxDepth, maxNodes, nodeSize, mtryFinal, samples, order) :
+                    new RegressionTree(x, Loss.ls(y), field, maxDepth, maxNodes, nodeSize, mtryFinal, samples, bins);
             double fitTime = (System.nanoTime() - start) / 1E6;
 
             // estimate OOB metrics
@@ -405,6 +442,7 @@ public class RandomForest implements Regression<Tuple>, DataFrameRegression, Tre
         }
 
         Arrays.sort(models, Comparator.comparingDouble(model -> model.metrics.rmse));
+        flat = null;
         return new RandomForest(formula, Arrays.copyOf(models, ntrees), metrics, importance);
     }
 
@@ -454,6 +492,42 @@ public class RandomForest implements Regression<Tuple>, DataFrameRegression, Tre
         return y / models.length;
     }
 
+    /**
+     * Returns the compiled forest for batch inference.
+     * @return the compiled forest.
+     */
+    private FlatForest flat() {
+        if (flat == null) {
+            flat = FlatForest.of(trees());
+        }
+        return flat;
+    }
+
+    @Override
+    public double[] predict(DataFrame data) {
+        return predict(formula.x(data).toArray());
+    }
+
+    /**
+     * Predicts the responses of a batch of samples with the compiled
+     * forest, which scores many samples per tree traversal.
+     *
+     * @param x the samples, of which the columns are in the order
+     *          of design matrix schema.
+     * @return the predicted values.
+     */
+    public double[] predict(double[][] x) {
+        double[] weight = new double[models.length];
+        Arrays.fill(weight, 1.0);
+
+        double[] y = new double[x.length];
+        flat().sum(x, weight, y);
+        for (int i = 0; i < y.length; i++) {
+            y[i] /= models.length;
+        }
+        return y;
+    }
+
     /**
      * Test the model on a validation dataset.
      *
@@ -179,6 +179,50 @@ public class RegressionTree extends CART implements Regression<Tuple>, DataFrame
                 final int value = splitValue;
                 split = new NominalSplit(leaf, j, splitValue, splitScore, lo, hi, splitTrueCount, splitFalseCount, (int o) -> xj.getInt(o) == value);
             }
+        } else if (bins != null) {
+            int splitBin = -1;
+            int nbins = bins.size(j);
+            double[] histogram = histogram(leaf, j, lo, hi, 2, (h, offset, o) -> {
+                h[offset] += samples[o];
+                h[offset + 1] += y[o] * samples[o];
+            });
+
+            int tc = 0;
+            double trueSum = 0.0;
+            for (int b = 0; b < nbins - 1; b++) {
+                int bc = (int) histogram[2 * b];
+
+                // An empty bin doesn't introduce a new split.
+                if (bc == 0) continue;
+
+                tc += bc;
+                trueSum += histogram[2 * b + 1];
+                int fc = node.size() - tc;
+
+                // If either side is too small, skip this value.
+                if (tc < nodeSize || fc < nodeSize) {
+                    continue;
+                }
+
+                double trueMean = trueSum / tc;
+                double falseMean = (sum - trueSum) / fc;
+
+                double gain = (tc * trueMean * trueMean + fc * falseMean * falseMean) - nodeMeanSquared;
+
+                // new best split
+                if (gain > splitScore) {
+                    splitBin = b;
+                    splitTrueCount = tc;
+                    splitFalseCount = fc;
+                    splitScore = gain;
+                }
+            }
+
+            if (splitScore > 0.0) {
+                final int bin = splitBin;
+                final byte[] bj = bins.column(j);
+                split = new OrdinalSplit(leaf, j, bins.cutoff(j, bin), splitScore, lo, hi, splitTrueCount, splitFalseCount, (int o) -> (bj[o] & 0xFF) <= bin);
+            }
         } else {
             double splitValue = 0.0;
             int tc = 0;
@@ -248,7 +292,35 @@ public class RegressionTree extends CART implements Regression<Tuple>, DataFrame
         super(x, response, maxDepth, maxNodes, nodeSize, mtry, samples, order);
         this.loss = loss;
         this.y = loss.response();
+        build();
+    }
+
+    /**
+     * Constructor. Learns a regression tree with histogram-based split
+     * finding for Random Forest and Gradient Tree Boosting.
+     * @param x the data frame of the explanatory variable.
+     * @param loss the loss function.
+     * @param response the metadata of response variable.
+     * @param maxDepth the maximum depth of the tree.
+     * @param maxNodes the maximum number of leaf nodes in the tree.
+     * @param nodeSize the minimum size of leaf nodes.
+     * @param mtry the number of input variables to pick to split on at each
+     *             node. It seems that sqrt(p) give generally good performance,
+     *             where p is the number of variables.
+     * @param samples the sample set of instances for stochastic learning.
+     *               samples[i] is the number of sampling for instance i.
+     * @param bins the quantile bins of numeric columns for histogram-based
+     *             split finding.
+     */
+    public RegressionTree(DataFrame x, Loss loss, StructField response, int maxDepth, int maxNodes, int nodeSize, int mtry, int[] samples, Bins bins) {
+        super(x, response, maxDepth, maxNodes, nodeSize, mtry, samples, bins);
+        this.loss = loss;
+        this.y = loss.response();
+        build();
+    }
 
+    /** Grows the tree. */
+    private void build() {
         LeafNode node = newNode(IntStream.range(0, x.size()).filter(i -> this.samples[i] > 0).toArray());
         this.root = node;
 
@@ -315,7 +387,7 @@ public class RegressionTree extends CART implements Regression<Tuple>, DataFrame
         formula = formula.expand(data.schema());
         DataFrame x = formula.x(data);
         BaseVector y = formula.y(data);
-        RegressionTree tree = new RegressionTree(x, Loss.ls(y.toDoubleArray()), y.field(), maxDepth, maxNodes, nodeSize, -1, null, null);
+        RegressionTree tree = new RegressionTree(x, Loss.ls(y.toDoubleArray()), y.field(), maxDepth, maxNodes, nodeSize, -1, null, (int[][]) null);
         tree.formula = formula;
         return tree;
     }
@@ -0,0 +1,447 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.validation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import smile.classification.Classifier;
+import smile.classification.DataFrameClassifier;
+import smile.data.DataFrame;
+import smile.data.formula.Formula;
+import smile.math.MathEx;
+import smile.regression.DataFrameRegression;
+import smile.regression.Regression;
+
+/**
+ * Parallel hyperparameter search with cross validation. The pairs of
+ * hyperparameters and folds are evaluated concurrently within a budget
+ * of threads. Each concurrent evaluation runs in its own fork-join pool
+ * of {@code threadsPerTask} threads. The parallel streams of models,
+ * e.g. the trees of random forest, run in the pool of calling worker.
+ * So do the objective functions of logistic regression and maximum
+ * entropy with the default number of threads. Therefore, the nested
+ * parallelism doesn't oversubscribe the cores unless a model is
+ * configured with its own thread pool, e.g. a {@code smile.logit.threads}
+ * property larger than 1, which should be avoided in the search.
+ * <p>
+ * Besides the exhaustive search, the poor configurations can be stopped
+ * early by successive halving and Hyperband, which evaluate many
+ * configurations on a small budget, i.e. a random subset of training
+ * data, and promote the best ones to larger budgets. The scores are
+ * cached by the hyperparameters, fold and budget. So a configuration
+ * is never evaluated twice by the same search object, e.g. repeated
+ * in several Hyperband brackets. If a configuration is requested while
+ * it is being evaluated, the request waits for the pending score.
+ * <p>
+ * The below example tunes random forest with Hyperband, running two
+ * evaluations of four threads at a time.
+ * <pre>
+ * {@code
+ *    var hp = new Hyperparameters()
+ *        .add("smile.random.forest.trees", 100)
+ *        .add("smile.random.forest.mtry", new int[] {2, 3, 4})
+ *        .add("smile.random.forest.max.nodes", 100, 500, 50);
+ *
+ *    var objective = HyperparameterSearch.classification(formula, data,
+ *        prop -> (f, df) -> RandomForest.fit(f, df, prop));
+ *    try (var search = new HyperparameterSearch(CrossValidation.of(data.size(), 5), objective, 8, 4)) {
+ *        var results = search.hyperband(hp.random(), 1.0 / 9, 3);
+ *        System.out.println(results.get(0));
+ *    }
+ * }
+ * </pre>
+ *
+ * <h2>References</h2>
+ * <ol>
+ * <li>K. Jamieson and A. Talwalkar. Non-stochastic Best Arm Identification and Hyperparameter Optimization. AISTATS, 2016.</li>
+ * <li>L. Li, K. Jamieson, G. DeSalvo, A. Rostamizadeh, and A. Talwalkar. Hyperband: A Novel Bandit-Based Approach to Hyperparameter Optimization. JMLR, 2018.</li>
+ * </ol>
+ *
+ * @author Haifeng Li
+ */
+public class HyperparameterSearch implements AutoCloseable {
+    private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(HyperparameterSearch.class);
+
+    /**
+     * The objective of hyperparameter search.
+     */
+    @FunctionalInterface
+    public interface Objective {
+        /**
+         * Trains a model with the hyperparameters and returns its
+         * validation score, which is larger for better models.
+         * @param params the hyperparameters.
+         * @param train the index of training samples.
+         * @param test the index of validation samples.
+         * @return the validation score.
+         */
+        double score(Properties params, int[] train, int[] test);
+    }
+
+    /**
+     * The cross validation result of a hyperparameter configuration.
+     */
+    public static class Result implements Comparable<Result> {
+        /** The hyperparameters. */
+        public final Properties params;
+        /** The budget, i.e. the fraction of training data. */
+        public final double budget;
+        /** The validation score of each fold. */
+        public final double[] scores;
+        /** The average validation score. */
+        public final double score;
+
+        /**
+         * Constructor.
+         * @param params the hyperparameters.
+         * @param budget the fraction of training data.
+         * @param scores the validation score of each fold.
+         */
+        public Result(Properties params, double budget, double[] scores) {
+            this.params = params;
+            this.budget = budget;
+            this.scores = scores;
+            this.score = MathEx.mean(scores);
+        }
+
+        /** Results with larger budget and then higher score come first. */
+        @Override
+        public int compareTo(Result o) {
+            int c = Double.compare(o.budget, budget);
+            return c != 0 ? c : Double.compare(o.score, score);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: score = %.4f, budget = %.4f", key(params), score, budget);
+        }
+    }
+
+    /** The cross validation folds. */
+    private final Bag[] bags;
+    /** The training samples of each fold in random order for budgets. */
+    private final int[][] order;
+    /** The objective function. */
+    private final Objective objective;
+    /** The thread pool of each concurrent evaluation. */
+    private final ForkJoinPool[] pools;
+    /** The cache of scores, which may be pending. */
+    private final ConcurrentHashMap<String, CompletableFuture<Double>> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor with all available processors and one thread per evaluation.
+     * @param bags the cross validation folds.
+     * @param objective the objective function.
+     */
+    public HyperparameterSearch(Bag[] bags, Objective objective) {
+        this(bags, objective, Runtime.getRuntime().availableProcessors(), 1);
+    }
+
+    /**
+     * Constructor.
+     * @param bags the cross validation folds.
+     * @param objective the objective function.
+     * @param threads the total number of threads.
+     * @param threadsPerTask the number of threads of each evaluation,
+     *                       which are available to the parallel streams
+     *                       of model training.
+     */
+    public HyperparameterSearch(Bag[] bags, Objective objective, int threads, int threadsPerTask) {
+        if (bags.length == 0) {
+            throw new IllegalArgumentException("Empty cross validation folds");
+        }
+
+        if (threadsPerTask <= 0 || threadsPerTask > threads) {
+            throw new IllegalArgumentException(String.format("Invalid number of threads: %d, per task: %d", threads, threadsPerTask));
+        }
+
+        this.bags = bags;
+        this.objective = objective;
+
+        order = new int[bags.length][];
+        for (int i = 0; i < bags.length; i++) {
+            order[i] = bags[i].samples.clone();
+            MathEx.permutate(order[i]);
+        }
+
+        pools = new ForkJoinPool[threads / threadsPerTask];
+        for (int i = 0; i < pools.length; i++) {
+            pools[i] = new ForkJoinPool(threadsPerTask);
+        }
+    }
+
+    /** Shuts down the thread pools. */
+    @Override
+    public void close() {
+        for (ForkJoinPool pool : pools) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Returns the number of cached scores.
+     * @return the number of cached scores.
+     */
+    public int cacheSize() {
+        return cache.size();
+    }
+
+    /**
+     * Evaluates all hyperparameter configurations by cross validation.
+     * @param params the hyperparameter configurations, e.g. from
+     *               {@link Hyperparameters#grid()}.
+     * @return the results in descending order of score.
+     */
+    public List<Result> search(Stream<Properties> params) {
+        List<Result> results = evaluate(params.collect(Collectors.toList()), 1.0);
+        Collections.sort(results);
+        return results;
+    }
+
+    /**
+     * Successive halving. All configurations are evaluated on the minimum
+     * budget. The top 1/eta of them are evaluated on eta times budget,
+     * and so on until the full training data.
+     * @param params the hyperparameter configurations.
+     * @param minBudget the minimum fraction of training data.
+     * @param eta the reduction factor of configurations in each round.
+     * @return the results of each configuration in its last round,
+     *         in descending order of budget and score.
+     */
+    public List<Result> halving(Stream<Properties> params, double minBudget, int eta) {
+        check(minBudget, eta);
+        List<Properties> configs = params.collect(Collectors.toList());
+        if (configs.isEmpty()) {
+            throw new IllegalArgumentException("Empty hyperparameter configurations");
+        }
+
+        List<Result> results = new ArrayList<>();
+        halving(configs, minBudget, eta, results);
+        Collections.sort(results);
+        return results;
+    }
+
+    /**
+     * Hyperband, which runs successive halving in several brackets with
+     * a different tradeoff between the number of configurations and the
+     * minimum budget. The configurations are drawn from the stream as
+     * needed, e.g. from the infinite stream {@link Hyperparameters#random()}.
+     * @param params the hyperparameter configurations.
+     * @param minBudget the minimum fraction of training data.
+     * @param eta the reduction factor of configurations in each round.
+     * @return the results of each configuration in its last round,
+     *         in descending order of budget and score.
+     */
+    public List<Result> hyperband(Stream<Properties> params, double minBudget, int eta) {
+        check(minBudget, eta);
+        int smax = (int) Math.floor(Math.log(1.0 / minBudget) / Math.log(eta) + 1E-9);
+
+        Iterator<Properties> iterator = params.iterator();
+        List<Result> results = new ArrayList<>();
+        for (int s = smax; s >= 0 && iterator.hasNext(); s--) {
+            int n = (int) Math.ceil((smax + 1.0) / (s + 1) * Math.pow(eta, s));
+            List<Properties> configs = new ArrayList<>(n);
+            while (configs.size() < n && iterator.hasNext()) {
+                configs.add(iterator.next());
+            }
+
+            logger.info("Hyperband bracket {}: {} configurations", s, configs.size());
+            halving(configs, Math.pow(eta, -s), eta, results);
+        }
+
+        if (results.isEmpty()) {
+            throw new IllegalArgumentException("Empty hyperparameter configurations");
+        }
+
+        Collections.sort(results);
+        return results;
+    }
+
+    /** Checks the parameters of successive halving. */
+    private static void check(double minBudget, int eta) {
+        if (minBudget <= 0.0 || minBudget > 1.0) {
+            throw new IllegalArgumentException("Invalid minimum budget: " + minBudget);
+        }
+
+        if (eta < 2) {
+            throw new IllegalArgumentException("Invalid reduction factor: " + eta);
+        }
+    }
+
+    /** Runs successive halving and adds the results of each configuration in its last round. */
+    private void halving(List<Properties> configs, double minBudget, int eta, List<Result> results) {
+        for (int round = 0; ; round++) {
+            double budget = minBudget * Math.pow(eta, round);
+            if (budget > 1.0 - 1E-9) budget = 1.0;
+
+            List<Result> rung = evaluate(configs, budget);
+            Collections.sort(rung);
+            logger.info("Successive halving at budget {}: {} configurations, best score {}", budget, rung.size(), rung.get(0).score);
+
+            if (budget == 1.0) {
+                results.addAll(rung);
+                return;
+            }
+
+            int keep = Math.max(1, rung.size() / eta);
+            results.addAll(rung.subList(keep, rung.size()));
+            configs = rung.subList(0, keep).stream().map(result -> result.params).collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Evaluates the configurations on all folds at a budget. The pairs of
+     * configuration and fold are pulled from a shared counter by a worker
+     * in each pool. The scores are stored by index so that the results
+     * don't depend on the scheduling.
+     */
+    private List<Result> evaluate(List<Properties> configs, double budget) {
+        int k = bags.length;
+        int tasks = configs.size() * k;
+        double[][] scores = new double[configs.size()][k];
+
+        int[][] train = new int[k][];
+        for (int j = 0; j < k; j++) {
+            int size = Math.max(1, (int) Math.round(budget * order[j].length));
+            train[j] = budget == 1.0 ? bags[j].samples : Arrays.copyOf(order[j], size);
+        }
+
+        AtomicInteger next = new AtomicInteger();
+        CompletableFuture<?>[] workers = new CompletableFuture<?>[Math.min(pools.length, tasks)];
+        for (int w = 0; w < workers.length; w++) {
+            workers[w] = CompletableFuture.runAsync(() -> {
+                for (int t = next.getAndIncrement(); t < tasks; t = next.getAndIncrement()) {
+                    int i = t / k;
+                    int j = t % k;
+                    Properties params = configs.get(i);
+                    String key = String.format("%s|%d|%d", key(params), j, train[j].length);
+                    scores[i][j] = score(key, params, train[j], bags[j].oob);
+                }
+            }, pools[w]);
+        }
+        CompletableFuture.allOf(workers).join();
+
+        List<Result> results = new ArrayList<>(configs.size());
+        for (int i = 0; i < configs.size(); i++) {
+            results.add(new Result(configs.get(i), budget, scores[i]));
+        }
+        return results;
+    }
+
+    /**
+     * Returns the cached score, or evaluates the objective if the key is
+     * not in the cache. Only the first request of a key evaluates the
+     * objective and the concurrent requests wait for its score.
+     */
+    private double score(String key, Properties params, int[] train, int[] test) {
+        CompletableFuture<Double> future = new CompletableFuture<>();
+        CompletableFuture<Double> score = cache.putIfAbsent(key, future);
+        if (score == null) {
+            try {
+                future.complete(objective.score(params, train, test));
+            } catch (RuntimeException | Error ex) {
+                // Don't cache the failure so that the key may be retried.
+                cache.remove(key, future);
+                future.completeExceptionally(ex);
+                throw ex;
+            }
+            score = future;
+        }
+        return score.join();
+    }
+
+    /** Returns the canonical string of hyperparameters. */
+    private static String key(Properties params) {
+        return new TreeSet<>(params.stringPropertyNames()).stream()
+                .map(name -> name + '=' + params.getProperty(name))
+                .collect(Collectors.joining(", ", "{", "}"));
+    }
+
+    /**
+     * Returns the objective of classification accuracy.
+     * @param x the samples.
+     * @param y the sample labels.
+     * @param trainer the lambda to train a model with the hyperparameters.
+     * @param <T> the data type of samples.
+     * @param <M> the model type.
+     * @return the objective.
+     */
+    public static <T, M extends Classifier<T>> Objective classification(T[] x, int[] y, Function<Properties, BiFunction<T[], int[], M>> trainer) {
+        return (params, train, test) -> ClassificationValidation.of(
+                MathEx.slice(x, train), MathEx.slice(y, train),
+                MathEx.slice(x, test), MathEx.slice(y, test),
+                trainer.apply(params)).metrics.accuracy;
+    }
+
+    /**
+     * Returns the objective of classification accuracy.
+     * @param formula the model specification.
+     * @param data the data.
+     * @param trainer the lambda to train a model with the hyperparameters.
+     * @param <M> the model type.
+     * @return the objective.
+     */
+    public static <M extends DataFrameClassifier> Objective classification(Formula formula, DataFrame data, Function<Properties, BiFunction<Formula, DataFrame, M>> trainer) {
+        return (params, train, test) -> ClassificationValidation.of(
+                formula, data.of(train), data.of(test),
+                trainer.apply(params)).metrics.accuracy;
+    }
+
+    /**
+     * Returns the objective of negative root mean squared error.
+     * @param x the samples.
+     * @param y the response variable.
+     * @param trainer the lambda to train a model with the hyperparameters.
+     * @param <T> the data type of samples.
+     * @param <M> the model type.
+     * @return the objective.
+     */
+    public static <T, M extends Regression<T>> Objective regression(T[] x, double[] y, Function<Properties, BiFunction<T[], double[], M>> trainer) {
+        return (params, train, test) -> -RegressionValidation.of(
+                MathEx.slice(x, train), MathEx.slice(y, train),
+                MathEx.slice(x, test), MathEx.slice(y, test),
+                trainer.apply(params)).metrics.rmse;
+    }
+
+    /**
+     * Returns the objective of negative root mean squared error.
+     * @param formula the model specification.
+     * @param data the data.
+     * @param trainer the lambda to train a model with the hyperparameters.
+     * @param <M> the model type.
+     * @return the objective.
+     */
+    public static <M extends DataFrameRegression> Objective regression(Formula formula, DataFrame data, Function<Properties, BiFunction<Formula, DataFrame, M>> trainer) {
+        return (params, train, test) -> -RegressionValidation.of(
+                formula, data.of(train), data.of(test),
+                trainer.apply(params)).metrics.rmse;
+    }
+}
@@ -148,7 +148,7 @@ public class NeuralGas implements VectorQuantizer {
         int n = samples.length;
         int[] y = new int[n];
         double[][] medoids = new double[k][];
-        CentroidClustering.seed(samples, medoids, y, MathEx::squaredDistance);
+        CentroidClustering.seed(samples, medoids, y);
 
         return medoids;
     }
@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.vq;
+
+import smile.clustering.KMeans;
+import smile.math.MathEx;
+
+/**
+ * Product quantization. The vector space is decomposed into the Cartesian
+ * product of m low dimensional subspaces, and each subspace is quantized
+ * separately by a codebook of at most 256 centroids learned by K-Means.
+ * A vector is encoded by the indices of nearest centroids in each
+ * subspace, i.e. m bytes. The product of codebooks represents a huge
+ * number of centroids with small memory and training cost.
+ * <p>
+ * The squared distance between a query and an encoded vector is the
+ * sum of squared distances between the query subvectors and the
+ * centroids of code in each subspace. With a lookup table of the
+ * distances between the query subvectors and all centroids, it takes
+ * only m table lookups and additions per vector.
+ *
+ * <h2>References</h2>
+ * <ol>
+ * <li> H. Jegou, M. Douze, and C. Schmid. Product quantization for nearest neighbor search. IEEE TPAMI, 33(1):117-128, 2011.</li>
+ * </ol>
+ *
+ * @author Haifeng Li
+ */
+public class ProductQuantizer implements VectorCodec {
+    private static final long serialVersionUID = 2L;
+    private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(ProductQuantizer.class);
+
+    /**
+     * The maximum number of training samples per centroid.
+     */
+    private static final int MAX_SAMPLES_PER_CENTROID = 256;
+
+    /**
+     * The dimension of vectors.
+     */
+    private final int d;
+    /**
+     * The number of subspaces.
+     */
+    private final int m;
+    /**
+     * The dimension of subspaces.
+     */
+    private final int ds;
+    /**
+     * The number of centroids per subspace.
+     */
+    private final int ks;
+    /**
+     * The centroids of each subspace, of which the i-th centroid is
+     * stored in {@code [i * ds, (i + 1) * ds)}.
+     */
+    private final float[][] centroids;
+
+    /**
+     * Constructor.
+     * @param centroids the centroids of each subspace, of which the i-th
+     *                  centroid is stored in {@code [i * ds, (i + 1) * ds)}.
+     * @param ks the number of centroids per subspace.
+     */
+    public ProductQuantizer(float[][] centroids, int ks) {
+        if (ks < 2 || ks > 256) {
+            throw new IllegalArgumentException("Invalid number of centroids per subspace: " + ks);
+        }
+
+        if (centroids[0].length % ks != 0) {
+            throw new IllegalArgumentException("Invalid centroid array size: " + centroids[0].length);
+        }
+
+        this.m = centroids.length;
+        this.ks = ks;
+        this.ds = centroids[0].length / ks;
+        this.d = m * ds;
+        this.centroids = centroids;
+    }
+
+    /**
+     * Learns the product quantizer with 256 centroids per subspace.
+     * @param data the training data.
+     * @param m the number of subspaces, which should divide the dimension.
+     * @return the model.
+     */
+    public static ProductQuantizer fit(float[][] data, int m) {
+        return fit(data, m, 256, 25);
+    }
+
+    /**
+     * Learns the product quantizer. The codebook of each subspace is
+     * learned by K-Means. A random sample of at most 256 vectors per
+     * centroid is used for training.
+     * @param data the training data.
+     * @param m the number of subspaces, which should divide the dimension.
+     * @param ks the number of centroids per subspace, at most 256.
+     * @param maxIter the maximum number of K-Means iterations.
+     * @return the model.
+     */
+    public static ProductQuantizer fit(float[][] data, int m, int ks, int maxIter) {
+        int d = data[0].length;
+        if (m <= 0 || d % m != 0) {
+            throw new IllegalArgumentException(String.format("Invalid number of subspaces %d for dimension %d", m, d));
+        }
+
+        if (ks < 2 || ks > 256) {
+            throw new IllegalArgumentException("Invalid number of centroids per subspace: " + ks);
+        }
+
+        if (data.length < ks) {
+            throw new IllegalArgumentException(String.format("The data size %d is smaller than the number of centroids %d", data.length, ks));
+        }
+
+        int n = Math.min(data.length, MAX_SAMPLES_PER_CENTROID * ks);
+        int[] index = n < data.length ? MathEx.permutate(data.length) : null;
+
+        int ds = d / m;
+        float[][] centroids = new float[m][ks * ds];
+        double[][] x = new double[n][ds];
+        for (int j = 0; j < m; j++) {
+            for (int i = 0; i < n; i++) {
+                float[] xi = data[index == null ? i : index[i]];
+                for (int l = 0; l < ds; l++) {
+                    x[i][l] = xi[j * ds + l];
+                }
+            }
+
+            KMeans kmeans = KMeans.fit(x, ks, maxIter, 1E-4);
+            logger.info(String.format("Subspace %d distortion: %.4f", j, kmeans.distortion));
+            for (int k = 0; k < ks; k++) {
+                double[] c = kmeans.centroids[k];
+                for (int l = 0; l < ds; l++) {
+                    centroids[j][k * ds + l] = (float) c[l];
+                }
+            }
+        }
+
+        return new ProductQuantizer(centroids, ks);
+    }
+
+    @Override
+    public int dimension() {
+        return d;
+    }
+
+    @Override
+    public int codeSize() {
+        return m;
+    }
+
+    /**
+     * Returns the number of subspaces.
+     * @return the number of subspaces.
+     */
+    public int subspaces() {
+        return m;
+    }
+
+    /**
+     * Returns the number of centroids per subspace.
+     * @return the number of centroids per subspace.
+     */
+    public int centroids() {
+        return ks;
+    }
+
+    @Override
+    public void encode(float[] x, byte[] code, int offset) {
+        for (int j = 0; j < m; j++) {
+            float[] c = centroids[j];
+            int o = j * ds;
+            int nearest = 0;
+            double dist = Double.MAX_VALUE;
+            for (int k = 0; k < ks; k++) {
+                double dk = 0.0;
+                for (int l = 0; l < ds; l++) {
+                    double t = x[o + l] - c[k * ds + l];
+                    dk += t * t;
+                }
+
+                if (dk < dist) {
+                    dist = dk;
+                    nearest = k;
+                }
+            }
+            code[offset + j] = (byte) nearest;
+        }
+    }
+
+    @Override
+    public void decode(byte[] code, int offset, float[] x) {
+        for (int j = 0; j < m; j++) {
+            int k = code[offset + j] & 0xFF;
+            System.arraycopy(centroids[j], k * ds, x, j * ds, ds);
+        }
+    }
+
+    /**
+     * Returns the lookup table of squared distances between the query
+     * subvectors and the centroids, of which the distance to the k-th
+     * centroid of j-th subspace is at {@code j * ks + k}.
+     * @param q the query vector.
+     * @return the lookup table.
+     */
+    public double[] table(float[] q) {
+        double[] table = new double[m * ks];
+        for (int j = 0; j < m; j++) {
+            float[] c = centroids[j];
+            int o = j * ds;
+            for (int k = 0; k < ks; k++) {
+                double dk = 0.0;
+                for (int l = 0; l < ds; l++) {
+                    double t = q[o + l] - c[k * ds + l];
+                    dk += t * t;
+                }
+                table[j * ks + k] = dk;
+            }
+        }
+        return table;
+    }
+
+    @Override
+    public AsymmetricDistance distance(float[] q) {
+        double[] table = table(q);
+        return (code, offset) -> {
+            double dist = 0.0;
+            for (int j = 0, t = 0; j < m; j++, t += ks) {
+                dist += table[t + (code[offset + j] & 0xFF)];
+            }
+            return dist;
+        };
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ProductQuantizer(d=%d, m=%d, ks=%d)", d, m, ks);
+    }
+}
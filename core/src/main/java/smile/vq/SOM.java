@@ -187,7 +187,7 @@ public class SOM implements VectorQuantizer {
 
         int[] clusters = new int[n];
         double[][] medoids = new double[k][];
-        CentroidClustering.seed(samples, medoids, clusters, MathEx::squaredDistance);
+        CentroidClustering.seed(samples, medoids, clusters);
 
         // Pair-wise distance matrix.
         double[][] pdist = new double[k][k];
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.vq;
+
+/**
+ * 8-bit scalar quantization. Each dimension is uniformly quantized into
+ * 256 levels between its minimum and maximum in the training data.
+ * The code of a vector takes one byte per dimension, i.e. a quarter of
+ * float vector. Compared to product quantization, the scalar quantization
+ * needs no training beyond the value range and has much smaller
+ * quantization error at the cost of larger codes.
+ *
+ * @author Haifeng Li
+ */
+public class ScalarQuantizer implements VectorCodec {
+    private static final long serialVersionUID = 2L;
+
+    /**
+     * The minimum of each dimension.
+     */
+    private final float[] min;
+    /**
+     * The quantization step of each dimension.
+     */
+    private final float[] step;
+
+    /**
+     * Constructor.
+     * @param min the minimum of each dimension.
+     * @param max the maximum of each dimension.
+     */
+    public ScalarQuantizer(float[] min, float[] max) {
+        if (min.length != max.length) {
+            throw new IllegalArgumentException(String.format("The sizes of min and max don't match: %d != %d", min.length, max.length));
+        }
+
+        int d = min.length;
+        this.min = min.clone();
+        this.step = new float[d];
+        for (int j = 0; j < d; j++) {
+            if (max[j] < min[j]) {
+                throw new IllegalArgumentException(String.format("Invalid range of dimension %d: [%f, %f]", j, min[j], max[j]));
+            }
+
+            step[j] = (max[j] - min[j]) / 255;
+        }
+    }
+
+    /**
+     * Learns the value range of each dimension.
+     * @param data the training data.
+     * @return the model.
+     */
+    public static ScalarQuantizer fit(float[][] data) {
+        int d = data[0].length;
+        float[] min = data[0].clone();
+        float[] max = data[0].clone();
+        for (float[] x : data) {
+            for (int j = 0; j < d; j++) {
+                min[j] = Math.min(min[j], x[j]);
+                max[j] = Math.max(max[j], x[j]);
+            }
+        }
+
+        return new ScalarQuantizer(min, max);
+    }
+
+    @Override
+    public int dimension() {
+        return min.length;
+    }
+
+    @Override
+    public int codeSize() {
+        return min.length;
+    }
+
+    @Override
+    public void encode(float[] x, byte[] code, int offset) {
+        for (int j = 0; j < min.length; j++) {
+            int c = step[j] == 0.0f ? 0 : Math.round((x[j] - min[j]) / step[j]);
+            code[offset + j] = (byte) Math.max(0, Math.min(255, c));
+        }
+    }
+
+    @Override
+    public void decode(byte[] code, int offset, float[] x) {
+        for (int j = 0; j < min.length; j++) {
+            x[j] = min[j] + step[j] * (code[offset + j] & 0xFF);
+        }
+    }
+
+    @Override
+    public AsymmetricDistance distance(float[] q) {
+        int d = min.length;
+        // The query relative to the minimum.
+        float[] r = new float[d];
+        for (int j = 0; j < d; j++) {
+            r[j] = q[j] - min[j];
+        }
+
+        return (code, offset) -> {
+            double dist = 0.0;
+            for (int j = 0; j < d; j++) {
+                double t = r[j] - step[j] * (code[offset + j] & 0xFF);
+                dist += t * t;
+            }
+            return dist;
+        };
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ScalarQuantizer(d=%d)", min.length);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.vq;
+
+import java.io.Serializable;
+import java.util.stream.IntStream;
+
+/**
+ * Lossy compression of vectors into compact byte codes. The codes are
+ * much smaller than the vectors of floating numbers so that large data
+ * sets fit in memory. The squared Euclidean distance between an
+ * uncompressed query and a compressed vector can be estimated
+ * directly from the code, which is called asymmetric distance
+ * computation (ADC).
+ *
+ * @author Haifeng Li
+ */
+public interface VectorCodec extends Serializable {
+    /**
+     * The asymmetric squared distance between a query and codes.
+     */
+    interface AsymmetricDistance {
+        /**
+         * Returns the estimated squared distance between the query
+         * and the encoded vector.
+         * @param code the codes.
+         * @param offset the offset of code of the vector.
+         * @return the squared distance.
+         */
+        double d(byte[] code, int offset);
+    }
+
+    /**
+     * Returns the dimension of vectors.
+     * @return the dimension of vectors.
+     */
+    int dimension();
+
+    /**
+     * Returns the size of code in bytes.
+     * @return the size of code in bytes.
+     */
+    int codeSize();
+
+    /**
+     * Encodes a vector.
+     * @param x the vector.
+     * @param code the output codes.
+     * @param offset the offset of output.
+     */
+    void encode(float[] x, byte[] code, int offset);
+
+    /**
+     * Reconstructs a vector from its code.
+     * @param code the codes.
+     * @param offset the offset of code of the vector.
+     * @param x the output vector.
+     */
+    void decode(byte[] code, int offset, float[] x);
+
+    /**
+     * Returns the asymmetric distance function of a query. The function
+     * may precompute query-specific lookup tables so that it should be
+     * reused for all codes.
+     * @param q the query vector.
+     * @return the asymmetric distance function.
+     */
+    AsymmetricDistance distance(float[] q);
+
+    /**
+     * Encodes a set of vectors. The codes are concatenated into chunks
+     * of at most 1 GB each, as the total size may exceed the maximum
+     * array size.
+     * @param data the vectors.
+     * @return the chunks of codes.
+     */
+    default byte[][] encode(float[][] data) {
+        return encode(data, Math.max(1, (1 << 30) / codeSize()));
+    }
+
+    /**
+     * Encodes a set of vectors. The codes are concatenated into chunks,
+     * each of which holds the codes of {@code chunk} vectors except
+     * the last one. The code of vector {@code i} is in the chunk
+     * {@code i / chunk} at the offset {@code (i % chunk) * codeSize()}.
+     * @param data the vectors.
+     * @param chunk the number of vectors per chunk.
+     * @return the chunks of codes.
+     */
+    default byte[][] encode(float[][] data, int chunk) {
+        int size = codeSize();
+        if (chunk <= 0 || (long) chunk * size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid number of vectors per chunk: " + chunk);
+        }
+
+        int n = data.length;
+        byte[][] code = new byte[(n + chunk - 1) / chunk][];
+        for (int i = 0; i < code.length; i++) {
+            code[i] = new byte[Math.min(chunk, n - i * chunk) * size];
+        }
+
+        IntStream.range(0, n).parallel().forEach(i -> encode(data[i], code[i / chunk], (i % chunk) * size));
+        return code;
+    }
+}
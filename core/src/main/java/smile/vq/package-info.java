@@ -23,6 +23,10 @@
  * space. The vector quantizer is defined by a partition of this space
  * into a set of non-overlapping regions. The vector is encoded by
  * the nearest reference vector (known as codevector) in the codebook.
+ * <p>
+ * Product quantization and scalar quantization compress vectors into
+ * compact byte codes, of which the distance to an uncompressed query
+ * can be estimated efficiently for large scale nearest neighbor search.
  *
  * @author Haifeng Li
  */
@@ -28,6 +28,7 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -97,6 +98,39 @@ public class GradientTreeBoostTest {
         assertEquals(0.9467, metrics.accuracy, 1E-4);
     }
 
+    @Test
+    public void testBatch() {
+        System.out.println("Batch prediction with compiled forest");
+
+        GradientTreeBoost model = GradientTreeBoost.fit(Segment.formula, Segment.train, 100, 20, 6, 5, 0.05, 0.7);
+        double[][] x = Segment.formula.x(Segment.test).toArray();
+        int n = x.length;
+        int[] prediction = model.predict(x);
+        double[][] posteriori = new double[n][7];
+        int[] soft = model.predict(x, posteriori);
+
+        double[] prob = new double[7];
+        for (int i = 0; i < n; i++) {
+            assertEquals(model.predict(Segment.test.get(i)), prediction[i]);
+            assertEquals(model.predict(Segment.test.get(i), prob), soft[i]);
+            assertArrayEquals(prob, posteriori[i], 1E-10);
+        }
+
+        model = GradientTreeBoost.fit(Weather.formula, Weather.data, 100, 20, 6, 5, 0.05, 0.7);
+        x = Weather.formula.x(Weather.data).toArray();
+        n = x.length;
+        prediction = model.predict(Weather.data);
+        posteriori = new double[n][2];
+        soft = model.predict(x, posteriori);
+
+        prob = new double[2];
+        for (int i = 0; i < n; i++) {
+            assertEquals(model.predict(Weather.data.get(i)), prediction[i]);
+            assertEquals(model.predict(Weather.data.get(i), prob), soft[i]);
+            assertArrayEquals(prob, posteriori[i], 1E-10);
+        }
+    }
+
     @Test
     public void testPenDigits() {
         System.out.println("Pen Digits");
@@ -121,6 +155,18 @@ public class GradientTreeBoostTest {
         assertEquals(0.9640, result.avg.accuracy, 1E-4);
     }
 
+    @Test
+    public void testHistogram() {
+        System.out.println("Breast Cancer with histogram-based split");
+
+        MathEx.setSeed(19650218); // to get repeatable results.
+        ClassificationValidations<GradientTreeBoost> result = CrossValidation.classification(10, BreastCancer.formula, BreastCancer.data,
+                (f, x) -> GradientTreeBoost.fit(f, x, 100, 20, 6, 5, 0.05, 0.7, 256));
+
+        System.out.println(result);
+        assertEquals(0.9604, result.avg.accuracy, 1E-4);
+    }
+
     @Test
     public void testSegment() {
         System.out.println("Segment");
@@ -17,6 +17,7 @@
 
 package smile.classification;
 
+import java.util.concurrent.ForkJoinPool;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -126,6 +127,43 @@ public class LogisticRegressionTest {
         assertEquals(39, error);
     }
 
+    @Test
+    public void testThreads() throws Exception {
+        System.out.println("Threads");
+
+        // The partial gradients are reduced in a fixed order
+        // so that the model doesn't depend on the number of threads.
+        System.setProperty("smile.data.partition.size", "100");
+        try {
+            LogisticRegression.Multinomial model1 = LogisticRegression.multinomial(Segment.x, Segment.y, 0.05, 1E-3, 100, 1);
+            LogisticRegression.Multinomial model3 = LogisticRegression.multinomial(Segment.x, Segment.y, 0.05, 1E-3, 100, 3);
+            double[][] w1 = model1.coefficients();
+            double[][] w3 = model3.coefficients();
+            for (int i = 0; i < w1.length; i++) {
+                assertArrayEquals(w1[i], w3[i], 0.0);
+            }
+
+            LogisticRegression.Binomial binomial1 = LogisticRegression.binomial(BreastCancer.x, BreastCancer.y, 0.1, 1E-5, 500, 1);
+            LogisticRegression.Binomial binomial4 = LogisticRegression.binomial(BreastCancer.x, BreastCancer.y, 0.1, 1E-5, 500, 4);
+            assertArrayEquals(binomial1.coefficients(), binomial4.coefficients(), 0.0);
+
+            // By default, the objective runs in the common pool
+            // or the pool of the fork-join task that fits the model.
+            LogisticRegression.Binomial binomial0 = LogisticRegression.binomial(BreastCancer.x, BreastCancer.y, 0.1, 1E-5, 500, 0);
+            assertArrayEquals(binomial1.coefficients(), binomial0.coefficients(), 0.0);
+
+            ForkJoinPool pool = new ForkJoinPool(2);
+            try {
+                LogisticRegression.Binomial nested = pool.submit(() -> LogisticRegression.binomial(BreastCancer.x, BreastCancer.y, 0.1, 1E-5, 500, 0)).get();
+                assertArrayEquals(binomial1.coefficients(), nested.coefficients(), 0.0);
+            } finally {
+                pool.shutdown();
+            }
+        } finally {
+            System.clearProperty("smile.data.partition.size");
+        }
+    }
+
     @Test
     public void testUSPS() throws Exception {
         System.out.println("USPS");
@@ -17,6 +17,7 @@
 
 package smile.classification;
 
+import java.util.Arrays;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -199,6 +200,202 @@ public class MLPTest {
         assertEquals(28, error);
     }
 
+    @Test
+    public void testSegmentGEMM() {
+        System.out.println("Segment GEMM");
+
+        WinsorScaler scaler = WinsorScaler.fit(Segment.x, 0.01, 0.99);
+        double[][] x = scaler.transform(Segment.x);
+        double[][] testx = scaler.transform(Segment.testx);
+        int p = x[0].length;
+        int k = MathEx.max(Segment.y) + 1;
+
+        MathEx.setSeed(19650218);
+        MLP online = new MLP(p, Layer.sigmoid(50), Layer.mle(k, OutputFunction.SOFTMAX));
+        MathEx.setSeed(19650218);
+        MLP batch = new MLP(p, Layer.sigmoid(50), Layer.mle(k, OutputFunction.SOFTMAX));
+        online.setLearningRate(TimeFunction.constant(0.2));
+        batch.setLearningRate(TimeFunction.constant(0.2));
+
+        // The mini-batch of single sample is same as online learning.
+        for (int i = 0; i < 200; i++) {
+            online.update(x[i], Segment.y[i]);
+            batch.update(new double[][]{x[i]}, new int[]{Segment.y[i]});
+        }
+
+        double[] p1 = new double[k];
+        double[] p2 = new double[k];
+        for (double[] xi : testx) {
+            online.predict(xi, p1);
+            batch.predict(xi, p2);
+            assertArrayEquals(p1, p2, 1E-10);
+        }
+
+        // Single precision GEMM is close to double precision.
+        MathEx.setSeed(19650218);
+        MLP model = new MLP(p, Layer.sigmoid(50), Layer.mle(k, OutputFunction.SOFTMAX));
+        MathEx.setSeed(19650218);
+        MLP model32 = new MLP(p, Layer.sigmoid(50), Layer.mle(k, OutputFunction.SOFTMAX));
+        model.setLearningRate(TimeFunction.constant(1.0));
+        model32.setLearningRate(TimeFunction.constant(1.0));
+        model32.setFloat32(true);
+
+        int size = 20;
+        for (int epoch = 1; epoch <= 3; epoch++) {
+            for (int i = 0; i + size <= x.length; i += size) {
+                double[][] batchx = Arrays.copyOfRange(x, i, i + size);
+                int[] batchy = Arrays.copyOfRange(Segment.y, i, i + size);
+                model.update(batchx, batchy);
+                model32.update(batchx, batchy);
+            }
+        }
+
+        for (double[] xi : testx) {
+            model.predict(xi, p1);
+            model32.predict(xi, p2);
+            assertArrayEquals(p1, p2, 1E-3);
+        }
+    }
+
+    @Test
+    public void testSegmentDataParallel() {
+        System.out.println("Segment data parallel");
+
+        WinsorScaler scaler = WinsorScaler.fit(Segment.x, 0.01, 0.99);
+        double[][] x = scaler.transform(Segment.x);
+        double[][] testx = scaler.transform(Segment.testx);
+        int p = x[0].length;
+        int k = MathEx.max(Segment.y) + 1;
+        int batch = 20;
+
+        MathEx.setSeed(19650218);
+        MLP serial = new MLP(p, Layer.sigmoid(50), Layer.mle(k, OutputFunction.SOFTMAX));
+        serial.setLearningRate(TimeFunction.constant(0.5));
+        MathEx.setSeed(19650218);
+        MLP allreduce = new MLP(p, Layer.sigmoid(50), Layer.mle(k, OutputFunction.SOFTMAX));
+        allreduce.setLearningRate(TimeFunction.constant(0.5));
+        MathEx.setSeed(19650218);
+        MLP allreduce3 = new MLP(p, Layer.sigmoid(50), Layer.mle(k, OutputFunction.SOFTMAX));
+        allreduce3.setLearningRate(TimeFunction.constant(0.5));
+        MathEx.setSeed(19650218);
+        MLP replay = new MLP(p, Layer.sigmoid(50), Layer.mle(k, OutputFunction.SOFTMAX));
+        replay.setLearningRate(TimeFunction.constant(0.5));
+
+        for (int epoch = 1; epoch <= 3; epoch++) {
+            MathEx.setSeed(epoch);
+            int[] permutation = MathEx.permutate(x.length);
+            for (int i = 0; i < x.length; i += batch) {
+                int[] index = Arrays.copyOfRange(permutation, i, Math.min(x.length, i + batch));
+                serial.update(MathEx.slice(x, index), MathEx.slice(Segment.y, index));
+            }
+
+            MathEx.setSeed(epoch);
+            allreduce.update(x, Segment.y, batch, 1, DataParallelism.ALL_REDUCE);
+            MathEx.setSeed(epoch);
+            allreduce3.update(x, Segment.y, batch, 3, DataParallelism.ALL_REDUCE);
+            MathEx.setSeed(epoch);
+            replay.update(x, Segment.y, batch, 3, DataParallelism.ALL_REDUCE);
+        }
+
+        double[] p1 = new double[k];
+        double[] p2 = new double[k];
+        double[] p3 = new double[k];
+        double[] p4 = new double[k];
+        for (double[] xi : testx) {
+            serial.predict(xi, p1);
+            allreduce.predict(xi, p2);
+            allreduce3.predict(xi, p3);
+            replay.predict(xi, p4);
+            assertArrayEquals(p1, p2, 1E-12);
+            assertArrayEquals(p1, p3, 1E-7);
+            assertArrayEquals(p3, p4, 0.0);
+        }
+
+        MathEx.setSeed(19650218);
+        MLP hogwild = new MLP(p, Layer.sigmoid(50), Layer.mle(k, OutputFunction.SOFTMAX));
+        hogwild.setLearningRate(TimeFunction.constant(1.0));
+        hogwild.setMomentum(TimeFunction.constant(0.5));
+        for (int epoch = 1; epoch <= 10; epoch++) {
+            hogwild.update(x, Segment.y, batch, 4, DataParallelism.HOGWILD);
+        }
+
+        int error = Error.of(Segment.testy, hogwild.predict(testx));
+        System.out.println("Hogwild test error = " + error);
+        assertTrue(error < 100);
+    }
+
+    /** Returns the log loss of a model. */
+    private static double logloss(MLP model, double[][] x, int[] y, int k) {
+        double loss = 0.0;
+        double[] prob = new double[k];
+        for (int i = 0; i < x.length; i++) {
+            model.predict(x[i], prob);
+            loss -= Math.log(Math.max(prob[y[i]], 1E-15));
+        }
+        return loss / x.length;
+    }
+
+    @Test
+    public void testSegmentHogwildOptimizer() {
+        System.out.println("Segment Hogwild with momentum and RMSProp");
+
+        WinsorScaler scaler = WinsorScaler.fit(Segment.x, 0.01, 0.99);
+        double[][] x = scaler.transform(Segment.x);
+        double[][] testx = scaler.transform(Segment.testx);
+        int p = x[0].length;
+        int k = MathEx.max(Segment.y) + 1;
+        int batch = 20;
+
+        MathEx.setSeed(19650218);
+        MLP serial = new MLP(p, Layer.sigmoid(50), Layer.mle(k, OutputFunction.SOFTMAX));
+        MathEx.setSeed(19650218);
+        MLP hogwild1 = new MLP(p, Layer.sigmoid(50), Layer.mle(k, OutputFunction.SOFTMAX));
+        MathEx.setSeed(19650218);
+        MLP hogwild4 = new MLP(p, Layer.sigmoid(50), Layer.mle(k, OutputFunction.SOFTMAX));
+        for (MLP model : new MLP[]{serial, hogwild1, hogwild4}) {
+            model.setLearningRate(TimeFunction.constant(0.005));
+            model.setMomentum(TimeFunction.constant(0.9));
+            model.setRMSProp(0.9, 1E-7);
+        }
+
+        // The lowest losses over epochs as the curves are noisy.
+        double loss1 = Double.MAX_VALUE;
+        double loss4 = Double.MAX_VALUE;
+        for (int epoch = 1; epoch <= 5; epoch++) {
+            MathEx.setSeed(epoch);
+            int[] permutation = MathEx.permutate(x.length);
+            for (int i = 0; i < x.length; i += batch) {
+                int[] index = Arrays.copyOfRange(permutation, i, Math.min(x.length, i + batch));
+                serial.update(MathEx.slice(x, index), MathEx.slice(Segment.y, index));
+            }
+
+            MathEx.setSeed(epoch);
+            hogwild1.update(x, Segment.y, batch, 1, DataParallelism.HOGWILD);
+            MathEx.setSeed(epoch);
+            hogwild4.update(x, Segment.y, batch, 4, DataParallelism.HOGWILD);
+
+            double l1 = logloss(serial, x, Segment.y, k);
+            double l4 = logloss(hogwild4, x, Segment.y, k);
+            System.out.format("Epoch %d: serial loss = %.4f, Hogwild loss = %.4f%n", epoch, l1, l4);
+            loss1 = Math.min(loss1, l1);
+            loss4 = Math.min(loss4, l4);
+
+            // The momentum and RMSProp state carries over epochs
+            // so that a single replica follows the serial training.
+            assertEquals(l1, logloss(hogwild1, x, Segment.y, k), 1E-10);
+        }
+
+        assertTrue(loss4 < 1.5 * loss1);
+
+        double[] p1 = new double[k];
+        double[] p2 = new double[k];
+        for (double[] xi : testx) {
+            serial.predict(xi, p1);
+            hogwild1.predict(xi, p2);
+            assertArrayEquals(p1, p2, 1E-10);
+        }
+    }
+
     @Test
     public void testUSPS() throws Exception {
         System.out.println("USPS SGD");
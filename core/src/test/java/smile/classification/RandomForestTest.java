@@ -156,6 +156,44 @@ public class RandomForestTest {
         assertEquals(0.9550, result.avg.accuracy, 1E-4);
     }
 
+    @Test
+    public void testHistogram() {
+        System.out.println("Pen Digits with histogram-based split");
+
+        MathEx.setSeed(19650218); // to get repeatable results for cross validation.
+        ClassificationValidations<RandomForest> result = CrossValidation.classification(10, PenDigits.formula, PenDigits.data,
+                (f, x) -> RandomForest.fit(f, x, 100, 4, SplitRule.GINI, 20, 100, 5, 1.0, null, 256, Arrays.stream(seeds)));
+
+        System.out.println(result);
+        assertEquals(0.9701, result.avg.accuracy, 1E-4);
+    }
+
+    @Test
+    public void testBatch() {
+        System.out.println("Batch prediction with compiled forest");
+
+        RandomForest model = RandomForest.fit(Segment.formula, Segment.train, 100, 16, SplitRule.GINI, 20, 100, 5, 1.0, null, Arrays.stream(seeds));
+        double[][] x = Segment.formula.x(Segment.test).toArray();
+        int n = x.length;
+        int[] prediction = model.predict(x);
+        double[][] posteriori = new double[n][7];
+        int[] soft = model.predict(x, posteriori);
+
+        double[] prob = new double[7];
+        for (int i = 0; i < n; i++) {
+            assertEquals(model.predict(Segment.test.get(i)), prediction[i]);
+            assertEquals(model.predict(Segment.test.get(i), prob), soft[i]);
+            assertArrayEquals(prob, posteriori[i], 1E-10);
+        }
+
+        // nominal splits
+        model = RandomForest.fit(Weather.formula, Weather.data, 20, 2, SplitRule.GINI, 8, 10, 1, 1.0, null, Arrays.stream(seeds));
+        prediction = model.predict(Weather.data);
+        for (int i = 0; i < prediction.length; i++) {
+            assertEquals(model.predict(Weather.data.get(i)), prediction[i]);
+        }
+    }
+
     @Test
     public void testSegment() {
         System.out.println("Segment");
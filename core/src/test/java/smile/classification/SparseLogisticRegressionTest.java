@@ -23,7 +23,11 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import java.util.Arrays;
+import java.util.Properties;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import smile.data.*;
+import smile.math.MathEx;
 import smile.util.SparseArray;
 import smile.validation.metric.Error;
 import static org.junit.Assert.*;
@@ -109,4 +113,165 @@ public class SparseLogisticRegressionTest {
         java.nio.file.Path temp = smile.data.Serialize.write(model);
         smile.data.Serialize.read(temp);
     }
-}
\ No newline at end of file
+
+    /** Returns the stream of labeled samples. */
+    private Stream<Instance<SparseArray>> stream(SparseDataset x, int[] y) {
+        return IntStream.range(0, y.length).mapToObj(i -> new Instance<SparseArray>() {
+            @Override
+            public SparseArray x() {
+                return x.get(i);
+            }
+
+            @Override
+            public int label() {
+                return y[i];
+            }
+        });
+    }
+
+    @Test
+    public void testStreaming() {
+        System.out.println("Streaming");
+
+        MathEx.setSeed(19650218); // to get repeatable results.
+        int n = BreastCancer.y.length;
+        int[] permutation = MathEx.permutate(n);
+        double[][] x = new double[n][];
+        int[] y = new int[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = BreastCancer.x[permutation[i]].clone();
+            y[i] = BreastCancer.y[permutation[i]];
+        }
+        MathEx.standardize(x);
+
+        int train = 400;
+        SparseDataset trainx = sparse(Arrays.copyOf(x, train));
+        int[] trainy = Arrays.copyOf(y, train);
+        SparseDataset testx = sparse(Arrays.copyOfRange(x, train, n));
+        int[] testy = Arrays.copyOfRange(y, train, n);
+
+        Properties prop = new Properties();
+        prop.setProperty("smile.ftrl.l1", "0.5");
+        FTRL ftrl = FTRL.fit(x[0].length, stream(trainx, trainy), prop);
+        int[] prediction = testx.stream().mapToInt(ftrl::predict).toArray();
+        int error = Error.of(testy, prediction);
+        System.out.format("FTRL error = %d, nonzeros = %d, log-likelihood = %.2f%n", error, ftrl.nonzeros(), ftrl.loglikelihood());
+        assertTrue(error <= 10);
+        assertTrue(ftrl.nonzeros() < x[0].length);
+
+        prop.setProperty("smile.saga.batch.size", "100");
+        SAGA saga = SAGA.fit(x[0].length, stream(trainx, trainy), prop);
+        prediction = testx.stream().mapToInt(saga::predict).toArray();
+        error = Error.of(testy, prediction);
+        System.out.format("SAGA error = %d, log-likelihood = %.2f%n", error, saga.loglikelihood());
+        assertTrue(error <= 10);
+
+        // The data frame batches are equivalent to the stream of samples.
+        FTRL batch = FTRL.fit(BreastCancer.formula, Stream.of(
+                BreastCancer.data.slice(0, 200),
+                BreastCancer.data.slice(200, BreastCancer.data.size())), prop);
+        FTRL online = FTRL.fit(BreastCancer.x[0].length, stream(sparse(BreastCancer.x), BreastCancer.y), prop);
+        assertArrayEquals(online.coefficients(), batch.coefficients(), 1E-12);
+        assertEquals(online.loglikelihood(), batch.loglikelihood(), 1E-7);
+    }
+
+    @Test
+    public void testSAGALazyUpdate() {
+        System.out.println("SAGA lazy update");
+
+        MathEx.setSeed(19650218); // to get repeatable results.
+        int p = 50;
+        int m = 200;
+        SparseArray[] x = new SparseArray[m];
+        int[] y = new int[m];
+        for (int i = 0; i < m; i++) {
+            x[i] = new SparseArray();
+            int[] index = MathEx.permutate(p);
+            Arrays.sort(index, 0, 5);
+            double wx = 0.0;
+            for (int k = 0; k < 5; k++) {
+                double v = MathEx.random() * 2 - 1;
+                x[i].append(index[k], v);
+                wx += index[k] < 10 ? v : 0.0;
+            }
+            y[i] = wx > 0 ? 1 : 0;
+        }
+
+        double l1 = 0.01;
+        double l2 = 0.05;
+        int epochs = 3;
+        MathEx.setSeed(19650218);
+        SAGA model = new SAGA(p, l1, l2, epochs);
+        model.update(x, y);
+        model.update(x, y);
+
+        // The reference SAGA that updates all weights in every step.
+        MathEx.setSeed(19650218);
+        double[] w = new double[p + 1];
+        for (int batch = 0; batch < 2; batch++) {
+            double maxNorm = 0.0;
+            for (SparseArray xi : x) {
+                double norm = 1.0;
+                for (SparseArray.Entry e : xi) norm += e.x * e.x;
+                maxNorm = Math.max(maxNorm, norm);
+            }
+            double eta = 1.0 / (3.0 * (0.25 * maxNorm + l2));
+            double shrinkage = eta * l1;
+            double[] g = new double[m];
+            double[] avg = new double[p + 1];
+            for (int epoch = 0; epoch < epochs; epoch++) {
+                for (int i : MathEx.permutate(m)) {
+                    double wx = w[p];
+                    for (SparseArray.Entry e : x[i]) wx += e.x * w[e.i];
+                    double gi = MathEx.logistic(wx) - y[i];
+                    double delta = gi - g[i];
+                    for (int j = 0; j < p; j++) w[j] -= eta * (avg[j] + l2 * w[j]);
+                    for (SparseArray.Entry e : x[i]) w[e.i] -= eta * delta * e.x;
+                    w[p] -= eta * (delta + avg[p]);
+                    for (int j = 0; j < p; j++) {
+                        double wj = w[j];
+                        w[j] = wj > shrinkage ? wj - shrinkage : (wj < -shrinkage ? wj + shrinkage : 0.0);
+                    }
+                    for (SparseArray.Entry e : x[i]) avg[e.i] += delta * e.x / m;
+                    avg[p] += delta / m;
+                    g[i] = gi;
+                }
+            }
+        }
+
+        double[] coef = model.coefficients();
+        int zeros = 0;
+        for (int j = 0; j < p; j++) {
+            assertEquals(w[j], coef[j], 1E-10);
+            if (w[j] == 0.0) zeros++;
+        }
+        assertEquals(w[p], coef[p], 1E-10);
+        assertTrue(zeros > 0);
+        assertTrue(zeros < p);
+    }
+
+    @Test
+    public void testStreamingNewLevels() {
+        System.out.println("Streaming new levels");
+        smile.data.formula.Formula formula = smile.data.formula.Formula.lhs("y");
+        DataFrame first = DataFrame.of(
+                smile.data.vector.IntVector.of("y", new int[]{0, 1}),
+                smile.data.vector.StringVector.of("c", "a", "b")).factorize("c");
+        DataFrame second = DataFrame.of(
+                smile.data.vector.IntVector.of("y", new int[]{0, 1, 1}),
+                smile.data.vector.StringVector.of("c", "a", "b", "c")).factorize("c");
+        try {
+            FTRL.fit(formula, Stream.of(first, second), new Properties());
+            fail("FTRL on a batch of new categorical levels");
+        } catch (IllegalArgumentException ex) {
+            System.out.println(ex.getMessage());
+        }
+
+        try {
+            SAGA.fit(formula, Stream.of(first, second), new Properties());
+            fail("SAGA on a batch of new categorical levels");
+        } catch (IllegalArgumentException ex) {
+            System.out.println(ex.getMessage());
+        }
+    }
+}
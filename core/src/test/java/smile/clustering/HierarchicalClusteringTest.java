@@ -18,6 +18,7 @@
 package smile.clustering;
 
 import smile.clustering.linkage.*;
+import smile.data.GaussianMixture;
 import smile.data.USPS;
 import smile.validation.metric.*;
 import org.junit.After;
@@ -167,4 +168,71 @@ public class HierarchicalClusteringTest {
         System.out.format("NMI.sum = %.2f%%%n", 100 * NormalizedMutualInformation.sum(y, label));
         System.out.format("NMI.sqrt = %.2f%%%n", 100 * NormalizedMutualInformation.sqrt(y, label));
     }
+
+    /** Returns every 10th sample of Gaussian mixture. */
+    private double[][] sample() {
+        double[][] x = new double[1000][];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = GaussianMixture.x[10 * i];
+        }
+        return x;
+    }
+
+    @Test
+    public void testNNChain() {
+        System.out.println("NN-chain");
+
+        double[][] x = sample();
+        Linkage[][] linkages = {
+                {SingleLinkage.of(x), SingleLinkage.of(x)},
+                {CompleteLinkage.of(x), CompleteLinkage.of(x)},
+                {UPGMALinkage.of(x), UPGMALinkage.of(x)},
+                {WPGMALinkage.of(x), WPGMALinkage.of(x)},
+                {WardLinkage.of(x), WardLinkage.of(x)}
+        };
+
+        for (Linkage[] linkage : linkages) {
+            HierarchicalClustering model = HierarchicalClustering.fit(linkage[0]);
+            HierarchicalClustering nnchain = HierarchicalClustering.nnchain(linkage[1]);
+            assertArrayEquals(model.height(), nnchain.height(), 1E-4);
+            for (int k = 2; k <= 10; k++) {
+                assertEquals(1.0, AdjustedRandIndex.of(model.partition(k), nnchain.partition(k)), 1E-7);
+            }
+        }
+
+        try {
+            HierarchicalClustering.nnchain(UPGMCLinkage.of(x));
+            fail("Non-reducible linkage");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testSingle() {
+        System.out.println("MST single linkage");
+
+        double[][] x = sample();
+        HierarchicalClustering model = HierarchicalClustering.fit(SingleLinkage.of(x));
+        HierarchicalClustering mst = HierarchicalClustering.single(x);
+        assertArrayEquals(model.height(), mst.height(), 1E-4);
+        assertEquals(1.5210, mst.height()[998], 1E-4);
+        for (int k = 2; k <= 10; k++) {
+            assertEquals(1.0, AdjustedRandIndex.of(model.partition(k), mst.partition(k)), 1E-7);
+        }
+    }
+
+    @Test
+    public void testWard() {
+        System.out.println("Ward's linkage of centroids");
+
+        double[][] x = sample();
+        HierarchicalClustering model = HierarchicalClustering.fit(WardLinkage.of(x));
+        HierarchicalClustering ward = HierarchicalClustering.ward(x);
+        assertArrayEquals(model.height(), ward.height(), 1E-3);
+        assertEquals(156.0933, ward.height()[998], 1E-4);
+        for (int k = 2; k <= 10; k++) {
+            assertEquals(1.0, AdjustedRandIndex.of(model.partition(k), ward.partition(k)), 1E-7);
+        }
+    }
 }
@@ -25,6 +25,7 @@ import org.junit.Test;
 import smile.data.GaussianMixture;
 import smile.data.USPS;
 import smile.math.MathEx;
+import smile.stat.distribution.GaussianDistribution;
 import smile.validation.metric.*;
 
 import static org.junit.Assert.*;
@@ -141,6 +142,106 @@ public class KMeansTest {
         System.out.format("NMI.sqrt = %.2f%%%n", 100 * NormalizedMutualInformation.sqrt(y, model.y));
     }
 
+    @Test
+    public void testHamerly4() {
+        System.out.println("Hamerly 4");
+        MathEx.setSeed(19650218); // to get repeatable results.
+        KMeans model = KMeans.hamerly(x, 4);
+        System.out.println(model);
+
+        double r = RandIndex.of(y, model.y);
+        double r2 = AdjustedRandIndex.of(y, model.y);
+        System.out.format("Training rand index = %.2f%%, adjusted rand index = %.2f%%%n", 100.0 * r, 100.0 * r2);
+        assertEquals(0.6111, r, 1E-4);
+        assertEquals(0.2475, r2, 1E-4);
+    }
+
+    @Test
+    public void testHamerly64() {
+        System.out.println("Hamerly 64");
+        MathEx.setSeed(19650218); // to get repeatable results.
+        KMeans model = KMeans.hamerly(x, 64);
+        System.out.println(model);
+
+        double r = RandIndex.of(y, model.y);
+        double r2 = AdjustedRandIndex.of(y, model.y);
+        System.out.format("Training rand index = %.2f%%, adjusted rand index = %.2f%%%n", 100.0 * r, 100.0 * r2);
+        assertEquals(0.4714, r, 1E-4);
+        assertEquals(0.0185, r2, 1E-4);
+    }
+
+    @Test
+    public void testMiniBatch4() {
+        System.out.println("Mini-batch 4");
+        MathEx.setSeed(19650218); // to get repeatable results.
+        KMeans model = MiniBatchKMeans.fit(x, 4);
+        System.out.println(model);
+
+        double r = RandIndex.of(y, model.y);
+        double r2 = AdjustedRandIndex.of(y, model.y);
+        System.out.format("Training rand index = %.2f%%, adjusted rand index = %.2f%%%n", 100.0 * r, 100.0 * r2);
+        assertEquals(0.5898, r, 1E-4);
+        assertEquals(0.2104, r2, 1E-4);
+    }
+
+    @Test
+    public void testMiniBatchStream() {
+        System.out.println("Mini-batch stream");
+        MathEx.setSeed(19650218); // to get repeatable results.
+        double[][] batch = new double[1000][];
+        System.arraycopy(x, 0, batch, 0, batch.length);
+        MiniBatchKMeans stream = MiniBatchKMeans.of(batch, 4);
+        for (int epoch = 0; epoch < 3; epoch++) {
+            for (int i = 0; i + batch.length <= x.length; i += batch.length) {
+                System.arraycopy(x, i, batch, 0, batch.length);
+                stream.update(batch);
+            }
+        }
+
+        KMeans model = stream.toKMeans(x);
+        System.out.println(model);
+        assertEquals(model.y[0], stream.predict(x[0]));
+        assertEquals(3 * (x.length / 1000 * 1000), java.util.Arrays.stream(stream.count()).sum());
+
+        double r = RandIndex.of(y, model.y);
+        double r2 = AdjustedRandIndex.of(y, model.y);
+        System.out.format("Training rand index = %.2f%%, adjusted rand index = %.2f%%%n", 100.0 * r, 100.0 * r2);
+        assertEquals(0.6049, r, 1E-4);
+        assertEquals(0.2372, r2, 1E-4);
+    }
+
+    @Test
+    public void testMiniBatchLarge() {
+        System.out.println("Mini-batch large");
+        MathEx.setSeed(19650218); // to get repeatable results.
+        int n = 200000;
+        int k = 8;
+        double[][] mu = new double[k][];
+        for (int i = 0; i < k; i++) {
+            mu[i] = MathEx.random(10);
+            MathEx.scale(50.0, mu[i]);
+        }
+
+        GaussianDistribution gaussian = GaussianDistribution.getInstance();
+        double[][] data = new double[n][10];
+        for (int i = 0; i < n; i++) {
+            double[] c = mu[i % k];
+            for (int j = 0; j < 10; j++) {
+                data[i][j] = c[j] + gaussian.rand();
+            }
+        }
+
+        MiniBatchKMeans stream = MiniBatchKMeans.of(data, k);
+        int iter = stream.train(data, 1024, 1000, 0.0, 10);
+        System.out.println("Mini-batch iterations: " + iter);
+        assertTrue(iter > 20);
+
+        KMeans batch = MiniBatchKMeans.fit(data, k);
+        KMeans full = KMeans.fit(data, k);
+        System.out.format("Mini-batch distortion = %.2f, full distortion = %.2f%n", batch.distortion, full.distortion);
+        assertEquals(full.distortion, batch.distortion, 0.01 * full.distortion);
+    }
+
     @Test
     public void testUSPS() throws Exception {
         System.out.println("USPS");
@@ -24,10 +24,13 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import smile.io.Read;
 import smile.math.MathEx;
+import smile.neighbor.KDTree;
 import smile.projection.PCA;
 import smile.util.Paths;
 import org.apache.commons.csv.CSVFormat;
 
+import java.util.Arrays;
+
 import static org.junit.Assert.*;
 
 /**
@@ -82,4 +85,49 @@ public class TSNETest {
         assertEquals(-5.046192009411943, tsne.coordinates[2000][0], 1E-7);
         assertEquals(30.328124791830007, tsne.coordinates[2000][1], 1E-7);
     }
+
+    @Test
+    public void testBarnesHut() throws Exception {
+        System.out.println("Barnes-Hut tSNE");
+
+        MathEx.setSeed(19650218); // to get repeatable results.
+
+        CSVFormat format = CSVFormat.DEFAULT.withDelimiter(' ');
+        double[][] data = Read.csv(Paths.getTestData("usps/zip.test"), format).toArray();
+        int n = data.length;
+        int[] y = new int[n];
+        double[][] usps = new double[n][];
+        for (int i = 0; i < n; i++) {
+            y[i] = (int) data[i][0];
+            usps[i] = Arrays.copyOfRange(data[i], 1, data[i].length);
+        }
+
+        PCA pca = PCA.fit(usps);
+        pca.setProjection(50);
+        double[][] X = pca.project(usps);
+
+        long start = System.currentTimeMillis();
+        TSNE tsne = new TSNE(X, 2, 20, 200, 1000, 0.5);
+        long end = System.currentTimeMillis();
+        System.out.format("Barnes-Hut t-SNE takes %.2f seconds\n", (end - start) / 1000.0);
+
+        // The digits should be well separated in the embedding space.
+        KDTree<double[]> tree = new KDTree<>(tsne.coordinates, tsne.coordinates);
+        int error = 0;
+        for (int i = 0; i < n; i++) {
+            if (y[tree.nearest(tsne.coordinates[i]).index] != y[i]) error++;
+        }
+        System.out.format("1-NN error in embedding space: %d / %d\n", error, n);
+        assertTrue(error < 0.12 * n);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBarnesHutDimension() {
+        System.out.println("Barnes-Hut tSNE dimension");
+        double[][] X = new double[100][];
+        for (int i = 0; i < X.length; i++) {
+            X[i] = MathEx.random(10);
+        }
+        new TSNE(X, 4, 20, 200, 10, 0.5);
+    }
 }
@@ -18,6 +18,7 @@
 package smile.neighbor;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -119,6 +120,30 @@ public class CoverTreeTest {
         assertEquals(d.d(data[0], data[1]), n1[0].distance, 1E-7);
     }
 
+    @Test
+    public void testKnnBatch() {
+        System.out.println("knn batch");
+
+        double[][] data = Matrix.randn(1000, 10).toArray();
+        CoverTree<double[]> coverTree = new CoverTree<>(data, new EuclideanDistance());
+        LinearSearch<double[]> naive = new LinearSearch<>(data, new EuclideanDistance());
+
+        int k = 10;
+        int[] index = new int[data.length * k];
+        double[] distance = new double[data.length * k];
+        coverTree.knn(data, k, index, distance);
+
+        for (int i = 0; i < data.length; i++) {
+            Neighbor<double[], double[]> [] n1 = naive.knn(data[i], k);
+            // The batch search returns the neighbors in ascending order of distance.
+            Arrays.sort(n1);
+            for (int j = 0; j < k; j++) {
+                assertEquals(n1[j].index, index[i * k + j]);
+                assertEquals(n1[j].distance, distance[i * k + j], 1E-7);
+            }
+        }
+    }
+
     @Test
     public void testRange() {
         System.out.println("range");
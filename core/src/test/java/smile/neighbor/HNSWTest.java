@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.neighbor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import smile.math.MathEx;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Haifeng Li
+ */
+@SuppressWarnings("rawtypes")
+public class HNSWTest {
+    double[][] x;
+    double[][] testx;
+    LinearSearch<double[]> naive;
+
+    public HNSWTest() {
+        MathEx.setSeed(19650218); // to get repeatable results.
+
+        // 20 Gaussian clusters in 32 dimensional space.
+        int p = 32;
+        double[][] centers = new double[20][];
+        for (int i = 0; i < centers.length; i++) {
+            centers[i] = new double[p];
+            for (int j = 0; j < p; j++) {
+                centers[i][j] = 10 * MathEx.random();
+            }
+        }
+
+        x = new double[5000][];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = sample(centers[i % centers.length]);
+        }
+
+        testx = new double[200][];
+        for (int i = 0; i < testx.length; i++) {
+            testx[i] = sample(centers[MathEx.randomInt(centers.length)]);
+        }
+
+        naive = new LinearSearch<>(x, MathEx::distance);
+    }
+
+    private static double[] sample(double[] center) {
+        double[] x = new double[center.length];
+        for (int j = 0; j < x.length; j++) {
+            x[j] = center[j] + MathEx.random(-1.0, 1.0);
+        }
+        return x;
+    }
+
+    private static float[] toFloat(double[] x) {
+        float[] y = new float[x.length];
+        for (int j = 0; j < x.length; j++) {
+            y[j] = (float) x[j];
+        }
+        return y;
+    }
+
+    private static float[][] toFloat(double[][] x) {
+        float[][] y = new float[x.length][];
+        for (int i = 0; i < x.length; i++) {
+            y[i] = toFloat(x[i]);
+        }
+        return y;
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Returns the recall of k-nearest neighbors. The neighbors are
+     * matched by key as concurrent insertions assign the indices in
+     * arbitrary order.
+     */
+    private double recall(KNNSearch<double[], double[]> index, int k) {
+        int hit = 0;
+        for (double[] q : testx) {
+            Neighbor[] n1 = index.knn(q, k);
+            Neighbor[] n2 = naive.knn(q, k);
+            for (Neighbor m2 : n2) {
+                for (Neighbor m1 : n1) {
+                    if (m1.key == m2.key) {
+                        hit++;
+                        break;
+                    }
+                }
+            }
+        }
+        return (double) hit / (k * testx.length);
+    }
+
+    @Test
+    public void testKnn() {
+        System.out.println("knn");
+
+        HNSW<double[], double[]> hnsw = HNSW.of(x, 16, 100);
+        assertEquals(x.length, hnsw.size());
+
+        double r1 = recall(hnsw.efSearch(10), 10);
+        double r2 = recall(hnsw.efSearch(100), 10);
+        System.out.format("recall@10 is %.2f%% with efSearch = 10, %.2f%% with efSearch = 100%n", 100 * r1, 100 * r2);
+        assertTrue(r1 > 0.7);
+        assertTrue(r2 > 0.97);
+        assertTrue(r2 >= r1);
+
+        // The query object self is excluded.
+        Neighbor<double[], double[]>[] neighbors = hnsw.knn(x[0], 5);
+        assertEquals(5, neighbors.length);
+        for (int i = 0; i < neighbors.length; i++) {
+            assertNotEquals(0, neighbors[i].index);
+            if (i > 0) assertTrue(neighbors[i].distance >= neighbors[i-1].distance);
+        }
+
+        Neighbor<double[], double[]> nearest = hnsw.nearest(testx[0]);
+        assertEquals(naive.nearest(testx[0]).index, nearest.index);
+    }
+
+    @Test
+    public void testConcurrentPut() {
+        System.out.println("concurrent put");
+
+        HNSW<double[], double[]> hnsw = new HNSW<>(MathEx::distance, 16, 100);
+        IntStream.range(0, x.length).parallel().forEach(i -> hnsw.put(x[i], x[i]));
+        assertEquals(x.length, hnsw.size());
+
+        double recall = recall(hnsw.efSearch(100), 10);
+        System.out.format("recall@10 is %.2f%%%n", 100 * recall);
+        assertTrue(recall > 0.97);
+    }
+
+    @Test
+    public void testFloat() {
+        System.out.println("float");
+
+        float[][] xf = toFloat(x);
+        HNSW<float[], float[]> hnsw = HNSW.of(xf).efSearch(100);
+
+        int hit = 0;
+        for (double[] q : testx) {
+            Neighbor[] n1 = hnsw.knn(toFloat(q), 10);
+            Neighbor[] n2 = naive.knn(q, 10);
+            for (Neighbor m2 : n2) {
+                for (Neighbor m1 : n1) {
+                    if (m1.index == m2.index) {
+                        hit++;
+                        break;
+                    }
+                }
+            }
+        }
+
+        double recall = hit / (10.0 * testx.length);
+        System.out.format("recall@10 is %.2f%%%n", 100 * recall);
+        assertTrue(recall > 0.97);
+    }
+
+    @Test
+    public void testRange() {
+        System.out.println("range");
+
+        HNSW<double[], double[]> hnsw = HNSW.of(x);
+        int hit = 0;
+        int total = 0;
+        for (double[] q : testx) {
+            List<Neighbor<double[], double[]>> n1 = new ArrayList<>();
+            List<Neighbor<double[], double[]>> n2 = new ArrayList<>();
+            hnsw.range(q, 4.0, n1);
+            naive.range(q, 4.0, n2);
+            total += n2.size();
+
+            for (Neighbor m1 : n1) {
+                assertTrue(m1.distance <= 4.0);
+            }
+
+            for (Neighbor m2 : n2) {
+                for (Neighbor m1 : n1) {
+                    if (m1.index == m2.index) {
+                        hit++;
+                        break;
+                    }
+                }
+            }
+        }
+
+        double recall = (double) hit / total;
+        System.out.format("recall of %d neighbors is %.2f%%%n", total, 100 * recall);
+        assertTrue(total > 0);
+        assertTrue(recall > 0.95);
+    }
+
+    @Test
+    public void testSerialize() throws Exception {
+        System.out.println("serialize");
+
+        HNSW<double[], double[]> hnsw = HNSW.of(x);
+        java.nio.file.Path temp = smile.data.Serialize.write(hnsw);
+        @SuppressWarnings("unchecked")
+        HNSW<double[], double[]> copy = (HNSW<double[], double[]>) smile.data.Serialize.read(temp);
+        assertEquals(hnsw.size(), copy.size());
+        for (double[] q : testx) {
+            Neighbor<double[], double[]>[] n1 = hnsw.knn(q, 10);
+            Neighbor<double[], double[]>[] n2 = copy.knn(q, 10);
+            for (int i = 0; i < n1.length; i++) {
+                assertEquals(n1[i].index, n2[i].index);
+                assertEquals(n1[i].distance, n2[i].distance, 1E-10);
+            }
+        }
+
+        // The deserialized index supports insertions.
+        copy.put(testx[0], testx[0]);
+        assertEquals(x.length + 1, copy.size());
+        assertSame(testx[0], copy.knn(testx[0].clone(), 1)[0].key);
+    }
+}
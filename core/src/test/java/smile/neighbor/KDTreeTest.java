@@ -18,6 +18,7 @@
 package smile.neighbor;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import org.junit.After;
@@ -95,6 +96,50 @@ public class KDTreeTest {
         }
     }
 
+    @Test
+    public void testKnnBatch() {
+        System.out.println("knn batch");
+
+        double[][] data = Matrix.randn(1000, 10).toArray();
+        double[][] query = Matrix.randn(100, 10).toArray();
+        KDTree<double[]> kdtree = new KDTree<>(data, data);
+        LinearSearch<double[]> naive = new LinearSearch<>(data, new EuclideanDistance());
+
+        int k = 10;
+        int[] index1 = new int[data.length * k];
+        double[] distance1 = new double[data.length * k];
+        int[] index2 = new int[data.length * k];
+        double[] distance2 = new double[data.length * k];
+        naive.knn(data, k, index1, distance1);
+        kdtree.knn(data, k, index2, distance2);
+
+        for (int i = 0; i < data.length; i++) {
+            Neighbor<double[], double[]> [] n1 = naive.knn(data[i], k);
+            // The batch search returns the neighbors in ascending order of distance.
+            Arrays.sort(n1);
+            for (int j = 0; j < k; j++) {
+                assertEquals(n1[j].index, index1[i * k + j]);
+                assertEquals(n1[j].distance, distance1[i * k + j], 1E-7);
+                assertEquals(n1[j].index, index2[i * k + j]);
+                assertEquals(n1[j].distance, distance2[i * k + j], 1E-7);
+            }
+        }
+
+        int[][] index = new int[query.length][];
+        double[][] distance = new double[query.length][];
+        kdtree.range(query, 1.5, index, distance);
+        List<Neighbor<double[], double[]>> n = new ArrayList<>();
+        for (int i = 0; i < query.length; i++) {
+            kdtree.range(query[i], 1.5, n);
+            assertEquals(n.size(), index[i].length);
+            for (int j = 0; j < n.size(); j++) {
+                assertEquals(n.get(j).index, index[i][j]);
+                assertEquals(n.get(j).distance, distance[i][j], 1E-7);
+            }
+            n.clear();
+        }
+    }
+
     @Test
     public void testRange() {
         System.out.println("range 0.5");
@@ -18,6 +18,7 @@
 package smile.neighbor;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.After;
@@ -117,6 +118,31 @@ public class LSHTest {
         System.out.format("q3     of recall is %d%n", MathEx.q3(recall));
     }
 
+    @Test
+    public void testKnnBatch() {
+        System.out.println("knn batch");
+
+        int k = 7;
+        int[] index = new int[testx.length * k];
+        double[] distance = new double[testx.length * k];
+        lsh.knn(testx, k, index, distance);
+
+        for (int i = 0; i < testx.length; i++) {
+            // The batch search finds the exact k nearest candidates
+            // in ascending order of distance.
+            Neighbor[] neighbors = lsh.knn(testx[i], k);
+            Arrays.sort(neighbors);
+            for (int j = 0; j < k; j++) {
+                if (j < neighbors.length) {
+                    assertTrue(distance[i * k + j] <= neighbors[j].distance);
+                    if (j > 0) assertTrue(distance[i * k + j] >= distance[i * k + j - 1]);
+                } else {
+                    assertEquals(-1, index[i * k + j]);
+                }
+            }
+        }
+    }
+
     @Test
     public void testRange() {
         System.out.println("range");
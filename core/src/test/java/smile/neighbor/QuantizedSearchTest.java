@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.neighbor;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import smile.math.MathEx;
+import smile.vq.ProductQuantizer;
+import smile.vq.ScalarQuantizer;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Haifeng Li
+ */
+@SuppressWarnings("rawtypes")
+public class QuantizedSearchTest {
+    float[][] x;
+    float[][] testx;
+    LinearSearch<float[]> naive;
+
+    public QuantizedSearchTest() {
+        MathEx.setSeed(19650218); // to get repeatable results.
+
+        // 20 Gaussian clusters in 32 dimensional space.
+        int p = 32;
+        double[][] centers = new double[20][];
+        for (int i = 0; i < centers.length; i++) {
+            centers[i] = MathEx.random(p);
+            MathEx.scale(10, centers[i]);
+        }
+
+        x = new float[5000][];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = sample(centers[i % centers.length]);
+        }
+
+        testx = new float[200][];
+        for (int i = 0; i < testx.length; i++) {
+            testx[i] = sample(centers[MathEx.randomInt(centers.length)]);
+        }
+
+        naive = new LinearSearch<>(x, MathEx::distance);
+    }
+
+    private static float[] sample(double[] center) {
+        float[] x = new float[center.length];
+        for (int j = 0; j < x.length; j++) {
+            x[j] = (float) (center[j] + MathEx.random(-1.0, 1.0));
+        }
+        return x;
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /** Returns the recall of k-nearest neighbors. */
+    private double recall(KNNSearch<float[], float[]> index, int k) {
+        int hit = 0;
+        for (float[] q : testx) {
+            Neighbor[] n1 = index.knn(q, k);
+            Neighbor[] n2 = naive.knn(q, k);
+            for (Neighbor m2 : n2) {
+                for (Neighbor m1 : n1) {
+                    if (m1.index == m2.index) {
+                        hit++;
+                        break;
+                    }
+                }
+            }
+        }
+        return (double) hit / (k * testx.length);
+    }
+
+    @Test
+    public void testProductQuantization() {
+        System.out.println("Product Quantization");
+
+        ProductQuantizer pq = ProductQuantizer.fit(x, 8);
+        assertEquals(32, pq.dimension());
+        assertEquals(8, pq.codeSize());
+
+        QuantizedSearch adc = new QuantizedSearch(x, pq);
+        QuantizedSearch rerank = new QuantizedSearch(x, pq, 10);
+        assertEquals(x.length * 8, adc.bytes());
+
+        double r1 = recall(adc, 10);
+        double r2 = recall(rerank, 10);
+        System.out.format("recall@10 is %.2f%% with ADC, %.2f%% with re-ranking%n", 100 * r1, 100 * r2);
+        assertTrue(r1 > 0.4);
+        assertTrue(r2 > 0.98);
+
+        Neighbor<float[], float[]>[] neighbors = rerank.knn(testx[0], 10);
+        for (int i = 1; i < neighbors.length; i++) {
+            assertTrue(neighbors[i].distance >= neighbors[i-1].distance);
+        }
+
+        // The query object self is excluded with re-ranking.
+        assertNotEquals(0, rerank.nearest(x[0]).index);
+    }
+
+    @Test
+    public void testScalarQuantization() {
+        System.out.println("Scalar Quantization");
+
+        ScalarQuantizer sq = ScalarQuantizer.fit(x);
+        byte[] code = new byte[sq.codeSize()];
+        float[] y = new float[sq.dimension()];
+        sq.encode(x[0], code, 0);
+        sq.decode(code, 0, y);
+        assertEquals(0.0, MathEx.distance(x[0], y), 0.1);
+
+        QuantizedSearch adc = new QuantizedSearch(x, sq);
+        double recall = recall(adc, 10);
+        System.out.format("recall@10 is %.2f%%%n", 100 * recall);
+        assertTrue(recall > 0.95);
+    }
+
+    @Test
+    public void testChunks() {
+        System.out.println("Chunks");
+
+        ScalarQuantizer sq = ScalarQuantizer.fit(x);
+        byte[][] code = sq.encode(x);
+        byte[][] chunks = sq.encode(x, 7);
+        assertEquals(1, code.length);
+        assertEquals((x.length + 6) / 7, chunks.length);
+        assertEquals(x.length % 7 * sq.codeSize(), chunks[chunks.length - 1].length);
+        for (int i = 0; i < chunks.length; i++) {
+            for (int j = 0; j < chunks[i].length; j++) {
+                assertEquals(code[0][i * 7 * sq.codeSize() + j], chunks[i][j]);
+            }
+        }
+
+        QuantizedSearch adc = new QuantizedSearch(x, sq);
+        QuantizedSearch chunked = new QuantizedSearch(x, sq, 0, 7);
+        assertEquals(adc.bytes(), chunked.bytes());
+        for (float[] q : testx) {
+            Neighbor[] n1 = adc.knn(q, 10);
+            Neighbor[] n2 = chunked.knn(q, 10);
+            assertEquals(n1.length, n2.length);
+            for (int i = 0; i < n1.length; i++) {
+                assertEquals(n1[i].index, n2[i].index);
+                assertArrayEquals((float[]) n1[i].key, (float[]) n2[i].key, 0.0f);
+            }
+        }
+    }
+
+    @Test
+    public void testRange() {
+        System.out.println("range");
+
+        ScalarQuantizer sq = ScalarQuantizer.fit(x);
+        QuantizedSearch rerank = new QuantizedSearch(x, sq, 10);
+        int hit = 0;
+        int total = 0;
+        for (float[] q : testx) {
+            List<Neighbor<float[], float[]>> n1 = new ArrayList<>();
+            List<Neighbor<float[], float[]>> n2 = new ArrayList<>();
+            rerank.range(q, 4.0, n1);
+            naive.range(q, 4.0, n2);
+
+            for (Neighbor m1 : n1) {
+                assertTrue(m1.distance <= 4.0);
+            }
+            assertTrue(n1.size() <= n2.size());
+            hit += n1.size();
+            total += n2.size();
+        }
+
+        double recall = (double) hit / total;
+        System.out.format("recall of %d neighbors is %.2f%%%n", total, 100 * recall);
+        assertTrue(recall > 0.9);
+    }
+}
@@ -119,6 +119,31 @@ public class GradientTreeBoostTest {
         test(Loss.ls(), "kin8nm", Kin8nm.formula, Kin8nm.data, 0.1802);
     }
 
+    @Test
+    public void testBatch() {
+        System.out.println("Batch prediction with compiled forest");
+
+        GradientTreeBoost model = GradientTreeBoost.fit(Abalone.formula, Abalone.train, Loss.ls(), 100, 20, 6, 5, 0.05, 0.7);
+        double[][] x = Abalone.formula.x(Abalone.test).toArray();
+        double[] prediction = model.predict(x);
+        for (int i = 0; i < prediction.length; i++) {
+            assertEquals(model.predict(Abalone.test.get(i)), prediction[i], 1E-10);
+        }
+        assertArrayEquals(prediction, model.predict(Abalone.test), 1E-10);
+    }
+
+    @Test
+    public void testHistogram() {
+        System.out.println("cal_housing with histogram-based split");
+
+        MathEx.setSeed(19650218); // to get repeatable results.
+        RegressionValidations<GradientTreeBoost> result = CrossValidation.regression(10, CalHousing.formula, CalHousing.data,
+                (f, x) -> GradientTreeBoost.fit(f, x, Loss.ls(), 100, 20, 6, 5, 0.05, 0.7, 256));
+
+        System.out.println(result);
+        assertEquals(60626.4483, result.avg.rmse, 1E-4);
+    }
+
     @Test
     public void testLAD() {
         test(Loss.lad(), "CPU", CPU.formula, CPU.data, 66.0549);
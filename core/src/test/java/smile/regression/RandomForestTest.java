@@ -156,6 +156,31 @@ public class RandomForestTest {
         test("kin8nm", Kin8nm.formula, Kin8nm.data, 0.1704);
     }
 
+    @Test
+    public void testBatch() {
+        System.out.println("Batch prediction with compiled forest");
+
+        RandomForest model = RandomForest.fit(Abalone.formula, Abalone.train, 100, 3, 20, 100, 5, 1.0, Arrays.stream(seeds));
+        double[][] x = Abalone.formula.x(Abalone.test).toArray();
+        double[] prediction = model.predict(x);
+        for (int i = 0; i < prediction.length; i++) {
+            assertEquals(model.predict(Abalone.test.get(i)), prediction[i], 1E-10);
+        }
+        assertArrayEquals(prediction, model.predict(Abalone.test), 1E-10);
+    }
+
+    @Test
+    public void testHistogram() {
+        System.out.println("abalone with histogram-based split");
+
+        MathEx.setSeed(19650218); // to get repeatable results for cross validation.
+        RegressionValidations<RandomForest> result = CrossValidation.regression(3, Abalone.formula, Abalone.train,
+                (f, x) -> RandomForest.fit(f, x, 100, 3, 20, 100, 5, 1.0, 256, Arrays.stream(seeds)));
+
+        System.out.println(result);
+        assertEquals(2.1884, result.avg.rmse, 1E-4);
+    }
+
     @Test
     public void testTrim() {
         System.out.println("trim");
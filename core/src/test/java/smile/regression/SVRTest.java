@@ -26,7 +26,9 @@ import smile.data.*;
 import smile.math.kernel.GaussianKernel;
 import smile.math.MathEx;
 import smile.validation.*;
+import smile.base.svm.KernelCache;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  *
@@ -95,6 +97,51 @@ public class SVRTest {
         assertEquals(0.9112183360712871, result.metrics.rmse, 1E-4);
     }
 
+    @Test
+    public void testKernelCache() {
+        System.out.println("Kernel cache");
+
+        GaussianKernel kernel = new GaussianKernel(6.0);
+        // The budget of 10 rows.
+        long bytes = 10 * (Prostate.x.length * Double.BYTES + 64);
+        smile.base.svm.SVR<double[]> svr = new smile.base.svm.SVR<>(kernel, 0.5, 5, 1E-3, bytes, false);
+        KernelMachine<double[]> model = svr.fit(Prostate.x, Prostate.y);
+        double rmse = smile.validation.metric.RMSE.of(Prostate.testy, model.predict(Prostate.testx));
+
+        KernelCache cache = svr.cache();
+        System.out.println(cache);
+        assertEquals(10, cache.capacity());
+        assertTrue(cache.evictions() > 0);
+        assertEquals(0.9112183360712871, rmse, 1E-4);
+
+        svr = new smile.base.svm.SVR<>(kernel, 0.5, 5, 1E-3, bytes, true);
+        model = svr.fit(Prostate.x, Prostate.y);
+        rmse = smile.validation.metric.RMSE.of(Prostate.testy, model.predict(Prostate.testx));
+
+        cache = svr.cache();
+        System.out.println(cache);
+        assertEquals(18, cache.capacity());
+        assertEquals(0.9112, rmse, 1E-3);
+    }
+
+    @Test
+    public void testShrinking() {
+        System.out.println("Shrinking");
+
+        GaussianKernel kernel = new GaussianKernel(5.0);
+        long bytes = KernelCache.defaultSize();
+        smile.base.svm.SVR<double[]> svr = new smile.base.svm.SVR<>(kernel, 1.5, 100, 1E-3, bytes, false, true);
+        KernelMachine<double[]> model = svr.fit(Abalone.x, Abalone.y);
+        double rmse = smile.validation.metric.RMSE.of(Abalone.testy, model.predict(Abalone.testx));
+
+        svr = new smile.base.svm.SVR<>(kernel, 1.5, 100, 1E-3, bytes, false, false);
+        KernelMachine<double[]> full = svr.fit(Abalone.x, Abalone.y);
+        double expected = smile.validation.metric.RMSE.of(Abalone.testy, full.predict(Abalone.testx));
+
+        System.out.format("RMSE with shrinking = %.4f, without shrinking = %.4f%n", rmse, expected);
+        assertEquals(expected, rmse, 1E-3);
+    }
+
     @Test
     public void tesAbalone() {
         System.out.println("Abalone");
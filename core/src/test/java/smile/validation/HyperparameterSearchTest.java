@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.validation;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import smile.classification.KNN;
+import smile.data.Iris;
+import smile.math.MathEx;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Haifeng Li
+ */
+public class HyperparameterSearchTest {
+
+    public HyperparameterSearchTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testSearch() {
+        System.out.println("Search");
+
+        MathEx.setSeed(19650218); // to get repeatable results.
+        Bag[] bags = CrossValidation.of(Iris.x.length, 5);
+        Hyperparameters hp = new Hyperparameters().add("k", 1, 25, 2);
+
+        AtomicInteger calls = new AtomicInteger();
+        HyperparameterSearch.Objective knn = HyperparameterSearch.classification(Iris.x, Iris.y,
+                prop -> (x, y) -> KNN.fit(x, y, Integer.parseInt(prop.getProperty("k"))));
+        HyperparameterSearch.Objective objective = (params, train, test) -> {
+            calls.incrementAndGet();
+            assertEquals(2, ForkJoinTask.getPool().getParallelism());
+            return knn.score(params, train, test);
+        };
+
+        List<HyperparameterSearch.Result> serial;
+        try (HyperparameterSearch search = new HyperparameterSearch(bags, knn, 1, 1)) {
+            serial = search.search(hp.grid());
+        }
+
+        try (HyperparameterSearch search = new HyperparameterSearch(bags, objective, 4, 2)) {
+            List<HyperparameterSearch.Result> results = search.search(hp.grid());
+            System.out.println(results.get(0));
+            assertEquals(13, results.size());
+            assertEquals(13 * 5, calls.get());
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(serial.get(i).params, results.get(i).params);
+                assertArrayEquals(serial.get(i).scores, results.get(i).scores, 1E-15);
+                if (i > 0) assertTrue(results.get(i - 1).score >= results.get(i).score);
+            }
+
+            // The full budget scores are cached.
+            search.search(hp.grid());
+            assertEquals(13 * 5, calls.get());
+            assertEquals(13 * 5, search.cacheSize());
+        }
+
+        // The concurrent duplicates wait for one evaluation.
+        calls.set(0);
+        try (HyperparameterSearch search = new HyperparameterSearch(bags, objective, 4, 2)) {
+            List<HyperparameterSearch.Result> results = search.search(Stream.concat(hp.grid(), hp.grid()));
+            assertEquals(26, results.size());
+            assertEquals(13 * 5, calls.get());
+            assertEquals(13 * 5, search.cacheSize());
+        }
+    }
+
+    @Test
+    public void testHalving() {
+        System.out.println("Halving");
+
+        MathEx.setSeed(19650218); // to get repeatable results.
+        Bag[] bags = CrossValidation.of(Iris.x.length, 5);
+        Hyperparameters hp = new Hyperparameters().add("k", 1, 25, 2);
+
+        AtomicInteger calls = new AtomicInteger();
+        HyperparameterSearch.Objective knn = HyperparameterSearch.classification(Iris.x, Iris.y,
+                prop -> (x, y) -> KNN.fit(x, y, Integer.parseInt(prop.getProperty("k"))));
+        HyperparameterSearch.Objective objective = (params, train, test) -> {
+            calls.incrementAndGet();
+            return knn.score(params, train, test);
+        };
+
+        try (HyperparameterSearch search = new HyperparameterSearch(bags, objective, 2, 1)) {
+            List<HyperparameterSearch.Result> results = search.halving(hp.grid(), 1.0 / 3, 3);
+            System.out.println(results.get(0));
+            assertEquals(13, results.size());
+            // 13 configurations at 1/3, 4 at 1.
+            assertEquals((13 + 4) * 5, calls.get());
+            assertEquals(1.0, results.get(0).budget, 1E-15);
+            assertEquals(1.0 / 3, results.get(results.size() - 1).budget, 1E-15);
+            assertTrue(results.get(0).score > 0.9);
+
+            // Hyperband reuses the cached evaluations of same budget.
+            calls.set(0);
+            results = search.hyperband(hp.grid(), 1.0 / 3, 3);
+            System.out.println(results.get(0));
+            assertEquals(1.0, results.get(0).budget, 1E-15);
+            assertTrue(results.get(0).score > 0.9);
+            assertTrue(calls.get() < 13 * 5);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.data;
+
+import smile.data.vector.BaseVector;
+
+/**
+ * An aggregate function on the groups of a data frame, which computes
+ * a column of one value per group. The aggregates of numeric columns
+ * work on the primitive values. Null values of object columns are
+ * ignored.
+ *
+ * @author Haifeng Li
+ */
+public interface Aggregate {
+    /**
+     * Returns the name of aggregate column.
+     * @return the name of aggregate column.
+     */
+    String name();
+
+    /**
+     * Returns a copy of aggregate function with a new name.
+     * @param name the name of aggregate column.
+     * @return the aggregate function.
+     */
+    Aggregate as(String name);
+
+    /**
+     * Computes the aggregate of groups.
+     * @param groups the grouped data frame.
+     * @return the aggregate column, of which the i-th element is
+     *         the aggregate of the i-th group.
+     */
+    BaseVector apply(GroupedDataFrame groups);
+
+    /**
+     * Returns the aggregate function of the number of rows, which
+     * is named "count".
+     * @return the aggregate function.
+     */
+    static Aggregate count() {
+        return new AggregateImpl("count", (groups, name) -> AggregateImpl.count(groups, name));
+    }
+
+    /**
+     * Returns the aggregate function of the number of non-null values.
+     * @param column the column name.
+     * @return the aggregate function.
+     */
+    static Aggregate count(String column) {
+        return new AggregateImpl("count(" + column + ")", (groups, name) -> AggregateImpl.count(groups, column, name));
+    }
+
+    /**
+     * Returns the aggregate function of sum. The sum of integral
+     * columns is a long column. Otherwise, it is a double column.
+     * @param column the column name.
+     * @return the aggregate function.
+     */
+    static Aggregate sum(String column) {
+        return new AggregateImpl("sum(" + column + ")", (groups, name) -> AggregateImpl.sum(groups, column, name));
+    }
+
+    /**
+     * Returns the aggregate function of mean.
+     * @param column the column name.
+     * @return the aggregate function.
+     */
+    static Aggregate mean(String column) {
+        return new AggregateImpl("mean(" + column + ")", (groups, name) -> AggregateImpl.mean(groups, column, name));
+    }
+
+    /**
+     * Returns the aggregate function of minimum. The result column has
+     * the same type as the input column. Floating numbers are ordered
+     * as {@link Double#compare}, i.e. NaN is greater than any number.
+     * Object columns must be {@link Comparable}.
+     * @param column the column name.
+     * @return the aggregate function.
+     */
+    static Aggregate min(String column) {
+        return new AggregateImpl("min(" + column + ")", (groups, name) -> AggregateImpl.select(groups, column, name, -1));
+    }
+
+    /**
+     * Returns the aggregate function of maximum. The result column has
+     * the same type as the input column. Floating numbers are ordered
+     * as {@link Double#compare}, i.e. NaN is greater than any number.
+     * Object columns must be {@link Comparable}.
+     * @param column the column name.
+     * @return the aggregate function.
+     */
+    static Aggregate max(String column) {
+        return new AggregateImpl("max(" + column + ")", (groups, name) -> AggregateImpl.select(groups, column, name, 1));
+    }
+
+    /**
+     * Returns the aggregate function of quantile. The quantile is the
+     * {@code floor(p * n)}-th smallest value of a group, which is
+     * consistent with {@link smile.math.MathEx#median(double[])}.
+     * It is NaN for the groups without any non-null value.
+     * @param column the column name.
+     * @param p the probability in [0, 1].
+     * @return the aggregate function.
+     */
+    static Aggregate quantile(String column, double p) {
+        if (p < 0.0 || p > 1.0) {
+            throw new IllegalArgumentException("Invalid probability: " + p);
+        }
+
+        return new AggregateImpl(String.format("quantile(%s, %s)", column, p), (groups, name) -> AggregateImpl.quantile(groups, column, name, p));
+    }
+
+    /**
+     * Returns the aggregate function of median.
+     * @param column the column name.
+     * @return the aggregate function.
+     */
+    static Aggregate median(String column) {
+        return new AggregateImpl("median(" + column + ")", (groups, name) -> AggregateImpl.quantile(groups, column, name, 0.5));
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.data;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiFunction;
+import smile.data.type.DataType;
+import smile.data.type.StructField;
+import smile.data.vector.*;
+import smile.sort.QuickSelect;
+
+/**
+ * The implementation of predefined aggregate functions. The partial
+ * aggregates of each partition of rows are computed in parallel and
+ * then merged.
+ *
+ * @author Haifeng Li
+ */
+class AggregateImpl implements Aggregate {
+    /** The name of aggregate column. */
+    private final String name;
+    /** The aggregate function of groups and the column name. */
+    private final BiFunction<GroupedDataFrame, String, BaseVector> f;
+
+    /**
+     * Constructor.
+     * @param name the name of aggregate column.
+     * @param f the aggregate function of groups and the column name.
+     */
+    AggregateImpl(String name, BiFunction<GroupedDataFrame, String, BaseVector> f) {
+        this.name = name;
+        this.f = f;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    @Override
+    public Aggregate as(String name) {
+        return new AggregateImpl(name, f);
+    }
+
+    @Override
+    public BaseVector apply(GroupedDataFrame groups) {
+        return f.apply(groups, name);
+    }
+
+    /** Returns the number of rows of groups. */
+    static BaseVector count(GroupedDataFrame groups, String name) {
+        return LongVector.of(name, groups.count());
+    }
+
+    /** Returns the number of non-null values of groups. */
+    static BaseVector count(GroupedDataFrame groups, String column, String name) {
+        BaseVector v = groups.data().column(column);
+        if (v.type().isPrimitive()) {
+            return count(groups, name);
+        }
+
+        int k = groups.size();
+        int[] group = groups.group();
+        long[] count = sum(groups.partition(true, (from, to) -> {
+            long[] partial = new long[k];
+            for (int i = from; i < to; i++) {
+                if (v.get(i) != null) partial[group[i]]++;
+            }
+            return partial;
+        }));
+
+        return LongVector.of(name, count);
+    }
+
+    /** Returns the sum of groups. */
+    static BaseVector sum(GroupedDataFrame groups, String column, String name) {
+        BaseVector v = numeric(groups, column);
+        int k = groups.size();
+        int[] group = groups.group();
+        boolean nullable = v.type().isObject();
+
+        if (v.type().isIntegral()) {
+            long[] sum = sum(groups.partition(true, (from, to) -> {
+                long[] partial = new long[k];
+                if (nullable) {
+                    for (int i = from; i < to; i++) {
+                        Object x = v.get(i);
+                        if (x != null) partial[group[i]] += ((Number) x).longValue();
+                    }
+                } else {
+                    for (int i = from; i < to; i++) {
+                        partial[group[i]] += v.getLong(i);
+                    }
+                }
+                return partial;
+            }));
+
+            return LongVector.of(name, sum);
+        } else {
+            double[][] sum = sumAndCount(groups, v);
+            return DoubleVector.of(name, sum[0]);
+        }
+    }
+
+    /** Returns the mean of groups. */
+    static BaseVector mean(GroupedDataFrame groups, String column, String name) {
+        BaseVector v = numeric(groups, column);
+        double[][] sum = sumAndCount(groups, v);
+        double[] mean = sum[0];
+        double[] count = sum[1];
+        for (int g = 0; g < mean.length; g++) {
+            mean[g] = count[g] == 0 ? Double.NaN : mean[g] / count[g];
+        }
+        return DoubleVector.of(name, mean);
+    }
+
+    /**
+     * Returns the minimum or maximum of groups.
+     * @param sign -1 for minimum, 1 for maximum.
+     */
+    @SuppressWarnings("unchecked")
+    static BaseVector select(GroupedDataFrame groups, String column, String name, int sign) {
+        BaseVector v = groups.data().column(column);
+        DataType type = v.type();
+        int k = groups.size();
+        int[] group = groups.group();
+
+        // The row index of the selected value of each group.
+        List<int[]> partials = groups.partition(true, (from, to) -> {
+            int[] partial = new int[k];
+            Arrays.fill(partial, -1);
+            if (!type.isPrimitive()) {
+                for (int i = from; i < to; i++) {
+                    Object x = v.get(i);
+                    if (x == null) continue;
+                    int j = partial[group[i]];
+                    if (j < 0 || sign * ((Comparable<Object>) x).compareTo(v.get(j)) > 0) partial[group[i]] = i;
+                }
+            } else if (type.isFloating()) {
+                for (int i = from; i < to; i++) {
+                    int j = partial[group[i]];
+                    if (j < 0 || sign * Double.compare(v.getDouble(i), v.getDouble(j)) > 0) partial[group[i]] = i;
+                }
+            } else {
+                for (int i = from; i < to; i++) {
+                    int j = partial[group[i]];
+                    if (j < 0 || sign * Long.compare(v.getLong(i), v.getLong(j)) > 0) partial[group[i]] = i;
+                }
+            }
+            return partial;
+        });
+
+        // The partitions are in the order of rows. The first one wins the ties.
+        int[] index = partials.get(0);
+        for (int p = 1; p < partials.size(); p++) {
+            int[] partial = partials.get(p);
+            for (int g = 0; g < k; g++) {
+                int i = partial[g];
+                int j = index[g];
+                if (i < 0) continue;
+                if (j < 0) {
+                    index[g] = i;
+                } else if (!type.isPrimitive()) {
+                    if (sign * ((Comparable<Object>) v.get(i)).compareTo(v.get(j)) > 0) index[g] = i;
+                } else if (type.isFloating()) {
+                    if (sign * Double.compare(v.getDouble(i), v.getDouble(j)) > 0) index[g] = i;
+                } else {
+                    if (sign * Long.compare(v.getLong(i), v.getLong(j)) > 0) index[g] = i;
+                }
+            }
+        }
+
+        StructField field = new StructField(name, type, v.measure());
+        if (type.isPrimitive()) {
+            // Every group has at least one row.
+            return of(field, v.get(index));
+        }
+
+        Object[] values = new Object[k];
+        for (int g = 0; g < k; g++) {
+            values[g] = index[g] < 0 ? null : v.get(index[g]);
+        }
+
+        return type.isString() ?
+                StringVector.of(field, Arrays.copyOf(values, k, String[].class)) :
+                Vector.of(field, values);
+    }
+
+    /** Returns the quantile of groups. */
+    static BaseVector quantile(GroupedDataFrame groups, String column, String name, double p) {
+        BaseVector v = numeric(groups, column);
+        boolean nullable = v.type().isObject();
+
+        double[] quantile = groups.applyToGroups((index, from, to) -> {
+            double[] x = new double[to - from];
+            int n = 0;
+            for (int i = from; i < to; i++) {
+                if (nullable) {
+                    Object xi = v.get(index[i]);
+                    if (xi != null) x[n++] = ((Number) xi).doubleValue();
+                } else {
+                    x[n++] = v.getDouble(index[i]);
+                }
+            }
+
+            if (n == 0) return Double.NaN;
+            if (n < x.length) x = Arrays.copyOf(x, n);
+            return QuickSelect.select(x, Math.min(n - 1, (int) (p * n)));
+        });
+
+        return DoubleVector.of(name, quantile);
+    }
+
+    /** Returns the numeric column. */
+    private static BaseVector numeric(GroupedDataFrame groups, String column) {
+        BaseVector v = groups.data().column(column);
+        if (!v.type().isNumeric()) {
+            throw new IllegalArgumentException(String.format("Column %s is not numeric: %s", column, v.type()));
+        }
+        return v;
+    }
+
+    /** Returns the sum and the number of non-null values of groups. */
+    private static double[][] sumAndCount(GroupedDataFrame groups, BaseVector v) {
+        int k = groups.size();
+        int[] group = groups.group();
+        boolean nullable = v.type().isObject();
+
+        List<double[][]> partials = groups.partition(true, (from, to) -> {
+            double[] sum = new double[k];
+            double[] count = new double[k];
+            if (nullable) {
+                for (int i = from; i < to; i++) {
+                    Object x = v.get(i);
+                    if (x != null) {
+                        sum[group[i]] += ((Number) x).doubleValue();
+                        count[group[i]]++;
+                    }
+                }
+            } else {
+                for (int i = from; i < to; i++) {
+                    sum[group[i]] += v.getDouble(i);
+                    count[group[i]]++;
+                }
+            }
+            return new double[][]{sum, count};
+        });
+
+        double[][] sum = partials.get(0);
+        for (int p = 1; p < partials.size(); p++) {
+            double[][] partial = partials.get(p);
+            for (int g = 0; g < k; g++) {
+                sum[0][g] += partial[0][g];
+                sum[1][g] += partial[1][g];
+            }
+        }
+        return sum;
+    }
+
+    /** Merges the partial sums. */
+    private static long[] sum(List<long[]> partials) {
+        long[] sum = partials.get(0);
+        for (int p = 1; p < partials.size(); p++) {
+            long[] partial = partials.get(p);
+            for (int g = 0; g < sum.length; g++) {
+                sum[g] += partial[g];
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Returns a vector of the same data with a new field.
+     * @param field the new field of the same type.
+     * @param v the vector.
+     * @return the vector with new field.
+     */
+    static BaseVector of(StructField field, BaseVector v) {
+        switch (field.type.id()) {
+            case Boolean: return BooleanVector.of(field, (boolean[]) v.array());
+            case Char: return CharVector.of(field, (char[]) v.array());
+            case Byte: return ByteVector.of(field, (byte[]) v.array());
+            case Short: return ShortVector.of(field, (short[]) v.array());
+            case Integer: return IntVector.of(field, (int[]) v.array());
+            case Long: return LongVector.of(field, (long[]) v.array());
+            case Float: return FloatVector.of(field, (float[]) v.array());
+            case Double: return DoubleVector.of(field, (double[]) v.array());
+            default:
+                Object array = v.array();
+                if (array instanceof String[]) {
+                    return StringVector.of(field, (String[]) array);
+                }
+                return Vector.of(field, (Object[]) array);
+        }
+    }
+}
@@ -979,6 +979,105 @@ public interface DataFrame extends Dataset<Tuple>, Iterable<BaseVector> {
      */
     DataFrame union(DataFrame... dataframes);
 
+    /**
+     * Returns a view of data frame sorted by the columns in ascending
+     * order. The sort is stable, i.e. the rows with equal keys are in
+     * the original order. The floating numbers are ordered as
+     * {@link Double#compare} and the nulls are the last.
+     * Use {@link IndexDataFrame#rebase()} to copy the sorted rows into
+     * a new data frame.
+     * @param columns the sort columns.
+     * @return the sorted view of data frame.
+     */
+    default IndexDataFrame orderBy(String... columns) {
+        boolean[] ascending = new boolean[columns.length];
+        Arrays.fill(ascending, true);
+        return orderBy(columns, ascending);
+    }
+
+    /**
+     * Returns a view of data frame sorted by the columns. The sort is
+     * stable, i.e. the rows with equal keys are in the original order.
+     * The floating numbers are ordered as {@link Double#compare} and the
+     * nulls are the last in ascending order and the first in descending
+     * order. Use {@link IndexDataFrame#rebase()} to copy the sorted rows
+     * into a new data frame.
+     * @param columns the sort columns.
+     * @param ascending the sort order of each column.
+     * @return the sorted view of data frame.
+     */
+    default IndexDataFrame orderBy(String[] columns, boolean[] ascending) {
+        return new IndexDataFrame(this, Order.order(this, columns, ascending));
+    }
+
+    /**
+     * Returns a view of the first k rows in the order of a column.
+     * @param k the number of rows.
+     * @param column the sort column.
+     * @param ascending the sort order. If false, the rows with k
+     *                  largest values are returned.
+     * @return the view of top k rows.
+     */
+    default IndexDataFrame topK(int k, String column, boolean ascending) {
+        return topK(k, new String[]{column}, new boolean[]{ascending});
+    }
+
+    /**
+     * Returns a view of the first k rows in the order of columns, which
+     * is same as the first k rows of {@code orderBy(columns, ascending)}.
+     * Only the rows with the k smallest keys of the first column are
+     * sorted.
+     * @param k the number of rows.
+     * @param columns the sort columns.
+     * @param ascending the sort order of each column.
+     * @return the view of top k rows.
+     */
+    default IndexDataFrame topK(int k, String[] columns, boolean[] ascending) {
+        return new IndexDataFrame(this, Order.top(this, k, columns, ascending));
+    }
+
+    /**
+     * Inner joins with another data frame on the key columns.
+     * @param other the data frame to join.
+     * @param columns the key columns, which must be of same type in
+     *                both data frames.
+     * @return the joined data frame.
+     */
+    default DataFrame join(DataFrame other, String... columns) {
+        return join(other, JoinType.INNER, columns);
+    }
+
+    /**
+     * Joins with another data frame on the key columns. The result
+     * consists of the columns of this data frame and the non-key
+     * columns of the other one. The other's columns with the same
+     * name as a column of this data frame are renamed with the suffix
+     * "_right". The columns of missing rows in left, right and outer
+     * joins are null.
+     * @param other the data frame to join.
+     * @param type the type of join.
+     * @param columns the key columns, which must be of same type in
+     *                both data frames.
+     * @return the joined data frame.
+     */
+    default DataFrame join(DataFrame other, JoinType type, String... columns) {
+        return Join.join(this, other, type, columns);
+    }
+
+    /**
+     * Groups the rows by the distinct values of given columns.
+     * For example,
+     * <pre>{@code
+     *     df.groupBy("dept", "gender").agg(Aggregate.count(), Aggregate.mean("salary"))
+     * }</pre>
+     *
+     * @param columns the key columns.
+     * @return the grouped data frame.
+     */
+    default GroupedDataFrame groupBy(String... columns) {
+        return new GroupedDataFrame(this, columns);
+    }
+
     /**
      * Returns a new DataFrame with given columns converted to nominal.
      *
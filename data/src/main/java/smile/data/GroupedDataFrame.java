@@ -0,0 +1,547 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.data;
+
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import smile.data.vector.BaseVector;
+
+/**
+ * A data frame grouped by the distinct values of key columns. The rows
+ * are hashed into groups directly on the column vectors without creating
+ * tuples. Numeric keys (including nominal variables) are hashed by
+ * primitive values. Other keys, e.g. strings, are hashed as objects.
+ * A null is a valid key value. The groups are numbered in the order of
+ * their first appearance in the data frame.
+ * <p>
+ * Both grouping and aggregation are done in parallel on the partitions
+ * of rows. Each partition computes the partial results, which are then
+ * merged.
+ *
+ * @author Haifeng Li
+ */
+public class GroupedDataFrame {
+    /** The minimum number of rows in a partition. */
+    private static final int MIN_PARTITION_SIZE = 8192;
+
+    /** The underlying data frame. */
+    private final DataFrame df;
+    /** The key columns. */
+    private final String[] columns;
+    /** The group index of each row. */
+    private final int[] group;
+    /** The number of groups. */
+    private final int size;
+    /** The distinct keys of groups. */
+    private final DataFrame keys;
+    /** The row indices sorted by groups. Lazily initialized. */
+    private int[] index;
+    /** The offset of each group in the sorted row indices. Lazily initialized. */
+    private int[] offset;
+
+    /**
+     * Constructor.
+     * @param df the data frame.
+     * @param columns the key columns.
+     */
+    public GroupedDataFrame(DataFrame df, String... columns) {
+        if (columns.length == 0) {
+            throw new IllegalArgumentException("Empty group by columns");
+        }
+
+        int n = df.size();
+        this.df = df;
+        this.columns = columns;
+        this.group = new int[n];
+
+        BaseVector[] keys = Arrays.stream(columns).map(df::column).toArray(BaseVector[]::new);
+        this.size = factorize(keys, group);
+
+        int[] first = new int[size];
+        Arrays.fill(first, -1);
+        for (int i = 0; i < n; i++) {
+            if (first[group[i]] < 0) first[group[i]] = i;
+        }
+
+        this.keys = DataFrame.of(Arrays.stream(columns)
+                .map(column -> df.column(column).get(first))
+                .toArray(BaseVector[]::new));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("GroupedDataFrame(%s, %d groups)", String.join(", ", columns), size);
+    }
+
+    /**
+     * Returns the number of groups.
+     * @return the number of groups.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the key columns.
+     * @return the key columns.
+     */
+    public String[] columns() {
+        return columns;
+    }
+
+    /**
+     * Returns the distinct keys of groups. The i-th row is the key of
+     * the i-th group.
+     * @return the distinct keys of groups.
+     */
+    public DataFrame keys() {
+        return keys;
+    }
+
+    /**
+     * Returns the group index of each row.
+     * @return the group index of each row.
+     */
+    public int[] group() {
+        return group;
+    }
+
+    /**
+     * Returns the data frame of the rows in a group.
+     * @param g the group index.
+     * @return the data frame of the rows in the group.
+     */
+    public DataFrame get(int g) {
+        sort();
+        return df.of(Arrays.copyOfRange(index, offset[g], offset[g+1]));
+    }
+
+    /**
+     * Returns the number of rows in each group.
+     * @return the number of rows in each group.
+     */
+    public long[] count() {
+        List<long[]> partials = partition(true, (from, to) -> {
+            long[] count = new long[size];
+            for (int i = from; i < to; i++) {
+                count[group[i]]++;
+            }
+            return count;
+        });
+
+        long[] count = partials.get(0);
+        for (int p = 1; p < partials.size(); p++) {
+            long[] partial = partials.get(p);
+            for (int g = 0; g < size; g++) {
+                count[g] += partial[g];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Aggregates the groups. The result data frame consists of the key
+     * columns and the aggregate columns, with one row per group.
+     * @param aggregates the aggregate functions.
+     * @return the aggregated data frame.
+     */
+    public DataFrame agg(Aggregate... aggregates) {
+        BaseVector[] vectors = Arrays.stream(aggregates)
+                .map(aggregate -> aggregate.apply(this))
+                .toArray(BaseVector[]::new);
+        return keys.merge(vectors);
+    }
+
+    /**
+     * Returns the underlying data frame.
+     * @return the underlying data frame.
+     */
+    DataFrame data() {
+        return df;
+    }
+
+    /**
+     * The computation on a partition of rows.
+     * @param <T> the type of partial results.
+     */
+    interface Partition<T> {
+        /**
+         * Computes the partial result of the rows in [from, to).
+         * @param from the first row, inclusive.
+         * @param to the last row, exclusive.
+         * @return the partial result.
+         */
+        T apply(int from, int to);
+    }
+
+    /**
+     * Applies a computation to the partitions of rows in parallel.
+     * @param grouped if true, the partial results are of the size of
+     *                groups and the number of partitions is limited
+     *                so that the partial results take no more memory
+     *                than the group index.
+     * @param f the computation on a partition.
+     * @param <T> the type of partial results.
+     * @return the partial results in the order of partitions.
+     */
+    <T> List<T> partition(boolean grouped, Partition<T> f) {
+        return partition(group.length, grouped ? size : 0, f);
+    }
+
+    /**
+     * Applies a computation to the partitions of rows in parallel.
+     * @param n the number of rows.
+     * @param k the size of partial results.
+     * @param f the computation on a partition.
+     * @param <T> the type of partial results.
+     * @return the partial results in the order of partitions.
+     */
+    static <T> List<T> partition(int n, int k, Partition<T> f) {
+        int p = Math.max(1, n / MIN_PARTITION_SIZE);
+        p = Math.min(p, 4 * Runtime.getRuntime().availableProcessors());
+        if (k > 0) p = Math.max(1, Math.min(p, n / k));
+
+        int np = p;
+        return IntStream.range(0, np).parallel()
+                .mapToObj(i -> f.apply((int) ((long) n * i / np), (int) ((long) n * (i + 1) / np)))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Sorts the row indices by groups with counting sort.
+     */
+    private synchronized void sort() {
+        if (index != null) return;
+
+        int[] offset = new int[size + 1];
+        for (int g : group) {
+            offset[g + 1]++;
+        }
+
+        for (int g = 0; g < size; g++) {
+            offset[g + 1] += offset[g];
+        }
+
+        int[] pos = Arrays.copyOf(offset, size);
+        int[] index = new int[group.length];
+        for (int i = 0; i < group.length; i++) {
+            index[pos[group[i]]++] = i;
+        }
+
+        this.offset = offset;
+        this.index = index;
+    }
+
+    /**
+     * Applies a computation to each group in parallel.
+     * @param f the computation on the row indices of a group, which
+     *          are index[offset[g], offset[g+1]).
+     * @return the results of groups.
+     */
+    double[] applyToGroups(GroupFunction f) {
+        sort();
+        double[] result = new double[size];
+        IntStream.range(0, size).parallel().forEach(g -> result[g] = f.apply(index, offset[g], offset[g+1]));
+        return result;
+    }
+
+    /**
+     * The computation on the rows of a group.
+     */
+    interface GroupFunction {
+        /**
+         * Computes the result of a group.
+         * @param index the row indices sorted by groups.
+         * @param from the first row of the group in the index, inclusive.
+         * @param to the last row of the group in the index, exclusive.
+         * @return the result.
+         */
+        double apply(int[] index, int from, int to);
+    }
+
+    /**
+     * Factorizes the rows of multiple key columns into dense codes in the
+     * order of first appearance.
+     * @param keys the key columns.
+     * @param code the output codes.
+     * @return the number of distinct keys.
+     */
+    private static int factorize(BaseVector[] keys, int[] code) {
+        int k = factorize(keys[0], code);
+        if (keys.length == 1) return k;
+
+        int n = code.length;
+        int[] group = code.clone();
+        long[] key = new long[n];
+        for (int j = 1; j < keys.length; j++) {
+            int card = factorize(keys[j], code);
+            int[] prev = group;
+            Arrays.parallelSetAll(key, i -> (long) prev[i] * card + code[i]);
+            k = factorize(key, group);
+        }
+
+        System.arraycopy(group, 0, code, 0, n);
+        return k;
+    }
+
+    /**
+     * Factorizes a column into dense codes in the order of first appearance.
+     * @param column the column.
+     * @param code the output codes.
+     * @return the number of distinct values.
+     */
+    private static int factorize(BaseVector column, int[] code) {
+        if (!column.type().isPrimitive()) {
+            return index(column.size(), column::get, code).size();
+        }
+
+        return factorize(keys(column), code);
+    }
+
+    /**
+     * Returns the long integer keys of a primitive column.
+     * @param column the primitive column.
+     * @return the long integer keys.
+     */
+    static long[] keys(BaseVector column) {
+        long[] key = new long[column.size()];
+        if (column.type().isFloating()) {
+            // Double.doubleToLongBits collapses all NaNs. Map -0.0 to 0.0 too.
+            Arrays.parallelSetAll(key, i -> {
+                double x = column.getDouble(i);
+                return x == 0.0 ? 0L : Double.doubleToLongBits(x);
+            });
+        } else {
+            Arrays.parallelSetAll(key, column::getLong);
+        }
+        return key;
+    }
+
+    /**
+     * Factorizes objects into dense codes in the order of first appearance.
+     * @param n the number of objects.
+     * @param key the function to return the i-th object.
+     * @param code the output codes.
+     * @return the map of distinct objects to codes.
+     */
+    static HashMap<Object, Integer> index(int n, IntFunction<Object> key, int[] code) {
+        List<List<Object>> partials = partition(n, 0, (from, to) -> {
+            HashMap<Object, Integer> map = new HashMap<>();
+            List<Object> keys = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                Object x = key.apply(i);
+                Integer c = map.get(x);
+                if (c == null) {
+                    c = keys.size();
+                    map.put(x, c);
+                    keys.add(x);
+                }
+                code[i] = c;
+            }
+            return keys;
+        });
+
+        HashMap<Object, Integer> map = new HashMap<>();
+        int[][] codes = new int[partials.size()][];
+        for (int p = 0; p < codes.length; p++) {
+            List<Object> keys = partials.get(p);
+            codes[p] = new int[keys.size()];
+            for (int c = 0; c < codes[p].length; c++) {
+                Integer g = map.get(keys.get(c));
+                if (g == null) {
+                    g = map.size();
+                    map.put(keys.get(c), g);
+                }
+                codes[p][c] = g;
+            }
+        }
+
+        recode(n, codes, code);
+        return map;
+    }
+
+    /**
+     * Factorizes long integers into dense codes in the order of first appearance.
+     * @param key the long integers.
+     * @param code the output codes.
+     * @return the number of distinct values.
+     */
+    private static int factorize(long[] key, int[] code) {
+        int n = key.length;
+        LongSummaryStatistics stats = Arrays.stream(key).parallel().summaryStatistics();
+        long range = stats.getMax() - stats.getMin();
+        if (n > 0 && range >= 0 && range < Math.max(n, 65536)) {
+            // Dense keys, e.g. nominal values or the combination of
+            // codes, are mapped by a lookup table instead of hashing.
+            long min = stats.getMin();
+            int[] table = new int[(int) range + 1];
+            Arrays.fill(table, -1);
+            int k = 0;
+            for (int i = 0; i < n; i++) {
+                int j = (int) (key[i] - min);
+                if (table[j] < 0) table[j] = k++;
+                code[i] = table[j];
+            }
+            return k;
+        }
+
+        return index(key, code).size();
+    }
+
+    /**
+     * Factorizes long integers into dense codes in the order of first
+     * appearance with hashing.
+     * @param key the long integers.
+     * @param code the output codes.
+     * @return the hash index of distinct values to codes.
+     */
+    static LongIndex index(long[] key, int[] code) {
+        int n = key.length;
+        List<LongIndex> partials = partition(n, 0, (from, to) -> {
+            LongIndex map = new LongIndex(Math.min(to - from, 1024));
+            for (int i = from; i < to; i++) {
+                code[i] = map.add(key[i]);
+            }
+            return map;
+        });
+
+        LongIndex map = new LongIndex(partials.get(0).size());
+        int[][] codes = new int[partials.size()][];
+        for (int p = 0; p < codes.length; p++) {
+            LongIndex partial = partials.get(p);
+            codes[p] = new int[partial.size()];
+            for (int c = 0; c < codes[p].length; c++) {
+                codes[p][c] = map.add(partial.key(c));
+            }
+        }
+
+        recode(n, codes, code);
+        return map;
+    }
+
+    /**
+     * Maps the local codes of partitions to the global codes.
+     * @param n the number of rows.
+     * @param codes the global codes of local codes in each partition.
+     * @param code the local codes to update.
+     */
+    private static void recode(int n, int[][] codes, int[] code) {
+        int np = codes.length;
+        if (np == 1) return; // The local codes are global.
+
+        IntStream.range(0, np).parallel().forEach(p -> {
+            int[] map = codes[p];
+            int from = (int) ((long) n * p / np);
+            int to = (int) ((long) n * (p + 1) / np);
+            for (int i = from; i < to; i++) {
+                code[i] = map[code[i]];
+            }
+        });
+    }
+
+    /**
+     * Open addressing hash index of long integers, which assigns
+     * consecutive codes to distinct keys in the order of insertion.
+     */
+    static class LongIndex {
+        /** The keys in the order of insertion. */
+        private long[] keys;
+        /** The hash table of codes. -1 for empty slots. */
+        private int[] table;
+        /** The number of distinct keys. */
+        private int size;
+
+        /**
+         * Constructor.
+         * @param capacity the initial capacity.
+         */
+        LongIndex(int capacity) {
+            capacity = Math.max(16, capacity);
+            keys = new long[capacity];
+            table = new int[Integer.highestOneBit(capacity) << 2];
+            Arrays.fill(table, -1);
+        }
+
+        /** Returns the number of distinct keys. */
+        int size() {
+            return size;
+        }
+
+        /** Returns the key of a code. */
+        long key(int code) {
+            return keys[code];
+        }
+
+        /** Returns the code of a key, or -1 if absent. */
+        int get(long key) {
+            int mask = table.length - 1;
+            int ptr = hash(key) & mask;
+            for (int c = table[ptr]; c >= 0; c = table[ptr]) {
+                if (keys[c] == key) return c;
+                ptr = (ptr + 1) & mask;
+            }
+            return -1;
+        }
+
+        /** Returns the code of a key, which is added if absent. */
+        int add(long key) {
+            int mask = table.length - 1;
+            int ptr = hash(key) & mask;
+            for (int c = table[ptr]; c >= 0; c = table[ptr]) {
+                if (keys[c] == key) return c;
+                ptr = (ptr + 1) & mask;
+            }
+
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, 2 * size);
+            }
+
+            int code = size++;
+            keys[code] = key;
+            table[ptr] = code;
+
+            // Keep the load factor no more than 0.5.
+            if (2 * size > table.length) {
+                rehash();
+            }
+            return code;
+        }
+
+        /** Doubles the hash table. */
+        private void rehash() {
+            table = new int[table.length << 1];
+            Arrays.fill(table, -1);
+            int mask = table.length - 1;
+            for (int c = 0; c < size; c++) {
+                int ptr = hash(keys[c]) & mask;
+                while (table[ptr] >= 0) {
+                    ptr = (ptr + 1) & mask;
+                }
+                table[ptr] = c;
+            }
+        }
+
+        /** The hash function of long integers. */
+        private static int hash(long x) {
+            long h = x * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -149,9 +149,17 @@ public class IndexDataFrame implements DataFrame {
         return new IndexDataFrame(df.drop(cols), index);
     }
 
-    /** Returns a new data frame with regular index. */
-    private DataFrame rebase() {
-        return DataFrame.of(stream().collect(java.util.stream.Collectors.toList()));
+    /**
+     * Returns a new data frame with regular index. The selected rows
+     * are gathered into new column vectors.
+     * @return a new data frame with regular index.
+     */
+    public DataFrame rebase() {
+        BaseVector[] columns = new BaseVector[ncol()];
+        for (int j = 0; j < columns.length; j++) {
+            columns[j] = column(j);
+        }
+        return DataFrame.of(columns);
     }
 
     @Override
@@ -0,0 +1,376 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.data;
+
+import java.util.*;
+import java.util.stream.IntStream;
+import smile.data.type.DataType;
+import smile.data.type.StructField;
+import smile.data.vector.BaseVector;
+import smile.data.vector.StringVector;
+import smile.data.vector.Vector;
+import smile.util.IntArrayList;
+
+/**
+ * The join of data frames on key columns. The join computes the pairs
+ * of matching row indices and then gathers the columns of both data
+ * frames by the row indices into new column vectors.
+ * <p>
+ * In general, the hash join is employed. The build phase hashes the
+ * keys of right data frame into dense codes in parallel on the partitions
+ * of rows (see {@link GroupedDataFrame}) and buckets the rows by codes.
+ * The probe phase looks up the keys of left data frame and outputs the
+ * matches in parallel on the partitions of rows. Numeric keys are hashed
+ * by primitive values and the multiple key columns are hashed by the
+ * combination of codes. The result rows are in the order
+ * of left data frame, followed by the unmatched rows of right data frame
+ * in case of right and outer joins.
+ * <p>
+ * If both data frames are sorted by a single integral key column,
+ * the sort-merge join is employed instead and the result rows are
+ * in the order of keys.
+ * <p>
+ * The null keys never match. The columns of missing rows in left,
+ * right and outer joins are null, i.e. the primitive columns are
+ * boxed.
+ *
+ * @author Haifeng Li
+ */
+class Join {
+    /** Utility class. */
+    private Join() {
+
+    }
+
+    /**
+     * Joins two data frames.
+     * @param left the left data frame.
+     * @param right the right data frame.
+     * @param type the type of join.
+     * @param columns the key columns.
+     * @return the joined data frame.
+     */
+    static DataFrame join(DataFrame left, DataFrame right, JoinType type, String... columns) {
+        if (columns.length == 0) {
+            throw new IllegalArgumentException("Empty join columns");
+        }
+
+        for (String column : columns) {
+            StructField f1 = left.schema().field(column);
+            StructField f2 = right.schema().field(column);
+            if (!f1.equals(f2)) {
+                throw new IllegalArgumentException(String.format("Join column %s of different types: %s vs %s", column, f1, f2));
+            }
+        }
+
+        boolean leftOuter = type == JoinType.LEFT || type == JoinType.OUTER;
+        boolean rightOuter = type == JoinType.RIGHT || type == JoinType.OUTER;
+
+        int[][] index = isSorted(left, right, columns) ?
+                merge(left.column(columns[0]), right.column(columns[0]), leftOuter, rightOuter) :
+                hash(left, right, columns, leftOuter, rightOuter);
+
+        return gather(left, right, columns, index[0], index[1]);
+    }
+
+    /**
+     * Returns true if both data frames are sorted by a single
+     * primitive integral key column.
+     */
+    private static boolean isSorted(DataFrame left, DataFrame right, String[] columns) {
+        if (columns.length != 1) return false;
+
+        DataType type = left.schema().field(columns[0]).type;
+        if (!type.isPrimitive() || !type.isIntegral()) return false;
+
+        return isSorted(left.column(columns[0])) && isSorted(right.column(columns[0]));
+    }
+
+    /** Returns true if the vector is in ascending order. */
+    private static boolean isSorted(BaseVector v) {
+        return IntStream.range(1, v.size()).parallel().allMatch(i -> v.getLong(i-1) <= v.getLong(i));
+    }
+
+    /**
+     * Sort-merge join on the sorted keys.
+     * @return the matching row indices of left and right data frames.
+     */
+    private static int[][] merge(BaseVector a, BaseVector b, boolean leftOuter, boolean rightOuter) {
+        int n1 = a.size();
+        int n2 = b.size();
+        IntArrayList left = new IntArrayList(Math.max(n1, n2));
+        IntArrayList right = new IntArrayList(Math.max(n1, n2));
+
+        int i = 0, j = 0;
+        while (i < n1 && j < n2) {
+            long x = a.getLong(i);
+            long y = b.getLong(j);
+            if (x < y) {
+                if (leftOuter) {
+                    left.add(i);
+                    right.add(-1);
+                }
+                i++;
+            } else if (x > y) {
+                if (rightOuter) {
+                    left.add(-1);
+                    right.add(j);
+                }
+                j++;
+            } else {
+                // The runs of same key.
+                int i2 = i + 1;
+                while (i2 < n1 && a.getLong(i2) == x) i2++;
+                int j2 = j + 1;
+                while (j2 < n2 && b.getLong(j2) == x) j2++;
+
+                for (int k = i; k < i2; k++) {
+                    for (int l = j; l < j2; l++) {
+                        left.add(k);
+                        right.add(l);
+                    }
+                }
+
+                i = i2;
+                j = j2;
+            }
+        }
+
+        for (; leftOuter && i < n1; i++) {
+            left.add(i);
+            right.add(-1);
+        }
+
+        for (; rightOuter && j < n2; j++) {
+            left.add(-1);
+            right.add(j);
+        }
+
+        return new int[][]{left.toArray(), right.toArray()};
+    }
+
+    /**
+     * Hash join.
+     * @return the matching row indices of left and right data frames.
+     */
+    private static int[][] hash(DataFrame left, DataFrame right, String[] columns, boolean leftOuter, boolean rightOuter) {
+        int n1 = left.size();
+        int n2 = right.size();
+
+        // The key codes of left and right rows. -1 for the keys
+        // that never match.
+        int[] lcode = new int[n1];
+        int[] rcode = new int[n2];
+        int k = code(left.column(columns[0]), right.column(columns[0]), lcode, rcode);
+        if (columns.length > 1) {
+            int[] lc = new int[n1];
+            int[] rc = new int[n2];
+            long[] lkey = new long[n1];
+            long[] rkey = new long[n2];
+            for (int j = 1; j < columns.length; j++) {
+                int card = code(left.column(columns[j]), right.column(columns[j]), lc, rc);
+                int[] l = lcode;
+                int[] r = rcode;
+                Arrays.parallelSetAll(lkey, i -> l[i] < 0 || lc[i] < 0 ? -1 : (long) l[i] * card + lc[i]);
+                Arrays.parallelSetAll(rkey, i -> r[i] < 0 || rc[i] < 0 ? -1 : (long) r[i] * card + rc[i]);
+                GroupedDataFrame.LongIndex index = GroupedDataFrame.index(rkey, rcode);
+                Arrays.parallelSetAll(rcode, i -> rkey[i] < 0 ? -1 : rcode[i]);
+                Arrays.parallelSetAll(lcode, i -> lkey[i] < 0 ? -1 : index.get(lkey[i]));
+                k = index.size();
+            }
+        }
+
+        // Build phase: bucket the right rows by key code.
+        int[] offset = new int[k + 1];
+        for (int c : rcode) {
+            if (c >= 0) offset[c + 1]++;
+        }
+
+        for (int c = 0; c < k; c++) {
+            offset[c + 1] += offset[c];
+        }
+
+        int[] rows = new int[offset[k]];
+        int[] pos = Arrays.copyOf(offset, k);
+        for (int i = 0; i < n2; i++) {
+            if (rcode[i] >= 0) rows[pos[rcode[i]]++] = i;
+        }
+
+        // Probe phase: count the matches of left rows in parallel.
+        boolean[] matched = new boolean[k];
+        List<long[]> partitions = GroupedDataFrame.partition(n1, 0, (from, to) -> {
+            long count = 0;
+            for (int i = from; i < to; i++) {
+                int c = lcode[i];
+                int m = c < 0 ? 0 : offset[c + 1] - offset[c];
+                if (m > 0) {
+                    matched[c] = true;
+                    count += m;
+                } else if (leftOuter) {
+                    count++;
+                }
+            }
+            return new long[]{from, count};
+        });
+
+        // The output position of each partition.
+        int np = partitions.size();
+        int[] start = new int[np + 1];
+        for (int p = 0; p < np; p++) {
+            long size = start[p] + partitions.get(p)[1];
+            if (size + n2 > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many rows in join result: " + (size + n2));
+            }
+            start[p + 1] = (int) size;
+        }
+
+        int m = start[np];
+        if (rightOuter) {
+            for (int c : rcode) {
+                if (c < 0 || !matched[c]) m++;
+            }
+        }
+
+        // Probe phase: output the matches of left rows in parallel.
+        int[] li = new int[m];
+        int[] ri = new int[m];
+        IntStream.range(0, np).parallel().forEach(p -> {
+            int from = (int) partitions.get(p)[0];
+            int to = p + 1 < np ? (int) partitions.get(p + 1)[0] : n1;
+            int l = start[p];
+            for (int i = from; i < to; i++) {
+                int c = lcode[i];
+                if (c >= 0 && offset[c + 1] > offset[c]) {
+                    for (int r = offset[c]; r < offset[c + 1]; r++, l++) {
+                        li[l] = i;
+                        ri[l] = rows[r];
+                    }
+                } else if (leftOuter) {
+                    li[l] = i;
+                    ri[l++] = -1;
+                }
+            }
+        });
+
+        if (rightOuter) {
+            for (int i = 0, l = start[np]; i < n2; i++) {
+                if (rcode[i] < 0 || !matched[rcode[i]]) {
+                    li[l] = -1;
+                    ri[l++] = i;
+                }
+            }
+        }
+
+        return new int[][]{li, ri};
+    }
+
+    /**
+     * Hashes the keys of right column into dense codes and probes the
+     * keys of left column. The null keys and the left keys absent in
+     * the right column are coded as -1.
+     * @param a the left column.
+     * @param b the right column.
+     * @param lcode the output codes of left column.
+     * @param rcode the output codes of right column.
+     * @return the number of distinct keys of right column.
+     */
+    private static int code(BaseVector a, BaseVector b, int[] lcode, int[] rcode) {
+        if (b.type().isPrimitive()) {
+            GroupedDataFrame.LongIndex index = GroupedDataFrame.index(GroupedDataFrame.keys(b), rcode);
+            long[] key = GroupedDataFrame.keys(a);
+            Arrays.parallelSetAll(lcode, i -> index.get(key[i]));
+            return index.size();
+        }
+
+        HashMap<Object, Integer> index = GroupedDataFrame.index(b.size(), b::get, rcode);
+        Integer nullCode = index.get(null);
+        if (nullCode != null) {
+            Arrays.parallelSetAll(rcode, i -> rcode[i] == nullCode ? -1 : rcode[i]);
+        }
+
+        Arrays.parallelSetAll(lcode, i -> {
+            Object x = a.get(i);
+            Integer c = x == null ? null : index.get(x);
+            return c == null ? -1 : c;
+        });
+        return index.size();
+    }
+
+    /**
+     * Gathers the columns by the matching row indices.
+     * @param left the left data frame.
+     * @param right the right data frame.
+     * @param columns the key columns.
+     * @param li the row indices of left data frame. -1 for missing rows.
+     * @param ri the row indices of right data frame. -1 for missing rows.
+     * @return the joined data frame.
+     */
+    private static DataFrame gather(DataFrame left, DataFrame right, String[] columns, int[] li, int[] ri) {
+        boolean leftMissing = Arrays.stream(li).parallel().anyMatch(i -> i < 0);
+        boolean rightMissing = Arrays.stream(ri).parallel().anyMatch(i -> i < 0);
+        Set<String> keys = new HashSet<>(Arrays.asList(columns));
+
+        List<BaseVector> vectors = new ArrayList<>();
+        for (BaseVector column : left) {
+            if (leftMissing && keys.contains(column.name())) {
+                // Take the keys of missing left rows from the right data frame.
+                int n1 = left.size();
+                DataFrame key = DataFrame.of(column).union(DataFrame.of(right.column(column.name())));
+                int[] index = new int[li.length];
+                Arrays.parallelSetAll(index, i -> li[i] >= 0 ? li[i] : n1 + ri[i]);
+                vectors.add(key.column(0).get(index));
+            } else {
+                vectors.add(gather(column, column.name(), li, leftMissing));
+            }
+        }
+
+        Set<String> names = new HashSet<>(Arrays.asList(left.names()));
+        for (BaseVector column : right) {
+            String name = column.name();
+            if (keys.contains(name)) continue;
+            if (names.contains(name)) name = name + "_right";
+            vectors.add(gather(column, name, ri, rightMissing));
+        }
+
+        return DataFrame.of(vectors.toArray(new BaseVector[0]));
+    }
+
+    /**
+     * Gathers the elements of vector.
+     * @param v the vector.
+     * @param name the name of new vector.
+     * @param index the index of elements. -1 for nulls.
+     * @param missing true if some indices are -1.
+     * @return the new vector.
+     */
+    private static BaseVector gather(BaseVector v, String name, int[] index, boolean missing) {
+        if (!missing) {
+            BaseVector x = v.get(index);
+            return name.equals(v.name()) ? x : AggregateImpl.of(new StructField(name, v.type(), v.measure()), x);
+        }
+
+        Object[] values = new Object[index.length];
+        Arrays.parallelSetAll(values, i -> index[i] < 0 ? null : v.get(index[i]));
+        StructField field = new StructField(name, v.type().boxed(), v.measure());
+        if (v.type().isString()) {
+            return StringVector.of(field, Arrays.copyOf(values, values.length, String[].class));
+        }
+
+        return Vector.of(field, values);
+    }
+}
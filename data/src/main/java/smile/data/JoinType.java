@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.data;
+
+/**
+ * The type of data frame join.
+ *
+ * @author Haifeng Li
+ */
+public enum JoinType {
+    /** The rows with matching keys in both data frames. */
+    INNER,
+    /** All rows of the left data frame and the matching rows of the right one. */
+    LEFT,
+    /** All rows of the right data frame and the matching rows of the left one. */
+    RIGHT,
+    /** All rows of both data frames, matched if possible. */
+    OUTER
+}
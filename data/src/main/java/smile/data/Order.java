@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.data;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+import smile.data.type.DataType;
+import smile.data.vector.BaseVector;
+import smile.sort.QuickSelect;
+import smile.sort.RadixSort;
+
+/**
+ * The row order of data frame by multiple columns. Each column is
+ * mapped to the long integer keys of same order, i.e. the primitive
+ * values or the ranks of objects. The rows are then stably sorted by
+ * parallel radix sort on the columns from the last to the first.
+ * <p>
+ * The floating numbers are ordered as {@link Double#compare}, i.e.
+ * NaN is greater than any number. The nulls are greater than any
+ * object, i.e. the last in ascending order and the first in descending
+ * order. Object columns must be {@link Comparable}.
+ *
+ * @author Haifeng Li
+ */
+class Order {
+    /** Utility class. */
+    private Order() {
+
+    }
+
+    /**
+     * Returns the permutation of rows that sorts the data frame.
+     * @param df the data frame.
+     * @param columns the sort columns.
+     * @param ascending the sort order of each column.
+     * @return the permutation of rows.
+     */
+    static int[] order(DataFrame df, String[] columns, boolean[] ascending) {
+        check(columns, ascending);
+        int[] index = IntStream.range(0, df.size()).toArray();
+        for (int j = columns.length - 1; j >= 0; j--) {
+            RadixSort.sort(keys(df.column(columns[j]), ascending[j]), index);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the first k rows in the order. The k-th smallest key of
+     * the first column is selected in linear time. Only the rows with
+     * smaller or equal keys are sorted.
+     * @param df the data frame.
+     * @param k the number of rows.
+     * @param columns the sort columns.
+     * @param ascending the sort order of each column.
+     * @return the row indices of top k rows.
+     */
+    static int[] top(DataFrame df, int k, String[] columns, boolean[] ascending) {
+        check(columns, ascending);
+        if (k <= 0) {
+            throw new IllegalArgumentException("Invalid k: " + k);
+        }
+
+        int n = df.size();
+        if (k >= n) {
+            return order(df, columns, ascending);
+        }
+
+        long[] key = keys(df.column(columns[0]), ascending[0]);
+        long threshold = QuickSelect.select(key.clone(), k - 1);
+        int[] index = IntStream.range(0, n).parallel().filter(i -> key[i] <= threshold).toArray();
+
+        for (int j = columns.length - 1; j > 0; j--) {
+            RadixSort.sort(keys(df.column(columns[j]), ascending[j]), index);
+        }
+        RadixSort.sort(key, index);
+
+        return Arrays.copyOf(index, k);
+    }
+
+    /** Checks the sort columns. */
+    private static void check(String[] columns, boolean[] ascending) {
+        if (columns.length == 0) {
+            throw new IllegalArgumentException("Empty sort columns");
+        }
+
+        if (columns.length != ascending.length) {
+            throw new IllegalArgumentException(String.format("The number of columns and orders don't match: %d != %d", columns.length, ascending.length));
+        }
+    }
+
+    /**
+     * Returns the long integer keys of same order as the column values.
+     * @param column the column.
+     * @param ascending the sort order.
+     * @return the keys.
+     */
+    @SuppressWarnings("unchecked")
+    private static long[] keys(BaseVector column, boolean ascending) {
+        int n = column.size();
+        long[] key = new long[n];
+        DataType type = column.type();
+        if (type.isPrimitive()) {
+            if (type.isFloating()) {
+                Arrays.parallelSetAll(key, i -> RadixSort.key(column.getDouble(i)));
+            } else {
+                Arrays.parallelSetAll(key, column::getLong);
+            }
+        } else {
+            // The ranks of distinct objects.
+            int[] code = new int[n];
+            HashMap<Object, Integer> index = GroupedDataFrame.index(n, column::get, code);
+            Object[] values = new Object[index.size()];
+            for (Map.Entry<Object, Integer> e : index.entrySet()) {
+                values[e.getValue()] = e.getKey();
+            }
+
+            Integer[] order = IntStream.range(0, values.length).boxed().toArray(Integer[]::new);
+            Arrays.sort(order, (i, j) -> {
+                Object a = values[i];
+                Object b = values[j];
+                if (a == null) return b == null ? 0 : 1;
+                if (b == null) return -1;
+                return ((Comparable<Object>) a).compareTo(b);
+            });
+
+            int[] rank = new int[values.length];
+            for (int r = 0; r < order.length; r++) {
+                rank[order[r]] = r;
+            }
+            Arrays.parallelSetAll(key, i -> rank[code[i]]);
+        }
+
+        if (!ascending) {
+            // The bitwise complement reverses the order of signed integers.
+            Arrays.parallelSetAll(key, i -> ~key[i]);
+        }
+
+        return key;
+    }
+}
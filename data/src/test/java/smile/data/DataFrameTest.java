@@ -294,4 +294,276 @@ public class DataFrameTest {
         assertEquals(1, output[2][3], 1E-10);
         assertEquals(1, output[3][3], 1E-10);
     }
-}
\ No newline at end of file
+
+    /**
+     * Test of groupBy method, of class DataFrame.
+     */
+    @Test
+    public void testGroupBy() {
+        System.out.println("groupBy");
+        GroupedDataFrame groups = df.groupBy("gender");
+        assertEquals(2, groups.size());
+        assertArrayEquals(new int[]{0, 0, 1, 1}, groups.group());
+        assertEquals(2, groups.get(1).size());
+        assertEquals("Jane", groups.get(1).getString(0, "name"));
+
+        DataFrame output = groups.agg(Aggregate.count(), Aggregate.count("salary"), Aggregate.sum("age").as("total"),
+                Aggregate.mean("salary"), Aggregate.min("name"), Aggregate.max("age"), Aggregate.median("age"));
+        System.out.println(output);
+        assertEquals(2, output.nrow());
+        assertEquals(8, output.ncol());
+        assertEquals("Male", output.getScale(0, "gender"));
+        assertEquals("Female", output.getScale(1, "gender"));
+        assertEquals(2L, output.getLong(0, "count"));
+        assertEquals(1L, output.getLong(0, "count(salary)"));
+        assertEquals(61L, output.getLong(0, "total"));
+        assertEquals(61L, output.getLong(1, "total"));
+        assertEquals(10000., output.getDouble(0, "mean(salary)"), 1E-10);
+        assertEquals(230000., output.getDouble(1, "mean(salary)"), 1E-10);
+        assertEquals("Alex", output.getString(0, "min(name)"));
+        assertEquals("Amy", output.getString(1, "min(name)"));
+        assertEquals(38, output.getInt(0, "max(age)"));
+        assertEquals(48, output.getInt(1, "max(age)"));
+        assertEquals(38., output.getDouble(0, "median(age)"), 1E-10);
+        assertEquals(48., output.getDouble(1, "median(age)"), 1E-10);
+    }
+
+    /**
+     * Test of groupBy method with multiple partitions, of class DataFrame.
+     */
+    @Test
+    public void testGroupByPartitions() {
+        System.out.println("groupBy partitions");
+        smile.math.MathEx.setSeed(19650218); // to get repeatable results.
+        int n = 100000;
+        int[] a = new int[n];
+        String[] b = new String[n];
+        double[] x = new double[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = smile.math.MathEx.randomInt(50);
+            b[i] = i % 3 == 0 ? null : "b" + smile.math.MathEx.randomInt(7);
+            x[i] = smile.math.MathEx.random();
+        }
+
+        DataFrame data = DataFrame.of(
+                smile.data.vector.IntVector.of("a", a),
+                StringVector.of("b", b),
+                smile.data.vector.DoubleVector.of("x", x));
+
+        java.util.Map<String, double[]> expected = new java.util.HashMap<>();
+        for (int i = 0; i < n; i++) {
+            double[] stat = expected.computeIfAbsent(a[i] + "," + b[i], key -> new double[]{0, 0, Double.MAX_VALUE});
+            stat[0]++;
+            stat[1] += x[i];
+            stat[2] = Math.min(stat[2], x[i]);
+        }
+
+        GroupedDataFrame groups = data.groupBy("a", "b");
+        assertEquals(expected.size(), groups.size());
+        DataFrame output = groups.agg(Aggregate.count(), Aggregate.sum("x"), Aggregate.min("x"));
+        for (int g = 0; g < output.size(); g++) {
+            double[] stat = expected.get(output.getInt(g, "a") + "," + output.getString(g, "b"));
+            assertEquals(stat[0], output.getLong(g, "count"), 1E-10);
+            assertEquals(stat[1], output.getDouble(g, "sum(x)"), 1E-7);
+            assertEquals(stat[2], output.getDouble(g, "min(x)"), 1E-10);
+        }
+
+        // The groups are numbered in the order of first appearance.
+        int[] group = groups.group();
+        int max = -1;
+        for (int i = 0; i < n; i++) {
+            assertTrue(group[i] <= max + 1);
+            max = Math.max(max, group[i]);
+        }
+    }
+
+    /**
+     * Test of join method, of class DataFrame.
+     */
+    @Test
+    public void testJoin() {
+        System.out.println("join");
+        DataFrame salary = DataFrame.of(
+                StringVector.of("name", "Jane", "Alex", "Tom", "Alex", null),
+                smile.data.vector.IntVector.of("age", new int[]{48, 38, 60, 39, 10}),
+                smile.data.vector.IntVector.of("year", new int[]{2019, 2019, 2019, 2020, 2020}));
+
+        DataFrame inner = df.join(salary, "name");
+        System.out.println(inner);
+        assertEquals(3, inner.nrow());
+        assertEquals(7, inner.ncol());
+        assertEquals("Alex", inner.getString(0, "name"));
+        assertEquals("Alex", inner.getString(1, "name"));
+        assertEquals("Jane", inner.getString(2, "name"));
+        assertEquals(38, inner.getInt(0, "age"));
+        assertEquals(38, inner.getInt(0, "age_right"));
+        assertEquals(39, inner.getInt(1, "age_right"));
+        assertEquals(2020, inner.getInt(1, "year"));
+        assertEquals(DataTypes.IntegerType, inner.schema().field("year").type);
+
+        DataFrame left = df.join(salary, JoinType.LEFT, "name");
+        System.out.println(left);
+        assertEquals(5, left.nrow());
+        assertEquals("Bob", left.getString(2, "name"));
+        assertNull(left.get(2, "year"));
+        assertEquals(DataTypes.IntegerObjectType, left.schema().field("year").type);
+
+        DataFrame right = df.join(salary, JoinType.RIGHT, "name");
+        System.out.println(right);
+        assertEquals(5, right.nrow());
+        assertEquals("Tom", right.getString(3, "name"));
+        assertNull(right.get(3, "age"));
+        assertNull(right.get(4, "name"));
+        assertEquals(10, right.getInt(4, "age_right"));
+
+        DataFrame outer = df.join(salary, JoinType.OUTER, "name");
+        assertEquals(7, outer.nrow());
+
+        DataFrame multi = df.join(salary, JoinType.LEFT, "name", "age");
+        System.out.println(multi);
+        assertEquals(4, multi.nrow());
+        assertEquals(2019, multi.get(0, "year"));
+        assertNull(multi.get(1, "year"));
+        assertEquals(2019, multi.get(2, "year"));
+        assertNull(multi.get(3, "year"));
+    }
+
+    /**
+     * Test of hash join and sort-merge join, of class DataFrame.
+     */
+    @Test
+    public void testJoinPartitions() {
+        System.out.println("join partitions");
+        smile.math.MathEx.setSeed(19650218); // to get repeatable results.
+        int n1 = 50000;
+        int n2 = 30000;
+        int[] a = new int[n1];
+        int[] b = new int[n2];
+        for (int i = 0; i < n1; i++) a[i] = smile.math.MathEx.randomInt(40000);
+        for (int i = 0; i < n2; i++) b[i] = smile.math.MathEx.randomInt(40000);
+
+        java.util.Map<Integer, Integer> count = new java.util.HashMap<>();
+        for (int x : b) count.merge(x, 1, Integer::sum);
+
+        int inner = 0;
+        int unmatched = 0;
+        java.util.Set<Integer> keys = new java.util.HashSet<>();
+        for (int x : a) {
+            int c = count.getOrDefault(x, 0);
+            inner += c;
+            if (c == 0) unmatched++;
+            keys.add(x);
+        }
+
+        int rightOnly = 0;
+        for (int x : b) {
+            if (!keys.contains(x)) rightOnly++;
+        }
+
+        for (boolean sorted : new boolean[]{false, true}) {
+            if (sorted) {
+                java.util.Arrays.sort(a);
+                java.util.Arrays.sort(b);
+            }
+
+            DataFrame x = DataFrame.of(smile.data.vector.IntVector.of("key", a), smile.data.vector.IntVector.of("row", java.util.stream.IntStream.range(0, n1).toArray()));
+            DataFrame y = DataFrame.of(smile.data.vector.IntVector.of("key", b), smile.data.vector.IntVector.of("value", b));
+
+            DataFrame join = x.join(y, "key");
+            assertEquals(inner, join.nrow());
+            for (int i = 0; i < join.nrow(); i++) {
+                assertEquals(join.getInt(i, "key"), join.getInt(i, "value"));
+                assertEquals(a[join.getInt(i, "row")], join.getInt(i, "key"));
+            }
+
+            assertEquals(inner + unmatched, x.join(y, JoinType.LEFT, "key").nrow());
+            assertEquals(inner + rightOnly, x.join(y, JoinType.RIGHT, "key").nrow());
+            DataFrame outer = x.join(y, JoinType.OUTER, "key");
+            assertEquals(inner + unmatched + rightOnly, outer.nrow());
+            for (int i = 0; i < outer.nrow(); i++) {
+                Object value = outer.get(i, "value");
+                if (value != null) assertEquals(outer.getInt(i, "key"), ((Integer) value).intValue());
+            }
+        }
+    }
+
+    /**
+     * Test of orderBy method, of class DataFrame.
+     */
+    @Test
+    public void testOrderBy() {
+        System.out.println("orderBy");
+        IndexDataFrame age = df.orderBy("age");
+        System.out.println(age);
+        assertEquals("Amy", age.getString(0, "name"));
+        assertEquals("Bob", age.getString(1, "name"));
+        assertEquals("Alex", age.getString(2, "name"));
+        assertEquals("Jane", age.getString(3, "name"));
+
+        DataFrame name = df.orderBy("name");
+        assertEquals("Alex", name.getString(0, "name"));
+        assertEquals("Amy", name.getString(1, "name"));
+        assertEquals("Bob", name.getString(2, "name"));
+        assertEquals("Jane", name.getString(3, "name"));
+
+        // nulls are the last in ascending order.
+        DataFrame salary = df.orderBy("salary");
+        assertEquals("Alex", salary.getString(0, "name"));
+        assertEquals("Jane", salary.getString(1, "name"));
+        assertEquals("Bob", salary.getString(2, "name"));
+        assertEquals("Amy", salary.getString(3, "name"));
+
+        DataFrame multi = df.orderBy(new String[]{"salary", "age"}, new boolean[]{false, true});
+        System.out.println(multi);
+        assertEquals("Amy", multi.getString(0, "name"));
+        assertEquals("Bob", multi.getString(1, "name"));
+        assertEquals("Jane", multi.getString(2, "name"));
+        assertEquals("Alex", multi.getString(3, "name"));
+
+        DataFrame top = df.topK(2, "age", false);
+        assertEquals(2, top.nrow());
+        assertEquals("Jane", top.getString(0, "name"));
+        assertEquals("Alex", top.getString(1, "name"));
+
+        DataFrame copy = age.rebase();
+        assertEquals(df.schema(), copy.schema());
+        assertEquals(4, copy.nrow());
+        assertEquals(13, copy.getInt(0, "age"));
+        assertNull(copy.get(1, "salary"));
+    }
+
+    /**
+     * Test of orderBy and topK on large data, of class DataFrame.
+     */
+    @Test
+    public void testOrderByPartitions() {
+        System.out.println("orderBy partitions");
+        smile.math.MathEx.setSeed(19650218); // to get repeatable results.
+        int n = 200000;
+        int[] a = new int[n];
+        double[] b = new double[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = smile.math.MathEx.randomInt(100) - 50;
+            b[i] = smile.math.MathEx.random() - 0.5;
+        }
+
+        DataFrame data = DataFrame.of(smile.data.vector.IntVector.of("a", a), smile.data.vector.DoubleVector.of("b", b));
+        String[] columns = {"a", "b"};
+        boolean[] ascending = {true, false};
+        DataFrame sorted = data.orderBy(columns, ascending);
+        assertEquals(n, sorted.nrow());
+        for (int i = 1; i < n; i++) {
+            int x = sorted.getInt(i - 1, "a");
+            int y = sorted.getInt(i, "a");
+            assertTrue(x <= y);
+            if (x == y) assertTrue(sorted.getDouble(i - 1, "b") >= sorted.getDouble(i, "b"));
+        }
+
+        DataFrame top = data.topK(1000, columns, ascending);
+        assertEquals(1000, top.nrow());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(sorted.getInt(i, "a"), top.getInt(i, "a"));
+            assertEquals(sorted.getDouble(i, "b"), top.getDouble(i, "b"), 0.0);
+        }
+    }
+}
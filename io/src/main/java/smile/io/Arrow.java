@@ -30,10 +30,13 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import org.apache.arrow.memory.RootAllocator;
 import org.apache.arrow.vector.*;
 import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowFileReader;
+import org.apache.arrow.vector.ipc.ArrowReader;
 import org.apache.arrow.vector.ipc.ArrowStreamReader;
 import org.apache.arrow.vector.ipc.ArrowStreamWriter;
 import org.apache.arrow.vector.types.DateUnit;
@@ -43,6 +46,7 @@ import org.apache.arrow.vector.types.pojo.ArrowType;
 import org.apache.arrow.vector.types.pojo.Field;
 import org.apache.arrow.vector.types.pojo.FieldType;
 import org.apache.arrow.vector.types.pojo.Schema;
+import org.apache.arrow.vector.util.TransferPair;
 import static org.apache.arrow.vector.types.FloatingPointPrecision.DOUBLE;
 import static org.apache.arrow.vector.types.FloatingPointPrecision.SINGLE;
 import smile.data.DataFrame;
@@ -187,74 +191,12 @@ public class Arrow {
 
                 smile.data.vector.BaseVector[] vectors = new smile.data.vector.BaseVector[fieldVectors.size()];
                 for (int j = 0; j < fieldVectors.size(); j++) {
-                    FieldVector fieldVector = fieldVectors.get(j);
-                    ArrowType type = fieldVector.getField().getType();
-                    switch (type.getTypeID()) {
-                        case Int:
-                            ArrowType.Int itype = (ArrowType.Int) type;
-                            int bitWidth = itype.getBitWidth();
-                            switch (bitWidth) {
-                                case 8:
-                                    vectors[j] = readByteField(fieldVector);
-                                    break;
-                                case 16:
-                                    if (itype.getIsSigned())
-                                        vectors[j] = readShortField(fieldVector);
-                                    else
-                                        vectors[j] = readCharField(fieldVector);
-                                    break;
-                                case 32:
-                                    vectors[j] = readIntField(fieldVector);
-                                    break;
-                                case 64:
-                                    vectors[j] = readLongField(fieldVector);
-                                    break;
-                                default:
-                                    throw new UnsupportedOperationException("Unsupported integer bit width: " + bitWidth);
-                            }
-                            break;
-                        case FloatingPoint:
-                            FloatingPointPrecision precision = ((ArrowType.FloatingPoint) type).getPrecision();
-                            switch (precision) {
-                                case DOUBLE:
-                                    vectors[j] = readDoubleField(fieldVector);
-                                    break;
-                                case SINGLE:
-                                    vectors[j] = readFloatField(fieldVector);
-                                    break;
-                                case HALF:
-                                    throw new UnsupportedOperationException("Unsupported float precision: " + precision);
-                            }
-                            break;
-                        case Decimal:
-                            vectors[j] = readDecimalField(fieldVector);
-                            break;
-                        case Bool:
-                            vectors[j] = readBitField(fieldVector);
-                            break;
-                        case Date:
-                            vectors[j] = readDateField(fieldVector);
-                            break;
-                        case Time:
-                            vectors[j] = readTimeField(fieldVector);
-                            break;
-                        case Timestamp:
-                            vectors[j] = readDateTimeField(fieldVector);
-                            break;
-                        case Binary:
-                        case FixedSizeBinary:
-                            vectors[j] = readByteArrayField(fieldVector);
-                            break;
-                        case Utf8:
-                            vectors[j] = readStringField(fieldVector);
-                            break;
-                        default: throw new UnsupportedOperationException("Unsupported column type: " + fieldVector.getMinorType());
-                    }
+                    vectors[j] = readField(fieldVectors.get(j));
                 }
 
                 DataFrame frame = DataFrame.of(vectors);
                 frames.add(frame);
-                size += frames.size();
+                size += root.getRowCount();
             }
 
             if (frames.isEmpty()) {
@@ -268,6 +210,172 @@ public class Arrow {
         }
     }
 
+    /**
+     * Opens an arrow file as a data frame without copying the columns
+     * of int, long, float, double and string. The record batches are
+     * moved out of the reader with their buffers. These columns are views
+     * of the buffers. The nullable numeric columns with nulls are views of
+     * boxed values, which check the validity bitmap. The string columns
+     * decode the UTF-8 bytes of a value on each access. The columns of
+     * other types, e.g. boolean, byte, short, char, decimal, date, time,
+     * timestamp and binary, are decoded into Smile vectors on the Java heap.
+     * Both the Arrow IPC stream format and the file format (Feather V2)
+     * are supported. The data frame should be closed to release the
+     * Arrow buffers. If the file cannot be read, the buffers are released
+     * before throwing the exception.
+     *
+     * @param path the input file path.
+     * @throws IOException when fails to read the file.
+     * @return the data frame.
+     */
+    public ArrowDataFrame open(Path path) throws IOException {
+        try (ArrowReader reader = reader(path)) {
+            VectorSchemaRoot root = reader.getVectorSchemaRoot();
+            List<Field> fields = root.getSchema().getFields();
+            List<List<FieldVector>> chunks = new ArrayList<>();
+            for (int j = 0; j < fields.size(); j++) {
+                chunks.add(new ArrayList<>());
+            }
+
+            try {
+                while (reader.loadNextBatch()) {
+                    logger.info("read {} rows and {} columns", root.getRowCount(), fields.size());
+                    List<FieldVector> fieldVectors = root.getFieldVectors();
+                    for (int j = 0; j < fieldVectors.size(); j++) {
+                        // Transfers the ownership of buffers without copying.
+                        TransferPair pair = fieldVectors.get(j).getTransferPair(allocator);
+                        pair.transfer();
+                        chunks.get(j).add((FieldVector) pair.getTo());
+                    }
+                }
+
+                if (chunks.isEmpty() || chunks.get(0).isEmpty()) {
+                    throw new IllegalStateException("No record batch");
+                }
+
+                smile.data.vector.BaseVector[] vectors = new smile.data.vector.BaseVector[fields.size()];
+                for (int j = 0; j < vectors.length; j++) {
+                    vectors[j] = view(fields.get(j), chunks.get(j));
+                }
+
+                List<FieldVector> owned = new ArrayList<>();
+                for (int j = 0; j < vectors.length; j++) {
+                    List<FieldVector> chunk = chunks.get(j);
+                    if (vectors[j] instanceof ArrowVector) {
+                        owned.addAll(chunk);
+                    } else {
+                        chunk.forEach(FieldVector::close);
+                    }
+                }
+
+                return new ArrowDataFrame(DataFrame.of(vectors), owned);
+            } catch (Throwable ex) {
+                // Releases the transferred buffers, which nobody else owns.
+                chunks.forEach(chunk -> chunk.forEach(FieldVector::close));
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Reads an arrow file batch by batch. Each record batch is passed to
+     * the action as a data frame of which the int, long, float, double
+     * and string columns are zero-copy views. The memory footprint is bounded by the
+     * batch size, regardless of the file size. As the Arrow buffers are
+     * reused for the next batch, the data frame is valid only during
+     * the action and must not be retained. Both the Arrow IPC stream
+     * format and the file format (Feather V2) are supported.
+     *
+     * @param path the input file path.
+     * @param action the action on each record batch.
+     * @throws IOException when fails to read the file.
+     */
+    public void forEachBatch(Path path, Consumer<DataFrame> action) throws IOException {
+        try (ArrowReader reader = reader(path)) {
+            VectorSchemaRoot root = reader.getVectorSchemaRoot();
+            List<Field> fields = root.getSchema().getFields();
+            while (reader.loadNextBatch()) {
+                List<FieldVector> fieldVectors = root.getFieldVectors();
+                smile.data.vector.BaseVector[] vectors = new smile.data.vector.BaseVector[fieldVectors.size()];
+                for (int j = 0; j < vectors.length; j++) {
+                    vectors[j] = view(fields.get(j), Collections.singletonList(fieldVectors.get(j)));
+                }
+                action.accept(DataFrame.of(vectors));
+            }
+        }
+    }
+
+    /**
+     * Returns the reader of an arrow file. The file format starts with
+     * the magic string "ARROW1". Otherwise, it is the stream format.
+     */
+    private ArrowReader reader(Path path) throws IOException {
+        if (allocator == null) {
+            allocate(Long.MAX_VALUE);
+        }
+
+        byte[] magic = new byte[6];
+        int n;
+        try (InputStream input = Files.newInputStream(path)) {
+            n = input.read(magic);
+        }
+
+        if (n == magic.length && new String(magic, StandardCharsets.US_ASCII).equals("ARROW1")) {
+            return new ArrowFileReader(Files.newByteChannel(path), allocator);
+        } else {
+            return new ArrowStreamReader(Files.newInputStream(path), allocator);
+        }
+    }
+
+    /**
+     * Returns the view of a column over record batches. The int, long,
+     * float, double and string columns are zero-copy views. Other columns
+     * are decoded into Smile vectors.
+     */
+    private smile.data.vector.BaseVector view(Field field, List<FieldVector> chunks) {
+        String name = field.getName();
+        boolean hasNull = chunks.stream().anyMatch(vector -> vector.getNullCount() > 0);
+        ArrowType type = field.getType();
+        switch (type.getTypeID()) {
+            case Int:
+                ArrowType.Int itype = (ArrowType.Int) type;
+                if (itype.getIsSigned() && itype.getBitWidth() == 32) {
+                    return hasNull ?
+                            new ArrowVector.OfNullable<>(name, chunks, Integer.class, (data, k) -> data.getInt((long) k * Integer.BYTES)) :
+                            new ArrowVector.OfInt(name, chunks);
+                }
+                if (itype.getIsSigned() && itype.getBitWidth() == 64) {
+                    return hasNull ?
+                            new ArrowVector.OfNullable<>(name, chunks, Long.class, (data, k) -> data.getLong((long) k * Long.BYTES)) :
+                            new ArrowVector.OfLong(name, chunks);
+                }
+                break;
+            case FloatingPoint:
+                FloatingPointPrecision precision = ((ArrowType.FloatingPoint) type).getPrecision();
+                if (precision == DOUBLE) {
+                    return hasNull ?
+                            new ArrowVector.OfNullable<>(name, chunks, Double.class, (data, k) -> data.getDouble((long) k * Double.BYTES)) :
+                            new ArrowVector.OfDouble(name, chunks);
+                }
+                if (precision == SINGLE) {
+                    return hasNull ?
+                            new ArrowVector.OfNullable<>(name, chunks, Float.class, (data, k) -> data.getFloat((long) k * Float.BYTES)) :
+                            new ArrowVector.OfFloat(name, chunks);
+                }
+                break;
+            case Utf8:
+                return new ArrowVector.OfString(name, chunks);
+        }
+
+        smile.data.vector.BaseVector[] vectors = chunks.stream().map(this::readField).toArray(smile.data.vector.BaseVector[]::new);
+        if (vectors.length == 1) {
+            return vectors[0];
+        }
+
+        DataFrame[] frames = Arrays.stream(vectors).map(DataFrame::of).toArray(DataFrame[]::new);
+        return frames[0].union(Arrays.copyOfRange(frames, 1, frames.length)).column(0);
+    }
+
     /**
      * Writes the data frame to an arrow file.
      *
@@ -398,6 +506,57 @@ public class Arrow {
         }
     }
 
+    /** Reads an Arrow vector into a Smile vector. */
+    private smile.data.vector.BaseVector readField(FieldVector fieldVector) {
+        ArrowType type = fieldVector.getField().getType();
+        switch (type.getTypeID()) {
+            case Int:
+                ArrowType.Int itype = (ArrowType.Int) type;
+                int bitWidth = itype.getBitWidth();
+                switch (bitWidth) {
+                    case 8:
+                        return readByteField(fieldVector);
+                    case 16:
+                        if (itype.getIsSigned())
+                            return readShortField(fieldVector);
+                        else
+                            return readCharField(fieldVector);
+                    case 32:
+                        return readIntField(fieldVector);
+                    case 64:
+                        return readLongField(fieldVector);
+                    default:
+                        throw new UnsupportedOperationException("Unsupported integer bit width: " + bitWidth);
+                }
+            case FloatingPoint:
+                FloatingPointPrecision precision = ((ArrowType.FloatingPoint) type).getPrecision();
+                switch (precision) {
+                    case DOUBLE:
+                        return readDoubleField(fieldVector);
+                    case SINGLE:
+                        return readFloatField(fieldVector);
+                    default:
+                        throw new UnsupportedOperationException("Unsupported float precision: " + precision);
+                }
+            case Decimal:
+                return readDecimalField(fieldVector);
+            case Bool:
+                return readBitField(fieldVector);
+            case Date:
+                return readDateField(fieldVector);
+            case Time:
+                return readTimeField(fieldVector);
+            case Timestamp:
+                return readDateTimeField(fieldVector);
+            case Binary:
+            case FixedSizeBinary:
+                return readByteArrayField(fieldVector);
+            case Utf8:
+                return readStringField(fieldVector);
+            default: throw new UnsupportedOperationException("Unsupported column type: " + fieldVector.getMinorType());
+        }
+    }
+
     /** Reads a boolean column. */
     private smile.data.vector.BaseVector readBitField(FieldVector fieldVector) {
         int count = fieldVector.getValueCount();
@@ -750,7 +909,7 @@ public class Arrow {
         IntVector vector = (IntVector) fieldVector;
         smile.data.vector.Vector<Integer> column = df.vector(fieldVector.getField().getName());
         for (int i = 0, j = from; i < count; i++, j++) {
-            Integer x = column.get(i);
+            Integer x = column.get(j);
             if (x == null) {
                 vector.setNull(i);
             } else {
@@ -784,7 +943,7 @@ public class Arrow {
         BitVector vector = (BitVector) fieldVector;
         smile.data.vector.Vector<Boolean> column = df.vector(fieldVector.getField().getName());
         for (int i = 0, j = from; i < count; i++, j++) {
-            Boolean x = column.get(i);
+            Boolean x = column.get(j);
             if (x == null) {
                 vector.setNull(i);
             } else {
@@ -818,7 +977,7 @@ public class Arrow {
         UInt2Vector vector = (UInt2Vector) fieldVector;
         smile.data.vector.Vector<Character> column = df.vector(fieldVector.getField().getName());
         for (int i = 0, j = from; i < count; i++, j++) {
-            Character x = column.get(i);
+            Character x = column.get(j);
             if (x == null) {
                 vector.setNull(i);
             } else {
@@ -852,7 +1011,7 @@ public class Arrow {
         TinyIntVector vector = (TinyIntVector) fieldVector;
         smile.data.vector.Vector<Byte> column = df.vector(fieldVector.getField().getName());
         for (int i = 0, j = from; i < count; i++, j++) {
-            Byte x = column.get(i);
+            Byte x = column.get(j);
             if (x == null) {
                 vector.setNull(i);
             } else {
@@ -886,7 +1045,7 @@ public class Arrow {
         SmallIntVector vector = (SmallIntVector) fieldVector;
         smile.data.vector.Vector<Short> column = df.vector(fieldVector.getField().getName());
         for (int i = 0, j = from; i < count; i++, j++) {
-            Short x = column.get(i);
+            Short x = column.get(j);
             if (x == null) {
                 vector.setNull(i);
             } else {
@@ -920,7 +1079,7 @@ public class Arrow {
         BigIntVector vector = (BigIntVector) fieldVector;
         smile.data.vector.Vector<Long> column = df.vector(fieldVector.getField().getName());
         for (int i = 0, j = from; i < count; i++, j++) {
-            Long x = column.get(i);
+            Long x = column.get(j);
             if (x == null) {
                 vector.setNull(i);
             } else {
@@ -954,7 +1113,7 @@ public class Arrow {
         Float4Vector vector  = (Float4Vector) fieldVector;
         smile.data.vector.Vector<Float> column = df.vector(fieldVector.getField().getName());
         for (int i = 0, j = from; i < count; i++, j++) {
-            Float x = column.get(i);
+            Float x = column.get(j);
             if (x == null) {
                 vector.setNull(i);
             } else {
@@ -988,7 +1147,7 @@ public class Arrow {
         Float8Vector vector  = (Float8Vector) fieldVector;
         smile.data.vector.Vector<Double> column = df.vector(fieldVector.getField().getName());
         for (int i = 0, j = from; i < count; i++, j++) {
-            Double x = column.get(i);
+            Double x = column.get(j);
             if (x == null) {
                 vector.setNull(i);
             } else {
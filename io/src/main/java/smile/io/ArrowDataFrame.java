@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.io;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+import org.apache.arrow.vector.FieldVector;
+import smile.data.DataFrame;
+import smile.data.Tuple;
+import smile.data.type.StructType;
+import smile.data.vector.*;
+
+/**
+ * A data frame of which the int, long, float, double and string columns
+ * are zero-copy views of Arrow record batches. The Arrow buffers are off
+ * the Java heap and owned by this data frame until it is closed. The other
+ * columns are decoded into regular Smile vectors.
+ * <p>
+ * The data frame and the views of its columns must not be used after
+ * closing. The derived data frames, e.g. by {@code select} or
+ * {@code of(int...)}, may share the views too. To keep the data after
+ * closing, copy the columns with {@code BaseVector.get(int...)} or
+ * {@code DataFrame.union}.
+ *
+ * @author Haifeng Li
+ */
+public class ArrowDataFrame implements DataFrame, AutoCloseable {
+    /** The data frame of column views. */
+    private final DataFrame df;
+    /** The Arrow vectors owned by this data frame. */
+    private final List<FieldVector> vectors;
+
+    /**
+     * Constructor.
+     * @param df the data frame of column views.
+     * @param vectors the Arrow vectors that back the views.
+     */
+    ArrowDataFrame(DataFrame df, List<FieldVector> vectors) {
+        this.df = df;
+        this.vectors = vectors;
+    }
+
+    /** Releases the Arrow buffers. */
+    @Override
+    public void close() {
+        vectors.forEach(FieldVector::close);
+        vectors.clear();
+    }
+
+    @Override
+    public StructType schema() {
+        return df.schema();
+    }
+
+    @Override
+    public String toString() {
+        return df.toString();
+    }
+
+    @Override
+    public Iterator<BaseVector> iterator() {
+        return df.iterator();
+    }
+
+    @Override
+    public int indexOf(String name) {
+        return df.indexOf(name);
+    }
+
+    @Override
+    public int size() {
+        return df.size();
+    }
+
+    @Override
+    public int ncol() {
+        return df.ncol();
+    }
+
+    @Override
+    public Object get(int i, int j) {
+        return df.get(i, j);
+    }
+
+    @Override
+    public Tuple get(int i) {
+        return df.get(i);
+    }
+
+    @Override
+    public Stream<Tuple> stream() {
+        return df.stream();
+    }
+
+    @Override
+    public BaseVector column(int i) {
+        return df.column(i);
+    }
+
+    @Override
+    public <T> Vector<T> vector(int i) {
+        return df.vector(i);
+    }
+
+    @Override
+    public BooleanVector booleanVector(int i) {
+        return df.booleanVector(i);
+    }
+
+    @Override
+    public CharVector charVector(int i) {
+        return df.charVector(i);
+    }
+
+    @Override
+    public ByteVector byteVector(int i) {
+        return df.byteVector(i);
+    }
+
+    @Override
+    public ShortVector shortVector(int i) {
+        return df.shortVector(i);
+    }
+
+    @Override
+    public IntVector intVector(int i) {
+        return df.intVector(i);
+    }
+
+    @Override
+    public LongVector longVector(int i) {
+        return df.longVector(i);
+    }
+
+    @Override
+    public FloatVector floatVector(int i) {
+        return df.floatVector(i);
+    }
+
+    @Override
+    public DoubleVector doubleVector(int i) {
+        return df.doubleVector(i);
+    }
+
+    @Override
+    public StringVector stringVector(int i) {
+        return df.stringVector(i);
+    }
+
+    @Override
+    public DataFrame select(int... cols) {
+        return df.select(cols);
+    }
+
+    @Override
+    public DataFrame drop(int... cols) {
+        return df.drop(cols);
+    }
+
+    @Override
+    public DataFrame merge(DataFrame... dataframes) {
+        return df.merge(dataframes);
+    }
+
+    @Override
+    public DataFrame merge(BaseVector... vectors) {
+        return df.merge(vectors);
+    }
+
+    @Override
+    public DataFrame union(DataFrame... dataframes) {
+        return df.union(dataframes);
+    }
+}
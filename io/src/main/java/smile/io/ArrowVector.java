@@ -0,0 +1,620 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.io;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.vector.BaseVariableWidthVector;
+import org.apache.arrow.vector.FieldVector;
+import smile.data.measure.CategoricalMeasure;
+import smile.data.measure.NominalScale;
+import smile.data.type.DataType;
+import smile.data.type.DataTypes;
+import smile.data.type.StructField;
+import smile.data.vector.BaseVector;
+import smile.data.vector.ByteVector;
+import smile.data.vector.DoubleVector;
+import smile.data.vector.FloatVector;
+import smile.data.vector.IntVector;
+import smile.data.vector.LongVector;
+import smile.data.vector.ShortVector;
+import smile.data.vector.StringVector;
+import smile.data.vector.Vector;
+
+/**
+ * A read-only view of Arrow vectors. The values are read directly from
+ * the off-heap buffers of one or more record batches (chunks) without
+ * copying. The fixed width vectors without nulls are viewed as primitive
+ * vectors. The nullable fixed width vectors are viewed as vectors of
+ * boxed values, which are null if not set in the validity bitmap. The
+ * strings are decoded from the UTF-8 bytes by the offset buffer on each
+ * access. The view is valid only as long as the underlying Arrow vectors
+ * are not closed or reloaded.
+ * <p>
+ * As the data are not on the Java heap, the methods {@code array()} and
+ * {@code toDoubleArray()} return a copy. A serialized view is a regular
+ * Smile vector of same data.
+ *
+ * @author Haifeng Li
+ */
+abstract class ArrowVector {
+    /** The name of vector. */
+    final String name;
+    /** The number of elements. */
+    final int size;
+    /** The data buffers of chunks. */
+    final transient ArrowBuf[] data;
+    /** The validity bitmaps of chunks. */
+    final transient ArrowBuf[] validity;
+    /** The offset buffers of chunks, only for variable width vectors. */
+    final transient ArrowBuf[] offsets;
+    /** The index of first element of each chunk, plus the size. */
+    final int[] offset;
+
+    /**
+     * Constructor.
+     * @param name the name of vector.
+     * @param chunks the Arrow vectors of record batches.
+     */
+    ArrowVector(String name, List<FieldVector> chunks) {
+        this.name = name;
+        int k = (int) chunks.stream().filter(v -> v.getValueCount() > 0).count();
+        data = new ArrowBuf[Math.max(k, 1)];
+        validity = new ArrowBuf[data.length];
+        offsets = new ArrowBuf[data.length];
+        offset = new int[data.length + 1];
+
+        int c = 0;
+        for (FieldVector chunk : chunks) {
+            if (chunk.getValueCount() > 0 || (k == 0 && c == 0)) {
+                data[c] = chunk.getDataBuffer();
+                validity[c] = chunk.getValidityBuffer();
+                if (chunk instanceof BaseVariableWidthVector) {
+                    offsets[c] = chunk.getOffsetBuffer();
+                }
+                offset[c + 1] = offset[c] + chunk.getValueCount();
+                c++;
+            }
+        }
+        size = offset[data.length];
+    }
+
+    /** Returns the name of vector. */
+    public String name() {
+        return name;
+    }
+
+    /** Returns the number of elements. */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the chunk that contains the element.
+     * @param i the index of element.
+     * @return the chunk index.
+     */
+    final int chunk(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index %d out of bounds for length %d", i, size));
+        }
+
+        if (data.length == 1) return 0;
+        int c = java.util.Arrays.binarySearch(offset, i);
+        return c >= 0 ? c : -c - 2;
+    }
+
+    /**
+     * Returns true if the element is not set in the validity bitmap.
+     * @param c the chunk index.
+     * @param k the index of element in the chunk.
+     * @return true if the element is null.
+     */
+    final boolean isNull(int c, int k) {
+        return (validity[c].getByte(k >> 3) & (1 << (k & 7))) == 0;
+    }
+
+    /** Returns a copy of vector on the Java heap. */
+    abstract BaseVector copy();
+
+    /** Serializes the copy of data. */
+    Object writeReplace() {
+        return copy();
+    }
+
+    /** The view of Float8Vector. */
+    static class OfDouble extends ArrowVector implements DoubleVector {
+        /** Constructor. */
+        OfDouble(String name, List<FieldVector> chunks) {
+            super(name, chunks);
+        }
+
+        @Override
+        BaseVector copy() {
+            return DoubleVector.of(field(), array());
+        }
+
+        @Override
+        public double[] array() {
+            return toDoubleArray(new double[size]);
+        }
+
+        @Override
+        public double[] toDoubleArray(double[] a) {
+            for (int i = 0; i < size; i++) a[i] = getDouble(i);
+            return a;
+        }
+
+        @Override
+        public double getDouble(int i) {
+            int c = chunk(i);
+            return data[c].getDouble((long) (i - offset[c]) * Double.BYTES);
+        }
+
+        @Override
+        public Double get(int i) {
+            return getDouble(i);
+        }
+
+        @Override
+        public DoubleVector get(int... index) {
+            double[] v = new double[index.length];
+            for (int i = 0; i < index.length; i++) v[i] = getDouble(index[i]);
+            return DoubleVector.of(field(), v);
+        }
+
+        @Override
+        public DoubleStream stream() {
+            return IntStream.range(0, size).mapToDouble(this::getDouble);
+        }
+
+        @Override
+        public String toString() {
+            return toString(10);
+        }
+    }
+
+    /** The view of Float4Vector. */
+    static class OfFloat extends ArrowVector implements FloatVector {
+        /** Constructor. */
+        OfFloat(String name, List<FieldVector> chunks) {
+            super(name, chunks);
+        }
+
+        @Override
+        BaseVector copy() {
+            return FloatVector.of(field(), array());
+        }
+
+        @Override
+        public float[] array() {
+            float[] a = new float[size];
+            for (int i = 0; i < size; i++) a[i] = getFloat(i);
+            return a;
+        }
+
+        @Override
+        public double[] toDoubleArray(double[] a) {
+            for (int i = 0; i < size; i++) a[i] = getFloat(i);
+            return a;
+        }
+
+        @Override
+        public float getFloat(int i) {
+            int c = chunk(i);
+            return data[c].getFloat((long) (i - offset[c]) * Float.BYTES);
+        }
+
+        @Override
+        public Float get(int i) {
+            return getFloat(i);
+        }
+
+        @Override
+        public FloatVector get(int... index) {
+            float[] v = new float[index.length];
+            for (int i = 0; i < index.length; i++) v[i] = getFloat(index[i]);
+            return FloatVector.of(field(), v);
+        }
+
+        @Override
+        public DoubleStream stream() {
+            return IntStream.range(0, size).mapToDouble(this::getFloat);
+        }
+
+        @Override
+        public String toString() {
+            return toString(10);
+        }
+    }
+
+    /** The view of IntVector. */
+    static class OfInt extends ArrowVector implements IntVector {
+        /** Constructor. */
+        OfInt(String name, List<FieldVector> chunks) {
+            super(name, chunks);
+        }
+
+        @Override
+        BaseVector copy() {
+            return IntVector.of(field(), array());
+        }
+
+        @Override
+        public int[] array() {
+            return toIntArray(new int[size]);
+        }
+
+        @Override
+        public int[] toIntArray(int[] a) {
+            for (int i = 0; i < size; i++) a[i] = getInt(i);
+            return a;
+        }
+
+        @Override
+        public double[] toDoubleArray(double[] a) {
+            for (int i = 0; i < size; i++) a[i] = getInt(i);
+            return a;
+        }
+
+        @Override
+        public int getInt(int i) {
+            int c = chunk(i);
+            return data[c].getInt((long) (i - offset[c]) * Integer.BYTES);
+        }
+
+        @Override
+        public Integer get(int i) {
+            return getInt(i);
+        }
+
+        @Override
+        public IntVector get(int... index) {
+            int[] v = new int[index.length];
+            for (int i = 0; i < index.length; i++) v[i] = getInt(index[i]);
+            return IntVector.of(field(), v);
+        }
+
+        @Override
+        public IntStream stream() {
+            return IntStream.range(0, size).map(this::getInt);
+        }
+
+        @Override
+        public String toString() {
+            return toString(10);
+        }
+    }
+
+    /** The view of BigIntVector. */
+    static class OfLong extends ArrowVector implements LongVector {
+        /** Constructor. */
+        OfLong(String name, List<FieldVector> chunks) {
+            super(name, chunks);
+        }
+
+        @Override
+        BaseVector copy() {
+            return LongVector.of(field(), array());
+        }
+
+        @Override
+        public long[] array() {
+            long[] a = new long[size];
+            for (int i = 0; i < size; i++) a[i] = getLong(i);
+            return a;
+        }
+
+        @Override
+        public double[] toDoubleArray(double[] a) {
+            for (int i = 0; i < size; i++) a[i] = getLong(i);
+            return a;
+        }
+
+        @Override
+        public long getLong(int i) {
+            int c = chunk(i);
+            return data[c].getLong((long) (i - offset[c]) * Long.BYTES);
+        }
+
+        @Override
+        public Long get(int i) {
+            return getLong(i);
+        }
+
+        @Override
+        public LongVector get(int... index) {
+            long[] v = new long[index.length];
+            for (int i = 0; i < index.length; i++) v[i] = getLong(index[i]);
+            return LongVector.of(field(), v);
+        }
+
+        @Override
+        public LongStream stream() {
+            return IntStream.range(0, size).mapToLong(this::getLong);
+        }
+
+        @Override
+        public String toString() {
+            return toString(10);
+        }
+    }
+
+    /** Reads the element of a chunk from the data buffer. */
+    interface Reader<T> {
+        /**
+         * Returns the element.
+         * @param data the data buffer.
+         * @param k the index of element in the chunk.
+         * @return the element.
+         */
+        T get(ArrowBuf data, int k);
+    }
+
+    /** The view of nullable fixed width vectors. */
+    static class OfNullable<T> extends ArrowVector implements Vector<T> {
+        /** The class of boxed values. */
+        final Class<T> clazz;
+        /** The reader of values. */
+        final transient Reader<T> reader;
+
+        /** Constructor. */
+        OfNullable(String name, List<FieldVector> chunks, Class<T> clazz, Reader<T> reader) {
+            super(name, chunks);
+            this.clazz = clazz;
+            this.reader = reader;
+        }
+
+        @Override
+        BaseVector copy() {
+            return Vector.of(field(), toArray());
+        }
+
+        @Override
+        public DataType type() {
+            return DataTypes.object(clazz);
+        }
+
+        @Override
+        public Object array() {
+            return toArray();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T[] toArray() {
+            T[] a = (T[]) java.lang.reflect.Array.newInstance(clazz, size);
+            for (int i = 0; i < size; i++) a[i] = get(i);
+            return a;
+        }
+
+        @Override
+        public double[] toDoubleArray(double[] a) {
+            for (int i = 0; i < size; i++) a[i] = getDouble(i);
+            return a;
+        }
+
+        @Override
+        public int[] toIntArray(int[] a) {
+            if (!type().isIntegral()) throw new UnsupportedOperationException(name() + ":" + type());
+            for (int i = 0; i < size; i++) {
+                T x = get(i);
+                a[i] = x == null ? Integer.MIN_VALUE : ((Number) x).intValue();
+            }
+            return a;
+        }
+
+        @Override
+        public boolean isNullAt(int i) {
+            int c = chunk(i);
+            return isNull(c, i - offset[c]);
+        }
+
+        @Override
+        public T get(int i) {
+            int c = chunk(i);
+            int k = i - offset[c];
+            return isNull(c, k) ? null : reader.get(data[c], k);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Vector<T> get(int... index) {
+            T[] v = (T[]) java.lang.reflect.Array.newInstance(clazz, index.length);
+            for (int i = 0; i < index.length; i++) v[i] = get(index[i]);
+            return Vector.of(field(), v);
+        }
+
+        @Override
+        public Stream<T> stream() {
+            return IntStream.range(0, size).mapToObj(this::get);
+        }
+
+        @Override
+        public Vector<LocalDate> toDate() {
+            throw new UnsupportedOperationException("Unsupported data type for toDate(): " + type());
+        }
+
+        @Override
+        public Vector<LocalTime> toTime() {
+            throw new UnsupportedOperationException("Unsupported data type for toTime(): " + type());
+        }
+
+        @Override
+        public Vector<LocalDateTime> toDateTime() {
+            throw new UnsupportedOperationException("Unsupported data type for toDateTime(): " + type());
+        }
+
+        @Override
+        public String toString() {
+            return toString(10);
+        }
+    }
+
+    /** The view of VarCharVector. */
+    static class OfString extends ArrowVector implements StringVector {
+        /** Constructor. */
+        OfString(String name, List<FieldVector> chunks) {
+            super(name, chunks);
+        }
+
+        @Override
+        BaseVector copy() {
+            return StringVector.of(field(), toArray());
+        }
+
+        @Override
+        public DataType type() {
+            return DataTypes.StringType;
+        }
+
+        @Override
+        public Object array() {
+            return toArray();
+        }
+
+        @Override
+        public String[] toArray() {
+            String[] a = new String[size];
+            for (int i = 0; i < size; i++) a[i] = get(i);
+            return a;
+        }
+
+        @Override
+        public boolean isNullAt(int i) {
+            int c = chunk(i);
+            return isNull(c, i - offset[c]);
+        }
+
+        @Override
+        public String get(int i) {
+            int c = chunk(i);
+            int k = i - offset[c];
+            if (isNull(c, k)) return null;
+
+            int start = offsets[c].getInt((long) k * Integer.BYTES);
+            int end = offsets[c].getInt((long) (k + 1) * Integer.BYTES);
+            byte[] bytes = new byte[end - start];
+            data[c].getBytes(start, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public StringVector get(int... index) {
+            String[] v = new String[index.length];
+            for (int i = 0; i < index.length; i++) v[i] = get(index[i]);
+            return StringVector.of(field(), v);
+        }
+
+        @Override
+        public Stream<String> stream() {
+            return IntStream.range(0, size).mapToObj(this::get);
+        }
+
+        @Override
+        public Vector<LocalDate> toDate() {
+            return toDate(DateTimeFormatter.ISO_LOCAL_DATE);
+        }
+
+        @Override
+        public Vector<LocalDate> toDate(DateTimeFormatter format) {
+            LocalDate[] dates = stream().map(s -> LocalDate.parse(s, format)).toArray(LocalDate[]::new);
+            return Vector.of(name, DataTypes.DateType, dates);
+        }
+
+        @Override
+        public Vector<LocalTime> toTime() {
+            return toTime(DateTimeFormatter.ISO_LOCAL_TIME);
+        }
+
+        @Override
+        public Vector<LocalTime> toTime(DateTimeFormatter format) {
+            LocalTime[] times = stream().map(s -> LocalTime.parse(s, format)).toArray(LocalTime[]::new);
+            return Vector.of(name, DataTypes.TimeType, times);
+        }
+
+        @Override
+        public Vector<LocalDateTime> toDateTime() {
+            return toDateTime(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        }
+
+        @Override
+        public Vector<LocalDateTime> toDateTime(DateTimeFormatter format) {
+            LocalDateTime[] dates = stream().map(s -> LocalDateTime.parse(s, format)).toArray(LocalDateTime[]::new);
+            return Vector.of(name, DataTypes.DateTimeType, dates);
+        }
+
+        @Override
+        public NominalScale nominal() {
+            List<String> levels = distinct();
+            Collections.sort(levels);
+            return new NominalScale(levels);
+        }
+
+        @Override
+        public BaseVector factorize(CategoricalMeasure scale) {
+            switch (scale.type().id()) {
+                case Byte: {
+                    byte[] a = new byte[size];
+                    for (int i = 0; i < size; i++) {
+                        String s = get(i);
+                        a[i] = s == null ? (byte) -1 : scale.valueOf(s).byteValue();
+                    }
+
+                    return ByteVector.of(new StructField(name, DataTypes.ByteType, scale), a);
+                }
+                case Short: {
+                    short[] a = new short[size];
+                    for (int i = 0; i < size; i++) {
+                        String s = get(i);
+                        a[i] = s == null ? (short) -1 : scale.valueOf(s).shortValue();
+                    }
+
+                    return ShortVector.of(new StructField(name, DataTypes.ShortType, scale), a);
+                }
+                case Integer: {
+                    int[] a = new int[size];
+                    for (int i = 0; i < size; i++) {
+                        String s = get(i);
+                        a[i] = s == null ? -1 : scale.valueOf(s).intValue();
+                    }
+
+                    return IntVector.of(new StructField(name, DataTypes.IntegerType, scale), a);
+                }
+                default:
+                    // we should never reach here.
+                    throw new UnsupportedOperationException("Unsupported data type for nominal measure: " + scale.type());
+            }
+        }
+
+        @Override
+        public String toString() {
+            return toString(10);
+        }
+    }
+}
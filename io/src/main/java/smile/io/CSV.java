@@ -19,17 +19,29 @@ package smile.io;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Array;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.text.ParseException;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVPrinter;
@@ -40,20 +52,34 @@ import smile.data.type.DataType;
 import smile.data.type.DataTypes;
 import smile.data.type.StructField;
 import smile.data.type.StructType;
+import smile.data.vector.*;
 
 /**
  * Reads and writes files in variations of the Comma Separated Value
  * (CSV) format.
+ * <p>
+ * The records are parsed directly into the primitive arrays of columns
+ * without materializing the rows as tuples. Large files may be parsed
+ * by multiple threads, each of which processes a chunk of file split on
+ * record boundaries. The records may also be read as a stream of data
+ * frames of fixed size for out-of-core processing.
  *
  * @author Haifeng Li
  */
 public class CSV {
+    /** The minimum number of bytes in a chunk of parallel parsing. */
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    /** The maximum number of bytes in a chunk of parallel parsing. */
+    private static final int MAX_CHUNK_SIZE = 1 << 25;
+
     /** The schema of data structure. */
     private StructType schema;
     /** The CSV file format. */
     private final CSVFormat format;
     /** Charset of file. */
     private Charset charset = StandardCharsets.UTF_8;
+    /** If true, parse the chunks of file in parallel. */
+    private boolean parallel = false;
 
     /**
      * Constructor.
@@ -92,6 +118,24 @@ public class CSV {
         return this;
     }
 
+    /**
+     * Sets the flag of parallel parsing. If true, the file is split
+     * into chunks on record boundaries, which are parsed by multiple
+     * threads. The boundaries are found by a quick sequential scan
+     * that tracks the quoted values so that the line breaks in quoted
+     * values never split a record. It requires that the charset is
+     * ASCII compatible (e.g. UTF-8 and ISO-8859-1) and the format has
+     * no escape character. Otherwise, or if the quotes are unbalanced,
+     * the file is parsed sequentially.
+     *
+     * @param parallel the flag of parallel parsing.
+     * @return this object.
+     */
+    public CSV parallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
     /**
      * Reads a CSV file.
      * @param path the input file path.
@@ -143,6 +187,12 @@ public class CSV {
             schema = inferSchema(Files.newBufferedReader(path, charset), Math.min(1000, limit));
         }
 
+        boolean ascii = charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII) || charset.equals(StandardCharsets.ISO_8859_1);
+        if (parallel && ascii && limit == Integer.MAX_VALUE && Files.size(path) > MIN_CHUNK_SIZE) {
+            DataFrame data = readParallel(path);
+            if (data != null) return data;
+        }
+
         return read(Files.newBufferedReader(path, charset), limit);
     }
 
@@ -152,25 +202,411 @@ public class CSV {
             throw new IllegalStateException("The schema is not set or inferred.");
         }
 
-        StructField[] fields = schema.fields();
-        List<Function<String, Object>> parser = schema.parser();
-
         try (CSVParser csv = CSVParser.parse(reader, format)) {
-            List<Tuple> rows = new ArrayList<>();
+            Column[] columns = columns(1024);
+            int n = 0;
             for (CSVRecord record : csv) {
-                Object[] row = new Object[fields.length];
-                for (int i = 0; i < fields.length; i++) {
-                    String s = record.get(i).trim();
-                    if (!s.isEmpty()) {
-                        row[i] = parser.get(i).apply(s);
+                add(columns, record);
+                if (++n >= limit) break;
+            }
+
+            if (n == 0) {
+                throw new IllegalArgumentException("Empty tuple collections");
+            }
+
+            DataFrame data = frame(columns);
+            schema = data.schema();
+            return data;
+        }
+    }
+
+    /**
+     * Reads a CSV file by parsing the chunks of file in parallel.
+     * @param path the input file path.
+     * @throws IOException when fails to read the file.
+     * @return the data frame, or null if the file cannot be split
+     *         into chunks safely.
+     */
+    private DataFrame readParallel(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] boundaries = chunks(channel);
+            if (boundaries == null) return null;
+            // The header, if any, is in the first chunk only.
+            CSVFormat body = format.withHeader((String[]) null).withSkipHeaderRecord(false);
+
+            List<Column[]> chunks = IntStream.range(0, boundaries.length - 1).parallel().mapToObj(k -> {
+                try {
+                    int length = (int) (boundaries[k+1] - boundaries[k]);
+                    ByteBuffer buffer = ByteBuffer.allocate(length);
+                    while (buffer.hasRemaining()) {
+                        if (channel.read(buffer, boundaries[k] + buffer.position()) < 0) break;
                     }
+
+                    String text = new String(buffer.array(), 0, buffer.position(), charset);
+                    try (CSVParser csv = CSVParser.parse(text, k == 0 ? format : body)) {
+                        Column[] columns = columns(1024);
+                        for (CSVRecord record : csv) {
+                            add(columns, record);
+                        }
+                        return columns;
+                    }
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }).collect(Collectors.toList());
+
+            Column[] columns = chunks.get(0);
+            for (int j = 0; j < columns.length; j++) {
+                for (int k = 1; k < chunks.size(); k++) {
+                    columns[j].addAll(chunks.get(k)[j]);
+                    // Release the memory of chunk as soon as possible.
+                    chunks.get(k)[j] = null;
                 }
-                rows.add(Tuple.of(row, schema));
-                if (rows.size() >= limit) break;
             }
 
-            schema = schema.boxed(rows);
-            return DataFrame.of(rows, schema);
+            if (columns[0].size == 0) {
+                throw new IllegalArgumentException("Empty tuple collections");
+            }
+
+            DataFrame data = frame(columns);
+            schema = data.schema();
+            return data;
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * Splits a file into chunks on record boundaries. The file is scanned
+     * sequentially with a simplified CSV lexer that only tracks whether
+     * the current position is inside a quoted value. A quote opens a quoted
+     * value at the beginning of field, a doubled quote inside is escaped,
+     * and a line feed outside quoted values ends a record.
+     *
+     * @param channel the file channel.
+     * @return the offsets of chunk boundaries, starting with 0 and
+     *         ending with the file size, or null if the format is not
+     *         supported by the lexer or the quotes are unbalanced.
+     */
+    private long[] chunks(FileChannel channel) throws IOException {
+        int delimiter = format.getDelimiter();
+        int quote = format.getQuoteCharacter() == null ? -1 : format.getQuoteCharacter();
+        int comment = format.getCommentMarker() == null ? -1 : format.getCommentMarker();
+        // The escape character makes the quotes ambiguous to the lexer.
+        if (format.getEscapeCharacter() != null || delimiter > 127 || quote > 127 || comment > 127) {
+            return null;
+        }
+
+        // A few chunks per thread for load balance.
+        long size = channel.size();
+        int n = (int) Math.min(size / MIN_CHUNK_SIZE, 4L * Runtime.getRuntime().availableProcessors());
+        n = (int) Math.max(n, (size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+        n = Math.max(n, 1);
+        long[] boundaries = new long[n + 1];
+
+        final int RECORD_START = 0, FIELD_START = 1, UNQUOTED = 2, QUOTED = 3, QUOTE_IN_QUOTED = 4, COMMENT = 5;
+        boolean trim = format.getIgnoreSurroundingSpaces();
+        int state = RECORD_START;
+        int k = 1;
+        long next = size / n;
+        long pos = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        while (pos < size) {
+            buffer.clear();
+            int length = channel.read(buffer, pos);
+            if (length <= 0) break;
+
+            for (int j = 0; j < length; j++) {
+                int b = buffer.get(j) & 0xFF;
+                if (state == QUOTE_IN_QUOTED) {
+                    if (b == quote) {
+                        // Escaped quote.
+                        state = QUOTED;
+                        continue;
+                    }
+                    // The quoted value is closed.
+                    state = UNQUOTED;
+                }
+
+                switch (state) {
+                    case QUOTED:
+                        if (b == quote) state = QUOTE_IN_QUOTED;
+                        break;
+                    case COMMENT:
+                        if (b == '\n') state = RECORD_START;
+                        break;
+                    case RECORD_START:
+                    case FIELD_START:
+                        if (b == quote) {
+                            state = QUOTED;
+                        } else if (state == RECORD_START && b == comment) {
+                            state = COMMENT;
+                        } else if (b == delimiter) {
+                            state = FIELD_START;
+                        } else if (b == '\n') {
+                            state = RECORD_START;
+                        } else if (!(trim && (b == ' ' || b == '\t'))) {
+                            state = UNQUOTED;
+                        }
+                        break;
+                    default:
+                        if (b == delimiter) {
+                            state = FIELD_START;
+                        } else if (b == '\n') {
+                            state = RECORD_START;
+                        }
+                }
+
+                if (state == RECORD_START && b == '\n' && pos + j >= next && k < n) {
+                    boundaries[k++] = pos + j + 1;
+                    next = k * (size / n);
+                }
+            }
+            pos += length;
+        }
+
+        if (state == QUOTED) {
+            // Unbalanced quotes, the lexer doesn't understand the file.
+            return null;
+        }
+
+        if (boundaries[k-1] == size) k--;
+        boundaries[k] = size;
+        return Arrays.copyOf(boundaries, k + 1);
+    }
+
+    /**
+     * Reads a CSV file as a stream of data frames, each of which has
+     * (up to) the given number of records. The records are parsed lazily
+     * so that a file larger than the memory can be processed batch by
+     * batch. The stream should be closed to release the file handle.
+     * <p>
+     * Similar to <code>read</code>, a primitive column is boxed in a batch
+     * if it has missing values. So the schema of batches may be different
+     * in this regard.
+     *
+     * @param path the input file path.
+     * @param batchSize the number of records in a data frame.
+     * @throws IOException when fails to read the file.
+     * @return the stream of data frames.
+     */
+    public Stream<DataFrame> stream(Path path, int batchSize) throws IOException {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+        }
+
+        if (schema == null) {
+            // infer the schema from top 1000 rows.
+            schema = inferSchema(Files.newBufferedReader(path, charset), 1000);
+        }
+
+        CSVParser csv = CSVParser.parse(Files.newBufferedReader(path, charset), format);
+        Iterator<CSVRecord> records = csv.iterator();
+        Iterator<DataFrame> batches = new Iterator<DataFrame>() {
+            @Override
+            public boolean hasNext() {
+                return records.hasNext();
+            }
+
+            @Override
+            public DataFrame next() {
+                if (!records.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                Column[] columns = columns(batchSize);
+                for (int i = 0; i < batchSize && records.hasNext(); i++) {
+                    add(columns, records.next());
+                }
+                return frame(columns);
+            }
+        };
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(batches, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        csv.close();
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+    }
+
+    /**
+     * Returns the column accumulators of schema.
+     * @param capacity the initial capacity of columns.
+     * @return the column accumulators.
+     */
+    private Column[] columns(int capacity) {
+        return Arrays.stream(schema.fields()).map(field -> new Column(field, capacity)).toArray(Column[]::new);
+    }
+
+    /**
+     * Adds a record to the columns.
+     * @param columns the column accumulators.
+     * @param record the record.
+     */
+    private static void add(Column[] columns, CSVRecord record) {
+        for (int i = 0; i < columns.length; i++) {
+            String s = record.get(i).trim();
+            columns[i].add(s.isEmpty() ? null : s);
+        }
+    }
+
+    /**
+     * Returns the data frame of columns.
+     * @param columns the column accumulators.
+     * @return the data frame.
+     */
+    private static DataFrame frame(Column[] columns) {
+        return DataFrame.of(Arrays.stream(columns).map(Column::toVector).toArray(BaseVector[]::new));
+    }
+
+    /**
+     * The column accumulator that parses the values into primitive array.
+     */
+    private static class Column {
+        /** The field of column. */
+        final StructField field;
+        /** The data type ID, or null for object types. */
+        final DataType.ID id;
+        /** The primitive array, or Object[] for object types. */
+        Object data;
+        /** The missing values of primitive column. */
+        final BitSet missing = new BitSet();
+        /** The number of values. */
+        int size = 0;
+
+        /**
+         * Constructor.
+         * @param field the field of column.
+         * @param capacity the initial capacity.
+         */
+        Column(StructField field, int capacity) {
+            this.field = field;
+            this.id = field.type.isPrimitive() ? field.type.id() : null;
+            if (id == null) {
+                data = new Object[capacity];
+            } else {
+                switch (id) {
+                    case Integer: data = new int[capacity]; break;
+                    case Long: data = new long[capacity]; break;
+                    case Double: data = new double[capacity]; break;
+                    case Float: data = new float[capacity]; break;
+                    case Boolean: data = new boolean[capacity]; break;
+                    case Byte: data = new byte[capacity]; break;
+                    case Short: data = new short[capacity]; break;
+                    case Char: data = new char[capacity]; break;
+                    default: throw new IllegalStateException("Unsupported primitive type: " + field.type);
+                }
+            }
+        }
+
+        /** Ensures the capacity of array. */
+        void ensureCapacity(int capacity) {
+            int length = Array.getLength(data);
+            if (capacity > length) {
+                Object array = Array.newInstance(data.getClass().getComponentType(), Math.max(capacity, 2 * length));
+                System.arraycopy(data, 0, array, 0, size);
+                data = array;
+            }
+        }
+
+        /**
+         * Parses and adds a value.
+         * @param s the string representation of value, or null for missing value.
+         */
+        void add(String s) {
+            ensureCapacity(size + 1);
+            if (s == null) {
+                missing.set(size++);
+                return;
+            }
+
+            if (field.measure == null && id != null) {
+                // fast path without boxing
+                switch (id) {
+                    case Double: ((double[]) data)[size++] = Double.parseDouble(s); return;
+                    case Float: ((float[]) data)[size++] = Float.parseFloat(s); return;
+                    case Integer: ((int[]) data)[size++] = Integer.parseInt(s); return;
+                    case Long: ((long[]) data)[size++] = Long.parseLong(s); return;
+                    default: break;
+                }
+            }
+
+            Object value = field.valueOf(s);
+            if (id == null) {
+                ((Object[]) data)[size++] = value;
+                return;
+            }
+
+            if (value == null) {
+                missing.set(size++);
+                return;
+            }
+
+            switch (id) {
+                case Integer: ((int[]) data)[size] = ((Number) value).intValue(); break;
+                case Long: ((long[]) data)[size] = ((Number) value).longValue(); break;
+                case Double: ((double[]) data)[size] = ((Number) value).doubleValue(); break;
+                case Float: ((float[]) data)[size] = ((Number) value).floatValue(); break;
+                case Boolean: ((boolean[]) data)[size] = (Boolean) value; break;
+                case Byte: ((byte[]) data)[size] = ((Number) value).byteValue(); break;
+                case Short: ((short[]) data)[size] = ((Number) value).shortValue(); break;
+                case Char: ((char[]) data)[size] = (Character) value; break;
+                default: break;
+            }
+            size++;
+        }
+
+        /**
+         * Appends the values of another column.
+         * @param other the other column of same field.
+         */
+        void addAll(Column other) {
+            ensureCapacity(size + other.size);
+            System.arraycopy(other.data, 0, data, size, other.size);
+            for (int i = other.missing.nextSetBit(0); i >= 0; i = other.missing.nextSetBit(i + 1)) {
+                missing.set(size + i);
+            }
+            size += other.size;
+        }
+
+        /**
+         * Returns the column vector. A primitive column is boxed if it has
+         * missing values.
+         * @return the column vector.
+         */
+        BaseVector toVector() {
+            if (id == null) {
+                return Vector.of(field, Arrays.copyOf((Object[]) data, size));
+            }
+
+            if (!missing.isEmpty()) {
+                Object[] values = new Object[size];
+                for (int i = 0; i < size; i++) {
+                    values[i] = missing.get(i) ? null : Array.get(data, i);
+                }
+                return Vector.of(new StructField(field.name, field.type.boxed(), field.measure), values);
+            }
+
+            if (Array.getLength(data) != size) {
+                Object array = Array.newInstance(data.getClass().getComponentType(), size);
+                System.arraycopy(data, 0, array, 0, size);
+                data = array;
+            }
+
+            switch (id) {
+                case Integer: return IntVector.of(field, (int[]) data);
+                case Long: return LongVector.of(field, (long[]) data);
+                case Double: return DoubleVector.of(field, (double[]) data);
+                case Float: return FloatVector.of(field, (float[]) data);
+                case Boolean: return BooleanVector.of(field, (boolean[]) data);
+                case Byte: return ByteVector.of(field, (byte[]) data);
+                case Short: return ShortVector.of(field, (short[]) data);
+                case Char: return CharVector.of(field, (char[]) data);
+                default: throw new IllegalStateException("Unsupported primitive type: " + field.type);
+            }
         }
     }
 
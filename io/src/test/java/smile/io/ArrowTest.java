@@ -29,8 +29,21 @@ import smile.math.matrix.Matrix;
 import smile.util.Paths;
 
 import java.io.File;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.*;
+import java.util.Arrays;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.DurationVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
 
 import static org.junit.Assert.*;
 
@@ -180,4 +193,154 @@ public class ArrowTest {
         assertEquals(5.94, output.get(2, 0), 1E-10);
         assertEquals(0.99, output.get(3, 0), 1E-10);
     }
-}
\ No newline at end of file
+
+    /**
+     * Test of open and forEachBatch methods, of class Arrow.
+     */
+    @Test
+    public void testOpen() throws Exception {
+        System.out.println("open");
+        int n = 250;
+        double[] x = new double[n];
+        int[] y = new int[n];
+        long[] z = new long[n];
+        String[] s = new String[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = i * 0.5;
+            y[i] = -i;
+            z[i] = i * 10000000000L;
+            s[i] = "s" + i;
+        }
+
+        DataFrame data = DataFrame.of(
+                smile.data.vector.DoubleVector.of("x", x),
+                smile.data.vector.IntVector.of("y", y),
+                smile.data.vector.LongVector.of("z", z),
+                smile.data.vector.StringVector.of("s", s));
+
+        File temp = File.createTempFile("views", "arrow");
+        temp.deleteOnExit();
+        Path path = temp.toPath();
+        new Arrow(100).write(data, path);
+
+        try (ArrowDataFrame view = arrow.open(path)) {
+            System.out.println(view);
+            assertEquals(n, view.nrow());
+            assertEquals(DataTypes.DoubleType, view.schema().field("x").type);
+            assertEquals(DataTypes.IntegerType, view.schema().field("y").type);
+            assertEquals(DataTypes.LongType, view.schema().field("z").type);
+            for (int i = 0; i < n; i++) {
+                assertEquals(x[i], view.getDouble(i, 0), 0.0);
+                assertEquals(y[i], view.getInt(i, 1));
+                assertEquals(z[i], view.getLong(i, 2));
+                assertEquals(s[i], view.getString(i, 3));
+            }
+            assertArrayEquals(x, view.column("x").toDoubleArray(), 0.0);
+            assertEquals(y[120], view.intVector("y").get(new int[]{120}).getInt(0));
+        }
+
+        int[] count = new int[2];
+        arrow.forEachBatch(path, batch -> {
+            for (int i = 0; i < batch.nrow(); i++) {
+                assertEquals(x[count[1] + i], batch.getDouble(i, "x"), 0.0);
+                assertEquals(s[count[1] + i], batch.getString(i, "s"));
+            }
+            count[0]++;
+            count[1] += batch.nrow();
+        });
+        assertEquals(3, count[0]);
+        assertEquals(n, count[1]);
+    }
+
+    /**
+     * Test of open method with nulls, of class Arrow.
+     */
+    @Test
+    public void testOpenNulls() throws Exception {
+        System.out.println("open nulls");
+        int n = 250;
+        Double[] x = new Double[n];
+        Integer[] y = new Integer[n];
+        String[] s = new String[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = i % 3 == 0 ? null : i * 0.5;
+            y[i] = i % 7 == 0 ? null : -i;
+            s[i] = i % 5 == 0 ? null : "\u00e9" + i;
+        }
+
+        DataFrame data = DataFrame.of(
+                smile.data.vector.Vector.of("x", Double.class, x),
+                smile.data.vector.Vector.of("y", Integer.class, y),
+                smile.data.vector.StringVector.of("s", s));
+
+        File temp = File.createTempFile("nulls", "arrow");
+        temp.deleteOnExit();
+        Path path = temp.toPath();
+        new Arrow(100).write(data, path);
+
+        try (ArrowDataFrame view = arrow.open(path)) {
+            System.out.println(view);
+            assertEquals(n, view.nrow());
+            assertEquals(DataTypes.DoubleObjectType, view.schema().field("x").type);
+            assertEquals(DataTypes.IntegerObjectType, view.schema().field("y").type);
+            assertEquals(DataTypes.StringType, view.schema().field("s").type);
+            assertTrue(view.column("x") instanceof ArrowVector);
+            assertTrue(view.column("y") instanceof ArrowVector);
+            assertTrue(view.column("s") instanceof ArrowVector);
+            for (int i = 0; i < n; i++) {
+                assertEquals(x[i], view.get(i, 0));
+                assertEquals(y[i], view.get(i, 1));
+                assertEquals(s[i], view.get(i, 2));
+                assertEquals(s[i], view.stringVector(2).get(i));
+            }
+            assertTrue(Double.isNaN(view.column("x").toDoubleArray()[0]));
+            assertArrayEquals(s, view.stringVector("s").toArray());
+        }
+    }
+
+    /**
+     * Test of open method on an unsupported column type, of class Arrow.
+     */
+    @Test
+    public void testOpenUnsupported() throws Exception {
+        System.out.println("open unsupported");
+        File temp = File.createTempFile("unsupported", "arrow");
+        temp.deleteOnExit();
+        Path path = temp.toPath();
+
+        Schema schema = new Schema(Arrays.asList(
+                Field.nullable("x", new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE)),
+                Field.nullable("d", new ArrowType.Duration(TimeUnit.SECOND))));
+        try (RootAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+             VectorSchemaRoot root = VectorSchemaRoot.create(schema, allocator);
+             OutputStream output = Files.newOutputStream(path);
+             ArrowStreamWriter writer = new ArrowStreamWriter(root, null, output)) {
+            writer.start();
+            for (int batch = 0; batch < 3; batch++) {
+                Float8Vector x = (Float8Vector) root.getVector("x");
+                DurationVector d = (DurationVector) root.getVector("d");
+                x.allocateNew(100);
+                d.allocateNew(100);
+                for (int i = 0; i < 100; i++) {
+                    x.set(i, i);
+                    d.set(i, i);
+                }
+                root.setRowCount(100);
+                writer.writeBatch();
+            }
+        }
+
+        java.lang.reflect.Field field = Arrow.class.getDeclaredField("allocator");
+        field.setAccessible(true);
+        RootAllocator allocator = (RootAllocator) field.get(null);
+        long memory = allocator.getAllocatedMemory();
+        try {
+            arrow.open(path);
+            fail("Open a file of unsupported column type");
+        } catch (UnsupportedOperationException ex) {
+            System.out.println(ex);
+        }
+        // The transferred buffers of all batches are released.
+        assertEquals(memory, allocator.getAllocatedMemory());
+    }
+}
@@ -17,6 +17,13 @@
 
 package smile.io;
 
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.apache.commons.csv.CSVFormat;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -220,6 +227,102 @@ public class CSVTest {
         assertEquals(10, abalone.getInt(3132, 8));
     }
 
+    @Test
+    public void testStream() throws Exception {
+        System.out.println("stream");
+
+        DataFrame abalone = new CSV().read(Paths.getTestData("regression/abalone-train.data"));
+        List<DataFrame> batches;
+        try (Stream<DataFrame> stream = new CSV().stream(Paths.getTestData("regression/abalone-train.data"), 1000)) {
+            batches = stream.collect(Collectors.toList());
+        }
+
+        assertEquals(4, batches.size());
+        assertEquals(1000, batches.get(0).nrow());
+        assertEquals(133, batches.get(3).nrow());
+
+        int i = 0;
+        for (DataFrame batch : batches) {
+            assertEquals(abalone.schema(), batch.schema());
+            for (int j = 0; j < batch.nrow(); j++, i++) {
+                for (int k = 0; k < batch.ncol(); k++) {
+                    assertEquals(abalone.get(i, k), batch.get(j, k));
+                }
+            }
+        }
+        assertEquals(abalone.nrow(), i);
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        System.out.println("parallel");
+
+        Path path = Files.createTempFile("smile-csv", ".csv");
+        path.toFile().deleteOnExit();
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            writer.write("id,x,y,label\n");
+            for (int i = 0; i < 100000; i++) {
+                String y = i % 1000 == 0 ? "" : String.valueOf(Math.sqrt(i));
+                writer.write(String.format("%d,%.6f,%s,\"c%d\"%n", i, Math.sin(i), y, i % 7));
+            }
+        }
+
+        CSVFormat format = CSVFormat.DEFAULT.withFirstRecordAsHeader();
+        DataFrame expected = new CSV(format).read(path);
+        DataFrame df = new CSV(format).parallel(true).read(path);
+
+        System.out.println(df.schema());
+        assertEquals(100000, df.nrow());
+        assertEquals(4, df.ncol());
+        assertEquals(expected.schema(), df.schema());
+        assertEquals(DataTypes.IntegerType, df.schema().field(0).type);
+        assertEquals(DataTypes.DoubleType, df.schema().field(1).type);
+        assertEquals(DataTypes.DoubleObjectType, df.schema().field(2).type);
+        assertEquals(DataTypes.StringType, df.schema().field(3).type);
+
+        for (int i = 0; i < df.nrow(); i++) {
+            for (int j = 0; j < df.ncol(); j++) {
+                assertEquals(expected.get(i, j), df.get(i, j));
+            }
+        }
+        assertEquals(99999, df.getInt(99999, 0));
+        assertNull(df.get(99000, 2));
+        assertEquals("c4", df.getString(99999, 3));
+    }
+
+    @Test
+    public void testParallelMultiline() throws Exception {
+        System.out.println("parallel multiline");
+
+        // The quoted text ends with a line break, which is the first one
+        // after almost every offset. A naive split on line breaks would
+        // cut the records in the middle.
+        Path path = Files.createTempFile("smile-csv", ".csv");
+        path.toFile().deleteOnExit();
+        char[] text = new char[1000];
+        Arrays.fill(text, 'a');
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            writer.write("id,text,x\n");
+            for (int i = 0; i < 5000; i++) {
+                writer.write(String.format("%d,\"%s \"\"%d\"\"\n\",%.3f\n", i, new String(text, 0, i % 1000), i, Math.sqrt(i)));
+            }
+        }
+
+        CSVFormat format = CSVFormat.DEFAULT.withFirstRecordAsHeader();
+        DataFrame expected = new CSV(format).read(path);
+        DataFrame df = new CSV(format).parallel(true).read(path);
+
+        assertEquals(5000, expected.nrow());
+        assertEquals(5000, df.nrow());
+        assertEquals(expected.schema(), df.schema());
+        for (int i = 0; i < df.nrow(); i++) {
+            assertEquals(i, df.getInt(i, 0));
+            assertEquals(expected.getString(i, 1), df.getString(i, 1));
+            assertEquals(expected.getDouble(i, 2), df.getDouble(i, 2), 1E-10);
+        }
+        assertTrue(df.getString(4999, 1).endsWith("\"4999\""));
+    }
+
     @Test
     public void testUserdata() throws Exception {
         System.out.println("userdata");
@@ -2619,6 +2619,160 @@ public class MathEx {
         return sum;
     }
 
+    /**
+     * Computes the squared Euclidean distances between a vector and each
+     * row of a matrix. Four rows are processed together so that each
+     * element of x is loaded once for them, and the independent sums
+     * can be pipelined by the CPU. The elements of each row are summed
+     * in the same order as {@link #squaredDistance(double[], double[])}.
+     * Therefore, the results are identical to the one-to-one method.
+     *
+     * @param x a vector.
+     * @param y the row vectors.
+     * @param d the output squared distances.
+     */
+    public static void squaredDistance(double[] x, double[][] y, double[] d) {
+        squaredDistance(x, y, 0, y.length, d);
+    }
+
+    /**
+     * Computes the squared Euclidean distances between a vector and a
+     * range of rows of a matrix, so that the rows may be split into
+     * blocks processed by multiple threads. The results are identical to
+     * {@link #squaredDistance(double[], double[])}.
+     *
+     * @param x a vector.
+     * @param y the row vectors.
+     * @param from the index of first row, inclusive.
+     * @param to the index of last row, exclusive.
+     * @param d the output squared distances, of which {@code d[i]} is
+     *          the distance to {@code y[i]} for {@code from <= i < to}.
+     */
+    public static void squaredDistance(double[] x, double[][] y, int from, int to, double[] d) {
+        int p = x.length;
+        int n = to;
+        if (from < 0 || to > y.length || from > to) {
+            throw new IllegalArgumentException(String.format("Invalid row range [%d, %d)", from, to));
+        }
+
+        if (d.length < n) {
+            throw new IllegalArgumentException("The output array is too small: " + d.length);
+        }
+
+        int i = from;
+        for (; i + 3 < n; i += 4) {
+            double[] y0 = y[i];
+            double[] y1 = y[i+1];
+            double[] y2 = y[i+2];
+            double[] y3 = y[i+3];
+            if (y0.length != p || y1.length != p || y2.length != p || y3.length != p) {
+                throw new IllegalArgumentException("Input vector sizes are different.");
+            }
+
+            double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+            for (int j = 0; j < p; j++) {
+                double xj = x[j];
+                double d0 = xj - y0[j];
+                double d1 = xj - y1[j];
+                double d2 = xj - y2[j];
+                double d3 = xj - y3[j];
+                s0 += d0 * d0;
+                s1 += d1 * d1;
+                s2 += d2 * d2;
+                s3 += d3 * d3;
+            }
+
+            d[i] = s0;
+            d[i+1] = s1;
+            d[i+2] = s2;
+            d[i+3] = s3;
+        }
+
+        for (; i < n; i++) {
+            d[i] = squaredDistance(x, y[i]);
+        }
+    }
+
+    /**
+     * Computes the squared Euclidean distances between a vector and each
+     * row of a matrix. The results are identical to
+     * {@link #squaredDistance(float[], float[])}.
+     *
+     * @param x a vector.
+     * @param y the row vectors.
+     * @param d the output squared distances.
+     */
+    public static void squaredDistance(float[] x, float[][] y, double[] d) {
+        int p = x.length;
+        int n = y.length;
+        if (d.length < n) {
+            throw new IllegalArgumentException("The output array is too small: " + d.length);
+        }
+
+        int i = 0;
+        for (; i + 3 < n; i += 4) {
+            float[] y0 = y[i];
+            float[] y1 = y[i+1];
+            float[] y2 = y[i+2];
+            float[] y3 = y[i+3];
+            if (y0.length != p || y1.length != p || y2.length != p || y3.length != p) {
+                throw new IllegalArgumentException("Input vector sizes are different.");
+            }
+
+            double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+            for (int j = 0; j < p; j++) {
+                double xj = x[j];
+                double d0 = xj - (double) y0[j];
+                double d1 = xj - (double) y1[j];
+                double d2 = xj - (double) y2[j];
+                double d3 = xj - (double) y3[j];
+                s0 += d0 * d0;
+                s1 += d1 * d1;
+                s2 += d2 * d2;
+                s3 += d3 * d3;
+            }
+
+            d[i] = s0;
+            d[i+1] = s1;
+            d[i+2] = s2;
+            d[i+3] = s3;
+        }
+
+        for (; i < n; i++) {
+            d[i] = squaredDistance(x, y[i]);
+        }
+    }
+
+    /**
+     * Computes the Euclidean distances between a vector and each
+     * row of a matrix.
+     *
+     * @param x a vector.
+     * @param y the row vectors.
+     * @param d the output distances.
+     */
+    public static void distance(double[] x, double[][] y, double[] d) {
+        squaredDistance(x, y, d);
+        for (int i = 0; i < y.length; i++) {
+            d[i] = sqrt(d[i]);
+        }
+    }
+
+    /**
+     * Computes the Euclidean distances between a vector and each
+     * row of a matrix.
+     *
+     * @param x a vector.
+     * @param y the row vectors.
+     * @param d the output distances.
+     */
+    public static void distance(float[] x, float[][] y, double[] d) {
+        squaredDistance(x, y, d);
+        for (int i = 0; i < y.length; i++) {
+            d[i] = sqrt(d[i]);
+        }
+    }
+
     /**
      * The squared Euclidean distance with handling missing values (represented as NaN).
      *
@@ -3137,6 +3291,98 @@ public class MathEx {
         return sum;
     }
 
+    /**
+     * Computes the dot products between a vector and each row of a matrix.
+     * Four rows are processed together. The results are identical to
+     * {@link #dot(double[], double[])}.
+     *
+     * @param x a vector.
+     * @param y the row vectors.
+     * @param d the output dot products.
+     */
+    public static void dot(double[] x, double[][] y, double[] d) {
+        int p = x.length;
+        int n = y.length;
+        if (d.length < n) {
+            throw new IllegalArgumentException("The output array is too small: " + d.length);
+        }
+
+        int i = 0;
+        for (; i + 3 < n; i += 4) {
+            double[] y0 = y[i];
+            double[] y1 = y[i+1];
+            double[] y2 = y[i+2];
+            double[] y3 = y[i+3];
+            if (y0.length != p || y1.length != p || y2.length != p || y3.length != p) {
+                throw new IllegalArgumentException("Arrays have different length.");
+            }
+
+            double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+            for (int j = 0; j < p; j++) {
+                double xj = x[j];
+                s0 += xj * y0[j];
+                s1 += xj * y1[j];
+                s2 += xj * y2[j];
+                s3 += xj * y3[j];
+            }
+
+            d[i] = s0;
+            d[i+1] = s1;
+            d[i+2] = s2;
+            d[i+3] = s3;
+        }
+
+        for (; i < n; i++) {
+            d[i] = dot(x, y[i]);
+        }
+    }
+
+    /**
+     * Computes the dot products between a vector and each row of a matrix.
+     * Four rows are processed together. The results are identical to
+     * {@link #dot(float[], float[])}.
+     *
+     * @param x a vector.
+     * @param y the row vectors.
+     * @param d the output dot products.
+     */
+    public static void dot(float[] x, float[][] y, float[] d) {
+        int p = x.length;
+        int n = y.length;
+        if (d.length < n) {
+            throw new IllegalArgumentException("The output array is too small: " + d.length);
+        }
+
+        int i = 0;
+        for (; i + 3 < n; i += 4) {
+            float[] y0 = y[i];
+            float[] y1 = y[i+1];
+            float[] y2 = y[i+2];
+            float[] y3 = y[i+3];
+            if (y0.length != p || y1.length != p || y2.length != p || y3.length != p) {
+                throw new IllegalArgumentException("Arrays have different length.");
+            }
+
+            float s0 = 0.0F, s1 = 0.0F, s2 = 0.0F, s3 = 0.0F;
+            for (int j = 0; j < p; j++) {
+                float xj = x[j];
+                s0 += xj * y0[j];
+                s1 += xj * y1[j];
+                s2 += xj * y2[j];
+                s3 += xj * y3[j];
+            }
+
+            d[i] = s0;
+            d[i+1] = s1;
+            d[i+2] = s2;
+            d[i+3] = s3;
+        }
+
+        for (; i < n; i++) {
+            d[i] = dot(x, y[i]);
+        }
+    }
+
     /**
      * Returns the dot product between two sparse arrays.
      * @param x a sparse vector.
@@ -0,0 +1,383 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.math;
+
+import java.util.stream.IntStream;
+import smile.math.blas.BLAS;
+import smile.math.blas.Layout;
+import smile.math.blas.Transpose;
+import smile.math.matrix.FloatMatrix;
+import smile.math.matrix.Matrix;
+
+/**
+ * Pairwise Euclidean distances computed by matrix multiplication.
+ * With the expansion
+ * <pre>
+ *     ||x - y||<sup>2</sup> = ||x||<sup>2</sup> + ||y||<sup>2</sup> - 2 x'y
+ * </pre>
+ * the inner products of a block of rows of X and a block of rows of Y
+ * are computed by BLAS gemm, which is much faster than the loops of
+ * one-to-one distance because of the cache blocking and SIMD of the
+ * optimized BLAS library. The distance matrix is produced in tiles,
+ * which are processed in parallel and passed to a callback so that
+ * the caller doesn't need to keep the whole n x m matrix in memory.
+ * <p>
+ * Because of the cancellation in the expansion, the (squared) distances
+ * of close points have absolute error in the order of machine epsilon
+ * times the squared norm of points. Negative squared distances due to
+ * round-off are truncated to zero. The distances of a point to itself
+ * in {@link #pdist} are exactly zero. If exact small distances are
+ * important, center the data first or use
+ * {@link MathEx#pdist(Object[], double[][], smile.math.distance.Distance)}.
+ *
+ * @author Haifeng Li
+ */
+public class PairwiseDistance {
+    /** The default number of rows/columns of tiles. */
+    public static final int TILE_SIZE = 256;
+
+    /**
+     * The consumer of double precision distance tiles. The tile may be
+     * reused after the callback returns. Tiles are passed to the callback
+     * concurrently from multiple threads.
+     */
+    public interface Tile {
+        /**
+         * Accepts a tile of the distance matrix.
+         * @param row the row index of first element in the distance matrix.
+         * @param col the column index of first element in the distance matrix.
+         * @param m the number of rows of tile.
+         * @param n the number of columns of tile.
+         * @param d the distances of tile in row major, i.e. the distance
+         *          between x[row + i] and y[col + j] is d[i * n + j].
+         */
+        void accept(int row, int col, int m, int n, double[] d);
+    }
+
+    /**
+     * The consumer of single precision distance tiles. The tile may be
+     * reused after the callback returns. Tiles are passed to the callback
+     * concurrently from multiple threads.
+     */
+    public interface FloatTile {
+        /**
+         * Accepts a tile of the distance matrix.
+         * @param row the row index of first element in the distance matrix.
+         * @param col the column index of first element in the distance matrix.
+         * @param m the number of rows of tile.
+         * @param n the number of columns of tile.
+         * @param d the distances of tile in row major, i.e. the distance
+         *          between x[row + i] and y[col + j] is d[i * n + j].
+         */
+        void accept(int row, int col, int m, int n, float[] d);
+    }
+
+    /** Private constructor to prevent instance creation. */
+    private PairwiseDistance() {
+
+    }
+
+    /**
+     * Returns the distance matrix between the rows of x and the rows of y.
+     * @param x the data matrix of which each row is a sample.
+     * @param y the data matrix of which each row is a sample.
+     * @param squared if true, returns the squared Euclidean distances.
+     * @return the distance matrix.
+     */
+    public static Matrix cdist(double[][] x, double[][] y, boolean squared) {
+        Matrix D = new Matrix(x.length, y.length);
+        cdist(x, y, squared, TILE_SIZE, (row, col, m, n, d) -> {
+            for (int i = 0; i < m; i++) {
+                for (int j = 0; j < n; j++) {
+                    D.set(row + i, col + j, d[i * n + j]);
+                }
+            }
+        });
+        return D;
+    }
+
+    /**
+     * Returns the distance matrix between the rows of x and the rows of y.
+     * @param x the data matrix of which each row is a sample.
+     * @param y the data matrix of which each row is a sample.
+     * @param squared if true, returns the squared Euclidean distances.
+     * @return the distance matrix.
+     */
+    public static FloatMatrix cdist(float[][] x, float[][] y, boolean squared) {
+        FloatMatrix D = new FloatMatrix(x.length, y.length);
+        cdist(x, y, squared, TILE_SIZE, (row, col, m, n, d) -> {
+            for (int i = 0; i < m; i++) {
+                for (int j = 0; j < n; j++) {
+                    D.set(row + i, col + j, d[i * n + j]);
+                }
+            }
+        });
+        return D;
+    }
+
+    /**
+     * Returns the symmetric pairwise distance matrix of the rows of x.
+     * @param x the data matrix of which each row is a sample.
+     * @param squared if true, returns the squared Euclidean distances.
+     * @return the distance matrix.
+     */
+    public static Matrix pdist(double[][] x, boolean squared) {
+        Matrix D = new Matrix(x.length, x.length);
+        pdist(x, squared, TILE_SIZE, (row, col, m, n, d) -> {
+            for (int i = 0; i < m; i++) {
+                for (int j = 0; j < n; j++) {
+                    D.set(row + i, col + j, d[i * n + j]);
+                    D.set(col + j, row + i, d[i * n + j]);
+                }
+            }
+        });
+        return D;
+    }
+
+    /**
+     * Returns the symmetric pairwise distance matrix of the rows of x.
+     * @param x the data matrix of which each row is a sample.
+     * @param squared if true, returns the squared Euclidean distances.
+     * @return the distance matrix.
+     */
+    public static FloatMatrix pdist(float[][] x, boolean squared) {
+        FloatMatrix D = new FloatMatrix(x.length, x.length);
+        pdist(x, squared, TILE_SIZE, (row, col, m, n, d) -> {
+            for (int i = 0; i < m; i++) {
+                for (int j = 0; j < n; j++) {
+                    D.set(row + i, col + j, d[i * n + j]);
+                    D.set(col + j, row + i, d[i * n + j]);
+                }
+            }
+        });
+        return D;
+    }
+
+    /**
+     * Computes the distance matrix between the rows of x and the rows of y
+     * in tiles.
+     * @param x the data matrix of which each row is a sample.
+     * @param y the data matrix of which each row is a sample.
+     * @param squared if true, computes the squared Euclidean distances.
+     * @param size the number of rows/columns of tiles.
+     * @param tile the consumer of tiles.
+     */
+    public static void cdist(double[][] x, double[][] y, boolean squared, int size, Tile tile) {
+        compute(x, y, false, squared, size, tile);
+    }
+
+    /**
+     * Computes the distance matrix between the rows of x and the rows of y
+     * in tiles.
+     * @param x the data matrix of which each row is a sample.
+     * @param y the data matrix of which each row is a sample.
+     * @param squared if true, computes the squared Euclidean distances.
+     * @param size the number of rows/columns of tiles.
+     * @param tile the consumer of tiles.
+     */
+    public static void cdist(float[][] x, float[][] y, boolean squared, int size, FloatTile tile) {
+        compute(x, y, false, squared, size, tile);
+    }
+
+    /**
+     * Computes the pairwise distance matrix of the rows of x in tiles.
+     * As the matrix is symmetric, only the tiles on and below the diagonal
+     * are computed, i.e. the column index of tile is not greater than its
+     * row index. For a tile on the diagonal, the whole square is passed
+     * to the consumer.
+     * @param x the data matrix of which each row is a sample.
+     * @param squared if true, computes the squared Euclidean distances.
+     * @param size the number of rows/columns of tiles.
+     * @param tile the consumer of tiles.
+     */
+    public static void pdist(double[][] x, boolean squared, int size, Tile tile) {
+        compute(x, x, true, squared, size, tile);
+    }
+
+    /**
+     * Computes the pairwise distance matrix of the rows of x in tiles.
+     * As the matrix is symmetric, only the tiles on and below the diagonal
+     * are computed, i.e. the column index of tile is not greater than its
+     * row index. For a tile on the diagonal, the whole square is passed
+     * to the consumer.
+     * @param x the data matrix of which each row is a sample.
+     * @param squared if true, computes the squared Euclidean distances.
+     * @param size the number of rows/columns of tiles.
+     * @param tile the consumer of tiles.
+     */
+    public static void pdist(float[][] x, boolean squared, int size, FloatTile tile) {
+        compute(x, x, true, squared, size, tile);
+    }
+
+    /**
+     * Checks the arguments and returns the dimension of data.
+     */
+    private static int dimension(int nx, int ny, int px, int py, int size) {
+        if (nx == 0 || ny == 0) {
+            throw new IllegalArgumentException("Empty data");
+        }
+
+        if (px != py) {
+            throw new IllegalArgumentException(String.format("The dimensions of x and y are different: %d != %d", px, py));
+        }
+
+        if (size <= 0) {
+            throw new IllegalArgumentException("Invalid tile size: " + size);
+        }
+
+        return px;
+    }
+
+    /**
+     * Packs the rows into a row major array.
+     */
+    private static double[] pack(double[][] x, int from, int to, int p, double[] norm) {
+        double[] a = new double[(to - from) * p];
+        for (int i = from; i < to; i++) {
+            double[] xi = x[i];
+            if (xi.length != p) {
+                throw new IllegalArgumentException(String.format("Row %d has dimension %d, expected %d", i, xi.length, p));
+            }
+            System.arraycopy(xi, 0, a, (i - from) * p, p);
+            norm[i] = MathEx.dot(xi, xi);
+        }
+        return a;
+    }
+
+    /**
+     * Packs the rows into a row major array.
+     */
+    private static float[] pack(float[][] x, int from, int to, int p, float[] norm) {
+        float[] a = new float[(to - from) * p];
+        for (int i = from; i < to; i++) {
+            float[] xi = x[i];
+            if (xi.length != p) {
+                throw new IllegalArgumentException(String.format("Row %d has dimension %d, expected %d", i, xi.length, p));
+            }
+            System.arraycopy(xi, 0, a, (i - from) * p, p);
+            norm[i] = MathEx.dot(xi, xi);
+        }
+        return a;
+    }
+
+    /**
+     * Computes the distance tiles.
+     * @param symmetric true if y is same as x and only the lower tiles are needed.
+     */
+    private static void compute(double[][] x, double[][] y, boolean symmetric, boolean squared, int size, Tile tile) {
+        int nx = x.length;
+        int ny = y.length;
+        int p = dimension(nx, ny, x[0].length, y[0].length, size);
+
+        int rowBlocks = (nx + size - 1) / size;
+        int colBlocks = (ny + size - 1) / size;
+
+        // Packs the blocks of y once, which are shared by all row blocks.
+        double[] ynorm = new double[ny];
+        double[][] yblocks = new double[colBlocks][];
+        IntStream.range(0, colBlocks).parallel().forEach(b ->
+            yblocks[b] = pack(y, b * size, Math.min(ny, (b + 1) * size), p, ynorm)
+        );
+
+        double[] xnorm = symmetric ? ynorm : new double[nx];
+        IntStream.range(0, rowBlocks).parallel().forEach(a -> {
+            int row = a * size;
+            int m = Math.min(nx, row + size) - row;
+            double[] xa = symmetric ? yblocks[a] : pack(x, row, row + m, p, xnorm);
+            double[] d = new double[m * size];
+
+            int cols = symmetric ? a + 1 : colBlocks;
+            for (int b = 0; b < cols; b++) {
+                int col = b * size;
+                int n = Math.min(ny, col + size) - col;
+
+                BLAS.engine.gemm(Layout.ROW_MAJOR, Transpose.NO_TRANSPOSE, Transpose.TRANSPOSE,
+                        m, n, p, -2.0, xa, p, yblocks[b], p, 0.0, d, n);
+
+                for (int i = 0; i < m; i++) {
+                    double xi = xnorm[row + i];
+                    for (int j = 0, k = i * n; j < n; j++, k++) {
+                        double dk = Math.max(0.0, d[k] + xi + ynorm[col + j]);
+                        d[k] = squared ? dk : Math.sqrt(dk);
+                    }
+                }
+
+                if (symmetric && a == b) {
+                    for (int i = 0; i < m; i++) {
+                        d[i * n + i] = 0.0;
+                    }
+                }
+
+                tile.accept(row, col, m, n, d);
+            }
+        });
+    }
+
+    /**
+     * Computes the distance tiles.
+     * @param symmetric true if y is same as x and only the lower tiles are needed.
+     */
+    private static void compute(float[][] x, float[][] y, boolean symmetric, boolean squared, int size, FloatTile tile) {
+        int nx = x.length;
+        int ny = y.length;
+        int p = dimension(nx, ny, x[0].length, y[0].length, size);
+
+        int rowBlocks = (nx + size - 1) / size;
+        int colBlocks = (ny + size - 1) / size;
+
+        // Packs the blocks of y once, which are shared by all row blocks.
+        float[] ynorm = new float[ny];
+        float[][] yblocks = new float[colBlocks][];
+        IntStream.range(0, colBlocks).parallel().forEach(b ->
+            yblocks[b] = pack(y, b * size, Math.min(ny, (b + 1) * size), p, ynorm)
+        );
+
+        float[] xnorm = symmetric ? ynorm : new float[nx];
+        IntStream.range(0, rowBlocks).parallel().forEach(a -> {
+            int row = a * size;
+            int m = Math.min(nx, row + size) - row;
+            float[] xa = symmetric ? yblocks[a] : pack(x, row, row + m, p, xnorm);
+            float[] d = new float[m * size];
+
+            int cols = symmetric ? a + 1 : colBlocks;
+            for (int b = 0; b < cols; b++) {
+                int col = b * size;
+                int n = Math.min(ny, col + size) - col;
+
+                BLAS.engine.gemm(Layout.ROW_MAJOR, Transpose.NO_TRANSPOSE, Transpose.TRANSPOSE,
+                        m, n, p, -2.0f, xa, p, yblocks[b], p, 0.0f, d, n);
+
+                for (int i = 0; i < m; i++) {
+                    float xi = xnorm[row + i];
+                    for (int j = 0, k = i * n; j < n; j++, k++) {
+                        float dk = Math.max(0.0f, d[k] + xi + ynorm[col + j]);
+                        d[k] = squared ? dk : (float) Math.sqrt(dk);
+                    }
+                }
+
+                if (symmetric && a == b) {
+                    for (int i = 0; i < m; i++) {
+                        d[i * n + i] = 0.0f;
+                    }
+                }
+
+                tile.accept(row, col, m, n, d);
+            }
+        });
+    }
+}
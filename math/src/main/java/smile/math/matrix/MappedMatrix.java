@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.math.matrix;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import smile.math.blas.Layout;
+import smile.math.blas.Transpose;
+import static smile.math.blas.Layout.*;
+import static smile.math.blas.Transpose.*;
+
+/**
+ * Dense matrix of double precision values backed by a memory-mapped
+ * matrix file. Unlike {@link Matrix#mmap(Path, FileChannel.MapMode)},
+ * the file is mapped in segments of 1 GB so that the size of matrix is
+ * only limited by the address space. As the storage is not contiguous,
+ * the matrix-vector multiplication is done in Java rather than native
+ * BLAS, which makes it suitable for the iterative algorithms such as
+ * Lanczos and ARPACK on the multi-GB design matrices.
+ * <p>
+ * A serialized matrix consists of the file path and the mapping mode
+ * rather than the data. The file is mapped again when the matrix is
+ * deserialized. Note that the changes of a copy-on-write mapping, i.e.
+ * in PRIVATE mode, are not serialized.
+ *
+ * @author Haifeng Li
+ */
+public class MappedMatrix extends DMatrix {
+    private static final long serialVersionUID = 2L;
+
+    /**
+     * The memory-mapped matrix file.
+     */
+    final transient MatrixFile file;
+
+    /**
+     * Constructor.
+     * @param file the memory-mapped matrix file.
+     */
+    MappedMatrix(MatrixFile file) {
+        this.file = file;
+    }
+
+    /**
+     * Creates a matrix file of zeros and returns the matrix backed by
+     * the memory-mapped file. The changes to the matrix are written
+     * to the file. An existing file will be overwritten.
+     *
+     * @param path the file path.
+     * @param layout the matrix layout.
+     * @param m the number of rows.
+     * @param n the number of columns.
+     * @return the memory-mapped matrix.
+     * @throws IOException when fails to create or map the file.
+     */
+    public static MappedMatrix create(Path path, Layout layout, int m, int n) throws IOException {
+        return new MappedMatrix(MatrixFile.create(path, Double.BYTES, layout, m, n, MatrixFile.SHIFT));
+    }
+
+    /**
+     * Returns the matrix backed by a memory-mapped matrix file, which is
+     * created by <code>create(path, layout, m, n)</code> or
+     * <code>Matrix.mmap(path, layout, m, n)</code>.
+     *
+     * @param path the file path.
+     * @param mode the mapping mode.
+     * @return the memory-mapped matrix.
+     * @throws IOException when fails to read or map the file.
+     */
+    public static MappedMatrix open(Path path, FileChannel.MapMode mode) throws IOException {
+        return new MappedMatrix(MatrixFile.open(path, mode, Double.BYTES, MatrixFile.SHIFT));
+    }
+
+    @Override
+    public int nrow() {
+        return file.m;
+    }
+
+    @Override
+    public int ncol() {
+        return file.n;
+    }
+
+    @Override
+    public long size() {
+        return (long) file.m * file.n;
+    }
+
+    /**
+     * Returns the matrix layout.
+     * @return the matrix layout.
+     */
+    public Layout layout() {
+        return file.layout;
+    }
+
+    @Override
+    public double get(int i, int j) {
+        return file.getDouble(file.offset(i, j));
+    }
+
+    @Override
+    public MappedMatrix set(int i, int j, double x) {
+        file.putDouble(file.offset(i, j), x);
+        return this;
+    }
+
+    @Override
+    public void mv(Transpose trans, double alpha, double[] x, double beta, double[] y) {
+        int m = file.m;
+        int n = file.n;
+        int k = trans == NO_TRANSPOSE ? m : n;
+        if (beta == 0.0) {
+            Arrays.fill(y, 0, k, 0.0);
+        } else if (beta != 1.0) {
+            for (int i = 0; i < k; i++) {
+                y[i] *= beta;
+            }
+        }
+
+        // Walks the storage sequentially. The vectors are the columns
+        // in COL_MAJOR layout and the rows in ROW_MAJOR layout.
+        int nvec = file.layout == COL_MAJOR ? n : m;
+        int len = file.layout == COL_MAJOR ? m : n;
+        long stride = (long) file.ld * Double.BYTES;
+        if ((file.layout == COL_MAJOR) == (trans == NO_TRANSPOSE)) {
+            for (int v = 0; v < nvec; v++) {
+                double a = alpha * x[v];
+                if (a == 0.0) continue;
+                long offset = v * stride;
+                for (int p = 0; p < len; p++, offset += Double.BYTES) {
+                    y[p] += a * file.getDouble(offset);
+                }
+            }
+        } else {
+            for (int v = 0; v < nvec; v++) {
+                double dot = 0.0;
+                long offset = v * stride;
+                for (int p = 0; p < len; p++, offset += Double.BYTES) {
+                    dot += x[p] * file.getDouble(offset);
+                }
+                y[v] += alpha * dot;
+            }
+        }
+    }
+
+    @Override
+    public void mv(double[] work, int inputOffset, int outputOffset) {
+        double[] x = Arrays.copyOfRange(work, inputOffset, inputOffset + file.n);
+        double[] y = new double[file.m];
+        mv(NO_TRANSPOSE, 1.0, x, 0.0, y);
+        System.arraycopy(y, 0, work, outputOffset, file.m);
+    }
+
+    @Override
+    public void tv(double[] work, int inputOffset, int outputOffset) {
+        double[] x = Arrays.copyOfRange(work, inputOffset, inputOffset + file.m);
+        double[] y = new double[file.n];
+        mv(TRANSPOSE, 1.0, x, 0.0, y);
+        System.arraycopy(y, 0, work, outputOffset, file.n);
+    }
+
+    /**
+     * Replaces the matrix with the path and mapping mode of matrix file
+     * in serialization.
+     * @return the serialized form.
+     */
+    private Object writeReplace() {
+        return new Ref(file.path.toAbsolutePath().toString(), file.mode.toString());
+    }
+
+    /** The serialized form of memory-mapped matrix. */
+    private static class Ref implements Serializable {
+        private static final long serialVersionUID = 2L;
+        /** The file path. */
+        private final String path;
+        /** The name of mapping mode. */
+        private final String mode;
+
+        /** Constructor. */
+        Ref(String path, String mode) {
+            this.path = path;
+            this.mode = mode;
+        }
+
+        /**
+         * Maps the matrix file again in deserialization.
+         * @return the memory-mapped matrix.
+         */
+        private Object readResolve() throws ObjectStreamException {
+            try {
+                return open(Paths.get(path), MatrixFile.mode(mode));
+            } catch (IOException ex) {
+                InvalidObjectException e = new InvalidObjectException("Failed to map matrix file " + path + ": " + ex.getMessage());
+                e.initCause(ex);
+                throw e;
+            }
+        }
+    }
+}
@@ -22,6 +22,8 @@ import java.io.ObjectOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
 import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
 import java.nio.IntBuffer;
 import java.util.Arrays;
 
@@ -229,6 +231,71 @@ public class Matrix extends DMatrix {
         }
     }
 
+    /**
+     * Creates a zero matrix stored in a direct (off-heap) buffer of
+     * native byte order, which is passed to native BLAS and LAPACK
+     * without copying. The buffer is not subject to the Java heap
+     * size limit.
+     *
+     * @param layout the matrix layout.
+     * @param m the number of rows.
+     * @param n the number of columns.
+     * @return the matrix.
+     */
+    public static Matrix direct(Layout layout, int m, int n) {
+        int ld = layout == COL_MAJOR ? ld(m) : ld(n);
+        DoubleBuffer A = MatrixFile.allocateDirect(Double.BYTES, layout, m, n, ld).asDoubleBuffer();
+        return of(layout, m, n, ld, A);
+    }
+
+    /**
+     * Creates a matrix file of zeros and returns the matrix backed by
+     * the memory-mapped file. The changes to the matrix are written
+     * to the file. An existing file will be overwritten.
+     * <p>
+     * Note that the size of matrix storage is limited to
+     * 2<sup>31</sup>-1 bytes. Larger matrix files are mapped in
+     * segments by {@link MappedMatrix}.
+     *
+     * @param path the file path.
+     * @param layout the matrix layout.
+     * @param m the number of rows.
+     * @param n the number of columns.
+     * @return the memory-mapped matrix.
+     * @throws IOException when fails to create or map the file.
+     */
+    public static Matrix mmap(Path path, Layout layout, int m, int n) throws IOException {
+        MatrixFile file = MatrixFile.create(path, Double.BYTES, layout, m, n);
+        return of(file.layout, file.m, file.n, file.ld, file.buffer().asDoubleBuffer());
+    }
+
+    /**
+     * Returns the matrix backed by a memory-mapped matrix file, which is
+     * created by <code>mmap(path, layout, m, n)</code>. The data are
+     * loaded from disk on demand by the operating system so that the
+     * file is opened instantly and may be shared by multiple processes.
+     * <p>
+     * With READ_ONLY mode, the matrix cannot be modified. Note that the
+     * operations that overwrite the matrix in place by native LAPACK
+     * (e.g. <code>lu(true)</code>) must not be applied to a read-only
+     * matrix. With READ_WRITE mode, the changes are written back to the
+     * file and visible to other processes mapping the same file. With
+     * PRIVATE mode, the changes are copy-on-write and private to this
+     * matrix.
+     * <p>
+     * The matrix files larger than 2<sup>31</sup>-1 bytes cannot be
+     * mapped in a single buffer and should be opened by {@link MappedMatrix}.
+     *
+     * @param path the file path.
+     * @param mode the mapping mode.
+     * @return the memory-mapped matrix.
+     * @throws IOException when fails to read or map the file.
+     */
+    public static Matrix mmap(Path path, FileChannel.MapMode mode) throws IOException {
+        MatrixFile file = MatrixFile.open(path, mode, Double.BYTES);
+        return of(file.layout, file.m, file.n, file.ld, file.buffer().asDoubleBuffer());
+    }
+
     /**
      * Returns a random matrix of standard normal distribution.
      * @param m the number of rows.
@@ -690,7 +757,9 @@ public class Matrix extends DMatrix {
 
         int offset = index(i, j);
         int length = index(k, l) - offset + 1;
-        DoubleBuffer B = DoubleBuffer.wrap(A.array(), offset, length);
+        DoubleBuffer B = A.duplicate();
+        B.limit(offset + length);
+        B.position(offset);
 
         return of(layout(),k - i + 1, l - j + 1, ld, B);
     }
@@ -706,8 +775,12 @@ public class Matrix extends DMatrix {
                     set(i, j, x);
                 }
             }
-        } else {
+        } else if (A.hasArray()) {
             Arrays.fill(A.array(), x);
+        } else {
+            for (int i = 0; i < A.capacity(); i++) {
+                A.put(i, x);
+            }
         }
     }
 
@@ -0,0 +1,376 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.math.matrix;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import smile.math.blas.Layout;
+
+/**
+ * The off-heap storage of dense matrices. A matrix file consists of a
+ * 32-byte header followed by the matrix elements in the byte order
+ * recorded in the header. The header contains the magic number, the
+ * element size, the layout, the byte order, the number of rows and
+ * columns, and the leading dimension. Because the elements start at
+ * a multiple of 8 bytes of the page-aligned mapping, the memory-mapped
+ * buffer can be passed to native BLAS and LAPACK without copying.
+ * <p>
+ * A Java buffer is indexed by int so that a single mapping is limited
+ * to 2<sup>31</sup>-1 bytes. The elements of larger files are mapped
+ * in multiple segments of 2<sup>SHIFT</sup> bytes and the byte offset
+ * of an element is split into the segment index {@code offset >>> shift}
+ * and the position {@code offset & mask} in the segment. As the element
+ * size divides the segment size, no element straddles two segments.
+ * Only the matrix files of a single segment in native byte order can be
+ * handed to native BLAS and LAPACK.
+ *
+ * @author Haifeng Li
+ */
+class MatrixFile {
+    /** The magic number of matrix file, i.e. "SMIL" in ASCII. */
+    private static final int MAGIC = 0x534D494C;
+    /** The size of file header. */
+    static final int HEADER = 32;
+    /** The number of bits of segment size, i.e. 1 GB per segment. */
+    static final int SHIFT = 30;
+
+    /** The file path. */
+    final Path path;
+    /** The mapping mode. */
+    final FileChannel.MapMode mode;
+    /** The element size in bytes. */
+    final int elementSize;
+    /** The matrix layout. */
+    final Layout layout;
+    /** The number of rows. */
+    final int m;
+    /** The number of columns. */
+    final int n;
+    /** The leading dimension. */
+    final int ld;
+    /** The number of bits of segment size. */
+    final int shift;
+    /** The mask of position in a segment. */
+    final long mask;
+    /** The storage of matrix elements. */
+    final ByteBuffer[] segments;
+
+    /**
+     * Constructor.
+     */
+    private MatrixFile(Path path, FileChannel.MapMode mode, int elementSize, Layout layout, int m, int n, int ld, int shift, ByteBuffer[] segments) {
+        this.path = path;
+        this.mode = mode;
+        this.elementSize = elementSize;
+        this.layout = layout;
+        this.m = m;
+        this.n = n;
+        this.ld = ld;
+        this.shift = shift;
+        this.mask = (1L << shift) - 1;
+        this.segments = segments;
+    }
+
+    /**
+     * Returns the buffer of matrix elements for native BLAS and LAPACK.
+     * @return the buffer of matrix elements.
+     */
+    ByteBuffer buffer() {
+        if (segments.length > 1) {
+            throw new IllegalArgumentException(String.format("Matrix %d x %d exceeds the maximum buffer size, use MappedMatrix or FloatMappedMatrix instead", m, n));
+        }
+
+        // Native BLAS reads the raw bytes in native byte order.
+        ByteOrder order = segments[0].order();
+        if (order != ByteOrder.nativeOrder()) {
+            throw new IllegalArgumentException(String.format("Matrix file %s of %s byte order cannot be passed to native BLAS, use MappedMatrix or FloatMappedMatrix instead", path, order));
+        }
+        return segments[0];
+    }
+
+    /**
+     * Returns the byte offset of matrix element.
+     * @param i the row index.
+     * @param j the column index.
+     * @return the byte offset of matrix element.
+     */
+    long offset(int i, int j) {
+        long index = layout == Layout.COL_MAJOR ? (long) j * ld + i : (long) i * ld + j;
+        return index * elementSize;
+    }
+
+    /**
+     * Returns the double value at given byte offset.
+     * @param offset the byte offset.
+     * @return the double value.
+     */
+    double getDouble(long offset) {
+        return segments[(int) (offset >>> shift)].getDouble((int) (offset & mask));
+    }
+
+    /**
+     * Writes the double value at given byte offset.
+     * @param offset the byte offset.
+     * @param x the double value.
+     */
+    void putDouble(long offset, double x) {
+        segments[(int) (offset >>> shift)].putDouble((int) (offset & mask), x);
+    }
+
+    /**
+     * Returns the float value at given byte offset.
+     * @param offset the byte offset.
+     * @return the float value.
+     */
+    float getFloat(long offset) {
+        return segments[(int) (offset >>> shift)].getFloat((int) (offset & mask));
+    }
+
+    /**
+     * Writes the float value at given byte offset.
+     * @param offset the byte offset.
+     * @param x the float value.
+     */
+    void putFloat(long offset, float x) {
+        segments[(int) (offset >>> shift)].putFloat((int) (offset & mask), x);
+    }
+
+    /**
+     * Returns the size of storage in bytes.
+     * @param elementSize the element size in bytes.
+     * @param layout the matrix layout.
+     * @param m the number of rows.
+     * @param n the number of columns.
+     * @param ld the leading dimension.
+     * @return the size of storage in bytes.
+     */
+    private static long length(int elementSize, Layout layout, int m, int n, int ld) {
+        if (m <= 0 || n <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid matrix size: %d x %d", m, n));
+        }
+
+        return (long) ld * (layout == Layout.COL_MAJOR ? n : m) * elementSize;
+    }
+
+    /**
+     * Returns the number of bits of segment size to map the storage.
+     * The storage that fits in a single buffer is not segmented so that
+     * it can be passed to native BLAS and LAPACK.
+     * @param length the size of storage in bytes.
+     * @return the number of bits of segment size.
+     */
+    private static int shift(long length) {
+        return length <= Integer.MAX_VALUE - HEADER ? 31 : SHIFT;
+    }
+
+    /**
+     * Maps the storage in segments.
+     * @param channel the file channel.
+     * @param mode the mapping mode.
+     * @param order the byte order of elements.
+     * @param length the size of storage in bytes.
+     * @param shift the number of bits of segment size.
+     * @return the memory-mapped segments.
+     * @throws IOException when fails to map the file.
+     */
+    private static ByteBuffer[] map(FileChannel channel, FileChannel.MapMode mode, ByteOrder order, long length, int shift) throws IOException {
+        long segment = 1L << shift;
+        int k = (int) ((length + segment - 1) >>> shift);
+        ByteBuffer[] segments = new ByteBuffer[k];
+        for (int i = 0; i < k; i++) {
+            long position = i * segment;
+            MappedByteBuffer buffer = channel.map(mode, HEADER + position, Math.min(segment, length - position));
+            segments[i] = buffer.order(order);
+        }
+        return segments;
+    }
+
+    /**
+     * Allocates a direct buffer of native byte order.
+     * @param elementSize the element size in bytes.
+     * @param layout the matrix layout.
+     * @param m the number of rows.
+     * @param n the number of columns.
+     * @param ld the leading dimension.
+     * @return the direct buffer.
+     */
+    static ByteBuffer allocateDirect(int elementSize, Layout layout, int m, int n, int ld) {
+        long size = length(elementSize, layout, m, n, ld);
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("Matrix %d x %d exceeds the maximum buffer size", m, n));
+        }
+        return ByteBuffer.allocateDirect((int) size).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Creates a matrix file of zeros and maps it into memory in read-write
+     * mode. An existing file will be overwritten. The elements are stored
+     * in native byte order without padding of leading dimension.
+     *
+     * @param path the file path.
+     * @param elementSize the element size in bytes.
+     * @param layout the matrix layout.
+     * @param m the number of rows.
+     * @param n the number of columns.
+     * @return the mapped matrix file.
+     * @throws IOException when fails to create or map the file.
+     */
+    static MatrixFile create(Path path, int elementSize, Layout layout, int m, int n) throws IOException {
+        int ld = layout == Layout.COL_MAJOR ? m : n;
+        return create(path, elementSize, layout, m, n, shift(length(elementSize, layout, m, n, ld)));
+    }
+
+    /**
+     * Creates a matrix file of zeros and maps it into memory in segments
+     * of given size.
+     *
+     * @param path the file path.
+     * @param elementSize the element size in bytes.
+     * @param layout the matrix layout.
+     * @param m the number of rows.
+     * @param n the number of columns.
+     * @param shift the number of bits of segment size.
+     * @return the mapped matrix file.
+     * @throws IOException when fails to create or map the file.
+     */
+    static MatrixFile create(Path path, int elementSize, Layout layout, int m, int n, int shift) throws IOException {
+        int ld = layout == Layout.COL_MAJOR ? m : n;
+        long length = length(elementSize, layout, m, n, ld);
+        ByteOrder order = ByteOrder.nativeOrder();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            header.putInt(MAGIC);
+            header.put((byte) elementSize);
+            header.put((byte) (layout == Layout.COL_MAJOR ? 0 : 1));
+            header.put((byte) (order == ByteOrder.LITTLE_ENDIAN ? 1 : 0));
+            header.put((byte) 0);
+            header.putInt(m);
+            header.putInt(n);
+            header.putInt(ld);
+            header.rewind();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+
+            // Mapping beyond the end of file extends the file with zeros.
+            ByteBuffer[] segments = map(channel, FileChannel.MapMode.READ_WRITE, order, length, shift);
+            return new MatrixFile(path, FileChannel.MapMode.READ_WRITE, elementSize, layout, m, n, ld, shift, segments);
+        }
+    }
+
+    /**
+     * Maps an existing matrix file into memory. The mapping remains valid
+     * until the buffer is garbage collected. The file may be mapped by
+     * multiple processes at the same time. With READ_WRITE mode, the
+     * changes are visible to other processes that map the same file.
+     * With PRIVATE mode, the changes are copy-on-write and not written
+     * back to the file.
+     *
+     * @param path the file path.
+     * @param mode the mapping mode.
+     * @param elementSize the expected element size in bytes.
+     * @return the mapped matrix file.
+     * @throws IOException when fails to read or map the file.
+     */
+    static MatrixFile open(Path path, FileChannel.MapMode mode, int elementSize) throws IOException {
+        return open(path, mode, elementSize, 0);
+    }
+
+    /**
+     * Maps an existing matrix file into memory in segments of given size.
+     *
+     * @param path the file path.
+     * @param mode the mapping mode.
+     * @param elementSize the expected element size in bytes.
+     * @param shift the number of bits of segment size. If 0, the file
+     *              is mapped in a single buffer whenever possible.
+     * @return the mapped matrix file.
+     * @throws IOException when fails to read or map the file.
+     */
+    static MatrixFile open(Path path, FileChannel.MapMode mode, int elementSize, int shift) throws IOException {
+        // Copy-on-write mapping requires the channel opened for writing too.
+        StandardOpenOption[] options = mode == FileChannel.MapMode.READ_ONLY ?
+                new StandardOpenOption[]{StandardOpenOption.READ} :
+                new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE};
+
+        try (FileChannel channel = FileChannel.open(path, options)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new IOException("Truncated matrix file header: " + path);
+                }
+            }
+            header.rewind();
+
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a matrix file: " + path);
+            }
+
+            int size = header.get();
+            if (size != elementSize) {
+                throw new IOException(String.format("Invalid element size %d of matrix file %s, expected: %d", size, path, elementSize));
+            }
+
+            Layout layout = header.get() == 0 ? Layout.COL_MAJOR : Layout.ROW_MAJOR;
+            ByteOrder order = header.get() == 1 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+            header.get();
+            int m = header.getInt();
+            int n = header.getInt();
+            int ld = header.getInt();
+
+            if (m <= 0 || n <= 0) {
+                throw new IOException(String.format("Invalid matrix size %d x %d of matrix file %s", m, n, path));
+            }
+
+            int minLd = layout == Layout.COL_MAJOR ? m : n;
+            if (ld < minLd) {
+                throw new IOException(String.format("Invalid leading dimension %d of %s matrix file %s, expected: >= %d", ld, layout, path, minLd));
+            }
+
+            long length = length(elementSize, layout, m, n, ld);
+            if (channel.size() < HEADER + length) {
+                throw new IOException(String.format("Truncated matrix file %s: %d bytes, expected: %d", path, channel.size(), HEADER + length));
+            }
+
+            if (shift == 0) shift = shift(length);
+            ByteBuffer[] segments = map(channel, mode, order, length, shift);
+            return new MatrixFile(path, mode, elementSize, layout, m, n, ld, shift, segments);
+        }
+    }
+
+    /**
+     * Returns the mapping mode of given name.
+     * @param name the name of mapping mode.
+     * @return the mapping mode.
+     */
+    static FileChannel.MapMode mode(String name) {
+        switch (name) {
+            case "READ_ONLY": return FileChannel.MapMode.READ_ONLY;
+            case "READ_WRITE": return FileChannel.MapMode.READ_WRITE;
+            case "PRIVATE": return FileChannel.MapMode.PRIVATE;
+            default: throw new IllegalArgumentException("Invalid mapping mode: " + name);
+        }
+    }
+}
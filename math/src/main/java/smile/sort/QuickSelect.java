@@ -91,6 +91,68 @@ public interface QuickSelect {
         }
     }
 
+    /**
+     * Given k in [0, n-1], returns an array value from arr such that k array
+     * values are less than or equal to the one returned. The input array will
+     * be rearranged to have this value in location x[k], with all smaller
+     * elements moved to x[0, k-1] (in arbitrary order) and all larger elements
+     * in x[k+1, n-1] (also in arbitrary order).
+     * @param x the array.
+     * @param k the ordinal index.
+     * @return the k-th smalles value.
+     */
+    static long select(long[] x, int k) {
+        int n = x.length;
+        int l = 0;
+        int ir = n - 1;
+
+        long a;
+        int i, j, mid;
+        for (;;) {
+            if (ir <= l + 1) {
+                if (ir == l + 1 && x[ir] < x[l]) {
+                    Sort.swap(x, l, ir);
+                }
+                return x[k];
+            } else {
+                mid = (l + ir) >> 1;
+                Sort.swap(x, mid, l + 1);
+                if (x[l] > x[ir]) {
+                    Sort.swap(x, l, ir);
+                }
+                if (x[l + 1] > x[ir]) {
+                    Sort.swap(x, l + 1, ir);
+                }
+                if (x[l] > x[l + 1]) {
+                    Sort.swap(x, l, l + 1);
+                }
+                i = l + 1;
+                j = ir;
+                a = x[l + 1];
+                for (;;) {
+                    do {
+                        i++;
+                    } while (x[i] < a);
+                    do {
+                        j--;
+                    } while (x[j] > a);
+                    if (j < i) {
+                        break;
+                    }
+                    Sort.swap(x, i, j);
+                }
+                x[l + 1] = x[j];
+                x[j] = a;
+                if (j >= k) {
+                    ir = j - 1;
+                }
+                if (j <= k) {
+                    l = i;
+                }
+            }
+        }
+    }
+
     /**
      * Given k in [0, n-1], returns an array value from arr such that k array
      * values are less than or equal to the one returned. The input array will
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.sort;
+
+import java.util.stream.IntStream;
+
+/**
+ * Parallel least significant digit (LSD) radix sort of primitive keys.
+ * Radix sort is a non-comparative sorting algorithm that sorts the keys
+ * digit by digit with counting sort. With 8-bit digits, it takes at most
+ * 8 linear passes on 64-bit keys. The keys are shifted by the minimum
+ * so that the passes on the leading zero digits of the value range are
+ * skipped, e.g. only one or two passes on small integers. In each pass,
+ * the partitions of keys are counted and scattered in parallel.
+ * <p>
+ * Radix sort is stable, i.e. it maintains the relative order of elements
+ * with equal keys. Therefore, the elements can be sorted by multiple keys
+ * by sorting on the least significant key first. Rather than reordering
+ * the keys, this class sorts the permutation of elements, which can be
+ * used to gather any associated data.
+ *
+ * @author Haifeng Li
+ */
+public class RadixSort {
+    /** The number of bits of a digit. */
+    private static final int BITS = 8;
+    /** The number of buckets of a digit. */
+    private static final int RADIX = 1 << BITS;
+    /** The minimum number of elements in a parallel partition. */
+    private static final int MIN_PARTITION_SIZE = 65536;
+
+    /** Private constructor to prevent instance creation. */
+    private RadixSort() {
+
+    }
+
+    /**
+     * Returns the permutation of elements that sorts the keys in
+     * ascending order. The ties are in the original order.
+     * @param key the keys.
+     * @return the permutation.
+     */
+    public static int[] order(int[] key) {
+        long[] x = new long[key.length];
+        for (int i = 0; i < key.length; i++) x[i] = key[i];
+        return order(x);
+    }
+
+    /**
+     * Returns the permutation of elements that sorts the keys in
+     * ascending order. The ties are in the original order.
+     * @param key the keys.
+     * @return the permutation.
+     */
+    public static int[] order(long[] key) {
+        int[] index = IntStream.range(0, key.length).toArray();
+        sort(key, index);
+        return index;
+    }
+
+    /**
+     * Returns the permutation of elements that sorts the keys in
+     * ascending order of {@link Double#compare}, i.e. -0.0 is less
+     * than 0.0 and NaN is greater than any other value. The ties
+     * are in the original order.
+     * @param key the keys.
+     * @return the permutation.
+     */
+    public static int[] order(double[] key) {
+        long[] x = new long[key.length];
+        for (int i = 0; i < key.length; i++) x[i] = key(key[i]);
+        return order(x);
+    }
+
+    /**
+     * Returns the long integer key of which the signed order is same
+     * as the order of {@link Double#compare}.
+     * @param x a double value.
+     * @return the sortable key.
+     */
+    public static long key(double x) {
+        long bits = Double.doubleToLongBits(x);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    /**
+     * Stably sorts the permutation of elements by their keys in ascending
+     * order, i.e. rearranges the permutation so that
+     * {@code key[index[i]] <= key[index[i+1]]}. The elements with equal
+     * keys keep their relative order in the input permutation.
+     * @param key the keys of elements.
+     * @param index the permutation of (a subset of) elements to sort.
+     */
+    public static void sort(long[] key, int[] index) {
+        int n = index.length;
+        if (n < 2) return;
+
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i : index) {
+            long k = key[i];
+            if (k < min) min = k;
+            if (k > max) max = k;
+        }
+
+        // The number of digits of the range, which is unsigned.
+        int digits = (64 - Long.numberOfLeadingZeros(max - min) + BITS - 1) / BITS;
+        if (digits == 0) return;
+
+        long[] k1 = new long[n];
+        long[] k2 = new long[n];
+        int[] i1 = index;
+        int[] i2 = new int[n];
+        long offset = min;
+        IntStream.range(0, n).parallel().forEach(i -> k1[i] = key[index[i]] - offset);
+
+        int np = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), n / MIN_PARTITION_SIZE));
+        int[][] count = new int[np][RADIX];
+        long[] ka = k1, kb = k2;
+        for (int d = 0; d < digits; d++) {
+            int shift = d * BITS;
+            long[] src = ka, dst = kb;
+            int[] isrc = i1, idst = i2;
+
+            IntStream.range(0, np).parallel().forEach(p -> {
+                int[] c = count[p];
+                java.util.Arrays.fill(c, 0);
+                for (int i = from(n, np, p), to = from(n, np, p + 1); i < to; i++) {
+                    c[(int) (src[i] >>> shift) & (RADIX - 1)]++;
+                }
+            });
+
+            // The start position of each bucket in each partition.
+            int pos = 0;
+            for (int b = 0; b < RADIX; b++) {
+                for (int p = 0; p < np; p++) {
+                    int c = count[p][b];
+                    count[p][b] = pos;
+                    pos += c;
+                }
+            }
+
+            IntStream.range(0, np).parallel().forEach(p -> {
+                int[] c = count[p];
+                for (int i = from(n, np, p), to = from(n, np, p + 1); i < to; i++) {
+                    int j = c[(int) (src[i] >>> shift) & (RADIX - 1)]++;
+                    dst[j] = src[i];
+                    idst[j] = isrc[i];
+                }
+            });
+
+            ka = dst;
+            kb = src;
+            i1 = idst;
+            i2 = isrc;
+        }
+
+        if (i1 != index) {
+            System.arraycopy(i1, 0, index, 0, n);
+        }
+    }
+
+    /** Returns the first element of a partition. */
+    private static int from(int n, int np, int p) {
+        return (int) ((long) n * p / np);
+    }
+}
@@ -17,6 +17,7 @@
 
 package smile.math;
 
+import java.util.Arrays;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -486,6 +487,61 @@ public class MathExTest {
         assertEquals(3.350726, MathEx.dot(x, y), 1E-6);
     }
 
+    @Test
+    public void testBatchDistance() {
+        System.out.println("batch distance and dot");
+        MathEx.setSeed(19650218);
+        for (int p : new int[]{2, 3, 4, 5, 17, 256}) {
+            double[] x = MathEx.random(p);
+            double[][] y = new double[11][];
+            float[] xf = new float[p];
+            float[][] yf = new float[y.length][p];
+            for (int j = 0; j < p; j++) xf[j] = (float) x[j];
+            for (int i = 0; i < y.length; i++) {
+                y[i] = MathEx.random(p);
+                for (int j = 0; j < p; j++) yf[i][j] = (float) y[i][j];
+            }
+
+            double[] d = new double[y.length];
+            MathEx.squaredDistance(x, y, d);
+            for (int i = 0; i < y.length; i++) {
+                assertEquals(MathEx.squaredDistance(x, y[i]), d[i], 0.0);
+            }
+
+            Arrays.fill(d, -1.0);
+            MathEx.squaredDistance(x, y, 3, 10, d);
+            for (int i = 0; i < y.length; i++) {
+                assertEquals(i >= 3 && i < 10 ? MathEx.squaredDistance(x, y[i]) : -1.0, d[i], 0.0);
+            }
+
+            MathEx.distance(x, y, d);
+            for (int i = 0; i < y.length; i++) {
+                assertEquals(MathEx.distance(x, y[i]), d[i], 0.0);
+            }
+
+            MathEx.dot(x, y, d);
+            for (int i = 0; i < y.length; i++) {
+                assertEquals(MathEx.dot(x, y[i]), d[i], 0.0);
+            }
+
+            MathEx.squaredDistance(xf, yf, d);
+            for (int i = 0; i < y.length; i++) {
+                assertEquals(MathEx.squaredDistance(xf, yf[i]), d[i], 0.0);
+            }
+
+            MathEx.distance(xf, yf, d);
+            for (int i = 0; i < y.length; i++) {
+                assertEquals(MathEx.distance(xf, yf[i]), d[i], 0.0);
+            }
+
+            float[] df = new float[y.length];
+            MathEx.dot(xf, yf, df);
+            for (int i = 0; i < y.length; i++) {
+                assertEquals(MathEx.dot(xf, yf[i]), df[i], 0.0f);
+            }
+        }
+    }
+
     @Test
     public void testCov_doubleArr_doubleArr() {
         System.out.println("cov");
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.math;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import smile.math.matrix.FloatMatrix;
+import smile.math.matrix.Matrix;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Haifeng Li
+ */
+public class PairwiseDistanceTest {
+
+    double[][] x;
+    double[][] y;
+
+    public PairwiseDistanceTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+        MathEx.setSeed(19650218);
+        x = new double[300][];
+        y = new double[257][];
+        for (int i = 0; i < x.length; i++) x[i] = MathEx.random(10);
+        for (int i = 0; i < y.length; i++) y[i] = MathEx.random(10);
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testCdist() {
+        System.out.println("cdist");
+        Matrix D = PairwiseDistance.cdist(x, y, false);
+        Matrix D2 = PairwiseDistance.cdist(x, y, true);
+        for (int i = 0; i < x.length; i++) {
+            for (int j = 0; j < y.length; j++) {
+                assertEquals(MathEx.distance(x[i], y[j]), D.get(i, j), 1E-10);
+                assertEquals(MathEx.squaredDistance(x[i], y[j]), D2.get(i, j), 1E-10);
+            }
+        }
+    }
+
+    @Test
+    public void testPdist() {
+        System.out.println("pdist");
+        Matrix D = PairwiseDistance.pdist(x, false);
+        Matrix expected = MathEx.pdist(x);
+        for (int i = 0; i < x.length; i++) {
+            assertEquals(0.0, D.get(i, i), 0.0);
+            for (int j = 0; j < x.length; j++) {
+                assertEquals(expected.get(i, j), D.get(i, j), 1E-10);
+            }
+        }
+    }
+
+    @Test
+    public void testFloat() {
+        System.out.println("float");
+        float[][] xf = new float[x.length][10];
+        float[][] yf = new float[y.length][10];
+        for (int i = 0; i < x.length; i++) for (int j = 0; j < 10; j++) xf[i][j] = (float) x[i][j];
+        for (int i = 0; i < y.length; i++) for (int j = 0; j < 10; j++) yf[i][j] = (float) y[i][j];
+
+        FloatMatrix D = PairwiseDistance.cdist(xf, yf, false);
+        for (int i = 0; i < x.length; i++) {
+            for (int j = 0; j < y.length; j++) {
+                assertEquals(MathEx.distance(xf[i], yf[j]), D.get(i, j), 1E-5);
+            }
+        }
+
+        FloatMatrix P = PairwiseDistance.pdist(xf, true);
+        for (int i = 0; i < x.length; i++) {
+            for (int j = 0; j < x.length; j++) {
+                assertEquals(MathEx.squaredDistance(xf[i], xf[j]), P.get(i, j), 1E-5);
+            }
+        }
+    }
+
+    @Test
+    public void testTile() {
+        System.out.println("tile");
+        // Every element of the lower triangle including the diagonal
+        // should be visited exactly once.
+        int[][] count = new int[x.length][x.length];
+        AtomicInteger tiles = new AtomicInteger();
+        PairwiseDistance.pdist(x, false, 64, (row, col, m, n, d) -> {
+            assertTrue(col <= row);
+            assertTrue(m <= 64 && n <= 64);
+            tiles.incrementAndGet();
+            for (int i = 0; i < m; i++) {
+                for (int j = 0; j < n; j++) {
+                    count[row + i][col + j]++;
+                    assertEquals(MathEx.distance(x[row + i], x[col + j]), d[i * n + j], 1E-10);
+                }
+            }
+        });
+
+        // 5 row blocks of which 1 + 2 + 3 + 4 + 5 tiles.
+        assertEquals(15, tiles.get());
+        for (int i = 0; i < x.length; i++) {
+            for (int j = 0; j <= i; j++) {
+                assertEquals(1, count[i][j]);
+            }
+        }
+
+        AtomicInteger cells = new AtomicInteger();
+        PairwiseDistance.cdist(x, y, true, 100, (row, col, m, n, d) -> cells.addAndGet(m * n));
+        assertEquals(x.length * y.length, cells.get());
+    }
+}
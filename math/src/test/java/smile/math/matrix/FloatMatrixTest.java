@@ -26,6 +26,16 @@ import smile.math.MathEx;
 import smile.math.blas.Layout;
 import smile.math.blas.UPLO;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 
 import static smile.math.blas.Transpose.*;
@@ -158,6 +168,175 @@ public class FloatMatrixTest {
         assertEquals(0.3f, sub.get(1,1), 1E-6f);
     }
 
+    @Test
+    public void testDirect() {
+        System.out.println("direct");
+        FloatMatrix a = FloatMatrix.direct(Layout.COL_MAJOR, 3, 3);
+        assertTrue(a.A.isDirect());
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                a.set(i, j, A[i][j]);
+            }
+        }
+
+        float[] d = a.mv(b);
+        assertEquals(0.65, d[0], 1E-6f);
+        assertEquals(0.60, d[1], 1E-6f);
+        assertEquals(0.55, d[2], 1E-6f);
+
+        FloatMatrix sub = a.submatrix(1, 0, 2, 2);
+        assertTrue(sub.isSubmatrix());
+        d = sub.mv(b);
+        assertEquals(0.60, d[0], 1E-6f);
+        assertEquals(0.55, d[1], 1E-6f);
+
+        FloatMatrix t = FloatMatrix.direct(Layout.ROW_MAJOR, 3, 3);
+        t.fill(1.0f);
+        t.sub(a);
+        assertEquals(Layout.ROW_MAJOR, t.layout());
+        assertEquals(0.1, t.get(0, 0), 1E-6f);
+        assertEquals(0.7, t.get(2, 1), 1E-6f);
+    }
+
+    @Test
+    public void testMmap() throws Exception {
+        System.out.println("mmap");
+        Path path = Files.createTempFile("smile-matrix", ".bin");
+        path.toFile().deleteOnExit();
+
+        FloatMatrix a = FloatMatrix.mmap(path, Layout.ROW_MAJOR, 3, 3);
+        assertTrue(a.A.isDirect());
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                a.set(i, j, A[i][j]);
+            }
+        }
+
+        FloatMatrix ro = FloatMatrix.mmap(path, FileChannel.MapMode.READ_ONLY);
+        assertEquals(Layout.ROW_MAJOR, ro.layout());
+        assertEquals(3, ro.nrow());
+        assertEquals(3, ro.ncol());
+        assertTrue(MathEx.equals(A, ro.toArray(), 1E-6f));
+        float[] d = ro.mv(b);
+        assertEquals(0.65, d[0], 1E-6f);
+        assertEquals(0.60, d[1], 1E-6f);
+        assertEquals(0.55, d[2], 1E-6f);
+
+        // Copy-on-write mapping is not written back to the file.
+        FloatMatrix cow = FloatMatrix.mmap(path, FileChannel.MapMode.PRIVATE);
+        cow.set(0, 0, 2.0f);
+        assertEquals(2.0, cow.get(0, 0), 1E-6f);
+        assertEquals(0.9, ro.get(0, 0), 1E-6f);
+
+        // Shared mapping is visible to other mappings.
+        FloatMatrix rw = FloatMatrix.mmap(path, FileChannel.MapMode.READ_WRITE);
+        rw.set(0, 0, 3.0f);
+        assertEquals(3.0, ro.get(0, 0), 1E-6f);
+        assertEquals(3.0, a.get(0, 0), 1E-6f);
+    }
+
+    @Test
+    public void testMappedMatrix() throws Exception {
+        System.out.println("mapped matrix");
+        for (Layout layout : Layout.values()) {
+            Path path = Files.createTempFile("smile-matrix", ".bin");
+            path.toFile().deleteOnExit();
+
+            // 16-byte segments so that the columns/rows straddle segments.
+            int m = 7, n = 5;
+            FloatMappedMatrix a = new FloatMappedMatrix(MatrixFile.create(path, Float.BYTES, layout, m, n, 4));
+            assertTrue(a.file.segments.length > 1);
+            float[][] data = new float[m][n];
+            for (int i = 0; i < m; i++) {
+                for (int j = 0; j < n; j++) {
+                    data[i][j] = i + 0.1f * j;
+                    a.set(i, j, data[i][j]);
+                }
+            }
+
+            FloatMappedMatrix ro = new FloatMappedMatrix(MatrixFile.open(path, FileChannel.MapMode.READ_ONLY, Float.BYTES, 4));
+            assertEquals(layout, ro.layout());
+            assertEquals(m, ro.nrow());
+            assertEquals(n, ro.ncol());
+
+            float[] x = new float[n];
+            float[] y = new float[m];
+            for (int j = 0; j < n; j++) x[j] = j + 1;
+            for (int i = 0; i < m; i++) y[i] = i - 3;
+
+            float[] ax = ro.mv(x);
+            float[] ty = ro.tv(y);
+            for (int i = 0; i < m; i++) {
+                float dot = 0;
+                for (int j = 0; j < n; j++) {
+                    assertEquals(data[i][j], ro.get(i, j), 1E-5f);
+                    dot += data[i][j] * x[j];
+                }
+                assertEquals(dot, ax[i], 1E-5f);
+            }
+            for (int j = 0; j < n; j++) {
+                float dot = 0;
+                for (int i = 0; i < m; i++) {
+                    dot += data[i][j] * y[i];
+                }
+                assertEquals(dot, ty[j], 1E-5f);
+            }
+
+            // The deserialized matrix maps the file again.
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(ro);
+            }
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                FloatMappedMatrix c = (FloatMappedMatrix) in.readObject();
+                assertEquals(layout, c.layout());
+                assertEquals(data[6][4], c.get(6, 4), 1E-10);
+                assertArrayEquals(ax, c.mv(x), 1E-7f);
+            }
+
+            // A file of single segment is also readable by FloatMatrix.mmap().
+            FloatMatrix b = FloatMatrix.mmap(path, FileChannel.MapMode.READ_ONLY);
+            assertEquals(data[6][4], b.get(6, 4), 1E-5f);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMmapNonNativeByteOrder() throws Exception {
+        System.out.println("mmap non-native byte order");
+        Path path = Files.createTempFile("smile-matrix", ".bin");
+        path.toFile().deleteOnExit();
+        FloatMatrix.mmap(path, Layout.COL_MAJOR, 3, 3).set(0, 0, 1.0f);
+
+        // Flip the byte order in the header.
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer order = ByteBuffer.allocate(1);
+            channel.read(order, 6);
+            order.put(0, (byte) (1 - order.get(0)));
+            order.rewind();
+            channel.write(order, 6);
+        }
+
+        // The matrix of Java mapping reads the elements in the file byte order.
+        FloatMappedMatrix a = FloatMappedMatrix.open(path, FileChannel.MapMode.READ_ONLY);
+        assertEquals(0.0, a.get(1, 0), 1E-10);
+        assertNotEquals(1.0, a.get(0, 0), 1E-10);
+        FloatMatrix.mmap(path, FileChannel.MapMode.READ_ONLY);
+    }
+
+    @Test(expected = IOException.class)
+    public void testMmapInvalidLeadingDimension() throws Exception {
+        System.out.println("mmap invalid leading dimension");
+        Path path = Files.createTempFile("smile-matrix", ".bin");
+        path.toFile().deleteOnExit();
+        FloatMatrix.mmap(path, Layout.COL_MAJOR, 3, 3);
+
+        // Corrupt the leading dimension in the header.
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, 1), 16);
+        }
+        FloatMatrix.mmap(path, FileChannel.MapMode.READ_ONLY);
+    }
+
     @Test
     public void testMvOffset() {
         System.out.println("mv offfset ");
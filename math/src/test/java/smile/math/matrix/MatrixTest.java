@@ -26,6 +26,16 @@ import smile.math.MathEx;
 import smile.math.blas.Layout;
 import smile.math.blas.UPLO;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 
 import static smile.math.blas.Transpose.*;
@@ -158,6 +168,175 @@ public class MatrixTest {
         assertEquals(0.3, sub.get(1,1), 1E-7f);
     }
 
+    @Test
+    public void testDirect() {
+        System.out.println("direct");
+        Matrix a = Matrix.direct(Layout.COL_MAJOR, 3, 3);
+        assertTrue(a.A.isDirect());
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                a.set(i, j, A[i][j]);
+            }
+        }
+
+        double[] d = a.mv(b);
+        assertEquals(0.65, d[0], 1E-7);
+        assertEquals(0.60, d[1], 1E-7);
+        assertEquals(0.55, d[2], 1E-7);
+
+        Matrix sub = a.submatrix(1, 0, 2, 2);
+        assertTrue(sub.isSubmatrix());
+        d = sub.mv(b);
+        assertEquals(0.60, d[0], 1E-7);
+        assertEquals(0.55, d[1], 1E-7);
+
+        Matrix t = Matrix.direct(Layout.ROW_MAJOR, 3, 3);
+        t.fill(1.0);
+        t.sub(a);
+        assertEquals(Layout.ROW_MAJOR, t.layout());
+        assertEquals(0.1, t.get(0, 0), 1E-7);
+        assertEquals(0.7, t.get(2, 1), 1E-7);
+    }
+
+    @Test
+    public void testMmap() throws Exception {
+        System.out.println("mmap");
+        Path path = Files.createTempFile("smile-matrix", ".bin");
+        path.toFile().deleteOnExit();
+
+        Matrix a = Matrix.mmap(path, Layout.ROW_MAJOR, 3, 3);
+        assertTrue(a.A.isDirect());
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                a.set(i, j, A[i][j]);
+            }
+        }
+
+        Matrix ro = Matrix.mmap(path, FileChannel.MapMode.READ_ONLY);
+        assertEquals(Layout.ROW_MAJOR, ro.layout());
+        assertEquals(3, ro.nrow());
+        assertEquals(3, ro.ncol());
+        assertTrue(MathEx.equals(A, ro.toArray(), 1E-7));
+        double[] d = ro.mv(b);
+        assertEquals(0.65, d[0], 1E-7);
+        assertEquals(0.60, d[1], 1E-7);
+        assertEquals(0.55, d[2], 1E-7);
+
+        // Copy-on-write mapping is not written back to the file.
+        Matrix cow = Matrix.mmap(path, FileChannel.MapMode.PRIVATE);
+        cow.set(0, 0, 2.0);
+        assertEquals(2.0, cow.get(0, 0), 1E-7);
+        assertEquals(0.9, ro.get(0, 0), 1E-7);
+
+        // Shared mapping is visible to other mappings.
+        Matrix rw = Matrix.mmap(path, FileChannel.MapMode.READ_WRITE);
+        rw.set(0, 0, 3.0);
+        assertEquals(3.0, ro.get(0, 0), 1E-7);
+        assertEquals(3.0, a.get(0, 0), 1E-7);
+    }
+
+    @Test
+    public void testMappedMatrix() throws Exception {
+        System.out.println("mapped matrix");
+        for (Layout layout : Layout.values()) {
+            Path path = Files.createTempFile("smile-matrix", ".bin");
+            path.toFile().deleteOnExit();
+
+            // 16-byte segments so that the columns/rows straddle segments.
+            int m = 7, n = 5;
+            MappedMatrix a = new MappedMatrix(MatrixFile.create(path, Double.BYTES, layout, m, n, 4));
+            assertTrue(a.file.segments.length > 1);
+            double[][] data = new double[m][n];
+            for (int i = 0; i < m; i++) {
+                for (int j = 0; j < n; j++) {
+                    data[i][j] = i + 0.1 * j;
+                    a.set(i, j, data[i][j]);
+                }
+            }
+
+            MappedMatrix ro = new MappedMatrix(MatrixFile.open(path, FileChannel.MapMode.READ_ONLY, Double.BYTES, 4));
+            assertEquals(layout, ro.layout());
+            assertEquals(m, ro.nrow());
+            assertEquals(n, ro.ncol());
+
+            double[] x = new double[n];
+            double[] y = new double[m];
+            for (int j = 0; j < n; j++) x[j] = j + 1;
+            for (int i = 0; i < m; i++) y[i] = i - 3;
+
+            double[] ax = ro.mv(x);
+            double[] ty = ro.tv(y);
+            for (int i = 0; i < m; i++) {
+                double dot = 0;
+                for (int j = 0; j < n; j++) {
+                    assertEquals(data[i][j], ro.get(i, j), 1E-10);
+                    dot += data[i][j] * x[j];
+                }
+                assertEquals(dot, ax[i], 1E-10);
+            }
+            for (int j = 0; j < n; j++) {
+                double dot = 0;
+                for (int i = 0; i < m; i++) {
+                    dot += data[i][j] * y[i];
+                }
+                assertEquals(dot, ty[j], 1E-10);
+            }
+
+            // The deserialized matrix maps the file again.
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(ro);
+            }
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                MappedMatrix c = (MappedMatrix) in.readObject();
+                assertEquals(layout, c.layout());
+                assertEquals(data[6][4], c.get(6, 4), 1E-10);
+                assertArrayEquals(ax, c.mv(x), 1E-10);
+            }
+
+            // A file of single segment is also readable by Matrix.mmap().
+            Matrix b = Matrix.mmap(path, FileChannel.MapMode.READ_ONLY);
+            assertEquals(data[6][4], b.get(6, 4), 1E-10);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMmapNonNativeByteOrder() throws Exception {
+        System.out.println("mmap non-native byte order");
+        Path path = Files.createTempFile("smile-matrix", ".bin");
+        path.toFile().deleteOnExit();
+        Matrix.mmap(path, Layout.COL_MAJOR, 3, 3).set(0, 0, 1.0);
+
+        // Flip the byte order in the header.
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer order = ByteBuffer.allocate(1);
+            channel.read(order, 6);
+            order.put(0, (byte) (1 - order.get(0)));
+            order.rewind();
+            channel.write(order, 6);
+        }
+
+        // The matrix of Java mapping reads the elements in the file byte order.
+        MappedMatrix a = MappedMatrix.open(path, FileChannel.MapMode.READ_ONLY);
+        assertEquals(0.0, a.get(1, 0), 1E-10);
+        assertNotEquals(1.0, a.get(0, 0), 1E-10);
+        Matrix.mmap(path, FileChannel.MapMode.READ_ONLY);
+    }
+
+    @Test(expected = IOException.class)
+    public void testMmapInvalidLeadingDimension() throws Exception {
+        System.out.println("mmap invalid leading dimension");
+        Path path = Files.createTempFile("smile-matrix", ".bin");
+        path.toFile().deleteOnExit();
+        Matrix.mmap(path, Layout.COL_MAJOR, 3, 3);
+
+        // Corrupt the leading dimension in the header.
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, 1), 16);
+        }
+        Matrix.mmap(path, FileChannel.MapMode.READ_ONLY);
+    }
+
     @Test
     public void testMvOffset() {
         System.out.println("mv offfset ");
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.sort;
+
+import smile.math.MathEx;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Haifeng Li
+ */
+public class RadixSortTest {
+
+    public RadixSortTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Test of order method, of class RadixSort.
+     */
+    @Test
+    public void testInt() {
+        System.out.println("int");
+        int[] data = {5, -2, 3, 5, Integer.MIN_VALUE, 0, Integer.MAX_VALUE, -2};
+        int[] order = RadixSort.order(data);
+        assertArrayEquals(new int[]{4, 1, 7, 5, 2, 0, 3, 6}, order);
+    }
+
+    /**
+     * Test of order method, of class RadixSort.
+     */
+    @Test
+    public void testDouble() {
+        System.out.println("double");
+        double[] data = {1.5, Double.NaN, -0.0, 0.0, Double.NEGATIVE_INFINITY, -3.2, Double.POSITIVE_INFINITY, 1.5};
+        int[] order = RadixSort.order(data);
+        assertArrayEquals(new int[]{4, 5, 2, 3, 0, 7, 6, 1}, order);
+    }
+
+    /**
+     * Test of sort method, of class RadixSort.
+     */
+    @Test
+    public void testLong() {
+        System.out.println("long");
+        MathEx.setSeed(19650218); // to get repeatable results.
+        int n = 300000;
+        long[] key = new long[n];
+        for (int i = 0; i < n; i++) {
+            key[i] = (MathEx.randomInt(2000000) - 1000000) * 1000003L;
+        }
+
+        int[] order = RadixSort.order(key);
+        for (int i = 1; i < n; i++) {
+            long a = key[order[i-1]];
+            long b = key[order[i]];
+            assertTrue(a <= b);
+            if (a == b) assertTrue(order[i-1] < order[i]);
+        }
+
+        // sort a subset of elements
+        int[] index = {9, 7, 5, 3, 1};
+        RadixSort.sort(key, index);
+        for (int i = 1; i < index.length; i++) {
+            assertTrue(key[index[i-1]] <= key[index[i]]);
+        }
+    }
+}
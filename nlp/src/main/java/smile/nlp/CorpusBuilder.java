@@ -0,0 +1,581 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.nlp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import smile.nlp.dictionary.EnglishPunctuations;
+import smile.nlp.dictionary.EnglishStopWords;
+import smile.nlp.dictionary.Punctuations;
+import smile.nlp.dictionary.StopWords;
+import smile.nlp.tokenizer.SentenceSplitter;
+import smile.nlp.tokenizer.SimpleSentenceSplitter;
+import smile.nlp.tokenizer.SimpleTokenizer;
+import smile.nlp.tokenizer.Tokenizer;
+import smile.sort.RadixSort;
+import smile.util.IntArrayList;
+
+/**
+ * A parallel and streaming builder of term and n-gram frequencies for
+ * large corpora. The documents are split into sentences and tokenized
+ * in parallel batches, the same way as {@link SimpleCorpus}. The words
+ * are interned to int ids and the n-grams are packed into long keys,
+ * which are counted in sharded open addressing hash maps without boxing.
+ * An n-gram consists of consecutive tokens in a sentence none of which
+ * is a stop word or punctuation.
+ * <p>
+ * The word ids are assigned in the order of first occurrence in the
+ * documents, regardless of the parallel processing. The new words of
+ * each round of batches are interned in the batch order after the
+ * batches are tokenized, and the n-grams are counted afterwards.
+ * Therefore, the counts are reproducible.
+ * <p>
+ * A packed key has {@code 63 / n} bits per word id of n-grams, so that
+ * the word ids of bigrams and trigrams are limited to 2<sup>31</sup> - 1
+ * and 2<sup>21</sup> - 1, respectively. The largest id is reserved as
+ * out of vocabulary. The n-grams with a word of larger id, which are
+ * the words first seen after 2<sup>21</sup> - 1 distinct words for
+ * trigrams, are not counted. The term frequencies of all words are
+ * always counted.
+ * <p>
+ * When a spill directory is given and the number of distinct n-grams
+ * in memory exceeds the limit, the partial n-gram counts are sorted
+ * and written to run files, which are merged by {@link #build(int)}.
+ * The vocabulary and the term frequencies always stay in memory.
+ * <p>
+ * The builder itself is not thread safe, i.e. the documents should be
+ * added by one thread, which uses the common fork-join pool internally.
+ *
+ * @author Haifeng Li
+ */
+public class CorpusBuilder {
+    private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(CorpusBuilder.class);
+
+    /** The number of shards of count maps. */
+    private static final int SHARDS = 16;
+    /** The number of documents per parallel task. */
+    private static final int BATCH = 256;
+    /** The token of stop words, punctuations and sentence ends. */
+    private static final int BREAK = -1;
+
+    /** The sentence splitter. */
+    private final SentenceSplitter splitter;
+    /** The word tokenizer. */
+    private final Tokenizer tokenizer;
+    /** The set of stop words to exclude. */
+    private final StopWords stopWords;
+    /** The set of punctuation marks to exclude. */
+    private final Punctuations punctuations;
+    /** The maximum size of n-grams. */
+    private final int maxNGramSize;
+    /** The directory of spill files. */
+    private final Path spillDir;
+    /** The maximum number of n-gram entries in memory before spilling. */
+    private final long maxEntries;
+
+    /** The word to id map. */
+    private final HashMap<String, Integer> vocabulary = new HashMap<>();
+    /** The words by id. */
+    private final ArrayList<String> words = new ArrayList<>();
+    /** The term frequency by shard. */
+    private final LongCountMap[] unigrams;
+    /** The frequency of n-grams of size 2, 3, ... by shard. */
+    private final LongCountMap[][] ngrams;
+    /** The spill files of n-grams of size 2, 3, ... */
+    private final List<Path>[] runs;
+    /** The number of documents. */
+    private int ndoc;
+    /** The number of terms in the corpus. */
+    private long size;
+
+    /**
+     * Constructor with the default tokenization of {@link SimpleCorpus}.
+     * All counts are kept in memory.
+     * @param maxNGramSize the maximum size of n-grams, at most 3.
+     */
+    public CorpusBuilder(int maxNGramSize) {
+        this(maxNGramSize, null, Long.MAX_VALUE);
+    }
+
+    /**
+     * Constructor with the default tokenization of {@link SimpleCorpus}.
+     * @param maxNGramSize the maximum size of n-grams, at most 3.
+     * @param spillDir the directory of spill files. If null, all counts
+     *                 are kept in memory.
+     * @param maxEntries the maximum number of n-gram entries in memory
+     *                   before spilling.
+     */
+    public CorpusBuilder(int maxNGramSize, Path spillDir, long maxEntries) {
+        this(SimpleSentenceSplitter.getInstance(), new SimpleTokenizer(), EnglishStopWords.DEFAULT, EnglishPunctuations.getInstance(), maxNGramSize, spillDir, maxEntries);
+    }
+
+    /**
+     * Constructor.
+     * @param splitter the sentence splitter.
+     * @param tokenizer the word tokenizer.
+     * @param stopWords the set of stop words to exclude.
+     * @param punctuations the set of punctuation marks to exclude. Set to null to keep all punctuation marks.
+     * @param maxNGramSize the maximum size of n-grams, at most 3.
+     * @param spillDir the directory of spill files. If null, all counts
+     *                 are kept in memory.
+     * @param maxEntries the maximum number of n-gram entries in memory
+     *                   before spilling.
+     */
+    @SuppressWarnings("unchecked")
+    public CorpusBuilder(SentenceSplitter splitter, Tokenizer tokenizer, StopWords stopWords, Punctuations punctuations, int maxNGramSize, Path spillDir, long maxEntries) {
+        if (maxNGramSize < 1 || maxNGramSize > 3) {
+            throw new IllegalArgumentException("Invalid maximum size of n-grams: " + maxNGramSize);
+        }
+
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Invalid maximum number of entries: " + maxEntries);
+        }
+
+        this.splitter = splitter;
+        this.tokenizer = tokenizer;
+        this.stopWords = stopWords;
+        this.punctuations = punctuations;
+        this.maxNGramSize = maxNGramSize;
+        this.spillDir = spillDir;
+        this.maxEntries = maxEntries;
+
+        unigrams = new LongCountMap[SHARDS];
+        for (int s = 0; s < SHARDS; s++) {
+            unigrams[s] = new LongCountMap();
+        }
+
+        ngrams = new LongCountMap[maxNGramSize - 1][SHARDS];
+        runs = new List[maxNGramSize - 1];
+        for (int n = 0; n < ngrams.length; n++) {
+            runs[n] = new ArrayList<>();
+            for (int s = 0; s < SHARDS; s++) {
+                ngrams[n][s] = new LongCountMap();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bits per word id in the packed key of n-grams.
+     * @param n the size of n-grams.
+     * @return the number of bits per word id.
+     */
+    static int bits(int n) {
+        return 63 / n;
+    }
+
+    /**
+     * Returns the reserved out of vocabulary id in the packed key of
+     * n-grams. The n-grams with a word of this or larger id are not
+     * counted.
+     * @param n the size of n-grams.
+     * @return the out of vocabulary id.
+     */
+    static long oov(int n) {
+        return (1L << bits(n)) - 1;
+    }
+
+    /** Returns the shard of a packed n-gram key. */
+    private static int shard(long key) {
+        return (int) (LongCountMap.hash(key) >>> 60);
+    }
+
+    /**
+     * Returns the number of documents added so far.
+     * @return the number of documents.
+     */
+    public int ndoc() {
+        return ndoc;
+    }
+
+    /**
+     * Adds the documents.
+     * @param docs the document texts.
+     * @throws IOException when fails to spill the counts.
+     */
+    public void add(Collection<String> docs) throws IOException {
+        add(docs.stream());
+    }
+
+    /**
+     * Adds the documents. The stream is consumed sequentially in rounds
+     * of batches, which are processed in parallel.
+     * @param docs the stream of document texts.
+     * @throws IOException when fails to spill the counts.
+     */
+    public void add(Stream<String> docs) throws IOException {
+        int tasks = 4 * Runtime.getRuntime().availableProcessors();
+        Iterator<String> iter = docs.iterator();
+        while (iter.hasNext()) {
+            List<List<String>> batches = new ArrayList<>(tasks);
+            for (int t = 0; t < tasks && iter.hasNext(); t++) {
+                List<String> batch = new ArrayList<>(BATCH);
+                for (int i = 0; i < BATCH && iter.hasNext(); i++) {
+                    batch.add(iter.next());
+                }
+                batches.add(batch);
+            }
+
+            Counter[] counters = batches.parallelStream().map(this::tokenize).toArray(Counter[]::new);
+            intern(counters);
+            Arrays.stream(counters).parallel().forEach(Counter::count);
+            merge(counters);
+            for (List<String> batch : batches) {
+                ndoc += batch.size();
+            }
+
+            long entries = 0;
+            for (LongCountMap[] maps : ngrams) {
+                for (LongCountMap map : maps) {
+                    entries += map.size();
+                }
+            }
+
+            if (spillDir != null && entries > maxEntries) {
+                spill();
+            }
+        }
+    }
+
+    /**
+     * The tokens and counts of a batch of documents.
+     */
+    private class Counter {
+        /**
+         * The word ids of tokens. The stop words, punctuations and the
+         * ends of sentences are BREAK. The new words are encoded as
+         * {@code -2 - k}, where k is the index in the list of new words.
+         */
+        final IntArrayList tokens = new IntArrayList();
+        /** The new words of batch in the order of first occurrence. */
+        final ArrayList<String> unknown = new ArrayList<>();
+        /** The local cache of word ids. */
+        final HashMap<String, Integer> cache = new HashMap<>();
+        /** The global ids of new words. */
+        int[] ids;
+        /** The term frequency by shard. */
+        final LongCountMap[] unigrams = new LongCountMap[SHARDS];
+        /** The frequency of n-grams by shard. */
+        final LongCountMap[][] ngrams = new LongCountMap[maxNGramSize - 1][SHARDS];
+        /** The number of terms. */
+        long size;
+
+        /** Constructor. */
+        Counter() {
+            for (int s = 0; s < SHARDS; s++) {
+                unigrams[s] = new LongCountMap();
+                for (int n = 0; n < ngrams.length; n++) {
+                    ngrams[n][s] = new LongCountMap();
+                }
+            }
+        }
+
+        /**
+         * Returns the id of word. As the vocabulary is read only during
+         * the tokenization, the new words get the local ids.
+         */
+        int id(String word) {
+            Integer id = cache.get(word);
+            if (id == null) {
+                id = vocabulary.get(word);
+                if (id == null) {
+                    id = -2 - unknown.size();
+                    unknown.add(word);
+                }
+                cache.put(word, id);
+            }
+            return id;
+        }
+
+        /** Counts the terms and n-grams after the new words are interned. */
+        void count() {
+            // The length of consecutive kept tokens ending at i.
+            int run = 0;
+            int length = tokens.size();
+            long[] window = new long[maxNGramSize];
+            for (int i = 0; i < length; i++) {
+                int id = tokens.get(i);
+                if (id == BREAK) {
+                    run = 0;
+                    continue;
+                }
+
+                if (id < 0) id = ids[-2 - id];
+                window[run % maxNGramSize] = id;
+                run++;
+                size++;
+                unigrams[id % SHARDS].add(id, 1);
+
+                for (int n = 2; n <= Math.min(run, maxNGramSize); n++) {
+                    int bits = bits(n);
+                    long oov = oov(n);
+                    long key = 0;
+                    for (int j = run - n; j < run && key >= 0; j++) {
+                        long w = window[j % maxNGramSize];
+                        key = w < oov ? (key << bits) | w : -1;
+                    }
+
+                    if (key >= 0) {
+                        ngrams[n - 2][shard(key)].add(key, 1);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Splits a batch of documents into word ids. */
+    private Counter tokenize(List<String> docs) {
+        Counter counter = new Counter();
+        IntArrayList tokens = counter.tokens;
+        for (String doc : docs) {
+            for (String sentence : splitter.split(doc)) {
+                for (String token : tokenizer.split(sentence)) {
+                    String w = token.toLowerCase();
+                    if (punctuations != null && punctuations.contains(w)) {
+                        tokens.add(BREAK);
+                    } else if (stopWords != null && stopWords.contains(w)) {
+                        tokens.add(BREAK);
+                    } else {
+                        tokens.add(counter.id(w));
+                    }
+                }
+                tokens.add(BREAK);
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * Assigns the ids of new words in the batch order, so that the ids
+     * are in the order of first occurrence in the documents.
+     */
+    private void intern(Counter[] counters) {
+        for (Counter counter : counters) {
+            int[] ids = new int[counter.unknown.size()];
+            for (int k = 0; k < ids.length; k++) {
+                String word = counter.unknown.get(k);
+                Integer id = vocabulary.get(word);
+                if (id == null) {
+                    id = words.size();
+                    vocabulary.put(word, id);
+                    words.add(word);
+                }
+                ids[k] = id;
+            }
+            counter.ids = ids;
+            counter.unknown.clear();
+            counter.cache.clear();
+        }
+    }
+
+    /** Merges the counts of batches into the global maps by shard. */
+    private void merge(Counter[] counters) {
+        IntStream.range(0, SHARDS * maxNGramSize).parallel().forEach(task -> {
+            int n = task / SHARDS;
+            int s = task % SHARDS;
+            LongCountMap map = n == 0 ? unigrams[s] : ngrams[n - 1][s];
+            for (Counter counter : counters) {
+                LongCountMap local = n == 0 ? counter.unigrams[s] : counter.ngrams[n - 1][s];
+                local.forEach(map::add);
+            }
+        });
+
+        for (Counter counter : counters) {
+            size += counter.size;
+        }
+    }
+
+    /** Writes the in-memory n-gram counts to sorted run files. */
+    private void spill() throws IOException {
+        try {
+            IntStream.range(0, ngrams.length).parallel().forEach(n -> {
+                try {
+                    Path run = spill(ngrams[n], n + 2);
+                    synchronized (runs) {
+                        runs[n].add(run);
+                    }
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /** Writes the counts of n-grams to a sorted run file and clears the maps. */
+    private Path spill(LongCountMap[] maps, int n) throws IOException {
+        int count = 0;
+        for (LongCountMap map : maps) {
+            count += map.size();
+        }
+
+        long[] keys = new long[count];
+        long[] counts = new long[count];
+        int[] k = {0};
+        for (LongCountMap map : maps) {
+            map.forEach((key, c) -> {
+                keys[k[0]] = key;
+                counts[k[0]++] = c;
+            });
+            map.clear();
+        }
+
+        int[] order = RadixSort.order(keys);
+        Path run = Files.createTempFile(spillDir, "ngram" + n + "-", ".run");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16))) {
+            out.writeInt(count);
+            for (int i : order) {
+                out.writeLong(keys[i]);
+                out.writeLong(counts[i]);
+            }
+        }
+
+        logger.info("Spill {} {}-grams to {}", count, n, run);
+        return run;
+    }
+
+    /**
+     * A cursor of sorted run file.
+     */
+    private static class Run implements AutoCloseable {
+        /** The input stream. */
+        final DataInputStream in;
+        /** The number of remaining entries. */
+        int remaining;
+        /** The current key. */
+        long key;
+        /** The current count. */
+        long count;
+
+        /** Constructor. */
+        Run(Path path) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+            remaining = in.readInt();
+        }
+
+        /** Moves to the next entry. Returns false at the end. */
+        boolean next() throws IOException {
+            if (remaining == 0) return false;
+            remaining--;
+            try {
+                key = in.readLong();
+                count = in.readLong();
+            } catch (EOFException ex) {
+                throw new IOException("Truncated run file", ex);
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Merges the counts and returns the corpus statistics. The spill
+     * files are deleted and the builder should not be used afterwards.
+     * @param minFrequency the minimum frequency of n-grams of size 2 or
+     *                     more to keep. All terms are kept.
+     * @return the corpus statistics.
+     * @throws IOException when fails to merge the spill files.
+     */
+    public NGramCorpus build(int minFrequency) throws IOException {
+        String[] vocab = words.toArray(new String[0]);
+        long[] freq = new long[vocab.length];
+        for (int s = 0; s < SHARDS; s++) {
+            unigrams[s].forEach((id, count) -> freq[(int) id] = count);
+        }
+
+        LongCountMap[] result = new LongCountMap[ngrams.length];
+        for (int n = 0; n < ngrams.length; n++) {
+            if (runs[n].isEmpty()) {
+                LongCountMap map = new LongCountMap();
+                for (LongCountMap shard : ngrams[n]) {
+                    shard.forEach((key, count) -> {
+                        if (count >= minFrequency) map.add(key, count);
+                    });
+                    shard.clear();
+                }
+                result[n] = map;
+            } else {
+                runs[n].add(spill(ngrams[n], n + 2));
+                result[n] = merge(runs[n], minFrequency);
+                for (Path run : runs[n]) {
+                    Files.deleteIfExists(run);
+                }
+                runs[n].clear();
+            }
+        }
+
+        return new NGramCorpus(vocab, freq, result, ndoc, size);
+    }
+
+    /** Merges the sorted run files. */
+    private static LongCountMap merge(List<Path> paths, int minFrequency) throws IOException {
+        LongCountMap map = new LongCountMap();
+        List<Run> runs = new ArrayList<>(paths.size());
+        try {
+            PriorityQueue<Run> queue = new PriorityQueue<>(paths.size(), (a, b) -> Long.compare(a.key, b.key));
+            for (Path path : paths) {
+                Run run = new Run(path);
+                runs.add(run);
+                if (run.next()) queue.add(run);
+            }
+
+            while (!queue.isEmpty()) {
+                Run run = queue.poll();
+                long key = run.key;
+                long count = run.count;
+                if (run.next()) queue.add(run);
+
+                while (!queue.isEmpty() && queue.peek().key == key) {
+                    Run other = queue.poll();
+                    count += other.count;
+                    if (other.next()) queue.add(other);
+                }
+
+                if (count >= minFrequency) {
+                    map.add(key, count);
+                }
+            }
+        } finally {
+            for (Run run : runs) {
+                run.close();
+            }
+        }
+
+        return map;
+    }
+}
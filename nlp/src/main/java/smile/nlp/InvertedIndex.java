@@ -0,0 +1,659 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.nlp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import smile.nlp.relevance.BM25;
+import smile.nlp.relevance.TFIDF;
+import smile.util.IntArrayList;
+
+/**
+ * A compressed inverted index for top-k retrieval. The posting list of
+ * a term is a sequence of (document id, term frequency) pairs in the
+ * order of document id. The pairs are encoded as the gap of document
+ * id and the frequency in variable length bytes (varint), with a skip
+ * entry per block of 128 postings. Documents are added incrementally,
+ * e.g. from a stream, and receive consecutive ids from 0. The index can
+ * be searched at any time of building.
+ * <p>
+ * The queries are evaluated document-at-a-time with the WAND algorithm.
+ * With the upper bound of score of each term, WAND skips the documents
+ * that cannot enter the current top k, which is much faster than scoring
+ * every matching document for long posting lists.
+ * <p>
+ * An index can be written to a file and opened later in read-only mode,
+ * where the posting lists are memory-mapped and the vocabulary and
+ * document statistics are loaded into memory. As a Java buffer is
+ * indexed by int, the total size of posting lists is limited to
+ * 2<sup>31</sup>-1 bytes.
+ *
+ * <h2>References</h2>
+ * <ol>
+ * <li> A. Z. Broder, D. Carmel, M. Herscovici, A. Soffer, and J. Zien. Efficient query evaluation using a two-level retrieval process. CIKM, 2003.</li>
+ * </ol>
+ *
+ * @author Haifeng Li
+ */
+public class InvertedIndex {
+    private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(InvertedIndex.class);
+
+    /** The magic number of index file, i.e. "SMII" in ASCII. */
+    private static final int MAGIC = 0x534D4949;
+    /** The size of index file header. */
+    private static final int HEADER = 28;
+    /** The number of postings in a skip block. */
+    private static final int BLOCK = 128;
+
+    /**
+     * A hit of search.
+     */
+    public static class Hit implements Comparable<Hit> {
+        /** The document id. */
+        public final int doc;
+        /** The relevance score. */
+        public final double score;
+
+        /**
+         * Constructor.
+         * @param doc the document id.
+         * @param score the relevance score.
+         */
+        public Hit(int doc, double score) {
+            this.doc = doc;
+            this.score = score;
+        }
+
+        /** Higher scores first. The ties are in the order of document id. */
+        @Override
+        public int compareTo(Hit o) {
+            int c = Double.compare(o.score, score);
+            return c == 0 ? Integer.compare(doc, o.doc) : c;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d:%.4f", doc, score);
+        }
+    }
+
+    /** The posting list of a term. */
+    private static class Postings {
+        /** The encoded postings in memory. */
+        byte[] data = new byte[8];
+        /** The mapped postings of read-only index. */
+        ByteBuffer buffer;
+        /** The number of bytes of postings. */
+        int length;
+        /** The document frequency. */
+        int df;
+        /** The last document id. */
+        int last;
+        /** The maximum term frequency. */
+        int maxTf;
+        /** The minimum size of documents. */
+        int minSize = Integer.MAX_VALUE;
+        /** The term frequency of the maximum normalized term frequency tf / maxtf. */
+        int bestTf;
+        /** The maximum term frequency of document of bestTf. */
+        int bestMaxTf = 1;
+        /**
+         * The skip entries of each block but the first one, i.e. pairs
+         * of the last document id of previous block and the byte offset
+         * of block.
+         */
+        IntArrayList skip = new IntArrayList();
+
+        /** Appends a posting. */
+        void add(int doc, int tf, int size, int maxtf) {
+            if (df > 0 && df % BLOCK == 0) {
+                skip.add(last);
+                skip.add(length);
+            }
+
+            if (data.length - length < 10) {
+                data = Arrays.copyOf(data, Math.max(2 * data.length, length + 10));
+            }
+            length = varint(data, length, doc - last);
+            length = varint(data, length, tf);
+
+            df++;
+            last = doc;
+            maxTf = Math.max(maxTf, tf);
+            minSize = Math.min(minSize, size);
+            if ((long) tf * bestMaxTf > (long) bestTf * maxtf) {
+                bestTf = tf;
+                bestMaxTf = maxtf;
+            }
+        }
+
+        /** Returns the encoded postings. */
+        ByteBuffer buffer() {
+            return buffer != null ? buffer : ByteBuffer.wrap(data, 0, length);
+        }
+    }
+
+    /** The cursor of a posting list. */
+    private static class Cursor {
+        /** The index of query term. */
+        final int term;
+        /** The posting list. */
+        final Postings postings;
+        /** The encoded postings. */
+        final ByteBuffer data;
+        /** The byte offset of next posting. */
+        int pos;
+        /** The index of next posting. */
+        int next;
+        /** The current document id, or Integer.MAX_VALUE if exhausted. */
+        int doc;
+        /** The current term frequency. */
+        int tf;
+
+        /** Constructor. */
+        Cursor(int term, Postings postings) {
+            this.term = term;
+            this.postings = postings;
+            this.data = postings.buffer();
+            next();
+        }
+
+        /** Moves to the next posting. */
+        void next() {
+            if (next == postings.df) {
+                doc = Integer.MAX_VALUE;
+                return;
+            }
+
+            int gap = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = data.get(pos++);
+                gap |= (b & 0x7F) << shift;
+                if (b >= 0) break;
+            }
+
+            int f = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = data.get(pos++);
+                f |= (b & 0x7F) << shift;
+                if (b >= 0) break;
+            }
+
+            doc += gap;
+            tf = f;
+            next++;
+        }
+
+        /** Moves to the first posting of document id not less than the target. */
+        void advance(int target) {
+            if (doc >= target) return;
+
+            // The skip entry s is of block s+1. The blocks after the
+            // current one are skipped if all their predecessors are
+            // less than the target.
+            IntArrayList entries = postings.skip;
+            int nskip = entries.size() / 2;
+            int block = -1;
+            for (int s = (next - 1) / BLOCK; s < nskip && entries.get(2 * s) < target; s++) {
+                block = s;
+            }
+
+            if (block >= 0) {
+                doc = entries.get(2 * block);
+                pos = entries.get(2 * block + 1);
+                next = (block + 1) * BLOCK;
+                next();
+            }
+
+            while (doc < target) {
+                next();
+            }
+        }
+    }
+
+    /**
+     * The relevance score of a query term.
+     */
+    private interface Scorer {
+        /**
+         * Returns the score of a query term in a document.
+         * @param term the index of query term.
+         * @param doc the document id.
+         * @param tf the term frequency.
+         * @return the score.
+         */
+        double score(int term, int doc, int tf);
+
+        /**
+         * Returns the upper bound of score of a query term.
+         * @param term the index of query term.
+         * @return the upper bound of score.
+         */
+        double bound(int term);
+    }
+
+    /** The term to index of posting list. */
+    private final HashMap<String, Integer> vocabulary = new HashMap<>();
+    /** The posting lists. */
+    private final List<Postings> postings = new ArrayList<>();
+    /** The size of documents. */
+    private int[] docSize = new int[1024];
+    /** The maximum term frequency of documents. */
+    private int[] docMaxTf = new int[1024];
+    /** The number of documents. */
+    private int ndoc;
+    /** The total number of terms of documents. */
+    private long size;
+    /** True if the index is memory-mapped. */
+    private final boolean readOnly;
+
+    /**
+     * Constructor of an empty index.
+     */
+    public InvertedIndex() {
+        this(false);
+    }
+
+    /**
+     * Constructor.
+     * @param readOnly true if the index is memory-mapped.
+     */
+    private InvertedIndex(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Returns the number of documents.
+     * @return the number of documents.
+     */
+    public int ndoc() {
+        return ndoc;
+    }
+
+    /**
+     * Returns the number of unique terms.
+     * @return the number of unique terms.
+     */
+    public int nterm() {
+        return postings.size();
+    }
+
+    /**
+     * Returns the total number of terms of documents.
+     * @return the total number of terms of documents.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the average size of documents.
+     * @return the average size of documents.
+     */
+    public double avgDocSize() {
+        return ndoc == 0 ? 0.0 : (double) size / ndoc;
+    }
+
+    /**
+     * Returns the size of a document.
+     * @param doc the document id.
+     * @return the number of terms of document.
+     */
+    public int size(int doc) {
+        return docSize[doc];
+    }
+
+    /**
+     * Returns the number of documents containing the term.
+     * @param term the term.
+     * @return the document frequency.
+     */
+    public int df(String term) {
+        Integer t = vocabulary.get(term);
+        return t == null ? 0 : postings.get(t).df;
+    }
+
+    /**
+     * Adds a document to the index.
+     * @param words the terms of document, e.g. the tokens after
+     *              normalization and removing stop words.
+     * @return the document id.
+     */
+    public int add(String[] words) {
+        if (readOnly) {
+            throw new IllegalStateException("Add documents to a read-only index");
+        }
+
+        HashMap<String, int[]> tf = new HashMap<>();
+        for (String word : words) {
+            tf.computeIfAbsent(word, w -> new int[1])[0]++;
+        }
+
+        int maxtf = 0;
+        for (int[] f : tf.values()) {
+            maxtf = Math.max(maxtf, f[0]);
+        }
+
+        int doc = ndoc;
+        for (java.util.Map.Entry<String, int[]> e : tf.entrySet()) {
+            Integer t = vocabulary.get(e.getKey());
+            if (t == null) {
+                t = postings.size();
+                vocabulary.put(e.getKey(), t);
+                postings.add(new Postings());
+            }
+            postings.get(t).add(doc, e.getValue()[0], words.length, maxtf);
+        }
+
+        if (doc == docSize.length) {
+            docSize = Arrays.copyOf(docSize, 2 * doc);
+            docMaxTf = Arrays.copyOf(docMaxTf, 2 * doc);
+        }
+        docSize[doc] = words.length;
+        docMaxTf[doc] = maxtf;
+        size += words.length;
+        ndoc++;
+        return doc;
+    }
+
+    /**
+     * Returns the top k documents by BM25 relevance.
+     * @param ranker the BM25 ranker.
+     * @param k the number of documents to return.
+     * @param terms the query terms.
+     * @return the top k hits in descending order of score.
+     */
+    public Hit[] search(BM25 ranker, int k, String... terms) {
+        Postings[] query = query(terms);
+        double avgDocSize = avgDocSize();
+        return search(query, k, new Scorer() {
+            @Override
+            public double score(int term, int doc, int tf) {
+                return ranker.score(tf, docSize[doc], avgDocSize, ndoc, query[term].df);
+            }
+
+            @Override
+            public double bound(int term) {
+                // The score increases with tf and decreases with the document size.
+                Postings p = query[term];
+                return ranker.score(p.maxTf, p.minSize, avgDocSize, ndoc, p.df);
+            }
+        });
+    }
+
+    /**
+     * Returns the top k documents by TF-IDF relevance.
+     * @param ranker the TF-IDF ranker.
+     * @param k the number of documents to return.
+     * @param terms the query terms.
+     * @return the top k hits in descending order of score.
+     */
+    public Hit[] search(TFIDF ranker, int k, String... terms) {
+        Postings[] query = query(terms);
+        return search(query, k, new Scorer() {
+            @Override
+            public double score(int term, int doc, int tf) {
+                return ranker.rank(tf, docMaxTf[doc], ndoc, query[term].df);
+            }
+
+            @Override
+            public double bound(int term) {
+                // The score increases with the normalized term frequency.
+                Postings p = query[term];
+                return ranker.rank(p.bestTf, p.bestMaxTf, ndoc, p.df);
+            }
+        });
+    }
+
+    /** Returns the posting lists of unique query terms in the index. */
+    private Postings[] query(String[] terms) {
+        return new LinkedHashSet<>(Arrays.asList(terms)).stream()
+                .map(vocabulary::get)
+                .filter(t -> t != null)
+                .map(postings::get)
+                .toArray(Postings[]::new);
+    }
+
+    /**
+     * Returns the top k documents with the WAND algorithm.
+     * @param query the posting lists of query terms.
+     * @param k the number of documents to return.
+     * @param scorer the score of query terms.
+     * @return the top k hits in descending order of score.
+     */
+    private Hit[] search(Postings[] query, int k, Scorer scorer) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("Invalid k: " + k);
+        }
+
+        int n = query.length;
+        double[] bound = new double[n];
+        Cursor[] cursors = new Cursor[n];
+        for (int i = 0; i < n; i++) {
+            // A negative score (e.g. BM25 of very common terms) never helps a document.
+            bound[i] = Math.max(0.0, scorer.bound(i));
+            cursors[i] = new Cursor(i, query[i]);
+        }
+
+        // The min heap of top k hits.
+        PriorityQueue<Hit> heap = new PriorityQueue<>(k, (a, b) -> b.compareTo(a));
+        double threshold = Double.NEGATIVE_INFINITY;
+
+        while (true) {
+            Arrays.sort(cursors, (a, b) -> Integer.compare(a.doc, b.doc));
+
+            // Finds the pivot, i.e. the first document whose score may exceed the threshold.
+            int pivot = -1;
+            double sum = 0.0;
+            for (int i = 0; i < n && cursors[i].doc != Integer.MAX_VALUE; i++) {
+                sum += bound[cursors[i].term];
+                if (sum > threshold) {
+                    pivot = i;
+                    break;
+                }
+            }
+
+            if (pivot < 0) break;
+
+            int doc = cursors[pivot].doc;
+            if (cursors[0].doc == doc) {
+                double score = 0.0;
+                for (int i = 0; i < n && cursors[i].doc == doc; i++) {
+                    score += scorer.score(cursors[i].term, doc, cursors[i].tf);
+                    cursors[i].next();
+                }
+
+                if (heap.size() < k) {
+                    heap.add(new Hit(doc, score));
+                } else if (score > heap.peek().score) {
+                    heap.poll();
+                    heap.add(new Hit(doc, score));
+                }
+
+                if (heap.size() == k) {
+                    threshold = heap.peek().score;
+                }
+            } else {
+                // None of the documents before the pivot can make it to top k.
+                for (int i = 0; i < pivot; i++) {
+                    cursors[i].advance(doc);
+                }
+            }
+        }
+
+        Hit[] hits = heap.toArray(new Hit[0]);
+        Arrays.sort(hits);
+        return hits;
+    }
+
+    /**
+     * Writes an unsigned varint.
+     * @return the offset after the varint.
+     */
+    private static int varint(byte[] data, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            data[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[offset++] = (byte) value;
+        return offset;
+    }
+
+    /**
+     * Writes the index to a file.
+     * @param path the file path.
+     * @throws IOException when fails to write the file.
+     */
+    public void write(Path path) throws IOException {
+        long length = 0;
+        for (Postings p : postings) {
+            length += p.length;
+        }
+
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalStateException("The posting lists exceed the maximum buffer size: " + length);
+        }
+
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+            output.writeInt(MAGIC);
+            output.writeInt(ndoc);
+            output.writeInt(postings.size());
+            output.writeLong(size);
+            output.writeLong(length);
+
+            byte[] bytes = new byte[8192];
+            for (Postings p : postings) {
+                ByteBuffer buffer = p.buffer();
+                buffer.rewind();
+                while (buffer.hasRemaining()) {
+                    int n = Math.min(bytes.length, buffer.remaining());
+                    buffer.get(bytes, 0, n);
+                    output.write(bytes, 0, n);
+                }
+            }
+
+            for (int i = 0; i < ndoc; i++) {
+                output.writeInt(docSize[i]);
+                output.writeInt(docMaxTf[i]);
+            }
+
+            String[] terms = new String[postings.size()];
+            vocabulary.forEach((term, t) -> terms[t] = term);
+            for (int t = 0; t < terms.length; t++) {
+                Postings p = postings.get(t);
+                output.writeUTF(terms[t]);
+                output.writeInt(p.length);
+                output.writeInt(p.df);
+                output.writeInt(p.last);
+                output.writeInt(p.maxTf);
+                output.writeInt(p.minSize);
+                output.writeInt(p.bestTf);
+                output.writeInt(p.bestMaxTf);
+                output.writeInt(p.skip.size());
+                for (int i = 0; i < p.skip.size(); i++) {
+                    output.writeInt(p.skip.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens an index file in read-only mode. The posting lists are
+     * memory-mapped. The mapping remains valid until the index is
+     * garbage collected.
+     * @param path the file path.
+     * @throws IOException when fails to read the file.
+     * @return the index.
+     */
+    public static InvertedIndex open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new IOException("Truncated index file header: " + path);
+                }
+            }
+            header.rewind();
+
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not an index file: " + path);
+            }
+
+            InvertedIndex index = new InvertedIndex(true);
+            index.ndoc = header.getInt();
+            int nterm = header.getInt();
+            index.size = header.getLong();
+            long length = header.getLong();
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, HEADER, length);
+
+            channel.position(HEADER + length);
+            DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+            index.docSize = new int[index.ndoc];
+            index.docMaxTf = new int[index.ndoc];
+            for (int i = 0; i < index.ndoc; i++) {
+                index.docSize[i] = input.readInt();
+                index.docMaxTf[i] = input.readInt();
+            }
+
+            int offset = 0;
+            for (int t = 0; t < nterm; t++) {
+                Postings p = new Postings();
+                String term = input.readUTF();
+                p.data = null;
+                p.length = input.readInt();
+                p.df = input.readInt();
+                p.last = input.readInt();
+                p.maxTf = input.readInt();
+                p.minSize = input.readInt();
+                p.bestTf = input.readInt();
+                p.bestMaxTf = input.readInt();
+                int nskip = input.readInt();
+                for (int i = 0; i < nskip; i++) {
+                    p.skip.add(input.readInt());
+                }
+
+                ByteBuffer buffer = data.duplicate();
+                buffer.position(offset);
+                buffer.limit(offset + p.length);
+                p.buffer = buffer.slice();
+                offset += p.length;
+
+                index.vocabulary.put(term, t);
+                index.postings.add(p);
+            }
+
+            logger.info("Open inverted index {} of {} documents and {} terms", path, index.ndoc, nterm);
+            return index;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.nlp;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing hash map of non-negative long keys to counts with
+ * linear probing. Compared to HashMap&lt;K, MutableInt&gt;, it takes
+ * 16 bytes per entry at the load factor 0.5 to 0.75 without any boxing.
+ *
+ * @author Haifeng Li
+ */
+class LongCountMap {
+    /** The empty slot. */
+    private static final long FREE = -1L;
+
+    /**
+     * The visitor of entries.
+     */
+    interface Visitor {
+        /**
+         * Visits an entry.
+         * @param key the key.
+         * @param count the count.
+         */
+        void accept(long key, long count);
+    }
+
+    /** The keys. */
+    private long[] keys;
+    /** The counts. */
+    private long[] counts;
+    /** The number of entries. */
+    private int size;
+    /** The mask of slot index. */
+    private int mask;
+
+    /**
+     * Constructor.
+     */
+    LongCountMap() {
+        this(16);
+    }
+
+    /**
+     * Constructor.
+     * @param capacity the initial capacity, a power of 2.
+     */
+    LongCountMap(int capacity) {
+        keys = new long[capacity];
+        counts = new long[capacity];
+        Arrays.fill(keys, FREE);
+        mask = capacity - 1;
+    }
+
+    /**
+     * Returns the number of entries.
+     * @return the number of entries.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the hash code of key.
+     * @param key the key.
+     * @return the hash code.
+     */
+    static long hash(long key) {
+        return key * 0x9E3779B97F4A7C15L;
+    }
+
+    /** Returns the first probe of key. */
+    private int slot(long key) {
+        long h = hash(key);
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * Returns the count of key.
+     * @param key the key.
+     * @return the count, 0 if the key is absent.
+     */
+    long get(long key) {
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key) return counts[i];
+            if (k == FREE) return 0;
+        }
+    }
+
+    /**
+     * Adds the count of key.
+     * @param key the non-negative key.
+     * @param count the count to add.
+     */
+    void add(long key, long count) {
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key) {
+                counts[i] += count;
+                return;
+            }
+
+            if (k == FREE) {
+                keys[i] = key;
+                counts[i] = count;
+                if (++size > keys.length * 3 / 4) {
+                    rehash(keys.length * 2);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Visits all entries.
+     * @param visitor the visitor.
+     */
+    void forEach(Visitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE) {
+                visitor.accept(keys[i], counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the keys of entries.
+     * @return the keys.
+     */
+    long[] keys() {
+        long[] a = new long[size];
+        int n = 0;
+        for (long key : keys) {
+            if (key != FREE) a[n++] = key;
+        }
+        return a;
+    }
+
+    /**
+     * Removes all entries and releases the memory.
+     */
+    void clear() {
+        keys = new long[16];
+        counts = new long[16];
+        Arrays.fill(keys, FREE);
+        mask = 15;
+        size = 0;
+    }
+
+    /** Resizes the table. */
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldCounts = counts;
+        keys = new long[capacity];
+        counts = new long[capacity];
+        Arrays.fill(keys, FREE);
+        mask = capacity - 1;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != FREE) {
+                int j = slot(key);
+                while (keys[j] != FREE) j = (j + 1) & mask;
+                keys[j] = key;
+                counts[j] = oldCounts[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.nlp;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.stream.IntStream;
+import smile.nlp.relevance.Relevance;
+import smile.nlp.relevance.RelevanceRanker;
+
+/**
+ * The term and n-gram frequencies of a corpus, built by
+ * {@link CorpusBuilder}. The words are interned to int ids and
+ * the n-grams are counted by the packed ids of words. As the
+ * documents are not kept, the search methods of {@link Corpus}
+ * find no documents. It can be used for collocation extraction,
+ * e.g. with {@link smile.nlp.collocation.Bigram#of(Corpus, int, int)}.
+ *
+ * @author Haifeng Li
+ */
+public class NGramCorpus implements Corpus {
+    /** The words by id. The unused ids are null. */
+    private final String[] words;
+    /** The word to id map. */
+    private final HashMap<String, Integer> index;
+    /** The term frequency by word id. */
+    private final long[] freq;
+    /** The frequency of n-grams of size 2, 3, ... */
+    private final LongCountMap[] ngrams;
+    /** The number of documents. */
+    private final int ndoc;
+    /** The number of terms in the corpus. */
+    private final long size;
+
+    /**
+     * Constructor.
+     * @param words the words by id.
+     * @param freq the term frequency by word id.
+     * @param ngrams the frequency of n-grams of size 2, 3, ...
+     * @param ndoc the number of documents.
+     * @param size the number of terms in the corpus.
+     */
+    NGramCorpus(String[] words, long[] freq, LongCountMap[] ngrams, int ndoc, long size) {
+        this.words = words;
+        this.freq = freq;
+        this.ngrams = ngrams;
+        this.ndoc = ndoc;
+        this.size = size;
+
+        index = new HashMap<>(words.length * 4 / 3 + 1);
+        for (int i = 0; i < words.length; i++) {
+            if (words[i] != null) index.put(words[i], i);
+        }
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public int ndoc() {
+        return ndoc;
+    }
+
+    @Override
+    public int nterm() {
+        return index.size();
+    }
+
+    @Override
+    public long nbigram() {
+        return ngrams.length == 0 ? 0 : ngrams[0].size();
+    }
+
+    @Override
+    public int avgDocSize() {
+        return (int) (size / ndoc);
+    }
+
+    /**
+     * Returns the maximum size of n-grams.
+     * @return the maximum size of n-grams.
+     */
+    public int maxNGramSize() {
+        return ngrams.length + 1;
+    }
+
+    @Override
+    public int count(String term) {
+        return (int) Math.min(Integer.MAX_VALUE, frequency(term));
+    }
+
+    @Override
+    public int count(Bigram bigram) {
+        return (int) Math.min(Integer.MAX_VALUE, frequency(bigram.w1, bigram.w2));
+    }
+
+    /**
+     * Returns the frequency of an n-gram.
+     * @param ngram the words of n-gram.
+     * @return the frequency of n-gram.
+     */
+    public long frequency(String... ngram) {
+        int n = ngram.length;
+        if (n == 0 || n > maxNGramSize()) {
+            throw new IllegalArgumentException("Invalid n-gram size: " + n);
+        }
+
+        long key = 0;
+        int bits = CorpusBuilder.bits(n);
+        long oov = n == 1 ? Long.MAX_VALUE : CorpusBuilder.oov(n);
+        for (String word : ngram) {
+            Integer id = index.get(word);
+            // The n-grams of out of vocabulary words are not counted.
+            if (id == null || id >= oov) return 0;
+            key = (key << bits) | id;
+        }
+
+        return n == 1 ? freq[(int) key] : ngrams[n - 2].get(key);
+    }
+
+    /**
+     * Returns the n-grams of given size in descending order of frequency.
+     * @param n the size of n-grams.
+     * @param minFrequency the minimum frequency of n-grams.
+     * @return the n-grams.
+     */
+    public smile.nlp.collocation.NGram[] ngrams(int n, int minFrequency) {
+        if (n <= 0 || n > maxNGramSize()) {
+            throw new IllegalArgumentException("Invalid n-gram size: " + n);
+        }
+
+        int bits = CorpusBuilder.bits(n);
+        long mask = (1L << bits) - 1;
+        long[] keys = n == 1 ?
+                IntStream.range(0, words.length).filter(i -> words[i] != null && freq[i] >= minFrequency).asLongStream().toArray() :
+                Arrays.stream(ngrams[n - 2].keys()).filter(key -> ngrams[n - 2].get(key) >= minFrequency).toArray();
+
+        smile.nlp.collocation.NGram[] result = new smile.nlp.collocation.NGram[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            long key = keys[i];
+            String[] ngram = new String[n];
+            for (int j = n; j-- > 0; key >>>= bits) {
+                ngram[j] = words[(int) (key & mask)];
+            }
+            long count = n == 1 ? freq[(int) keys[i]] : ngrams[n - 2].get(keys[i]);
+            result[i] = new smile.nlp.collocation.NGram(ngram, (int) Math.min(Integer.MAX_VALUE, count));
+        }
+
+        Arrays.sort(result, Collections.reverseOrder());
+        return result;
+    }
+
+    @Override
+    public Iterator<String> terms() {
+        return index.keySet().iterator();
+    }
+
+    @Override
+    public Iterator<Bigram> bigrams() {
+        if (ngrams.length == 0) {
+            return Collections.emptyIterator();
+        }
+
+        int bits = CorpusBuilder.bits(2);
+        long mask = (1L << bits) - 1;
+        return Arrays.stream(ngrams[0].keys())
+                .mapToObj(key -> new Bigram(words[(int) (key >>> bits)], words[(int) (key & mask)]))
+                .iterator();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * As the documents are not kept, no documents are found.
+     */
+    @Override
+    public Iterator<Text> search(String term) {
+        return Collections.emptyIterator();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * As the documents are not kept, no documents are found.
+     */
+    @Override
+    public Iterator<Relevance> search(RelevanceRanker ranker, String term) {
+        return Collections.emptyIterator();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * As the documents are not kept, no documents are found.
+     */
+    @Override
+    public Iterator<Relevance> search(RelevanceRanker ranker, String[] terms) {
+        return Collections.emptyIterator();
+    }
+}
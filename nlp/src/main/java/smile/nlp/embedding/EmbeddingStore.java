@@ -0,0 +1,669 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.nlp.embedding;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+import smile.neighbor.Neighbor;
+
+/**
+ * The memory-mapped store of word embeddings. The embedding vectors are
+ * stored in row-major order in a compact binary file, together with the
+ * vector norms, the vocabulary and an open addressing hash table of words.
+ * Opening a store only maps the file into memory. The vectors and the
+ * word index stay off the Java heap and are paged in by the operating
+ * system on demand, which can be shared by multiple processes.
+ * <p>
+ * The store is converted once from a word2vec binary file or a GloVe
+ * text file, without loading the model into the heap. A Java buffer is
+ * indexed by int. Therefore, the vectors are mapped in chunks of rows
+ * so that the vocabulary of a few millions of words can be mapped at
+ * once.
+ * <p>
+ * The nearest neighbors of a word or a vector by cosine similarity are
+ * searched by a parallel linear scan of the vectors. The distance of
+ * neighbors is 1 - cosine similarity.
+ *
+ * @author Haifeng Li
+ */
+public class EmbeddingStore {
+    private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(EmbeddingStore.class);
+
+    /** The magic number of embedding file, i.e. "SMWE" in ASCII. */
+    private static final int MAGIC = 0x534D5745;
+    /** The size of file header. */
+    private static final int HEADER = 32;
+    /** The byte order of embedding file. */
+    private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+    /** The minimum number of vectors in a parallel partition of search. */
+    private static final int MIN_PARTITION_SIZE = 4096;
+
+    /** The size of vocabulary. */
+    private final int size;
+    /** The dimension of vectors. */
+    private final int dim;
+    /** The number of rows in a chunk of vectors. */
+    private final int chunkSize;
+    /** The chunks of vectors. */
+    private final FloatBuffer[] vectors;
+    /** The L2 norm of vectors. */
+    private final FloatBuffer norms;
+    /** The start of each word in the word bytes, plus the total length. */
+    private final IntBuffer offsets;
+    /** The hash table of word index, of which -1 is an empty slot. */
+    private final IntBuffer table;
+    /** The UTF-8 bytes of words. */
+    private final ByteBuffer words;
+
+    /**
+     * Constructor.
+     */
+    private EmbeddingStore(int size, int dim, int chunkSize, FloatBuffer[] vectors, FloatBuffer norms, IntBuffer offsets, IntBuffer table, ByteBuffer words) {
+        this.size = size;
+        this.dim = dim;
+        this.chunkSize = chunkSize;
+        this.vectors = vectors;
+        this.norms = norms;
+        this.offsets = offsets;
+        this.table = table;
+        this.words = words;
+    }
+
+    /**
+     * Returns the size of vocabulary.
+     * @return the size of vocabulary.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the dimension of embedding vector space.
+     * @return the dimension of embedding vector space.
+     */
+    public int dimension() {
+        return dim;
+    }
+
+    /**
+     * Returns the word of given index.
+     * @param i the index of word.
+     * @return the word.
+     */
+    public String word(int i) {
+        int from = offsets.get(i);
+        byte[] bytes = new byte[offsets.get(i + 1) - from];
+        for (int j = 0; j < bytes.length; j++) {
+            bytes[j] = words.get(from + j);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the index of a word.
+     * @param word the word.
+     * @return the index of word, or -1 if the word is not in the vocabulary.
+     */
+    public int indexOf(String word) {
+        byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+        int mask = table.capacity() - 1;
+        for (int slot = hash(bytes) & mask; ; slot = (slot + 1) & mask) {
+            int i = table.get(slot);
+            if (i < 0 || equals(i, bytes)) return i;
+        }
+    }
+
+    /**
+     * Returns true if the word is in the vocabulary.
+     * @param word the word.
+     * @return true if the word is in the vocabulary.
+     */
+    public boolean contains(String word) {
+        return indexOf(word) >= 0;
+    }
+
+    /**
+     * Returns the embedding vector of given index.
+     * @param i the index of word.
+     * @return the embedding vector.
+     */
+    public float[] get(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index %d out of bounds for vocabulary size %d", i, size));
+        }
+
+        float[] vector = new float[dim];
+        row(i, vector);
+        return vector;
+    }
+
+    /**
+     * Returns the embedding vector of a word.
+     * @param word the word.
+     * @return the embedding vector, or null if the word is not
+     *         in the vocabulary.
+     */
+    public float[] get(String word) {
+        int i = indexOf(word);
+        return i < 0 ? null : get(i);
+    }
+
+    /**
+     * Returns the embedding vectors of words. The words are looked
+     * up in parallel.
+     * @param words the words.
+     * @return the embedding vectors, of which the row is null if the
+     *         word is not in the vocabulary.
+     */
+    public float[][] get(String... words) {
+        float[][] vectors = new float[words.length][];
+        IntStream.range(0, words.length).parallel().forEach(i -> vectors[i] = get(words[i]));
+        return vectors;
+    }
+
+    /**
+     * Returns the embedding vector of a word. For Scala convenience.
+     * @param word the word.
+     * @return the embedding vector.
+     */
+    public float[] apply(String word) {
+        return get(word);
+    }
+
+    /**
+     * Returns the k nearest words of a word by cosine similarity,
+     * excluding the word itself.
+     * @param word the query word.
+     * @param k the number of neighbors.
+     * @return the neighbors in ascending order of distance, or an empty
+     *         array if the word is not in the vocabulary.
+     */
+    @SuppressWarnings("unchecked")
+    public Neighbor<String, float[]>[] nearest(String word, int k) {
+        int i = indexOf(word);
+        if (i < 0) return (Neighbor<String, float[]>[]) new Neighbor[0];
+        return nearest(get(i), k, i);
+    }
+
+    /**
+     * Returns the k nearest words of a vector by cosine similarity.
+     * @param vector the query vector.
+     * @param k the number of neighbors.
+     * @return the neighbors in ascending order of distance.
+     */
+    public Neighbor<String, float[]>[] nearest(float[] vector, int k) {
+        return nearest(vector, k, -1);
+    }
+
+    /**
+     * Returns the k nearest words of a vector by cosine similarity.
+     * The vectors are scanned by partitions in parallel. Each partition
+     * keeps its own k nearest neighbors, which are merged at the end.
+     * @param q the query vector.
+     * @param k the number of neighbors.
+     * @param exclude the index of word to exclude, or -1.
+     * @return the neighbors in ascending order of distance.
+     */
+    @SuppressWarnings("unchecked")
+    private Neighbor<String, float[]>[] nearest(float[] q, int k, int exclude) {
+        if (q.length != dim) {
+            throw new IllegalArgumentException(String.format("Invalid vector dimension: %d, expected: %d", q.length, dim));
+        }
+
+        if (k <= 0) {
+            throw new IllegalArgumentException("Invalid k: " + k);
+        }
+
+        double qnorm = 0.0;
+        for (float x : q) qnorm += x * x;
+        qnorm = Math.sqrt(qnorm);
+        if (qnorm == 0.0) {
+            throw new IllegalArgumentException("Zero query vector");
+        }
+
+        int np = Math.max(1, Math.min(4 * Runtime.getRuntime().availableProcessors(), size / MIN_PARTITION_SIZE));
+        double norm = qnorm;
+        // The (index, distance) pairs in max heaps of distance.
+        List<PriorityQueue<double[]>> heaps = new ArrayList<>();
+        for (int p = 0; p < np; p++) {
+            heaps.add(new PriorityQueue<>((a, b) -> Double.compare(b[1], a[1])));
+        }
+
+        IntStream.range(0, np).parallel().forEach(p -> {
+            PriorityQueue<double[]> heap = heaps.get(p);
+            float[] x = new float[dim];
+            int from = (int) ((long) size * p / np);
+            int to = (int) ((long) size * (p + 1) / np);
+            for (int i = from; i < to; i++) {
+                float xnorm = norms.get(i);
+                if (i == exclude || xnorm == 0.0f) continue;
+
+                row(i, x);
+                double dot = 0.0;
+                for (int j = 0; j < dim; j++) {
+                    dot += q[j] * x[j];
+                }
+
+                double d = 1.0 - dot / (norm * xnorm);
+                if (heap.size() < k) {
+                    heap.add(new double[]{i, d});
+                } else if (d < heap.peek()[1]) {
+                    heap.poll();
+                    heap.add(new double[]{i, d});
+                }
+            }
+        });
+
+        PriorityQueue<double[]> heap = heaps.get(0);
+        for (int p = 1; p < np; p++) {
+            for (double[] neighbor : heaps.get(p)) {
+                if (heap.size() < k) {
+                    heap.add(neighbor);
+                } else if (neighbor[1] < heap.peek()[1]) {
+                    heap.poll();
+                    heap.add(neighbor);
+                }
+            }
+        }
+
+        Neighbor<String, float[]>[] neighbors = (Neighbor<String, float[]>[]) new Neighbor[heap.size()];
+        for (int i = neighbors.length; i-- > 0; ) {
+            double[] neighbor = heap.poll();
+            int index = (int) neighbor[0];
+            neighbors[i] = new Neighbor<>(word(index), get(index), index, neighbor[1]);
+        }
+        Arrays.sort(neighbors);
+        return neighbors;
+    }
+
+    /** Copies the vector of row i into the array. */
+    private void row(int i, float[] x) {
+        FloatBuffer buffer = vectors[i / chunkSize].duplicate();
+        buffer.position((i % chunkSize) * dim);
+        buffer.get(x);
+    }
+
+    /** Returns true if the word i has the bytes. */
+    private boolean equals(int i, byte[] bytes) {
+        int from = offsets.get(i);
+        if (offsets.get(i + 1) - from != bytes.length) return false;
+        for (int j = 0; j < bytes.length; j++) {
+            if (words.get(from + j) != bytes[j]) return false;
+        }
+        return true;
+    }
+
+    /** Returns the FNV-1a hash of bytes. */
+    private static int hash(byte[] bytes) {
+        int h = 0x811C9DC5;
+        for (byte b : bytes) {
+            h ^= b & 0xFF;
+            h *= 0x01000193;
+        }
+        return h;
+    }
+
+    /**
+     * Opens an embedding store file. The mapping remains valid until
+     * the store is garbage collected.
+     * @param path the path to embedding store file.
+     * @throws IOException when fails to read the file.
+     * @return the embedding store.
+     */
+    public static EmbeddingStore open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER).order(ORDER);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new IOException("Truncated embedding file header: " + path);
+                }
+            }
+            header.rewind();
+
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not an embedding file: " + path);
+            }
+
+            int size = header.getInt();
+            int dim = header.getInt();
+            int capacity = header.getInt();
+            int length = header.getInt();
+
+            long offset = HEADER;
+            int chunkSize = Integer.MAX_VALUE / (dim * Float.BYTES);
+            FloatBuffer[] vectors = new FloatBuffer[Math.max(1, (size + chunkSize - 1) / chunkSize)];
+            for (int c = 0; c < vectors.length; c++) {
+                int rows = Math.min(chunkSize, size - c * chunkSize);
+                long bytes = (long) rows * dim * Float.BYTES;
+                vectors[c] = channel.map(FileChannel.MapMode.READ_ONLY, offset, bytes).order(ORDER).asFloatBuffer();
+                offset += bytes;
+            }
+
+            long bytes = 4L * size + 4L * (size + 1) + 4L * capacity + length;
+            if (channel.size() < offset + bytes) {
+                throw new IOException(String.format("Truncated embedding file %s: %d bytes, expected: %d", path, channel.size(), offset + bytes));
+            }
+
+            ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, offset, bytes).order(ORDER);
+            FloatBuffer norms = slice(index, 0, 4 * size).asFloatBuffer();
+            IntBuffer offsets = slice(index, 4 * size, 4 * (size + 1)).asIntBuffer();
+            IntBuffer table = slice(index, 8 * size + 4, 4 * capacity).asIntBuffer();
+            ByteBuffer words = slice(index, 8 * size + 4 + 4 * capacity, length);
+
+            logger.info("Open embedding store {} of {} words and {} dimensions", path, size, dim);
+            return new EmbeddingStore(size, dim, chunkSize, vectors, norms, offsets, table, words);
+        }
+    }
+
+    /** Returns a slice of buffer. */
+    private static ByteBuffer slice(ByteBuffer buffer, int from, int length) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(from);
+        slice.limit(from + length);
+        return slice.slice().order(ORDER);
+    }
+
+    /**
+     * Writes the word embedding model to an embedding store file.
+     * @param model the word embedding model.
+     * @param path the path to embedding store file.
+     * @throws IOException when fails to write the file.
+     */
+    public static void write(Word2Vec model, Path path) throws IOException {
+        try (Writer writer = new Writer(path, model.dimension())) {
+            int dim = model.dimension();
+            float[] vector = new float[dim];
+            for (int i = 0; i < model.words.length; i++) {
+                for (int j = 0; j < dim; j++) {
+                    vector[j] = model.vectors.getFloat(i, j);
+                }
+                writer.add(model.words[i], vector);
+            }
+            writer.complete();
+        }
+    }
+
+    /**
+     * Converts a <a href="https://code.google.com/archive/p/word2vec/">pre-trained</a>
+     * word2vec binary file of ByteOrder.LITTLE_ENDIAN to an embedding store
+     * file. The model is streamed without being loaded into memory.
+     * @param input the path to word2vec model file.
+     * @param output the path to embedding store file.
+     * @throws IOException when fails to read or write the file.
+     */
+    public static void fromWord2Vec(Path input, Path output) throws IOException {
+        fromWord2Vec(input, ByteOrder.LITTLE_ENDIAN, output);
+    }
+
+    /**
+     * Converts a <a href="https://code.google.com/archive/p/word2vec/">pre-trained</a>
+     * word2vec binary file to an embedding store file. The model is
+     * streamed without being loaded into memory.
+     * @param input the path to word2vec model file.
+     * @param order the byte order of model file.
+     * @param output the path to embedding store file.
+     * @throws IOException when fails to read or write the file.
+     */
+    public static void fromWord2Vec(Path input, ByteOrder order, Path output) throws IOException {
+        try (InputStream stream = new BufferedInputStream(Files.newInputStream(input), 1 << 20)) {
+            String line = token(stream, '\n');
+            String[] tokens = line.trim().split("\\s+");
+            if (tokens.length != 2) {
+                throw new IllegalStateException("Invalid first line: " + line);
+            }
+
+            int size = Integer.parseInt(tokens[0]);
+            int dim = Integer.parseInt(tokens[1]);
+            byte[] bytes = new byte[dim * Float.BYTES];
+            FloatBuffer buffer = ByteBuffer.wrap(bytes).order(order).asFloatBuffer();
+            float[] vector = new float[dim];
+
+            try (Writer writer = new Writer(output, dim)) {
+                for (int i = 0; i < size; i++) {
+                    String word = token(stream, ' ');
+                    for (int n = 0; n < bytes.length; ) {
+                        int read = stream.read(bytes, n, bytes.length - n);
+                        if (read < 0) throw new EOFException("Truncated word2vec file: " + input);
+                        n += read;
+                    }
+
+                    buffer.rewind();
+                    buffer.get(vector);
+                    writer.add(word, vector);
+                }
+                writer.complete();
+            }
+        }
+    }
+
+    /**
+     * Converts a GloVe text file to an embedding store file. The model
+     * is streamed without being loaded into memory.
+     * @param input the path to GloVe model file.
+     * @param output the path to embedding store file.
+     * @throws IOException when fails to read or write the file.
+     */
+    public static void fromGloVe(Path input, Path output) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(input)) {
+            Writer writer = null;
+            try {
+                String line;
+                float[] vector = null;
+                while ((line = reader.readLine()) != null) {
+                    String[] tokens = line.split("\\s+");
+                    if (writer == null) {
+                        writer = new Writer(output, tokens.length - 1);
+                        vector = new float[tokens.length - 1];
+                    }
+
+                    if (tokens.length != vector.length + 1) {
+                        throw new IllegalStateException("Invalid vector dimension: " + line);
+                    }
+
+                    for (int i = 0; i < vector.length; i++) {
+                        vector[i] = Float.parseFloat(tokens[i + 1]);
+                    }
+                    writer.add(tokens[0], vector);
+                }
+
+                if (writer != null) writer.complete();
+            } finally {
+                if (writer != null) writer.close();
+            }
+        }
+    }
+
+    /**
+     * Reads a UTF-8 token until the delimiter, skipping newlines
+     * in front of the token.
+     */
+    private static String token(InputStream stream, char delimiter) throws IOException {
+        java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+        for (int c = stream.read(); c != delimiter; c = stream.read()) {
+            if (c < 0) throw new EOFException("Unexpected end of file");
+            // some binary files have newline
+            if (c != '\n') bytes.write(c);
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The writer of embedding store file. The vectors are written
+     * sequentially. The norms, vocabulary and word index are written
+     * when closing. If the writer is closed without being completed,
+     * e.g. when the input model is truncated or malformed, the partial
+     * file is deleted so that it cannot be opened as a valid store.
+     */
+    private static class Writer implements Closeable {
+        /** The path to embedding store file. */
+        private final Path path;
+        /** The file channel. */
+        private final FileChannel channel;
+        /** The dimension of vectors. */
+        private final int dim;
+        /** The buffer of a vector. */
+        private final ByteBuffer buffer;
+        /** The UTF-8 bytes of words. */
+        private final List<byte[]> words = new ArrayList<>();
+        /** The L2 norm of vectors. */
+        private float[] norms = new float[1024];
+        /** True if all vectors are added. */
+        private boolean completed = false;
+
+        /**
+         * Constructor.
+         * @param path the path to embedding store file.
+         * @param dim the dimension of vectors.
+         */
+        Writer(Path path, int dim) throws IOException {
+            if (dim <= 0) {
+                throw new IllegalArgumentException("Invalid vector dimension: " + dim);
+            }
+
+            this.path = path;
+            this.dim = dim;
+            this.buffer = ByteBuffer.allocate(dim * Float.BYTES).order(ORDER);
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            channel.position(HEADER);
+        }
+
+        /**
+         * Appends a word and its vector.
+         * @param word the word.
+         * @param vector the embedding vector.
+         */
+        void add(String word, float[] vector) throws IOException {
+            double norm = 0.0;
+            buffer.clear();
+            for (float x : vector) {
+                buffer.putFloat(x);
+                norm += x * x;
+            }
+            write(buffer);
+
+            int n = words.size();
+            if (n == norms.length) {
+                norms = Arrays.copyOf(norms, 2 * n);
+            }
+            norms[n] = (float) Math.sqrt(norm);
+            words.add(word.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Marks that all vectors are added. Otherwise, the partial
+         * file is deleted when closing.
+         */
+        void complete() {
+            completed = true;
+        }
+
+        /** Writes the buffer to the channel. */
+        private void write(ByteBuffer buffer) throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!completed) {
+                channel.close();
+                Files.deleteIfExists(path);
+                return;
+            }
+
+            boolean success = false;
+            try {
+                int size = words.size();
+                int capacity = Integer.highestOneBit(Math.max(2 * size, 2) - 1) << 1;
+                long length = words.stream().mapToLong(word -> word.length).sum();
+                if (4L * (2 * size + 1 + capacity) + length > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Too large vocabulary: " + size);
+                }
+
+                ByteBuffer index = ByteBuffer.allocate((int) (4L * (2 * size + 1 + capacity) + length)).order(ORDER);
+                for (int i = 0; i < size; i++) {
+                    index.putFloat(norms[i]);
+                }
+
+                int offset = 0;
+                for (byte[] word : words) {
+                    index.putInt(offset);
+                    offset += word.length;
+                }
+                index.putInt(offset);
+
+                // Open addressing with linear probing. The first occurrence
+                // of duplicate words wins.
+                int[] table = new int[capacity];
+                Arrays.fill(table, -1);
+                int mask = capacity - 1;
+                for (int i = 0; i < size; i++) {
+                    byte[] word = words.get(i);
+                    int slot = hash(word) & mask;
+                    while (table[slot] >= 0 && !Arrays.equals(words.get(table[slot]), word)) {
+                        slot = (slot + 1) & mask;
+                    }
+                    if (table[slot] < 0) table[slot] = i;
+                }
+
+                for (int i : table) {
+                    index.putInt(i);
+                }
+
+                for (byte[] word : words) {
+                    index.put(word);
+                }
+                write(index);
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER).order(ORDER);
+                header.putInt(MAGIC);
+                header.putInt(size);
+                header.putInt(dim);
+                header.putInt(capacity);
+                header.putInt((int) length);
+                header.position(HEADER);
+                channel.position(0);
+                write(header);
+                success = true;
+            } finally {
+                channel.close();
+                if (!success) Files.deleteIfExists(path);
+            }
+        }
+    }
+}
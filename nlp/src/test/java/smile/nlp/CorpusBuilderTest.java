@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.nlp;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Haifeng Li
+ */
+public class CorpusBuilderTest {
+    List<String> docs;
+    SimpleCorpus simple = new SimpleCorpus();
+
+    public CorpusBuilderTest() throws Exception {
+        docs = smile.util.Paths.getTestDataLines("text/plot.tok.gt9.5000")
+                .map(String::trim)
+                .filter(line -> !line.isEmpty())
+                .collect(Collectors.toList());
+        docs.forEach(line -> simple.add(new Text(line)));
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /** Checks the counts against SimpleCorpus. */
+    private void check(NGramCorpus corpus) {
+        assertEquals(58064, corpus.size());
+        assertEquals(5000, corpus.ndoc());
+        assertEquals(15077, corpus.nterm());
+        assertEquals(18303, corpus.nbigram());
+        assertEquals(11, corpus.avgDocSize());
+        assertEquals(27, corpus.count("romantic"));
+        assertEquals(9, corpus.count(new Bigram("romantic", "comedy")));
+
+        Iterator<String> terms = simple.terms();
+        while (terms.hasNext()) {
+            String term = terms.next();
+            assertEquals(term, simple.count(term), corpus.count(term));
+        }
+
+        Iterator<Bigram> bigrams = simple.bigrams();
+        while (bigrams.hasNext()) {
+            Bigram bigram = bigrams.next();
+            assertEquals(bigram.toString(), simple.count(bigram), corpus.count(bigram));
+        }
+    }
+
+    @Test
+    public void testBuild() throws Exception {
+        System.out.println("build");
+        CorpusBuilder builder = new CorpusBuilder(3);
+        builder.add(docs);
+        NGramCorpus corpus = builder.build(1);
+        check(corpus);
+
+        smile.nlp.collocation.NGram[] trigrams = corpus.ngrams(3, 3);
+        assertTrue(trigrams.length > 0);
+        for (int i = 0; i < trigrams.length; i++) {
+            assertTrue(trigrams[i].count >= 3);
+            assertEquals(trigrams[i].count, corpus.frequency(trigrams[i].words));
+            if (i > 0) assertTrue(trigrams[i-1].count >= trigrams[i].count);
+        }
+
+        smile.nlp.collocation.Bigram[] expected = smile.nlp.collocation.Bigram.of(simple, 10, 5);
+        smile.nlp.collocation.Bigram[] bigrams = smile.nlp.collocation.Bigram.of(corpus, 10, 5);
+        assertEquals(expected.length, bigrams.length);
+        for (int i = 0; i < bigrams.length; i++) {
+            assertEquals(expected[i].score, bigrams[i].score, 1E-7);
+        }
+    }
+
+    @Test
+    public void testOutOfVocabulary() throws Exception {
+        System.out.println("out of vocabulary");
+        // Split by white spaces for speed.
+        CorpusBuilder builder = new CorpusBuilder(text -> new String[]{text}, text -> text.split(" "), null, null, 3, null, Long.MAX_VALUE);
+        builder.add(Stream.of("delta epsilon zeta", "delta epsilon zeta"));
+        // More distinct words than the trigram key supports.
+        builder.add(IntStream.range(0, 22000).mapToObj(i ->
+                IntStream.range(0, 100).mapToObj(j -> "w" + (i * 100 + j)).collect(Collectors.joining(" "))));
+        builder.add(Stream.of("alpha beta gamma", "alpha beta gamma"));
+        NGramCorpus corpus = builder.build(1);
+
+        assertEquals(2200006, corpus.nterm());
+        assertEquals(2, corpus.frequency("delta", "epsilon", "zeta"));
+        assertEquals(2, corpus.frequency("alpha"));
+        assertEquals(2, corpus.frequency("alpha", "beta"));
+        assertEquals(0, corpus.frequency("alpha", "beta", "gamma"));
+        for (smile.nlp.collocation.NGram trigram : corpus.ngrams(3, 2)) {
+            assertEquals("delta", trigram.words[0]);
+        }
+
+        // The word ids are in the order of first occurrence so that the
+        // trigrams of words after the first 2^21 - 1 distinct ones are dropped.
+        long oov = CorpusBuilder.oov(3);
+        assertEquals(1, corpus.frequency("w2097143", "w2097144", "w2097145"));
+        assertEquals(0, corpus.frequency("w2097146", "w2097147", "w2097148"));
+        long expected = 1 + IntStream.range(0, 2200000).filter(i -> i % 100 < 98 && i + 5 < oov).count();
+        assertEquals(expected, corpus.ngrams(3, 1).length);
+
+        assertFalse(corpus.search("alpha").hasNext());
+    }
+
+    @Test
+    public void testSpill() throws Exception {
+        System.out.println("spill");
+        CorpusBuilder reference = new CorpusBuilder(3);
+        reference.add(docs);
+        NGramCorpus expected = reference.build(2);
+
+        Path dir = Files.createTempDirectory("smile-ngram");
+        try {
+            CorpusBuilder builder = new CorpusBuilder(3, dir, 1000);
+            builder.add(docs.stream());
+            NGramCorpus corpus = builder.build(2);
+            assertEquals(0, Files.list(dir).count());
+
+            assertEquals(expected.nbigram(), corpus.nbigram());
+            assertEquals(expected.size(), corpus.size());
+            for (int n = 1; n <= 3; n++) {
+                smile.nlp.collocation.NGram[] ngrams = expected.ngrams(n, 2);
+                assertEquals(ngrams.length, corpus.ngrams(n, 2).length);
+                for (smile.nlp.collocation.NGram ngram : ngrams) {
+                    assertEquals(ngram.count, corpus.frequency(ngram.words));
+                }
+            }
+        } finally {
+            Files.deleteIfExists(dir);
+        }
+    }
+}
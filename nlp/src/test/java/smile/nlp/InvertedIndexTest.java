@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.nlp;
+
+import java.io.File;
+import java.util.Arrays;
+import smile.math.MathEx;
+import smile.nlp.relevance.BM25;
+import smile.nlp.relevance.TFIDF;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Haifeng Li
+ */
+public class InvertedIndexTest {
+    /** The number of documents. */
+    static final int n = 5000;
+    /** The number of distinct terms. */
+    static final int m = 500;
+    String[][] docs = new String[n][];
+    InvertedIndex index = new InvertedIndex();
+
+    public InvertedIndexTest() {
+        MathEx.setSeed(19650218); // to get repeatable results.
+        for (int i = 0; i < n; i++) {
+            String[] doc = new String[5 + MathEx.randomInt(50)];
+            for (int j = 0; j < doc.length; j++) {
+                // skewed term distribution
+                double u = MathEx.random();
+                doc[j] = "t" + (int) (m * u * u * u);
+            }
+            docs[i] = doc;
+            assertEquals(i, index.add(doc));
+        }
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /** Returns the term frequency in a document. */
+    static int tf(String[] doc, String term) {
+        int tf = 0;
+        for (String word : doc) {
+            if (word.equals(term)) tf++;
+        }
+        return tf;
+    }
+
+    /** Returns the maximum term frequency in a document. */
+    static int maxtf(String[] doc) {
+        java.util.Map<String, Integer> count = new java.util.HashMap<>();
+        for (String word : doc) count.merge(word, 1, Integer::sum);
+        return count.values().stream().max(Integer::compare).get();
+    }
+
+    /** Checks the hits against exhaustive scoring. */
+    void check(InvertedIndex.Hit[] hits, double[] scores, int k) {
+        double[] sorted = Arrays.stream(scores).filter(s -> s > 0).map(s -> -s).sorted().map(s -> -s).toArray();
+        assertEquals(Math.min(k, sorted.length), hits.length);
+        for (int i = 0; i < hits.length; i++) {
+            assertEquals(sorted[i], hits[i].score, 1E-9);
+            assertEquals(scores[hits[i].doc], hits[i].score, 1E-9);
+        }
+    }
+
+    @Test
+    public void testBM25() throws Exception {
+        System.out.println("BM25");
+        BM25 bm25 = new BM25();
+        String[][] queries = {{"t1", "t100"}, {"t3", "t250", "t499"}, {"t0", "t7"}, {"t60", "unknown"}, {"t400", "t401", "t402", "t403"}};
+
+        File temp = File.createTempFile("index", ".smii");
+        temp.deleteOnExit();
+        index.write(temp.toPath());
+        InvertedIndex mapped = InvertedIndex.open(temp.toPath());
+        assertEquals(index.ndoc(), mapped.ndoc());
+        assertEquals(index.nterm(), mapped.nterm());
+
+        for (String[] query : queries) {
+            double[] scores = new double[n];
+            for (int i = 0; i < n; i++) {
+                for (String term : query) {
+                    int df = index.df(term);
+                    int tf = tf(docs[i], term);
+                    if (tf > 0) scores[i] += bm25.score(tf, docs[i].length, index.avgDocSize(), n, df);
+                }
+            }
+
+            InvertedIndex.Hit[] hits = index.search(bm25, 10, query);
+            System.out.println(Arrays.toString(query) + ": " + Arrays.toString(hits));
+            check(hits, scores, 10);
+
+            InvertedIndex.Hit[] hits2 = mapped.search(bm25, 10, query);
+            assertEquals(hits.length, hits2.length);
+            for (int i = 0; i < hits.length; i++) {
+                assertEquals(hits[i].doc, hits2[i].doc);
+                assertEquals(hits[i].score, hits2[i].score, 1E-12);
+            }
+        }
+    }
+
+    @Test
+    public void testTFIDF() {
+        System.out.println("TFIDF");
+        TFIDF tfidf = new TFIDF();
+        String[][] queries = {{"t1", "t100"}, {"t3", "t250", "t499"}, {"t20"}};
+
+        for (String[] query : queries) {
+            double[] scores = new double[n];
+            for (int i = 0; i < n; i++) {
+                int maxtf = maxtf(docs[i]);
+                for (String term : query) {
+                    int tf = tf(docs[i], term);
+                    if (tf > 0) scores[i] += tfidf.rank(tf, maxtf, n, index.df(term));
+                }
+            }
+
+            InvertedIndex.Hit[] hits = index.search(tfidf, 20, query);
+            check(hits, scores, 20);
+        }
+    }
+}
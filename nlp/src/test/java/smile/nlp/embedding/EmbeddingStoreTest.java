@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2010-2020 Haifeng Li. All rights reserved.
+ *
+ * Smile is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * Smile is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Smile.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package smile.nlp.embedding;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import smile.math.MathEx;
+import smile.neighbor.Neighbor;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Haifeng Li
+ */
+public class EmbeddingStoreTest {
+
+    public EmbeddingStoreTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testWord2Vec() throws Exception {
+        System.out.println("word2vec");
+        MathEx.setSeed(19650218); // to get repeatable results.
+        int n = 10000;
+        int d = 50;
+        String[] words = new String[n];
+        float[][] vectors = new float[n][d];
+        for (int i = 0; i < n; i++) {
+            words[i] = i == 7 ? "café" : "w" + i;
+            for (int j = 0; j < d; j++) {
+                vectors[i][j] = (float) MathEx.random() - 0.5f;
+            }
+        }
+
+        // a near duplicate of word 42
+        for (int j = 0; j < d; j++) {
+            vectors[99][j] = vectors[42][j] * 2 + 0.001f;
+        }
+
+        File bin = File.createTempFile("word2vec", ".bin");
+        bin.deleteOnExit();
+        try (java.io.OutputStream output = Files.newOutputStream(bin.toPath())) {
+            output.write(String.format("%d %d\n", n, d).getBytes(StandardCharsets.UTF_8));
+            ByteBuffer buffer = ByteBuffer.allocate(4 * d).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < n; i++) {
+                output.write((words[i] + " ").getBytes(StandardCharsets.UTF_8));
+                buffer.clear();
+                for (float x : vectors[i]) buffer.putFloat(x);
+                output.write(buffer.array());
+                output.write('\n');
+            }
+        }
+
+        File file = File.createTempFile("embedding", ".smwe");
+        file.deleteOnExit();
+        Path path = file.toPath();
+        EmbeddingStore.fromWord2Vec(bin.toPath(), path);
+
+        EmbeddingStore store = EmbeddingStore.open(path);
+        assertEquals(n, store.size());
+        assertEquals(d, store.dimension());
+        assertEquals(7, store.indexOf("café"));
+        assertEquals("café", store.word(7));
+        assertEquals(-1, store.indexOf("unknown"));
+        assertNull(store.get("unknown"));
+        for (int i = 0; i < n; i += 97) {
+            assertEquals(i, store.indexOf(words[i]));
+            assertArrayEquals(vectors[i], store.get(words[i]), 0.0f);
+        }
+
+        float[][] batch = store.get("w1", "unknown", "w9999");
+        assertArrayEquals(vectors[1], batch[0], 0.0f);
+        assertNull(batch[1]);
+        assertArrayEquals(vectors[9999], batch[2], 0.0f);
+
+        Neighbor<String, float[]>[] neighbors = store.nearest("w42", 5);
+        assertEquals(5, neighbors.length);
+        assertEquals("w99", neighbors[0].key);
+        assertEquals(0.0, neighbors[0].distance, 1E-4);
+        for (int i = 1; i < neighbors.length; i++) {
+            assertTrue(neighbors[i-1].distance <= neighbors[i].distance);
+        }
+
+        // brute force
+        double best = Double.MAX_VALUE;
+        int nearest = -1;
+        for (int i = 0; i < n; i++) {
+            double dist = 1.0 - MathEx.cos(vectors[3], vectors[i]);
+            if (dist < best) {
+                best = dist;
+                nearest = i;
+            }
+        }
+        neighbors = store.nearest(vectors[3], 1);
+        assertEquals(nearest, neighbors[0].index);
+        assertEquals(best, neighbors[0].distance, 1E-6);
+    }
+
+    @Test
+    public void testGloVe() throws Exception {
+        System.out.println("GloVe");
+        File txt = File.createTempFile("glove", ".txt");
+        txt.deleteOnExit();
+        Files.write(txt.toPath(), "the 1.0 0.0 0.5\nof 0.0 1.0 -0.5\nand 1.0 0.1 0.5\n".getBytes(StandardCharsets.UTF_8));
+
+        File file = File.createTempFile("embedding", ".smwe");
+        file.deleteOnExit();
+        EmbeddingStore.fromGloVe(txt.toPath(), file.toPath());
+        EmbeddingStore store = EmbeddingStore.open(file.toPath());
+        assertEquals(3, store.size());
+        assertEquals(3, store.dimension());
+        assertArrayEquals(new float[]{0.0f, 1.0f, -0.5f}, store.get("of"), 0.0f);
+        assertEquals("and", store.nearest("the", 1)[0].key);
+    }
+
+    @Test
+    public void testTruncated() throws Exception {
+        System.out.println("truncated");
+        File bin = File.createTempFile("word2vec", ".bin");
+        bin.deleteOnExit();
+        try (java.io.OutputStream output = Files.newOutputStream(bin.toPath())) {
+            output.write("3 2\n".getBytes(StandardCharsets.UTF_8));
+            ByteBuffer buffer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putFloat(1.0f).putFloat(0.5f);
+            output.write("the ".getBytes(StandardCharsets.UTF_8));
+            output.write(buffer.array());
+            output.write("\nof ".getBytes(StandardCharsets.UTF_8));
+            output.write(buffer.array(), 0, 5);
+        }
+
+        File file = File.createTempFile("embedding", ".smwe");
+        file.deleteOnExit();
+        try {
+            EmbeddingStore.fromWord2Vec(bin.toPath(), file.toPath());
+            fail("Convert a truncated word2vec file");
+        } catch (java.io.EOFException ex) {
+            System.out.println(ex);
+        }
+        assertFalse(file.exists());
+
+        File txt = File.createTempFile("glove", ".txt");
+        txt.deleteOnExit();
+        Files.write(txt.toPath(), "the 1.0 0.0 0.5\nof 0.0 1.0\n".getBytes(StandardCharsets.UTF_8));
+        try {
+            EmbeddingStore.fromGloVe(txt.toPath(), file.toPath());
+            fail("Convert a malformed GloVe file");
+        } catch (IllegalStateException ex) {
+            System.out.println(ex);
+        }
+        assertFalse(file.exists());
+    }
+}